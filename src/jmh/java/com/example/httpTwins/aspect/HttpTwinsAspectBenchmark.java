@@ -0,0 +1,134 @@
+package com.example.httpTwins.aspect;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.capture.CapturingRequestWrapper;
+import com.example.httpTwins.fanout.FanoutExecutorRegistry;
+import com.example.httpTwins.fanout.FanoutProperties;
+import com.example.httpTwins.health.DestinationHealthRegistry;
+import com.example.httpTwins.health.HealthProperties;
+import com.example.httpTwins.metrics.TwinMetrics;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.service.RequestProcessor;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.aop.aspectj.annotation.AspectJProxyFactory;
+import org.springframework.context.support.GenericApplicationContext;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures what {@link HttpTwinsAspect} adds to the request thread, calling an advised endpoint
+ * through a real Spring AOP proxy. With 0 destinations the method carries no {@code @HttpTwins},
+ * which is the baseline cost of the proxy itself.
+ * <p>
+ * The destinations are no-op local processors, so the numbers cover the routing plan lookup, the
+ * snapshot and the dispatch, not the processors. Twins that overflow the executor queue are dropped,
+ * as they would be in production.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh.includes=HttpTwinsAspectBenchmark}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class HttpTwinsAspectBenchmark {
+
+    private static final byte[] BODY = "{\"title\":\"Dune\",\"author\":\"Frank Herbert\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Param({"0", "1", "4"})
+    private int destinations;
+
+    private GenericApplicationContext context;
+    private FanoutExecutorRegistry executorRegistry;
+    private Endpoints endpoints;
+
+    @Setup
+    public void setUp() throws Exception {
+        context = new GenericApplicationContext();
+        context.registerBean(NoopProcessor.class);
+        context.refresh();
+        executorRegistry = new FanoutExecutorRegistry(new FanoutProperties());
+        TwinRoutingPlanCache routingPlanCache = new TwinRoutingPlanCache(context, context.getEnvironment(), executorRegistry,
+                new DestinationHealthRegistry(new HealthProperties()), new TwinMetrics(new SimpleMeterRegistry()));
+        HttpTwinsAspect aspect = new HttpTwinsAspect(routingPlanCache, ObservationRegistry.NOOP);
+
+        AspectJProxyFactory proxyFactory = new AspectJProxyFactory(new Endpoints());
+        proxyFactory.setProxyTargetClass(true);
+        proxyFactory.addAspect(aspect);
+        endpoints = proxyFactory.getProxy();
+
+        MockHttpServletRequest live = new MockHttpServletRequest("POST", "/books");
+        live.setContentType("application/json");
+        live.addHeader("Accept", "application/json");
+        live.addHeader("User-Agent", "jmh");
+        live.setContent(BODY);
+        CapturingRequestWrapper request = new CapturingRequestWrapper(live, 1024 * 1024);
+        request.getInputStream().readAllBytes();
+        RequestContextHolder.setRequestAttributes(new ServletRequestAttributes(request, new MockHttpServletResponse()));
+    }
+
+    @TearDown
+    public void tearDown() {
+        RequestContextHolder.resetRequestAttributes();
+        executorRegistry.destroy();
+        context.close();
+    }
+
+    @Benchmark
+    public Object createBook() {
+        return switch (destinations) {
+            case 0 -> endpoints.untwinned();
+            case 1 -> endpoints.oneDestination();
+            default -> endpoints.fourDestinations();
+        };
+    }
+
+    public static class Endpoints {
+
+        public Object untwinned() {
+            return BODY;
+        }
+
+        @HttpTwins(localdestinations = NoopProcessor.class)
+        public Object oneDestination() {
+            return BODY;
+        }
+
+        @HttpTwins(localdestinations = {NoopProcessor.class, NoopProcessor.class, NoopProcessor.class, NoopProcessor.class})
+        public Object fourDestinations() {
+            return BODY;
+        }
+    }
+
+    public static class NoopProcessor implements RequestProcessor {
+
+        @Override
+        public void process(HttpServletRequest request) {
+            process(TwinRequest.from(request));
+        }
+
+        @Override
+        public void process(TwinRequest request) {
+        }
+    }
+}
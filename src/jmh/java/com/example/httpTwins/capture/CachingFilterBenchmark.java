@@ -0,0 +1,161 @@
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.controller.BookController;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the old catch-all caching filter, which wrapped every request in a
+ * {@link ContentCachingRequestWrapper}, with {@link TwinCachingFilter}, which only wraps requests
+ * for {@code @HttpTwins} endpoints.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh.includes=CachingFilterBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class CachingFilterBenchmark {
+
+    @Param({"64", "16384"})
+    private int bodySize;
+
+    private OncePerRequestFilter wrapAllFilter;
+    private TwinCachingFilter selectiveFilter;
+    private MockHttpServletRequest nonMirroredRequest;
+    private MockHttpServletRequest mirroredRequest;
+    private MockHttpServletResponse response;
+
+    @Setup
+    public void setUp() throws Exception {
+        RequestMappingInfo.BuilderConfiguration config = new RequestMappingInfo.BuilderConfiguration();
+        config.setPatternParser(PathPatternParser.defaultInstance);
+        BookController controller = new BookController(null);
+        Map<RequestMappingInfo, HandlerMethod> mappings = Map.of(
+                RequestMappingInfo.paths("/books").methods(RequestMethod.GET).options(config).build(),
+                new HandlerMethod(controller, BookController.class.getMethod("getBooks")),
+                RequestMappingInfo.paths("/authors/{id}").methods(RequestMethod.GET).options(config).build(),
+                new HandlerMethod(controller, BookController.class.getMethod("getBooks")));
+        TwinnedEndpointIndex index = TwinnedEndpointIndex.from(mappings);
+
+        selectiveFilter = new TwinCachingFilter(() -> index, new CaptureBufferPool(64));
+        wrapAllFilter = new OncePerRequestFilter() {
+            @Override
+            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+                    throws ServletException, IOException {
+                filterChain.doFilter(new ContentCachingRequestWrapper(request), response);
+            }
+        };
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'x');
+        nonMirroredRequest = new ReplayableRequest("POST", "/orders", body);
+        mirroredRequest = new ReplayableRequest("GET", "/books", body);
+        response = new MockHttpServletResponse();
+    }
+
+    @Benchmark
+    public void nonMirroredWrapAll(Blackhole blackhole) throws Exception {
+        wrapAllFilter.doFilter(nonMirroredRequest, response, consumeBody(blackhole));
+    }
+
+    @Benchmark
+    public void nonMirroredSelective(Blackhole blackhole) throws Exception {
+        selectiveFilter.doFilter(nonMirroredRequest, response, consumeBody(blackhole));
+    }
+
+    @Benchmark
+    public void mirroredSelective(Blackhole blackhole) throws Exception {
+        selectiveFilter.doFilter(mirroredRequest, response, consumeBody(blackhole));
+    }
+
+    private static FilterChain consumeBody(Blackhole blackhole) {
+        return (request, response) -> blackhole.consume(request.getInputStream().readAllBytes());
+    }
+
+    /**
+     * A mock request that can be filtered over and over, handing out a fresh body stream each time.
+     */
+    private static final class ReplayableRequest extends MockHttpServletRequest {
+
+        private final byte[] body;
+
+        ReplayableRequest(String method, String uri, byte[] body) {
+            super(method, uri);
+            this.body = body;
+            setContentType("application/json");
+        }
+
+        @Override
+        public ServletInputStream getInputStream() {
+            ByteArrayInputStream content = new ByteArrayInputStream(body);
+            return new ServletInputStream() {
+                @Override
+                public int read() {
+                    return content.read();
+                }
+
+                @Override
+                public int read(byte[] b, int off, int len) {
+                    return content.read(b, off, len);
+                }
+
+                @Override
+                public boolean isFinished() {
+                    return content.available() == 0;
+                }
+
+                @Override
+                public boolean isReady() {
+                    return true;
+                }
+
+                @Override
+                public void setReadListener(ReadListener readListener) {
+                    throw new UnsupportedOperationException();
+                }
+            };
+        }
+
+        @Override
+        public int getContentLength() {
+            return body.length;
+        }
+
+        @Override
+        public long getContentLengthLong() {
+            return body.length;
+        }
+    }
+}
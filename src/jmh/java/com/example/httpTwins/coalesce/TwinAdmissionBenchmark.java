@@ -0,0 +1,47 @@
+package com.example.httpTwins.coalesce;
+
+import com.example.httpTwins.limit.Sampler;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the decisions the aspect takes on every request before it snapshots one: sampling by
+ * header and the coalescing key. Both must allocate nothing; run with the GC profiler and check that
+ * {@code gc.alloc.rate.norm} stays at 0 bytes per operation. Headers are looked up in a map, so the
+ * cost of the container's own header lookup is not included.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh.includes=TwinAdmissionBenchmark -Pjmh.prof=gc}.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TwinAdmissionBenchmark {
+
+    private static final String[] HEADERS = {"Accept"};
+
+    private final Sampler sampler = new Sampler(0.5, "X-Trace-Id");
+    private final Map<String, String> request = Map.of("Accept", "application/json", "X-Trace-Id", "4bf92f3577b34da6");
+
+    @Benchmark
+    public boolean sample() {
+        return sampler.sample(request, Map::get);
+    }
+
+    @Benchmark
+    public long coalescingKey() {
+        return CoalescingKey.of("GET", "/books", "size=20&page=1&sort=title", HEADERS, request, Map::get);
+    }
+}
@@ -0,0 +1,105 @@
+package com.example.httpTwins.controller;
+
+import com.example.httpTwins.HttpTwinsApplication;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * End-to-end load on {@code POST /books} of the running application, with its {@code @HttpTwins}
+ * switched off and on. Sample mode reports the latency percentiles (p50, p99, ...) seen by eight
+ * concurrent clients; the difference between the two runs is what mirroring costs the caller.
+ * <p>
+ * The remote destinations point at an in-process stub server and logging is turned down to
+ * warnings, so neither the network nor the console dominates.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh.includes=BookControllerLoadBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class BookControllerLoadBenchmark {
+
+    private static final String BOOK = "{\"title\":\"Dune\",\"author\":\"Frank Herbert\"}";
+
+    @Param({"false", "true"})
+    private boolean twins;
+
+    private HttpServer stubServer;
+    private ExecutorService stubExecutor;
+    private ConfigurableApplicationContext application;
+    private HttpClient client;
+    private HttpRequest createBook;
+
+    @Setup
+    public void setUp() throws Exception {
+        stubExecutor = Executors.newFixedThreadPool(16);
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        stubServer.setExecutor(stubExecutor);
+        stubServer.createContext("/", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        stubServer.start();
+        String stubUrl = "http://127.0.0.1:" + stubServer.getAddress().getPort();
+
+        application = new SpringApplicationBuilder(HttpTwinsApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "http-twins.create-book.enabled=" + twins,
+                        "http-twins.create-book.regional-tests-url=" + stubUrl + "/regionalTests",
+                        "http-twins.create-book.buyers-url=" + stubUrl + "/items")
+                .run();
+        String port = application.getEnvironment().getProperty("local.server.port");
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        createBook = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/books"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(BOOK))
+                .build();
+    }
+
+    @TearDown
+    public void tearDown() {
+        application.close();
+        stubServer.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    public int createBook() throws Exception {
+        return client.send(createBook, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
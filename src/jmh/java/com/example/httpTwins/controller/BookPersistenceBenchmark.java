@@ -0,0 +1,96 @@
+package com.example.httpTwins.controller;
+
+import com.example.httpTwins.HttpTwinsApplication;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of the demo's persistence under eight concurrent clients: {@code POST /books} with
+ * each insert in its own transaction or group-committed, and {@code GET /books} with the page cache
+ * off and on. {@code @HttpTwins} is switched off on both endpoints so only the database path is
+ * measured.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh.includes=BookPersistenceBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(8)
+@Fork(1)
+public class BookPersistenceBenchmark {
+
+    private static final String BOOK = "{\"title\":\"Dune\",\"author\":\"Frank Herbert\"}";
+
+    @Param({"direct", "group-commit"})
+    private String writeMode;
+
+    @Param({"0", "256"})
+    private int cacheEntries;
+
+    private ConfigurableApplicationContext application;
+    private HttpClient client;
+    private HttpRequest createBook;
+    private HttpRequest getBooks;
+
+    @Setup
+    public void setUp() throws Exception {
+        application = new SpringApplicationBuilder(HttpTwinsApplication.class)
+                .properties(
+                        "server.port=0",
+                        "spring.main.banner-mode=off",
+                        "logging.level.root=WARN",
+                        "http-twins.create-book.enabled=false",
+                        "http-twins.get-books.enabled=false",
+                        "books.write.mode=" + writeMode,
+                        "books.cache.max-entries=" + cacheEntries)
+                .run();
+        String port = application.getEnvironment().getProperty("local.server.port");
+
+        client = HttpClient.newBuilder().version(HttpClient.Version.HTTP_1_1).build();
+        createBook = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/books"))
+                .header("Content-Type", "application/json")
+                .POST(HttpRequest.BodyPublishers.ofString(BOOK))
+                .build();
+        getBooks = HttpRequest.newBuilder(URI.create("http://127.0.0.1:" + port + "/books?size=100")).GET().build();
+        // Give the reads a full first page
+        for (int i = 0; i < 100; i++) {
+            client.send(createBook, HttpResponse.BodyHandlers.discarding());
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        application.close();
+    }
+
+    @Benchmark
+    public int createBook() throws Exception {
+        return client.send(createBook, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+
+    @Benchmark
+    public int getBooks() throws Exception {
+        return client.send(getBooks, HttpResponse.BodyHandlers.discarding()).statusCode();
+    }
+}
@@ -0,0 +1,69 @@
+package com.example.httpTwins.fanout;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how many twins a {@link FanoutExecutor} can dispatch and run: each invocation submits a
+ * batch of no-op twins and waits until all of them have run. The queue holds a whole batch, so no
+ * twin is dropped.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh.includes=FanoutExecutorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class FanoutExecutorBenchmark {
+
+    private static final int BATCH = 1000;
+
+    @Param({"PLATFORM", "VIRTUAL_POOL"})
+    private ExecutorType type;
+
+    @Param({"4"})
+    private int threads;
+
+    private FanoutExecutor executor;
+
+    @Setup
+    public void setUp() {
+        FanoutProperties.Executor spec = new FanoutProperties.Executor();
+        spec.setType(type);
+        spec.setThreads(threads);
+        spec.setQueueCapacity(BATCH);
+        executor = new FanoutExecutor("jmh", spec);
+    }
+
+    @TearDown
+    public void tearDown() {
+        executor.shutdown();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public void dispatch() throws InterruptedException {
+        CountDownLatch done = new CountDownLatch(BATCH);
+        Runnable twin = done::countDown;
+        for (int i = 0; i < BATCH; i++) {
+            executor.execute(twin);
+        }
+        done.await();
+    }
+}
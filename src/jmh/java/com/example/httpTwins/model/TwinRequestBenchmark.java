@@ -0,0 +1,59 @@
+package com.example.httpTwins.model;
+
+import com.example.httpTwins.capture.CapturingRequestWrapper;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures {@link TwinRequest#from} as the body grows: the headers are copied, and the body is
+ * shared with the capturing wrapper rather than copied.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh.includes=TwinRequestBenchmark}.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class TwinRequestBenchmark {
+
+    @Param({"0", "1024", "65536", "1048576"})
+    private int bodySize;
+
+    private CapturingRequestWrapper request;
+
+    @Setup
+    public void setUp() throws Exception {
+        MockHttpServletRequest live = new MockHttpServletRequest("POST", "/books");
+        live.setContentType("application/json");
+        live.addHeader("Accept", "application/json");
+        live.addHeader("Accept-Encoding", "gzip, deflate");
+        live.addHeader("Authorization", "Bearer 0123456789abcdef");
+        live.addHeader("User-Agent", "jmh");
+        live.addHeader("X-Request-Id", "4bf92f3577b34da6a3ce929d0e0e4736");
+        byte[] body = new byte[bodySize];
+        Arrays.fill(body, (byte) 'x');
+        live.setContent(body);
+        request = new CapturingRequestWrapper(live, 2 * 1024 * 1024);
+        request.getInputStream().readAllBytes();
+    }
+
+    @Benchmark
+    public TwinRequest snapshot() {
+        return TwinRequest.from(request);
+    }
+}
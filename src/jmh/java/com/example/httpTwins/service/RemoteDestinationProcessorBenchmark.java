@@ -0,0 +1,110 @@
+package com.example.httpTwins.service;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.RemoteClientProperties;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.example.httpTwins.spill.SpillProperties;
+import com.example.httpTwins.spill.TwinSpillQueue;
+import com.sun.net.httpserver.HttpServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.boot.logging.LogLevel;
+import org.springframework.boot.logging.LoggingSystem;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Mirrors twins through {@link RemoteDestinationProcessor} to an in-process stub server over
+ * loopback, one at a time for latency and a window of concurrent twins for throughput. Logging is
+ * turned down to warnings, so the per-twin success line is not measured.
+ * <p>
+ * Run with {@code ./gradlew jmh -Pjmh.includes=RemoteDestinationProcessorBenchmark}.
+ */
+@State(Scope.Benchmark)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(2)
+public class RemoteDestinationProcessorBenchmark {
+
+    private static final int WINDOW = 64;
+
+    private HttpServer stubServer;
+    private ExecutorService stubExecutor;
+    private RemoteHttpClientPool clientPool;
+    private RemoteDestinationProcessor processor;
+    private TwinRequest request;
+    private String url;
+
+    @Setup
+    public void setUp() throws Exception {
+        LoggingSystem loggingSystem = LoggingSystem.get(getClass().getClassLoader());
+        loggingSystem.setLogLevel(LoggingSystem.ROOT_LOGGER_NAME, LogLevel.WARN);
+
+        stubExecutor = Executors.newFixedThreadPool(WINDOW);
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        stubServer.setExecutor(stubExecutor);
+        stubServer.createContext("/mirror", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+            }
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        stubServer.start();
+        url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/mirror";
+
+        RemoteClientProperties properties = new RemoteClientProperties();
+        properties.setHttp2(false);
+        properties.setMaxInFlightPerDestination(WINDOW);
+        clientPool = new RemoteHttpClientPool(properties);
+        processor = new RemoteDestinationProcessor(clientPool, new TwinSpillQueue(new SpillProperties(), clientPool));
+        request = new TwinRequest("POST", "/books", null,
+                new String[]{"Content-Type", "application/json"},
+                ByteBuffer.wrap("{\"title\":\"Dune\",\"author\":\"Frank Herbert\"}".getBytes(StandardCharsets.UTF_8)),
+                Map.of());
+    }
+
+    @TearDown
+    public void tearDown() {
+        clientPool.destroy();
+        stubServer.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.SampleTime)
+    @OutputTimeUnit(TimeUnit.MICROSECONDS)
+    public void latency() {
+        processor.processAsync(request, url).join();
+    }
+
+    @Benchmark
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @OperationsPerInvocation(WINDOW)
+    public void throughput() {
+        CompletableFuture<?>[] results = new CompletableFuture<?>[WINDOW];
+        for (int i = 0; i < WINDOW; i++) {
+            results[i] = processor.processAsync(request, url);
+        }
+        CompletableFuture.allOf(results).join();
+    }
+}
@@ -15,6 +15,8 @@
  */
 package com.example.httpTwins.annotation;
 
+import com.example.httpTwins.fanout.FanoutLane;
+import com.example.httpTwins.fanout.TwinPriority;
 import com.example.httpTwins.service.RemoteDestinationProcessor;
 import com.example.httpTwins.service.RemoteProcessor;
 import com.example.httpTwins.service.RequestProcessor;
@@ -31,6 +33,9 @@ public @interface HttpTwins {
     /**
      * An array of local destination classes that will process the mirrored request.
      * These classes must implement the {@link RequestProcessor} interface.
+     * <p>
+     * A destination with a rule under {@code http-twins.routing.destinations} only gets the
+     * requests matching it; see {@link com.example.httpTwins.routing.RoutingProperties}.
      */
     Class<? extends RequestProcessor>[] localdestinations() default {};
 
@@ -43,7 +48,8 @@ public @interface HttpTwins {
 
     /**
      * An array of remote URLs that will receive a copy of the HTTP request.
-     * The {@link #remoteProcessor()} will be invoked for each URL.
+     * The {@link #remoteProcessor()} will be invoked for each URL, unless the URL's routing rule
+     * keeps the request from it.
      */
     String[] remoteDestinations() default {};
 
@@ -54,4 +60,106 @@ public @interface HttpTwins {
      * placeholder (e.g., "${http-twins.enabled}").
      */
     String active() default "true";
+
+    /**
+     * The name of the fan-out executor that runs this endpoint's twins, as configured under
+     * {@code http-twins.fanout.executors}. Defaults to {@code http-twins.fanout.default-executor}.
+     * <p>
+     * This can be a literal name (e.g., "audit") or a Spring property placeholder
+     * (e.g., "${http-twins.get-books.executor}").
+     */
+    String executor() default "";
+
+    /**
+     * The fraction of requests to mirror, between "0" and "1". Defaults to "1" (every request).
+     * <p>
+     * The decision is made before the request is copied, so requests that are not sampled cost
+     * almost nothing. This can be a literal or a Spring property placeholder.
+     */
+    String sampleRate() default "1";
+
+    /**
+     * A request header, such as a trace id, whose value decides sampling deterministically: all
+     * requests with the same value are either all mirrored or all skipped. Requests without the
+     * header are sampled at random. Defaults to random sampling.
+     */
+    String sampleByHeader() default "";
+
+    /**
+     * The maximum number of twins per second sent to each destination; excess twins are dropped.
+     * Empty or "0" means unlimited. This can be a literal or a Spring property placeholder.
+     * <p>
+     * The limit applies to each node on its own; {@code http-twins.cluster.budgets} sets one shared by all nodes.
+     */
+    String rateLimit() default "";
+
+    /**
+     * The maximum number of twins running at the same time for each destination; excess twins are
+     * dropped. Empty or "0" means unlimited. This can be a literal or a Spring property placeholder.
+     */
+    String maxConcurrency() default "";
+
+    /**
+     * The maximum number of request body bytes kept for the twins. Bodies are buffered only for
+     * endpoints carrying this annotation; larger bodies reach the twins truncated.
+     */
+    int maxRequestCaptureSize() default 1024 * 1024;
+
+    /**
+     * Whether to deliver a copy of the primary response to the local destinations through
+     * {@link RequestProcessor#processResponse}, once the response has been written, including by
+     * an async dispatch or a reactive publisher. Defaults to false.
+     */
+    boolean captureResponse() default false;
+
+    /**
+     * The maximum number of response body bytes captured when {@link #captureResponse()} is enabled.
+     */
+    int maxCaptureSize() default 64 * 1024;
+
+    /**
+     * What to do with a response body larger than {@link #maxCaptureSize()}: deliver its first
+     * {@code maxCaptureSize} bytes (true, the default) or deliver the status and headers only (false).
+     */
+    boolean truncateResponse() default true;
+
+    /**
+     * The URL of a candidate service, such as a new version of this one, to shadow the endpoint to.
+     * Each mirrored request is also sent there and the candidate's response is compared with the
+     * primary's in the background; the results are published per endpoint. Empty disables shadowing.
+     * <p>
+     * The primary response is captured for the comparison up to {@link #maxCaptureSize()}, whether
+     * or not {@link #captureResponse()} is set. This can be a literal URL or a Spring property placeholder.
+     */
+    String shadowDestination() default "";
+
+    /**
+     * How important this endpoint's twins are when the fan-out executor is under pressure.
+     * Defaults to {@link TwinPriority#NORMAL}.
+     * <p>
+     * Each destination runs in its own {@link FanoutLane}, so a slow one cannot take every thread of
+     * the executor; the priority applies to all of them unless {@code http-twins.fanout.lanes}
+     * overrides it for a destination.
+     */
+    TwinPriority priority() default TwinPriority.NORMAL;
+
+    /**
+     * A time window, such as "1s", within which identical requests are mirrored only once. The twin
+     * is delivered when the window closes and carries the number of requests it stands for in the
+     * {@link com.example.httpTwins.coalesce.TwinCoalescer#COUNT_ATTRIBUTE} attribute. Requests are
+     * identical if they share the method, the normalized URI and query string, and the values of
+     * {@link #coalesceHeaders()}. Empty or "0" disables coalescing, which suits anything but
+     * idempotent reads.
+     * <p>
+     * Only the request opening a window is shadowed, and no coalesced request has its response
+     * handed to {@code processResponse}, since its twin is only processed once the window closes.
+     * This can be a literal or a Spring property placeholder.
+     */
+    String coalesceWindow() default "";
+
+    /**
+     * The headers whose values tell otherwise identical requests apart when coalescing, for example
+     * {@code Accept} or {@code Accept-Language}.
+     */
+    String[] coalesceHeaders() default {};
 }
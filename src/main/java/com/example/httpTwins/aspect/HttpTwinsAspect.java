@@ -16,82 +16,330 @@
 package com.example.httpTwins.aspect;
 
 import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.capture.ServletTwinSource;
+import com.example.httpTwins.capture.TwinSource;
+import com.example.httpTwins.coalesce.TwinCoalescer;
+import com.example.httpTwins.fanout.FanoutExecutor;
+import com.example.httpTwins.limit.DestinationGuard;
+import com.example.httpTwins.metrics.DestinationMetrics;
+import com.example.httpTwins.metrics.EndpointMetrics;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.routing.RoutingTable;
 import com.example.httpTwins.service.RemoteProcessor;
 import com.example.httpTwins.service.RequestProcessor;
-import jakarta.servlet.http.HttpServletRequest;
+import com.example.httpTwins.shadow.ShadowExchange;
+import com.example.httpTwins.transform.PayloadTransform;
+import com.example.httpTwins.transform.TransformedTwin;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
 import org.aspectj.lang.JoinPoint;
 import org.aspectj.lang.annotation.Aspect;
 import org.aspectj.lang.annotation.Before;
+import org.aspectj.lang.reflect.MethodSignature;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.beans.factory.NoSuchBeanDefinitionException;
-import org.springframework.context.ApplicationContext;
-import org.springframework.core.env.Environment;
 import org.springframework.stereotype.Component;
-import org.springframework.web.context.request.RequestContextHolder;
-import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.util.ClassUtils;
 
-import java.util.Optional;
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.atomic.AtomicInteger;
 
 @Aspect
 @Component
 public class HttpTwinsAspect {
 
     private static final Logger logger = LoggerFactory.getLogger(HttpTwinsAspect.class);
+    private static final TwinRoutingPlan.LocalDestination[] NO_LOCAL_DESTINATIONS = new TwinRoutingPlan.LocalDestination[0];
+    private static final TransformedTwin[] NO_TRANSFORMS = new TransformedTwin[0];
+    private static final boolean SERVLET_PRESENT =
+            ClassUtils.isPresent("jakarta.servlet.http.HttpServletRequest", HttpTwinsAspect.class.getClassLoader());
 
-    private final ApplicationContext applicationContext;
-    private final Environment environment;
+    private final TwinRoutingPlanCache routingPlanCache;
+    private final ObservationRegistry observationRegistry;
     private final RequestProcessor defaultRequestProcessor;
 
-    public HttpTwinsAspect(ApplicationContext applicationContext, Environment environment) {
-        this.applicationContext = applicationContext;
-        this.environment = environment;
+    public HttpTwinsAspect(TwinRoutingPlanCache routingPlanCache, ObservationRegistry observationRegistry) {
+        this.routingPlanCache = routingPlanCache;
+        this.observationRegistry = observationRegistry;
         this.defaultRequestProcessor = createDefaultProcessor();
     }
 
     @Before("@annotation(httpTwins)")
     public void fanoutHttpRequest(JoinPoint joinPoint, HttpTwins httpTwins) {
-        if (!isActive(httpTwins.active())) {
+        // Reactive handlers have no request bound to their thread; TwinExchangeFilter twins them from the exchange
+        TwinSource source = SERVLET_PRESENT ? ServletTwinSource.current() : null;
+        if (source != null) {
+            twinRequest(((MethodSignature) joinPoint.getSignature()).getMethod(), httpTwins, source);
+        }
+    }
+
+    /**
+     * Twins the request to the destinations of the handler method. Called on the request thread by
+     * the advice for servlet requests, and by the WebFlux filter once the handler has produced its
+     * result, so the body it read is in the snapshot.
+     *
+     * @param method    The {@code @HttpTwins} handler method.
+     * @param httpTwins Its annotation.
+     * @param source    The request it is serving.
+     */
+    public void twinRequest(Method method, HttpTwins httpTwins, TwinSource source) {
+        TwinRoutingPlan plan = routingPlanCache.get(method, httpTwins);
+        if (!plan.isActive()) {
             return;
         }
 
-        Optional.ofNullable((ServletRequestAttributes) RequestContextHolder.getRequestAttributes())
-                .map(ServletRequestAttributes::getRequest)
-                .ifPresent(request -> {
-                    // Handle local destinations
-                    for (Class<? extends RequestProcessor> destinationClass : httpTwins.localdestinations()) {
-                        new Thread(() -> processLocalDestination(request, destinationClass)).start();
-                    }
+        long start = System.nanoTime();
+        EndpointMetrics metrics = plan.getMetrics();
+        // Unbound method references capture nothing, so these decisions allocate nothing per request
+        if (!plan.getSampler().sample(source, TwinSource::getHeader)) {
+            metrics.unsampled();
+            return;
+        }
+        metrics.sampled();
+        // Turned away while shutting down, so the twins already queued can drain
+        if (!plan.getExecutor().tryAccept()) {
+            return;
+        }
 
-                    // Handle remote destinations
-                    Class<? extends RemoteProcessor> remoteProcessorClass = httpTwins.remoteProcessor();
-                    RemoteProcessor remoteProcessor = applicationContext.getBean(remoteProcessorClass);
-                    for (String remoteUrl : httpTwins.remoteDestinations()) {
-                        new Thread(() -> remoteProcessor.process(request, remoteUrl)).start();
-                    }
+        // Identical requests within the coalescing window ride along with the first one's twin
+        TwinCoalescer coalescer = plan.getCoalescer();
+        long key = 0;
+        if (coalescer != null) {
+            key = coalescer.key(source.getMethod(), source.getRequestURI(), source.getQueryString(), source, TwinSource::getHeader);
+            if (coalescer.join(key)) {
+                metrics.captured(System.nanoTime() - start);
+                return;
+            }
+        }
 
-                    // Handle default case if no destinations are specified
-                    if (httpTwins.localdestinations().length == 0 && httpTwins.remoteDestinations().length == 0) {
-                        new Thread(() -> defaultRequestProcessor.process(request)).start();
-                    }
-                });
+        // Capture once, before the handler returns; the container may recycle the live request
+        // before the twins run, and every destination shares this one snapshot
+        TwinRequest request = source.snapshot();
+        FanoutExecutor executor = plan.getExecutor();
+        TransformedTwin[] transformed = transform(plan, request);
+        long routed = route(plan, request);
+
+        // Remote calls continue the request's trace, if there is one, even when they are sent once the window closes
+        Observation parent = plan.getRemoteDestinations().length > 0 ? observationRegistry.getCurrentObservation() : null;
+        TwinCoalescer.Opening opening = coalescer == null ? TwinCoalescer.Opening.REFUSED
+                : coalescer.open(key, request, twin -> fanout(plan, twin, transform(plan, twin), parent, route(plan, twin)));
+        if (opening == TwinCoalescer.Opening.JOINED) {
+            metrics.captured(System.nanoTime() - start);
+            return;
+        }
+        boolean coalesced = opening == TwinCoalescer.Opening.OPENED;
+        if (!coalesced) {
+            fanout(plan, request, transformed, parent, routed);
+        }
+
+        // Shadow the request to the candidate; its response is compared with the primary's once both are in
+        TwinRoutingPlan.ShadowDestination shadow = plan.getShadow();
+        ShadowExchange exchange = null;
+        if (shadow != null) {
+            exchange = shadow.comparator().start(request, shadow.url(), shadow.stats());
+            executor.execute(exchange::send, exchange::cancel);
+        }
+
+        // The twin of a coalesced request is only processed once its window closes, and stands for
+        // several responses, so its response is not handed to the destinations
+        boolean captureResponse = plan.isCaptureResponse() && !coalesced;
+        if (captureResponse || exchange != null) {
+            captureResponse(plan, captureResponse, request, transformed, routed, source, exchange);
+        }
+        metrics.captured(System.nanoTime() - start);
     }
 
-    private boolean isActive(String activeValue) {
-        if (activeValue == null || activeValue.trim().isEmpty()) {
-            return false;
+    /**
+     * Hands the twin to the plan's local, remote or default destinations; of the local and remote
+     * ones, only to those it is routed to.
+     */
+    private void fanout(TwinRoutingPlan plan, TwinRequest request, TransformedTwin[] transformed, Observation parent,
+                        long routed) {
+        // Handle local destinations
+        TwinRoutingPlan.LocalDestination[] localDestinations = plan.getLocalDestinations();
+        for (int i = 0; i < localDestinations.length; i++) {
+            TwinRoutingPlan.LocalDestination destination = localDestinations[i];
+            if (!RoutingTable.isRouted(routed, i)) {
+                destination.metrics().unrouted();
+                continue;
+            }
+            DestinationGuard guard = destination.guard();
+            if (guard.tryAcquire()) {
+                long enqueued = System.nanoTime();
+                destination.lane().execute(() -> processLocal(destination,
+                        twin(destination.transform(), request, transformed), enqueued), () -> {
+                    guard.release();
+                    destination.metrics().dropped();
+                });
+            } else {
+                destination.metrics().dropped();
+            }
+        }
+
+        // Handle remote destinations, routed after the local ones
+        RemoteProcessor remoteProcessor = plan.getRemoteProcessor();
+        TwinRoutingPlan.RemoteDestination[] remoteDestinations = plan.getRemoteDestinations();
+        for (int i = 0; i < remoteDestinations.length; i++) {
+            TwinRoutingPlan.RemoteDestination destination = remoteDestinations[i];
+            if (!RoutingTable.isRouted(routed, localDestinations.length + i)) {
+                destination.metrics().unrouted();
+                continue;
+            }
+            if (destination.health().isOpen()) {
+                // Skip the executor and the client entirely while the destination's circuit is open,
+                // keeping the twin only if its processor can replay it later; spilling only queues it for the writer
+                remoteProcessor.spill(twin(destination.transform(), request, transformed), destination.url());
+                destination.metrics().dropped();
+                continue;
+            }
+            DestinationGuard guard = destination.guard();
+            if (guard.tryAcquire()) {
+                long enqueued = System.nanoTime();
+                // A remote twin the executor cannot take is handed back to its processor, which spills it if it can replay it
+                destination.lane().execute(() -> processRemote(remoteProcessor, destination,
+                        twin(destination.transform(), request, transformed), parent, enqueued), () -> {
+                    guard.release();
+                    destination.metrics().dropped();
+                    remoteProcessor.spill(twin(destination.transform(), request, transformed), destination.url());
+                });
+            } else {
+                destination.metrics().dropped();
+            }
+        }
+
+        // Handle default case if no destinations are specified
+        if (plan.isUseDefaultProcessor()) {
+            DestinationMetrics defaultMetrics = plan.getDefaultMetrics();
+            long enqueued = System.nanoTime();
+            plan.getExecutor().execute(() -> {
+                long started = System.nanoTime();
+                defaultMetrics.started(started - enqueued);
+                defaultRequestProcessor.process(request);
+                defaultMetrics.succeeded(System.nanoTime() - started, request.getBodyLength());
+            }, defaultMetrics::dropped);
         }
-        String resolvedValue = environment.resolvePlaceholders(activeValue);
-        return Boolean.parseBoolean(resolvedValue);
     }
 
-    private void processLocalDestination(HttpServletRequest request, Class<? extends RequestProcessor> destinationClass) {
+    private void processLocal(TwinRoutingPlan.LocalDestination destination, TwinRequest request, long enqueued) {
+        DestinationMetrics metrics = destination.metrics();
+        long started = System.nanoTime();
+        metrics.started(started - enqueued);
         try {
-            RequestProcessor processor = applicationContext.getBean(destinationClass);
-            processor.process(request);
-        } catch (NoSuchBeanDefinitionException e) {
-            logger.warn("HttpTwins WARNING: No RequestProcessor bean found of type '{}'.", destinationClass.getName());
+            destination.processor().process(request);
+            metrics.succeeded(System.nanoTime() - started, request.getBodyLength());
+        } catch (RuntimeException e) {
+            metrics.failed(System.nanoTime() - started);
+            throw e;
+        } finally {
+            destination.guard().release();
+        }
+    }
+
+    private void processRemote(RemoteProcessor remoteProcessor, TwinRoutingPlan.RemoteDestination destination,
+                               TwinRequest request, Observation parent, long enqueued) {
+        DestinationGuard guard = destination.guard();
+        DestinationMetrics metrics = destination.metrics();
+        long started = System.nanoTime();
+        metrics.started(started - enqueued);
+        CompletableFuture<Void> result;
+        try (Observation.Scope scope = parent != null ? parent.openScope() : null) {
+            result = remoteProcessor.processAsync(request, destination.url());
+        } catch (RuntimeException e) {
+            guard.release();
+            metrics.failed(System.nanoTime() - started);
+            throw e;
+        }
+        // Asynchronous processors hold the guard until the remote call is over, not just until it is sent
+        result.whenComplete((ignored, failure) -> {
+            guard.release();
+            if (failure == null) {
+                metrics.succeeded(System.nanoTime() - started, request.getBodyLength());
+            } else {
+                metrics.failed(System.nanoTime() - started);
+            }
+        });
+    }
+
+    private void captureResponse(TwinRoutingPlan plan, boolean toDestinations, TwinRequest request, TransformedTwin[] transformed,
+                                 long routed, TwinSource source, ShadowExchange exchange) {
+        source.captureResponse(plan.getMaxCaptureSize(), plan.isTruncateResponse(), (response, release) -> {
+            TwinRoutingPlan.LocalDestination[] destinations = toDestinations
+                    ? routedLocalDestinations(plan, routed) : NO_LOCAL_DESTINATIONS;
+            int readers = destinations.length + (exchange != null ? 1 : 0);
+            if (readers == 0) {
+                release.run();
+                return;
+            }
+            // The pooled body buffer goes back once the last reader is done with it, or dropped
+            AtomicInteger pending = new AtomicInteger(readers);
+            Runnable done = () -> {
+                if (pending.decrementAndGet() == 0) {
+                    release.run();
+                }
+            };
+            for (TwinRoutingPlan.LocalDestination destination : destinations) {
+                destination.lane().execute(() -> {
+                    try {
+                        destination.processor().processResponse(twin(destination.transform(), request, transformed), response);
+                    } finally {
+                        done.run();
+                    }
+                }, done);
+            }
+            if (exchange != null) {
+                exchange.onPrimary(response, done);
+            }
+        });
+    }
+
+    /**
+     * Returns the destinations the request is routed to, as bits of the plan's routing table.
+     */
+    private static long route(TwinRoutingPlan plan, TwinRequest request) {
+        RoutingTable router = plan.getRouter();
+        return router == null ? RoutingTable.ALL : router.route(request);
+    }
+
+    /**
+     * Returns the local destinations the request is routed to.
+     */
+    private static TwinRoutingPlan.LocalDestination[] routedLocalDestinations(TwinRoutingPlan plan, long routed) {
+        TwinRoutingPlan.LocalDestination[] destinations = plan.getLocalDestinations();
+        if (routed == RoutingTable.ALL) {
+            return destinations;
+        }
+        List<TwinRoutingPlan.LocalDestination> routedDestinations = new ArrayList<>(destinations.length);
+        for (int i = 0; i < destinations.length; i++) {
+            if (RoutingTable.isRouted(routed, i)) {
+                routedDestinations.add(destinations[i]);
+            }
         }
+        return routedDestinations.toArray(NO_LOCAL_DESTINATIONS);
+    }
+
+    /**
+     * Prepares the plan's transforms of the request; each runs on the first twin thread that needs it.
+     */
+    private static TransformedTwin[] transform(TwinRoutingPlan plan, TwinRequest request) {
+        PayloadTransform[] transforms = plan.getTransforms();
+        if (transforms.length == 0) {
+            return NO_TRANSFORMS;
+        }
+        TransformedTwin[] transformed = new TransformedTwin[transforms.length];
+        for (int i = 0; i < transforms.length; i++) {
+            transformed[i] = new TransformedTwin(transforms[i], request);
+        }
+        return transformed;
+    }
+
+    /**
+     * Returns the request as the destination with the given transform index should see it.
+     */
+    private static TwinRequest twin(int transform, TwinRequest request, TransformedTwin[] transformed) {
+        return transform < 0 ? request : transformed[transform].get();
     }
 
     private RequestProcessor createDefaultProcessor() {
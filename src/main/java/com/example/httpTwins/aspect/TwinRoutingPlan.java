@@ -0,0 +1,199 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.aspect;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.coalesce.TwinCoalescer;
+import com.example.httpTwins.fanout.FanoutExecutor;
+import com.example.httpTwins.fanout.FanoutLane;
+import com.example.httpTwins.health.DestinationHealth;
+import com.example.httpTwins.limit.DestinationGuard;
+import com.example.httpTwins.limit.Sampler;
+import com.example.httpTwins.metrics.DestinationMetrics;
+import com.example.httpTwins.metrics.EndpointMetrics;
+import com.example.httpTwins.routing.RoutingTable;
+import com.example.httpTwins.service.RemoteProcessor;
+import com.example.httpTwins.service.RequestProcessor;
+import com.example.httpTwins.shadow.ShadowComparator;
+import com.example.httpTwins.shadow.ShadowStats;
+import com.example.httpTwins.transform.PayloadTransform;
+
+/**
+ * Everything the aspect needs to fan out a request for one {@link HttpTwins} method, resolved once:
+ * the activation state, the sampler, the coalescer, the executor, the processor beans, the remote
+ * URLs, the routing rules and the shadow candidate, each destination with its own admission guard, fan-out
+ * lane, transform and meters.
+ */
+public final class TwinRoutingPlan {
+
+    static final TwinRoutingPlan INACTIVE = new TwinRoutingPlan(false, Sampler.ALWAYS, null, null, null,
+            new LocalDestination[0], null, new RemoteDestination[0], new PayloadTransform[0], null, false, null, false, 0, false, null);
+
+    private final boolean active;
+    private final Sampler sampler;
+    private final TwinCoalescer coalescer;
+    private final FanoutExecutor executor;
+    private final EndpointMetrics metrics;
+    private final LocalDestination[] localDestinations;
+    private final RemoteProcessor remoteProcessor;
+    private final RemoteDestination[] remoteDestinations;
+    private final PayloadTransform[] transforms;
+    private final RoutingTable router;
+    private final boolean useDefaultProcessor;
+    private final DestinationMetrics defaultMetrics;
+    private final boolean captureResponse;
+    private final int maxCaptureSize;
+    private final boolean truncateResponse;
+    private final ShadowDestination shadow;
+
+    TwinRoutingPlan(boolean active, Sampler sampler, TwinCoalescer coalescer, FanoutExecutor executor, EndpointMetrics metrics,
+                    LocalDestination[] localDestinations, RemoteProcessor remoteProcessor, RemoteDestination[] remoteDestinations,
+                    PayloadTransform[] transforms, RoutingTable router, boolean useDefaultProcessor, DestinationMetrics defaultMetrics,
+                    boolean captureResponse, int maxCaptureSize, boolean truncateResponse, ShadowDestination shadow) {
+        this.active = active;
+        this.sampler = sampler;
+        this.coalescer = coalescer;
+        this.executor = executor;
+        this.metrics = metrics;
+        this.localDestinations = localDestinations;
+        this.remoteProcessor = remoteProcessor;
+        this.remoteDestinations = remoteDestinations;
+        this.transforms = transforms;
+        this.router = router;
+        this.useDefaultProcessor = useDefaultProcessor;
+        this.defaultMetrics = defaultMetrics;
+        this.captureResponse = captureResponse;
+        this.maxCaptureSize = maxCaptureSize;
+        this.truncateResponse = truncateResponse;
+        this.shadow = shadow;
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    public Sampler getSampler() {
+        return sampler;
+    }
+
+    /**
+     * The coalescer of identical twins, or {@code null} if the endpoint does not coalesce.
+     */
+    public TwinCoalescer getCoalescer() {
+        return coalescer;
+    }
+
+    public FanoutExecutor getExecutor() {
+        return executor;
+    }
+
+    public EndpointMetrics getMetrics() {
+        return metrics;
+    }
+
+    /**
+     * The resolved local destinations. Destinations without a bean are left out.
+     */
+    public LocalDestination[] getLocalDestinations() {
+        return localDestinations;
+    }
+
+    /**
+     * The remote processor bean, or {@code null} if there are no usable remote destinations.
+     */
+    public RemoteProcessor getRemoteProcessor() {
+        return remoteProcessor;
+    }
+
+    /**
+     * The remote destinations whose URL passed validation.
+     */
+    public RemoteDestination[] getRemoteDestinations() {
+        return remoteDestinations;
+    }
+
+    /**
+     * The distinct transforms of the destinations, each applied at most once per request and shared
+     * by the destinations that use it.
+     */
+    public PayloadTransform[] getTransforms() {
+        return transforms;
+    }
+
+    /**
+     * The routing rules of the destinations, or {@code null} if every destination gets every twin.
+     * Local destinations are its first bits, in order, followed by the remote ones.
+     */
+    public RoutingTable getRouter() {
+        return router;
+    }
+
+    /**
+     * Whether the annotation names no destinations at all, so the default logger applies.
+     */
+    public boolean isUseDefaultProcessor() {
+        return useDefaultProcessor;
+    }
+
+    /**
+     * The meters of the default logger, or {@code null} if it does not apply.
+     */
+    public DestinationMetrics getDefaultMetrics() {
+        return defaultMetrics;
+    }
+
+    public boolean isCaptureResponse() {
+        return captureResponse;
+    }
+
+    public int getMaxCaptureSize() {
+        return maxCaptureSize;
+    }
+
+    public boolean isTruncateResponse() {
+        return truncateResponse;
+    }
+
+    /**
+     * The candidate the endpoint is shadowed to, or {@code null} if it is not shadowed.
+     */
+    public ShadowDestination getShadow() {
+        return shadow;
+    }
+
+    /**
+     * A local destination bean, its admission guard, its fan-out lane, the index of its transform in
+     * {@link #getTransforms()} (-1 if it has none) and its meters.
+     */
+    public record LocalDestination(String name, RequestProcessor processor, DestinationGuard guard, FanoutLane lane,
+                                   int transform, DestinationMetrics metrics) {
+    }
+
+    /**
+     * A remote destination URL, its admission guard, its fan-out lane, the index of its transform in
+     * {@link #getTransforms()} (-1 if it has none), its meters and the health shared by everything
+     * sending to the URL.
+     */
+    public record RemoteDestination(String url, DestinationGuard guard, FanoutLane lane, int transform,
+                                    DestinationHealth health, DestinationMetrics metrics) {
+    }
+
+    /**
+     * A shadow candidate URL, the comparator pairing its responses with the primary's and the endpoint's results.
+     */
+    public record ShadowDestination(String url, ShadowComparator comparator, ShadowStats stats) {
+    }
+}
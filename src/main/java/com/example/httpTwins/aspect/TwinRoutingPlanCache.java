@@ -0,0 +1,328 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.aspect;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.cluster.ClusterBudget;
+import com.example.httpTwins.cluster.ClusterBudgetRegistry;
+import com.example.httpTwins.coalesce.CoalescerRegistry;
+import com.example.httpTwins.coalesce.TwinCoalescer;
+import com.example.httpTwins.fanout.FanoutExecutor;
+import com.example.httpTwins.fanout.FanoutExecutorRegistry;
+import com.example.httpTwins.fanout.FanoutLane;
+import com.example.httpTwins.health.DestinationHealthRegistry;
+import com.example.httpTwins.limit.DestinationGuard;
+import com.example.httpTwins.limit.RateLimiter;
+import com.example.httpTwins.limit.Sampler;
+import com.example.httpTwins.metrics.TwinMetrics;
+import com.example.httpTwins.routing.RoutingRuleRegistry;
+import com.example.httpTwins.routing.RoutingRulesChangedEvent;
+import com.example.httpTwins.routing.RoutingTable;
+import com.example.httpTwins.service.RemoteProcessor;
+import com.example.httpTwins.service.RequestProcessor;
+import com.example.httpTwins.shadow.ShadowComparator;
+import com.example.httpTwins.shadow.ShadowStats;
+import com.example.httpTwins.transform.PayloadTransform;
+import com.example.httpTwins.transform.TransformRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.NoSuchBeanDefinitionException;
+import org.springframework.boot.convert.DurationStyle;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.env.Environment;
+import org.springframework.stereotype.Component;
+
+import java.lang.reflect.Method;
+import java.net.URI;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Caches a {@link TwinRoutingPlan} per annotated method, so the request path costs one map lookup
+ * instead of resolving placeholders and looking up beans on every call.
+ * <p>
+ * Plans are built on first use and dropped whenever the environment changes (for example after
+ * {@code /actuator/refresh}), so toggling a property such as {@code http-twins.get-books.enabled}
+ * takes effect on the next request.
+ */
+@Component
+public class TwinRoutingPlanCache {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwinRoutingPlanCache.class);
+
+    private final ApplicationContext applicationContext;
+    private final Environment environment;
+    private final FanoutExecutorRegistry executorRegistry;
+    private final DestinationHealthRegistry healthRegistry;
+    private final TwinMetrics metrics;
+    private final Map<Method, TwinRoutingPlan> plans = new ConcurrentHashMap<>();
+
+    public TwinRoutingPlanCache(ApplicationContext applicationContext, Environment environment,
+                                FanoutExecutorRegistry executorRegistry, DestinationHealthRegistry healthRegistry,
+                                TwinMetrics metrics) {
+        this.applicationContext = applicationContext;
+        this.environment = environment;
+        this.executorRegistry = executorRegistry;
+        this.healthRegistry = healthRegistry;
+        this.metrics = metrics;
+    }
+
+    /**
+     * Returns the plan for the given method, building it from the annotation on first use.
+     */
+    public TwinRoutingPlan get(Method method, HttpTwins httpTwins) {
+        TwinRoutingPlan plan = plans.get(method);
+        if (plan == null) {
+            plan = plans.computeIfAbsent(method, key -> build(key, httpTwins));
+        }
+        return plan;
+    }
+
+    @EventListener({EnvironmentChangeEvent.class, RefreshScopeRefreshedEvent.class})
+    public void invalidate() {
+        plans.clear();
+        logger.info("HttpTwins: Environment changed, routing plans will be rebuilt.");
+    }
+
+    @EventListener(RoutingRulesChangedEvent.class)
+    public void onRoutingRulesChanged() {
+        plans.clear();
+        logger.info("HttpTwins: Routing rules changed, routing plans will be rebuilt.");
+    }
+
+    private TwinRoutingPlan build(Method method, HttpTwins httpTwins) {
+        if (!isActive(httpTwins.active())) {
+            return TwinRoutingPlan.INACTIVE;
+        }
+
+        double rateLimit = parseNumber(httpTwins.rateLimit(), 0, "rateLimit", method);
+        int maxConcurrency = (int) parseNumber(httpTwins.maxConcurrency(), 0, "maxConcurrency", method);
+        String endpoint = method.getDeclaringClass().getSimpleName() + "." + method.getName();
+        FanoutExecutor executor = executorRegistry.get(environment.resolvePlaceholders(httpTwins.executor()));
+        metrics.bindExecutor(executor);
+        TransformRegistry transformRegistry = applicationContext.getBeanProvider(TransformRegistry.class).getIfAvailable();
+        ClusterBudgetRegistry budgetRegistry = applicationContext.getBeanProvider(ClusterBudgetRegistry.class).getIfAvailable();
+        List<PayloadTransform> transforms = new ArrayList<>();
+
+        List<TwinRoutingPlan.LocalDestination> localDestinations = new ArrayList<>();
+        for (Class<? extends RequestProcessor> destinationClass : httpTwins.localdestinations()) {
+            try {
+                localDestinations.add(new TwinRoutingPlan.LocalDestination(destinationClass.getSimpleName(),
+                        applicationContext.getBean(destinationClass),
+                        guard(rateLimit, maxConcurrency, budget(budgetRegistry, destinationClass.getSimpleName())),
+                        lane(executor, destinationClass.getSimpleName(), httpTwins),
+                        transform(transformRegistry, destinationClass.getSimpleName(), transforms),
+                        metrics.forDestination(endpoint, destinationClass.getSimpleName())));
+            } catch (NoSuchBeanDefinitionException e) {
+                logger.warn("HttpTwins WARNING: No RequestProcessor bean found of type '{}'.", destinationClass.getName());
+            }
+        }
+
+        List<TwinRoutingPlan.RemoteDestination> remoteDestinations = new ArrayList<>();
+        for (String remoteUrl : httpTwins.remoteDestinations()) {
+            String resolvedUrl = environment.resolvePlaceholders(remoteUrl);
+            try {
+                URI.create(resolvedUrl);
+                remoteDestinations.add(new TwinRoutingPlan.RemoteDestination(resolvedUrl,
+                        guard(rateLimit, maxConcurrency, budget(budgetRegistry, resolvedUrl)),
+                        lane(executor, resolvedUrl, httpTwins), transform(transformRegistry, resolvedUrl, transforms),
+                        healthRegistry.get(resolvedUrl),
+                        metrics.forDestination(endpoint, resolvedUrl)));
+            } catch (IllegalArgumentException e) {
+                logger.warn("HttpTwins WARNING: Ignoring invalid remote destination '{}' on {}.", resolvedUrl, method);
+            }
+        }
+        RemoteProcessor remoteProcessor = null;
+        if (!remoteDestinations.isEmpty()) {
+            try {
+                remoteProcessor = applicationContext.getBean(httpTwins.remoteProcessor());
+            } catch (NoSuchBeanDefinitionException e) {
+                logger.warn("HttpTwins WARNING: No RemoteProcessor bean found of type '{}'.", httpTwins.remoteProcessor().getName());
+                remoteDestinations.clear();
+            }
+        }
+
+        RoutingTable router = router(endpoint, localDestinations, remoteDestinations);
+
+        double sampleRate = parseNumber(httpTwins.sampleRate(), 1, "sampleRate", method);
+        Sampler sampler = sampleRate >= 1.0 ? Sampler.ALWAYS
+                : new Sampler(sampleRate, environment.resolvePlaceholders(httpTwins.sampleByHeader()));
+
+        TwinRoutingPlan.ShadowDestination shadow = shadow(httpTwins, endpoint, method);
+        TwinCoalescer coalescer = coalescer(httpTwins, endpoint, method);
+
+        boolean useDefaultProcessor = httpTwins.localdestinations().length == 0 && httpTwins.remoteDestinations().length == 0
+                && httpTwins.shadowDestination().isEmpty();
+
+        return new TwinRoutingPlan(true,
+                sampler,
+                coalescer,
+                executor,
+                metrics.forEndpoint(endpoint),
+                localDestinations.toArray(new TwinRoutingPlan.LocalDestination[0]),
+                remoteProcessor,
+                remoteDestinations.toArray(new TwinRoutingPlan.RemoteDestination[0]),
+                transforms.toArray(new PayloadTransform[0]),
+                router,
+                useDefaultProcessor,
+                useDefaultProcessor ? metrics.forDestination(endpoint, "default") : null,
+                httpTwins.captureResponse(),
+                httpTwins.maxCaptureSize(),
+                httpTwins.truncateResponse(),
+                shadow);
+    }
+
+    private TwinRoutingPlan.ShadowDestination shadow(HttpTwins httpTwins, String endpoint, Method method) {
+        String url = environment.resolvePlaceholders(httpTwins.shadowDestination()).trim();
+        if (url.isEmpty()) {
+            return null;
+        }
+        try {
+            URI.create(url);
+        } catch (IllegalArgumentException e) {
+            logger.warn("HttpTwins WARNING: Ignoring invalid shadow destination '{}' on {}.", url, method);
+            return null;
+        }
+        ShadowComparator comparator;
+        try {
+            comparator = applicationContext.getBean(ShadowComparator.class);
+        } catch (NoSuchBeanDefinitionException e) {
+            logger.warn("HttpTwins WARNING: No ShadowComparator bean found, not shadowing {}.", method);
+            return null;
+        }
+        ShadowStats stats = comparator.statsFor(endpoint);
+        metrics.bindShadow(stats);
+        return new TwinRoutingPlan.ShadowDestination(url, comparator, stats);
+    }
+
+    private TwinCoalescer coalescer(HttpTwins httpTwins, String endpoint, Method method) {
+        String value = environment.resolvePlaceholders(httpTwins.coalesceWindow()).trim();
+        if (value.isEmpty()) {
+            return null;
+        }
+        Duration window;
+        try {
+            window = DurationStyle.detectAndParse(value);
+        } catch (IllegalArgumentException e) {
+            logger.warn("HttpTwins WARNING: Ignoring invalid coalesceWindow '{}' on {}.", value, method);
+            return null;
+        }
+        if (window.isNegative() || window.isZero()) {
+            return null;
+        }
+        CoalescerRegistry registry = applicationContext.getBeanProvider(CoalescerRegistry.class).getIfAvailable();
+        if (registry == null) {
+            logger.warn("HttpTwins WARNING: No CoalescerRegistry bean found, not coalescing {}.", method);
+            return null;
+        }
+        if (httpTwins.captureResponse()) {
+            logger.warn("HttpTwins WARNING: {} captures responses and coalesces requests; only responses to requests outside a coalescing window reach processResponse.", method);
+        }
+        TwinCoalescer coalescer = registry.get(endpoint, window, httpTwins.coalesceHeaders());
+        metrics.bindCoalescer(coalescer);
+        return coalescer;
+    }
+
+    /**
+     * Compiles the routing rules of the destinations, local ones first, or returns {@code null} if none has a rule.
+     */
+    private RoutingTable router(String endpoint, List<TwinRoutingPlan.LocalDestination> localDestinations,
+                                List<TwinRoutingPlan.RemoteDestination> remoteDestinations) {
+        RoutingRuleRegistry registry = applicationContext.getBeanProvider(RoutingRuleRegistry.class).getIfAvailable();
+        if (registry == null) {
+            return null;
+        }
+        List<String> destinations = new ArrayList<>();
+        localDestinations.forEach(destination -> destinations.add(destination.name()));
+        remoteDestinations.forEach(destination -> destinations.add(destination.url()));
+        return registry.table(endpoint, destinations);
+    }
+
+    /**
+     * Returns the destination's lane in the executor, shared by every endpoint twinning to it.
+     */
+    private FanoutLane lane(FanoutExecutor executor, String destination, HttpTwins httpTwins) {
+        FanoutLane lane = executor.lane(destination, httpTwins.priority());
+        metrics.bindLane(lane);
+        return lane;
+    }
+
+    /**
+     * Returns the index of the destination's transform among the plan's transforms, adding it if it
+     * is new, or -1 if the destination has none.
+     */
+    private static int transform(TransformRegistry registry, String destination, List<PayloadTransform> transforms) {
+        PayloadTransform transform = registry != null ? registry.forDestination(destination) : null;
+        if (transform == null) {
+            return -1;
+        }
+        int index = transforms.indexOf(transform);
+        if (index < 0) {
+            transforms.add(transform);
+            index = transforms.size() - 1;
+        }
+        return index;
+    }
+
+    /**
+     * Returns this node's share of the destination's cluster-wide budget, or {@code null} if it has none.
+     */
+    private ClusterBudget budget(ClusterBudgetRegistry registry, String destination) {
+        ClusterBudget budget = registry != null ? registry.get(destination) : null;
+        if (budget != null) {
+            metrics.bindClusterBudget(budget);
+        }
+        return budget;
+    }
+
+    private static DestinationGuard guard(double rateLimit, int maxConcurrency, ClusterBudget clusterBudget) {
+        if (rateLimit <= 0 && maxConcurrency <= 0 && clusterBudget == null) {
+            return DestinationGuard.UNLIMITED;
+        }
+        return new DestinationGuard(rateLimit > 0 ? new RateLimiter(rateLimit) : null, Math.max(0, maxConcurrency), clusterBudget);
+    }
+
+    /**
+     * Resolves a numeric annotation attribute. Blank and unparseable values yield the default;
+     * unparseable ones are reported.
+     */
+    private double parseNumber(String value, double defaultValue, String attribute, Method method) {
+        String resolvedValue = environment.resolvePlaceholders(value).trim();
+        if (resolvedValue.isEmpty()) {
+            return defaultValue;
+        }
+        try {
+            return Double.parseDouble(resolvedValue);
+        } catch (NumberFormatException e) {
+            logger.warn("HttpTwins WARNING: Ignoring invalid {} '{}' on {}.", attribute, resolvedValue, method);
+            return defaultValue;
+        }
+    }
+
+    private boolean isActive(String activeValue) {
+        if (activeValue == null || activeValue.trim().isEmpty()) {
+            return false;
+        }
+        String resolvedValue = environment.resolvePlaceholders(activeValue);
+        return Boolean.parseBoolean(resolvedValue);
+    }
+}
@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.audit;
+
+/**
+ * How the audit sink encodes each twin.
+ */
+public enum AuditFormat {
+
+    /**
+     * One JSON object per line, in the shape of the NDJSON batches plus a {@code ts} field.
+     */
+    JSON_LINES(".jsonl"),
+
+    /**
+     * Length-prefixed binary records; smaller and cheaper to write, read with {@link AuditRecordEncoder}'s layout.
+     */
+    BINARY(".bin");
+
+    private final String extension;
+
+    AuditFormat(String extension) {
+        this.extension = extension;
+    }
+
+    public String getExtension() {
+        return extension;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.audit;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the audit sink, bound from {@code http-twins.audit.*}.
+ */
+@ConfigurationProperties(prefix = "http-twins.audit")
+public class AuditProperties {
+
+    /**
+     * Write twins sent to the audit sink to disk. When disabled the sink ignores them.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory holding the audit files. Created if missing.
+     */
+    private String directory = Paths.get(System.getProperty("java.io.tmpdir"), "http-twins-audit").toString();
+
+    /**
+     * Name of the audit files before the sequence number and extension.
+     */
+    private String filePrefix = "twins";
+
+    private AuditFormat format = AuditFormat.JSON_LINES;
+
+    /**
+     * Size at which the current file is closed and a new one started.
+     */
+    private DataSize maxFileSize = DataSize.ofMegabytes(64);
+
+    /**
+     * Files kept, including the current one; the oldest is deleted on rollover.
+     */
+    private int maxFiles = 10;
+
+    /**
+     * Twins waiting for the writer. When it is full, new twins are dropped.
+     */
+    private int bufferCapacity = 8192;
+
+    /**
+     * Bytes encoded in memory before they are written to the file. A record must fit in it.
+     */
+    private DataSize writeBufferSize = DataSize.ofKilobytes(256);
+
+    /**
+     * Body bytes kept per twin; longer bodies are truncated and flagged.
+     */
+    private DataSize maxBodySize = DataSize.ofKilobytes(16);
+
+    /**
+     * Headers whose values are replaced by {@code [REDACTED]}, matched case-insensitively.
+     */
+    private List<String> redactHeaders = new ArrayList<>(List.of("Authorization", "Proxy-Authorization", "Cookie", "Set-Cookie"));
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getFilePrefix() {
+        return filePrefix;
+    }
+
+    public void setFilePrefix(String filePrefix) {
+        this.filePrefix = filePrefix;
+    }
+
+    public AuditFormat getFormat() {
+        return format;
+    }
+
+    public void setFormat(AuditFormat format) {
+        this.format = format;
+    }
+
+    public DataSize getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(DataSize maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public void setMaxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    public DataSize getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public void setWriteBufferSize(DataSize writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+    }
+
+    public DataSize getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(DataSize maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public List<String> getRedactHeaders() {
+        return redactHeaders;
+    }
+
+    public void setRedactHeaders(List<String> redactHeaders) {
+        this.redactHeaders = redactHeaders;
+    }
+}
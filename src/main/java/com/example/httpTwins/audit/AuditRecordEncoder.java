@@ -0,0 +1,316 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.audit;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.NdjsonBatchEncoder;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Encodes twins as audit records straight into a {@link ByteBuffer}, reusing its scratch arrays,
+ * so a record costs no allocation beyond what the snapshot already holds. Not thread-safe: one
+ * encoder per writer thread.
+ * <p>
+ * {@link AuditFormat#JSON_LINES} records look like
+ * <pre>
+ * {"ts":1700000000000,"method":"POST","uri":"/books","query":null,"headers":[["Content-Type","application/json"]],"body":"{...}"}
+ * </pre>
+ * Textual bodies are written under {@code body}, others base64-encoded under {@code bodyBase64}, and
+ * {@code "truncated":true} marks a body cut at the maximum size.
+ * <p>
+ * {@link AuditFormat#BINARY} records are big-endian {@code length:int} (of the rest), {@code ts:long},
+ * method, URI and query as strings, {@code headerCount:int} name/value string pairs,
+ * {@code truncated:byte}, {@code bodyLength:int} and the body. A string is a {@code length:int}
+ * of UTF-8 bytes, -1 for {@code null}.
+ * <p>
+ * If the buffer runs out of room mid-record a {@link java.nio.BufferOverflowException} is thrown
+ * and the buffer is left with a partial record past its previous position.
+ */
+public final class AuditRecordEncoder {
+
+    private static final byte[] REDACTED = "[REDACTED]".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] HEX = "0123456789abcdef".getBytes(StandardCharsets.US_ASCII);
+    private static final byte[] BASE64 = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/"
+            .getBytes(StandardCharsets.US_ASCII);
+
+    private final AuditFormat format;
+    private final String[] redactedHeaders;
+    private final int maxBodySize;
+    private final byte[] body;
+    private final HeaderWriter headerWriter = new HeaderWriter();
+
+    public AuditRecordEncoder(AuditFormat format, List<String> redactedHeaders, int maxBodySize) {
+        this.format = format;
+        this.redactedHeaders = redactedHeaders.toArray(new String[0]);
+        this.maxBodySize = Math.max(0, maxBodySize);
+        // One byte more than is kept, so a cut can be moved back off a multi-byte character
+        this.body = new byte[this.maxBodySize + 1];
+    }
+
+    public void encode(TwinRequest request, long timestampMillis, ByteBuffer out) {
+        int bodyLength = Math.min(request.getBodyLength(), maxBodySize);
+        boolean truncated = bodyLength < request.getBodyLength();
+        request.getBody().get(body, 0, truncated ? bodyLength + 1 : bodyLength);
+        if (format == AuditFormat.BINARY) {
+            encodeBinary(request, timestampMillis, bodyLength, truncated, out);
+        } else {
+            encodeJson(request, timestampMillis, bodyLength, truncated, out);
+        }
+    }
+
+    private void encodeBinary(TwinRequest request, long timestampMillis, int bodyLength, boolean truncated, ByteBuffer out) {
+        int start = out.position();
+        out.putInt(0);
+        out.putLong(timestampMillis);
+        putBinaryString(out, request.getMethod());
+        putBinaryString(out, request.getRequestURI());
+        putBinaryString(out, request.getQueryString());
+        int countPosition = out.position();
+        out.putInt(0);
+        headerWriter.start(out, false);
+        request.forEachHeader(headerWriter);
+        out.putInt(countPosition, headerWriter.count);
+        out.put(truncated ? (byte) 1 : (byte) 0);
+        out.putInt(bodyLength);
+        out.put(body, 0, bodyLength);
+        out.putInt(start, out.position() - start - 4);
+    }
+
+    private void encodeJson(TwinRequest request, long timestampMillis, int bodyLength, boolean truncated, ByteBuffer out) {
+        putAscii(out, "{\"ts\":");
+        putDecimal(out, timestampMillis);
+        putAscii(out, ",\"method\":");
+        putJsonString(out, request.getMethod());
+        putAscii(out, ",\"uri\":");
+        putJsonString(out, request.getRequestURI());
+        putAscii(out, ",\"query\":");
+        putJsonString(out, request.getQueryString());
+        putAscii(out, ",\"headers\":[");
+        headerWriter.start(out, true);
+        request.forEachHeader(headerWriter);
+        out.put((byte) ']');
+        if (bodyLength > 0) {
+            if (NdjsonBatchEncoder.isTextual(request.getHeader("Content-Type"))) {
+                // Never cut a multi-byte character in half: the first byte left out must start one
+                while (truncated && bodyLength > 0 && (body[bodyLength] & 0xC0) == 0x80) {
+                    bodyLength--;
+                }
+                putAscii(out, ",\"body\":\"");
+                for (int i = 0; i < bodyLength; i++) {
+                    putJsonByte(out, body[i]);
+                }
+                out.put((byte) '"');
+            } else {
+                putAscii(out, ",\"bodyBase64\":\"");
+                putBase64(out, body, bodyLength);
+                out.put((byte) '"');
+            }
+            if (truncated) {
+                putAscii(out, ",\"truncated\":true");
+            }
+        }
+        putAscii(out, "}\n");
+    }
+
+    private boolean isRedacted(String name) {
+        for (String redacted : redactedHeaders) {
+            if (redacted.equalsIgnoreCase(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static void putAscii(ByteBuffer out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            out.put((byte) value.charAt(i));
+        }
+    }
+
+    private static void putDecimal(ByteBuffer out, long value) {
+        if (value < 0) {
+            out.put((byte) '-');
+            value = -value;
+        }
+        long divisor = 1;
+        while (value / divisor >= 10) {
+            divisor *= 10;
+        }
+        for (; divisor > 0; divisor /= 10) {
+            out.put((byte) ('0' + value / divisor % 10));
+        }
+    }
+
+    private static void putBase64(ByteBuffer out, byte[] bytes, int length) {
+        int i = 0;
+        for (; i + 2 < length; i += 3) {
+            int bits = (bytes[i] & 0xFF) << 16 | (bytes[i + 1] & 0xFF) << 8 | bytes[i + 2] & 0xFF;
+            out.put(BASE64[bits >>> 18]);
+            out.put(BASE64[bits >>> 12 & 0x3F]);
+            out.put(BASE64[bits >>> 6 & 0x3F]);
+            out.put(BASE64[bits & 0x3F]);
+        }
+        if (i < length) {
+            int bits = (bytes[i] & 0xFF) << 16 | (i + 1 < length ? (bytes[i + 1] & 0xFF) << 8 : 0);
+            out.put(BASE64[bits >>> 18]);
+            out.put(BASE64[bits >>> 12 & 0x3F]);
+            out.put(i + 1 < length ? BASE64[bits >>> 6 & 0x3F] : (byte) '=');
+            out.put((byte) '=');
+        }
+    }
+
+    private static void putBinaryString(ByteBuffer out, String value) {
+        if (value == null) {
+            out.putInt(-1);
+            return;
+        }
+        int lengthPosition = out.position();
+        out.putInt(0);
+        putUtf8(out, value, false);
+        out.putInt(lengthPosition, out.position() - lengthPosition - 4);
+    }
+
+    private static void putJsonString(ByteBuffer out, String value) {
+        if (value == null) {
+            putAscii(out, "null");
+            return;
+        }
+        out.put((byte) '"');
+        putUtf8(out, value, true);
+        out.put((byte) '"');
+    }
+
+    /**
+     * Writes the string as UTF-8, JSON-escaped if asked. Unpaired surrogates become {@code ?}.
+     */
+    private static void putUtf8(ByteBuffer out, String value, boolean json) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c < 0x80) {
+                if (json) {
+                    putJsonByte(out, (byte) c);
+                } else {
+                    out.put((byte) c);
+                }
+            } else if (c < 0x800) {
+                out.put((byte) (0xC0 | c >> 6));
+                out.put((byte) (0x80 | c & 0x3F));
+            } else if (!Character.isSurrogate(c)) {
+                out.put((byte) (0xE0 | c >> 12));
+                out.put((byte) (0x80 | c >> 6 & 0x3F));
+                out.put((byte) (0x80 | c & 0x3F));
+            } else if (Character.isHighSurrogate(c) && i + 1 < value.length() && Character.isLowSurrogate(value.charAt(i + 1))) {
+                int codePoint = Character.toCodePoint(c, value.charAt(++i));
+                out.put((byte) (0xF0 | codePoint >> 18));
+                out.put((byte) (0x80 | codePoint >> 12 & 0x3F));
+                out.put((byte) (0x80 | codePoint >> 6 & 0x3F));
+                out.put((byte) (0x80 | codePoint & 0x3F));
+            } else {
+                out.put((byte) '?');
+            }
+        }
+    }
+
+    /**
+     * Writes one byte of UTF-8 text inside a JSON string, escaping quotes, backslashes and control
+     * characters. Bytes of multi-byte characters pass through unchanged.
+     */
+    private static void putJsonByte(ByteBuffer out, byte b) {
+        switch (b) {
+            case '"' -> {
+                out.put((byte) '\\');
+                out.put((byte) '"');
+            }
+            case '\\' -> {
+                out.put((byte) '\\');
+                out.put((byte) '\\');
+            }
+            case '\n' -> {
+                out.put((byte) '\\');
+                out.put((byte) 'n');
+            }
+            case '\r' -> {
+                out.put((byte) '\\');
+                out.put((byte) 'r');
+            }
+            case '\t' -> {
+                out.put((byte) '\\');
+                out.put((byte) 't');
+            }
+            default -> {
+                if (b >= 0 && b < 0x20) {
+                    out.put((byte) '\\');
+                    out.put((byte) 'u');
+                    out.put((byte) '0');
+                    out.put((byte) '0');
+                    out.put(HEX[b >> 4]);
+                    out.put(HEX[b & 0xF]);
+                } else {
+                    out.put(b);
+                }
+            }
+        }
+    }
+
+    /**
+     * Writes the headers of one record, replacing redacted values. Reused across records.
+     */
+    private final class HeaderWriter implements TwinRequest.HeaderConsumer {
+
+        private ByteBuffer out;
+        private boolean json;
+        private int count;
+
+        private void start(ByteBuffer out, boolean json) {
+            this.out = out;
+            this.json = json;
+            this.count = 0;
+        }
+
+        @Override
+        public void accept(String name, String value) {
+            boolean redacted = isRedacted(name);
+            if (json) {
+                if (count > 0) {
+                    out.put((byte) ',');
+                }
+                out.put((byte) '[');
+                putJsonString(out, name);
+                out.put((byte) ',');
+                if (redacted) {
+                    out.put((byte) '"');
+                    out.put(REDACTED);
+                    out.put((byte) '"');
+                } else {
+                    putJsonString(out, value);
+                }
+                out.put((byte) ']');
+            } else {
+                putBinaryString(out, name);
+                if (redacted) {
+                    out.putInt(REDACTED.length);
+                    out.put(REDACTED);
+                } else {
+                    putBinaryString(out, value);
+                }
+            }
+            count++;
+        }
+    }
+}
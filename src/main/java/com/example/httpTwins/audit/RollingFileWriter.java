@@ -0,0 +1,144 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.audit;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.List;
+import java.util.stream.Stream;
+
+/**
+ * Appends encoded records to a sequence of size-capped files named {@code <prefix>-<sequence><extension>}.
+ * <p>
+ * Records are encoded into one direct {@link ByteBuffer} and written to the file channel in large
+ * chunks. A file is closed once it reaches the maximum size, always at a record boundary, and the
+ * oldest files beyond the retention count are deleted. After a restart numbering resumes past the
+ * highest existing file. Not thread-safe: it belongs to the audit writer thread.
+ */
+public final class RollingFileWriter implements AutoCloseable {
+
+    private final Path directory;
+    private final String prefix;
+    private final String extension;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final ByteBuffer buffer;
+    private final Deque<Path> files = new ArrayDeque<>();
+    private FileChannel channel;
+    private long fileSize;
+    private long nextSequence;
+
+    public RollingFileWriter(Path directory, String prefix, String extension, long maxFileSize, int maxFiles,
+                             int bufferSize) throws IOException {
+        this.directory = directory;
+        this.prefix = prefix + "-";
+        this.extension = extension;
+        this.maxFileSize = Math.max(1, maxFileSize);
+        this.maxFiles = Math.max(1, maxFiles);
+        this.buffer = ByteBuffer.allocateDirect(bufferSize);
+        Files.createDirectories(directory);
+        List<Path> existing;
+        try (Stream<Path> listing = Files.list(directory)) {
+            existing = listing.filter(file -> sequenceOf(file) >= 0).sorted().toList();
+        }
+        for (Path file : existing) {
+            files.addLast(file);
+            nextSequence = Math.max(nextSequence, sequenceOf(file) + 1);
+        }
+        roll();
+    }
+
+    /**
+     * Returns the buffer to encode the next record into, at its position.
+     */
+    public ByteBuffer buffer() {
+        return buffer;
+    }
+
+    /**
+     * Marks the end of a record, starting a new file if the current one is full.
+     */
+    public void endRecord() throws IOException {
+        if (fileSize + buffer.position() >= maxFileSize) {
+            flush();
+            roll();
+        }
+    }
+
+    /**
+     * Writes the buffered records to the current file.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            fileSize += channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    /**
+     * Returns the files written, oldest first.
+     */
+    public List<Path> getFiles() {
+        return List.copyOf(files);
+    }
+
+    @Override
+    public void close() throws IOException {
+        if (channel == null) {
+            return;
+        }
+        try {
+            flush();
+            channel.force(false);
+        } finally {
+            channel.close();
+            channel = null;
+        }
+    }
+
+    private void roll() throws IOException {
+        if (channel != null) {
+            channel.force(false);
+            channel.close();
+        }
+        Path file = directory.resolve(String.format("%s%08d%s", prefix, nextSequence++, extension));
+        channel = FileChannel.open(file, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        fileSize = 0;
+        files.addLast(file);
+        while (files.size() > maxFiles) {
+            Files.deleteIfExists(files.removeFirst());
+        }
+    }
+
+    private long sequenceOf(Path file) {
+        String name = file.getFileName().toString();
+        if (!name.startsWith(prefix) || !name.endsWith(extension)) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(name.substring(prefix.length(), name.length() - extension.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
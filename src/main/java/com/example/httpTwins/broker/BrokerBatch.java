@@ -0,0 +1,88 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.broker;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A batch of records for one topic, framed and compressed as a single payload:
+ * <pre>
+ * count:int, then per record: keyLength:int, key:utf8, valueLength:int, value
+ * </pre>
+ * Transports publish the payload as one message; ones whose broker batches by itself can
+ * {@link #records()} it back.
+ *
+ * @param topic       The topic the batch is published to.
+ * @param count       The number of records in the batch.
+ * @param compression How the payload is compressed.
+ * @param payload     The framed, compressed records.
+ */
+public record BrokerBatch(String topic, int count, BrokerCompression compression, byte[] payload) {
+
+    /**
+     * Frames and compresses the records.
+     *
+     * @param estimatedSize Roughly the uncompressed size of the records, to size the buffer.
+     */
+    public static BrokerBatch encode(String topic, List<BrokerRecord> records, BrokerCompression compression, long estimatedSize) {
+        int initialSize = (int) Math.min(Integer.MAX_VALUE - 8, compression == BrokerCompression.NONE ? estimatedSize : estimatedSize / 4);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(initialSize, 512));
+        try (DataOutputStream out = new DataOutputStream(compression.compress(buffer))) {
+            out.writeInt(records.size());
+            for (BrokerRecord record : records) {
+                byte[] key = record.key().getBytes(StandardCharsets.UTF_8);
+                out.writeInt(key.length);
+                out.write(key);
+                out.writeInt(record.value().length);
+                out.write(record.value());
+            }
+        } catch (IOException e) {
+            // Only the in-memory stream is written to
+            throw new UncheckedIOException(e);
+        }
+        return new BrokerBatch(topic, records.size(), compression, buffer.toByteArray());
+    }
+
+    /**
+     * Decompresses and unframes the records.
+     *
+     * @throws UncheckedIOException if the payload is corrupt.
+     */
+    public List<BrokerRecord> records() {
+        try (DataInputStream in = new DataInputStream(compression.decompress(new ByteArrayInputStream(payload)))) {
+            int count = in.readInt();
+            List<BrokerRecord> records = new ArrayList<>(count);
+            for (int i = 0; i < count; i++) {
+                byte[] key = new byte[in.readInt()];
+                in.readFully(key);
+                byte[] value = new byte[in.readInt()];
+                in.readFully(value);
+                records.add(new BrokerRecord(new String(key, StandardCharsets.UTF_8), value));
+            }
+            return records;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Corrupt broker batch for topic " + topic, e);
+        }
+    }
+}
@@ -0,0 +1,56 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.broker;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * How a {@link BrokerBatch} payload is compressed. Only codecs of the JDK are offered, so no
+ * native library is needed.
+ */
+public enum BrokerCompression {
+
+    NONE,
+
+    GZIP,
+
+    /**
+     * zlib-wrapped deflate: a smaller header than gzip, for batches of small twins.
+     */
+    DEFLATE;
+
+    OutputStream compress(OutputStream out) throws IOException {
+        return switch (this) {
+            case NONE -> out;
+            case GZIP -> new GZIPOutputStream(out, 8192);
+            case DEFLATE -> new DeflaterOutputStream(out);
+        };
+    }
+
+    InputStream decompress(InputStream in) throws IOException {
+        return switch (this) {
+            case NONE -> in;
+            case GZIP -> new GZIPInputStream(in, 8192);
+            case DEFLATE -> new InflaterInputStream(in);
+        };
+    }
+}
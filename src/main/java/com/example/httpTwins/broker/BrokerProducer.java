@@ -0,0 +1,302 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.broker;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.NdjsonBatchEncoder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Batches twins per topic and publishes them through a {@link BrokerTransport}, the way a broker
+ * client's producer does.
+ * <p>
+ * A twin is encoded and keyed (see {@link IdempotencyKeys}) on the calling thread and added to its
+ * topic's open batch. The batch is sealed as soon as it reaches {@code max-records} or
+ * {@code max-bytes}, or its first twin has waited about {@code linger}; a single sender thread then
+ * compresses and publishes it, and publishes it again with exponential backoff if the broker does
+ * not acknowledge it. The keys make those retries safe on a deduplicating broker.
+ * <p>
+ * Backpressure reaches the fan-out executor: a twin counts against {@code max-pending-records} until
+ * its batch is acknowledged, and a twin that finds no room blocks its fan-out thread for up to
+ * {@code max-block}. While the broker lags, the fan-out queue fills up and its overflow policy
+ * applies, instead of the producer buffering without bound.
+ */
+public class BrokerProducer {
+
+    private static final Logger logger = LoggerFactory.getLogger(BrokerProducer.class);
+
+    private final BrokerTransport transport;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final long lingerNanos;
+    private final BrokerCompression compression;
+    private final int maxPendingRecords;
+    private final Semaphore pending;
+    private final long maxBlockNanos;
+    private final int retries;
+    private final long retryBackoffNanos;
+    private final String keyHeader;
+    private final ScheduledExecutorService sender;
+    private final Map<String, Accumulator> accumulators = new ConcurrentHashMap<>();
+    private final LongAdder published = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public BrokerProducer(BrokerTransport transport, BrokerProperties properties) {
+        if (properties.getMaxRecords() < 1 || properties.getMaxPendingRecords() < 1 || properties.getLinger().isNegative()) {
+            throw new IllegalArgumentException("HttpTwins broker producer needs max-records and max-pending-records of at least one and a non-negative linger");
+        }
+        this.transport = transport;
+        this.maxRecords = properties.getMaxRecords();
+        this.maxBytes = Math.max(1, properties.getMaxBytes().toBytes());
+        this.lingerNanos = properties.getLinger().toNanos();
+        this.compression = properties.getCompression();
+        this.maxPendingRecords = properties.getMaxPendingRecords();
+        this.pending = new Semaphore(maxPendingRecords);
+        this.maxBlockNanos = properties.getMaxBlock().toNanos();
+        this.retries = Math.max(0, properties.getRetries());
+        this.retryBackoffNanos = properties.getRetryBackoff().toNanos();
+        this.keyHeader = properties.getKeyHeader();
+        this.sender = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-broker-sender");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Checking four times per linger period bounds the extra wait to a quarter of it
+        long tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), lingerNanos / 4);
+        this.sender.scheduleWithFixedDelay(this::sealLingering, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Adds the twin to the topic's open batch.
+     *
+     * @return A future completed once the broker has acknowledged the twin's batch, exceptionally if
+     *         it never did, or at once with a {@link RejectedExecutionException} if there was no room
+     *         for the twin within {@code max-block}.
+     */
+    public CompletableFuture<Void> send(String topic, TwinRequest request) {
+        try {
+            if (!pending.tryAcquire(maxBlockNanos, TimeUnit.NANOSECONDS)) {
+                rejected.increment();
+                return CompletableFuture.failedFuture(new RejectedExecutionException(
+                        "Broker producer has " + maxPendingRecords + " twins pending for acknowledgement"));
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            rejected.increment();
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Interrupted waiting for the broker producer", e));
+        }
+        BrokerRecord record;
+        try {
+            record = new BrokerRecord(IdempotencyKeys.derive(request, keyHeader), NdjsonBatchEncoder.encodeRecord(request));
+        } catch (RuntimeException e) {
+            pending.release();
+            return CompletableFuture.failedFuture(e);
+        }
+        CompletableFuture<Void> acknowledged = new CompletableFuture<>();
+        Accumulator accumulator = accumulators.get(topic);
+        if (accumulator == null) {
+            accumulator = accumulators.computeIfAbsent(topic, Accumulator::new);
+        }
+        Sealed full = accumulator.append(record, acknowledged);
+        if (full != null) {
+            dispatch(full);
+        }
+        return acknowledged;
+    }
+
+    /**
+     * Returns the number of twins accepted and not yet acknowledged or failed.
+     */
+    public int getPendingCount() {
+        return maxPendingRecords - pending.availablePermits();
+    }
+
+    public long getPublishedCount() {
+        return published.sum();
+    }
+
+    /**
+     * Returns the number of twins whose batch the broker did not acknowledge after all retries.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    /**
+     * Returns the number of twins turned away because too many were pending.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Seals and sends every open batch without waiting for its linger. Their twins stay pending
+     * until the broker acknowledges them.
+     */
+    public void flush() {
+        for (Accumulator accumulator : accumulators.values()) {
+            Sealed rest = accumulator.seal();
+            if (rest != null) {
+                dispatch(rest);
+            }
+        }
+    }
+
+    /**
+     * Seals and sends every open batch, then stops the sender once it is done, waiting up to five
+     * seconds. Batches still failing by then are not retried.
+     */
+    public void close() throws InterruptedException {
+        flush();
+        sender.shutdown();
+        sender.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    private void sealLingering() {
+        long now = System.nanoTime();
+        for (Accumulator accumulator : accumulators.values()) {
+            Sealed lingering = accumulator.sealIfOlderThan(now - lingerNanos);
+            if (lingering != null) {
+                publish(lingering, 0);
+            }
+        }
+    }
+
+    private void dispatch(Sealed batch) {
+        try {
+            sender.execute(() -> publish(batch, 0));
+        } catch (RejectedExecutionException e) {
+            fail(batch, e);
+        }
+    }
+
+    /**
+     * Publishes the batch, encoding it on the first attempt. Runs on the sender only.
+     */
+    private void publish(Sealed batch, int attempt) {
+        CompletableFuture<Void> result;
+        try {
+            if (batch.encoded == null) {
+                batch.encoded = BrokerBatch.encode(batch.topic, batch.records, compression, batch.bytes);
+            }
+            result = transport.publish(batch.encoded);
+        } catch (RuntimeException e) {
+            result = CompletableFuture.failedFuture(e);
+        }
+        result.whenComplete((ignored, failure) -> {
+            if (failure == null) {
+                logger.info("HttpTwins: Published batch of {} twins ({} bytes) to topic: {}", batch.records.size(), batch.encoded.payload().length, batch.topic);
+                published.add(batch.records.size());
+                pending.release(batch.records.size());
+                batch.futures.forEach(future -> future.complete(null));
+            } else if (attempt < retries && batch.encoded != null) {
+                long delay = retryBackoffNanos << Math.min(attempt, 30);
+                logger.warn("HttpTwins WARNING: Publishing batch of {} twins to topic '{}' failed, retrying. Reason: {}", batch.records.size(), batch.topic, failure.getMessage());
+                try {
+                    sender.schedule(() -> publish(batch, attempt + 1), delay, TimeUnit.NANOSECONDS);
+                } catch (RejectedExecutionException e) {
+                    fail(batch, failure);
+                }
+            } else {
+                fail(batch, failure);
+            }
+        });
+    }
+
+    private void fail(Sealed batch, Throwable failure) {
+        logger.error("HttpTwins ERROR: Failed to publish batch of {} twins to topic '{}'. Reason: {}", batch.records.size(), batch.topic, failure.getMessage());
+        failed.add(batch.records.size());
+        pending.release(batch.records.size());
+        batch.futures.forEach(future -> future.completeExceptionally(failure));
+    }
+
+    /**
+     * The open batch of one topic.
+     */
+    private final class Accumulator {
+
+        private final String topic;
+        private List<BrokerRecord> records = new ArrayList<>();
+        private List<CompletableFuture<Void>> futures = new ArrayList<>();
+        private long bytes;
+        private long firstNanos;
+
+        private Accumulator(String topic) {
+            this.topic = topic;
+        }
+
+        /**
+         * Adds the record, and returns the batch if that filled it up.
+         */
+        private synchronized Sealed append(BrokerRecord record, CompletableFuture<Void> acknowledged) {
+            if (records.isEmpty()) {
+                firstNanos = System.nanoTime();
+            }
+            records.add(record);
+            futures.add(acknowledged);
+            bytes += record.key().length() + record.value().length + 8;
+            return records.size() >= maxRecords || bytes >= maxBytes ? seal() : null;
+        }
+
+        private synchronized Sealed sealIfOlderThan(long nanos) {
+            return !records.isEmpty() && firstNanos - nanos <= 0 ? seal() : null;
+        }
+
+        private synchronized Sealed seal() {
+            if (records.isEmpty()) {
+                return null;
+            }
+            Sealed sealed = new Sealed(topic, records, futures, bytes);
+            records = new ArrayList<>();
+            futures = new ArrayList<>();
+            bytes = 0;
+            return sealed;
+        }
+    }
+
+    /**
+     * A batch taken from its accumulator, on its way to the broker.
+     */
+    private static final class Sealed {
+
+        private final String topic;
+        private final List<BrokerRecord> records;
+        private final List<CompletableFuture<Void>> futures;
+        private final long bytes;
+        private volatile BrokerBatch encoded;
+
+        private Sealed(String topic, List<BrokerRecord> records, List<CompletableFuture<Void>> futures, long bytes) {
+            this.topic = topic;
+            this.records = records;
+            this.futures = futures;
+            this.bytes = bytes;
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.broker;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings of the broker producer behind {@code BrokerRemoteProcessor}, bound from {@code http-twins.broker.*}.
+ * A topic's batch is published as soon as any one of the batch limits is reached.
+ */
+@ConfigurationProperties(prefix = "http-twins.broker")
+public class BrokerProperties {
+
+    /**
+     * Maximum number of twins per batch.
+     */
+    private int maxRecords = 500;
+
+    /**
+     * Approximate maximum size of a batch before compression.
+     */
+    private DataSize maxBytes = DataSize.ofMegabytes(1);
+
+    /**
+     * Maximum time a twin waits for its batch to fill up.
+     */
+    private Duration linger = Duration.ofMillis(20);
+
+    /**
+     * How batches are compressed before they are published.
+     */
+    private BrokerCompression compression = BrokerCompression.GZIP;
+
+    /**
+     * Twins accepted but not yet acknowledged by the broker, across all topics. A twin that finds
+     * no room waits up to {@code max-block}, holding its fan-out thread, and is then rejected.
+     */
+    private int maxPendingRecords = 10_000;
+
+    /**
+     * How long a twin waits for room among the pending records before it is rejected.
+     */
+    private Duration maxBlock = Duration.ofMillis(50);
+
+    /**
+     * Times a batch the broker did not acknowledge is published again before its twins fail.
+     */
+    private int retries = 3;
+
+    /**
+     * Wait before the first retry of a batch; it doubles with each further retry.
+     */
+    private Duration retryBackoff = Duration.ofMillis(100);
+
+    /**
+     * Request header whose value is used as the record key. Requests without it are keyed by a
+     * hash of their method, URI, query string and body, so a replayed twin gets the same key.
+     */
+    private String keyHeader = "Idempotency-Key";
+
+    /**
+     * Record keys the embedded broker remembers per topic to discard duplicates.
+     */
+    private int embeddedDedupWindow = 100_000;
+
+    /**
+     * Records the embedded broker keeps per topic; older ones are discarded.
+     */
+    private int embeddedRetainedRecords = 10_000;
+
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    public void setMaxRecords(int maxRecords) {
+        this.maxRecords = maxRecords;
+    }
+
+    public DataSize getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(DataSize maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public Duration getLinger() {
+        return linger;
+    }
+
+    public void setLinger(Duration linger) {
+        this.linger = linger;
+    }
+
+    public BrokerCompression getCompression() {
+        return compression;
+    }
+
+    public void setCompression(BrokerCompression compression) {
+        this.compression = compression;
+    }
+
+    public int getMaxPendingRecords() {
+        return maxPendingRecords;
+    }
+
+    public void setMaxPendingRecords(int maxPendingRecords) {
+        this.maxPendingRecords = maxPendingRecords;
+    }
+
+    public Duration getMaxBlock() {
+        return maxBlock;
+    }
+
+    public void setMaxBlock(Duration maxBlock) {
+        this.maxBlock = maxBlock;
+    }
+
+    public int getRetries() {
+        return retries;
+    }
+
+    public void setRetries(int retries) {
+        this.retries = retries;
+    }
+
+    public Duration getRetryBackoff() {
+        return retryBackoff;
+    }
+
+    public void setRetryBackoff(Duration retryBackoff) {
+        this.retryBackoff = retryBackoff;
+    }
+
+    public String getKeyHeader() {
+        return keyHeader;
+    }
+
+    public void setKeyHeader(String keyHeader) {
+        this.keyHeader = keyHeader;
+    }
+
+    public int getEmbeddedDedupWindow() {
+        return embeddedDedupWindow;
+    }
+
+    public void setEmbeddedDedupWindow(int embeddedDedupWindow) {
+        this.embeddedDedupWindow = embeddedDedupWindow;
+    }
+
+    public int getEmbeddedRetainedRecords() {
+        return embeddedRetainedRecords;
+    }
+
+    public void setEmbeddedRetainedRecords(int embeddedRetainedRecords) {
+        this.embeddedRetainedRecords = embeddedRetainedRecords;
+    }
+}
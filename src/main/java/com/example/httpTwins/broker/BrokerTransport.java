@@ -0,0 +1,34 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.broker;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * The connection of a {@link BrokerProducer} to an actual broker. The producer does the batching,
+ * compression and retries; a transport only publishes finished batches. Declare a bean of this
+ * type, for example one wrapping a Kafka or RabbitMQ client, to replace the {@link EmbeddedBroker}.
+ */
+public interface BrokerTransport {
+
+    /**
+     * Publishes the batch without blocking the calling thread.
+     *
+     * @return A future completed once the broker has acknowledged the whole batch, exceptionally
+     *         if it has not. The producer publishes a failed batch again, so a transport must not retry by itself.
+     */
+    CompletableFuture<Void> publish(BrokerBatch batch);
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.broker;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-JVM stand-in for a message broker, used when no other {@link BrokerTransport} is declared:
+ * for local development, and so tests of the broker path need no network.
+ * <p>
+ * Each topic keeps its latest records in memory, addressed by offset. Records whose key the topic
+ * has seen recently are discarded, as an idempotent producer's retries are by a real broker.
+ */
+public class EmbeddedBroker implements BrokerTransport {
+
+    private final int dedupWindow;
+    private final int retainedRecords;
+    private final Map<String, Topic> topics = new ConcurrentHashMap<>();
+    private final LongAdder duplicates = new LongAdder();
+    private volatile boolean available = true;
+
+    public EmbeddedBroker(int dedupWindow, int retainedRecords) {
+        if (dedupWindow < 1 || retainedRecords < 1) {
+            throw new IllegalArgumentException("HttpTwins embedded broker needs a dedup window and retained records of at least one");
+        }
+        this.dedupWindow = dedupWindow;
+        this.retainedRecords = retainedRecords;
+    }
+
+    @Override
+    public CompletableFuture<Void> publish(BrokerBatch batch) {
+        if (!available) {
+            return CompletableFuture.failedFuture(new IOException("Embedded broker is unavailable"));
+        }
+        List<BrokerRecord> records;
+        try {
+            records = batch.records();
+        } catch (UncheckedIOException e) {
+            return CompletableFuture.failedFuture(e.getCause());
+        }
+        topics.computeIfAbsent(batch.topic(), key -> new Topic()).append(records);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Returns up to {@code max} records of the topic from the given offset on. Records discarded to
+     * stay within the retention are skipped.
+     */
+    public List<BrokerRecord> read(String topic, long offset, int max) {
+        Topic log = topics.get(topic);
+        return log == null ? List.of() : log.read(offset, max);
+    }
+
+    /**
+     * Returns the offset the next record of the topic gets, which is the number of records it has received.
+     */
+    public long getEndOffset(String topic) {
+        Topic log = topics.get(topic);
+        return log == null ? 0 : log.endOffset();
+    }
+
+    /**
+     * Returns the number of records discarded because their key had been seen.
+     */
+    public long getDuplicateCount() {
+        return duplicates.sum();
+    }
+
+    /**
+     * Makes the broker refuse or accept batches, to rehearse an outage.
+     */
+    public void setAvailable(boolean available) {
+        this.available = available;
+    }
+
+    private final class Topic {
+
+        private final ArrayDeque<BrokerRecord> records = new ArrayDeque<>();
+        private final Set<String> recentKeys = Collections.newSetFromMap(new LinkedHashMap<>() {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, Boolean> eldest) {
+                return size() > dedupWindow;
+            }
+        });
+        private long baseOffset;
+
+        private synchronized void append(List<BrokerRecord> batch) {
+            for (BrokerRecord record : batch) {
+                if (!recentKeys.add(record.key())) {
+                    duplicates.increment();
+                    continue;
+                }
+                records.addLast(record);
+                if (records.size() > retainedRecords) {
+                    records.removeFirst();
+                    baseOffset++;
+                }
+            }
+        }
+
+        private synchronized List<BrokerRecord> read(long offset, int max) {
+            List<BrokerRecord> result = new ArrayList<>(Math.min(max, records.size()));
+            long skip = Math.max(0, offset - baseOffset);
+            for (BrokerRecord record : records) {
+                if (result.size() >= max) {
+                    break;
+                }
+                if (skip > 0) {
+                    skip--;
+                } else {
+                    result.add(record);
+                }
+            }
+            return result;
+        }
+
+        private synchronized long endOffset() {
+            return baseOffset + records.size();
+        }
+    }
+}
@@ -0,0 +1,72 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.broker;
+
+import com.example.httpTwins.model.TwinRequest;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+
+/**
+ * Derives the record key of a twin, so that sending the same request twice, as a retry or a replay
+ * does, yields the same key and the broker can discard the copy.
+ */
+public final class IdempotencyKeys {
+
+    private static final HexFormat HEX = HexFormat.of();
+
+    private IdempotencyKeys() {
+    }
+
+    /**
+     * Returns the value of the key header if the request has one, or else the first 128 bits of a
+     * SHA-256 hash of the method, URI, query string and body, in hex. Two identical requests without
+     * the header therefore share a key; clients that repeat requests on purpose should send one.
+     *
+     * @param request   The twin.
+     * @param keyHeader The header carrying a client-chosen key, or {@code null} to always hash.
+     */
+    public static String derive(TwinRequest request, String keyHeader) {
+        if (keyHeader != null && !keyHeader.isEmpty()) {
+            String key = request.getHeader(keyHeader);
+            if (key != null && !key.isEmpty()) {
+                return key;
+            }
+        }
+        MessageDigest digest = sha256();
+        digest.update(request.getMethod().getBytes(StandardCharsets.UTF_8));
+        digest.update((byte) ' ');
+        digest.update(request.getRequestURI().getBytes(StandardCharsets.UTF_8));
+        if (request.getQueryString() != null) {
+            digest.update((byte) '?');
+            digest.update(request.getQueryString().getBytes(StandardCharsets.UTF_8));
+        }
+        digest.update((byte) '\n');
+        digest.update(request.getBody());
+        return HEX.formatHex(digest.digest(), 0, 16);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            // Every Java platform is required to support SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+}
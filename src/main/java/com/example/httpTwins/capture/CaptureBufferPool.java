@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import java.nio.ByteBuffer;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pool of reusable heap buffers for capturing bodies, grouped in power-of-two size classes.
+ * <p>
+ * Each size class keeps at most {@code maxPooledPerClass} idle buffers; anything released beyond
+ * that is left to the garbage collector, so the pool never holds more than a fixed amount of memory.
+ */
+public class CaptureBufferPool {
+
+    private static final int MIN_SIZE_SHIFT = 10; // 1 KiB
+    private static final int MAX_SIZE_SHIFT = 30;
+
+    private final Queue<ByteBuffer>[] classes;
+    private final AtomicInteger[] pooled;
+    private final int maxPooledPerClass;
+
+    @SuppressWarnings("unchecked")
+    public CaptureBufferPool(int maxPooledPerClass) {
+        this.maxPooledPerClass = maxPooledPerClass;
+        int count = MAX_SIZE_SHIFT - MIN_SIZE_SHIFT + 1;
+        this.classes = new Queue[count];
+        this.pooled = new AtomicInteger[count];
+        for (int i = 0; i < count; i++) {
+            classes[i] = new ConcurrentLinkedQueue<>();
+            pooled[i] = new AtomicInteger();
+        }
+    }
+
+    /**
+     * Returns a cleared buffer with at least {@code minCapacity} bytes of capacity.
+     */
+    public ByteBuffer acquire(int minCapacity) {
+        int sizeClass = sizeClass(minCapacity);
+        ByteBuffer buffer = classes[sizeClass].poll();
+        if (buffer == null) {
+            return ByteBuffer.allocate(1 << (sizeClass + MIN_SIZE_SHIFT));
+        }
+        pooled[sizeClass].decrementAndGet();
+        return buffer.clear();
+    }
+
+    /**
+     * Hands a buffer obtained from {@link #acquire(int)} back to the pool. The caller must not use it afterwards.
+     */
+    public void release(ByteBuffer buffer) {
+        int capacity = buffer.capacity();
+        if (Integer.bitCount(capacity) != 1 || capacity < (1 << MIN_SIZE_SHIFT)) {
+            return;
+        }
+        int sizeClass = Integer.numberOfTrailingZeros(capacity) - MIN_SIZE_SHIFT;
+        if (pooled[sizeClass].incrementAndGet() <= maxPooledPerClass) {
+            classes[sizeClass].offer(buffer);
+        } else {
+            pooled[sizeClass].decrementAndGet();
+        }
+    }
+
+    private static int sizeClass(int minCapacity) {
+        if (minCapacity <= (1 << MIN_SIZE_SHIFT)) {
+            return 0;
+        }
+        int shift = 32 - Integer.numberOfLeadingZeros(minCapacity - 1);
+        if (shift > MAX_SIZE_SHIFT) {
+            throw new IllegalArgumentException("Capture buffers are limited to " + (1 << MAX_SIZE_SHIFT) + " bytes");
+        }
+        return shift - MIN_SIZE_SHIFT;
+    }
+}
@@ -0,0 +1,226 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.URLDecoder;
+import java.net.URLEncoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A request wrapper that keeps a copy of the body as the handler reads it.
+ * <p>
+ * At most {@code maxCaptureSize} bytes are kept. The buffer starts at the announced content length
+ * and is swapped for a larger one only when needed. It is not pooled: the snapshot taken for the
+ * twins uses it as its body without copying it, and twins outlive the request.
+ * <p>
+ * The container reads a form POST itself when its parameters are looked up, bypassing
+ * {@link #getInputStream()}. As with {@code ContentCachingRequestWrapper}, the body is then
+ * rebuilt from the form parameters on the first lookup.
+ */
+public class CapturingRequestWrapper extends HttpServletRequestWrapper {
+
+    private static final ByteBuffer EMPTY_BODY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+    private static final int MIN_BUFFER_SIZE = 1024;
+
+    private final int maxCaptureSize;
+    private ByteBuffer buffer;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+
+    public CapturingRequestWrapper(HttpServletRequest request, int maxCaptureSize) {
+        super(request);
+        this.maxCaptureSize = maxCaptureSize;
+    }
+
+    /**
+     * Returns a read-only view of the body bytes read so far. Bytes are only ever appended after it,
+     * so the view stays valid, and unchanged, for as long as it is held.
+     */
+    public ByteBuffer getCachedBody() {
+        return buffer == null ? EMPTY_BODY : buffer.asReadOnlyBuffer().flip();
+    }
+
+    @Override
+    public ServletInputStream getInputStream() throws IOException {
+        if (inputStream == null) {
+            inputStream = new CachingInputStream(super.getInputStream());
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() throws IOException {
+        if (reader == null) {
+            String encoding = getCharacterEncoding();
+            Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.ISO_8859_1;
+            reader = new BufferedReader(new InputStreamReader(getInputStream(), charset));
+        }
+        return reader;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        cacheFormBody();
+        return super.getParameter(name);
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        cacheFormBody();
+        return super.getParameterMap();
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        cacheFormBody();
+        return super.getParameterNames();
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        cacheFormBody();
+        return super.getParameterValues(name);
+    }
+
+    /**
+     * Encodes the form parameters as the body, unless some of the body was already read. Values
+     * the container took from the query string, which it lists first, are left out.
+     */
+    private void cacheFormBody() {
+        if (buffer != null || inputStream != null || !isFormPost()) {
+            return;
+        }
+        String encoding = getCharacterEncoding();
+        Charset charset = encoding != null ? Charset.forName(encoding) : StandardCharsets.UTF_8;
+        Map<String, Integer> fromQuery = queryParameterCounts(charset);
+        StringBuilder body = new StringBuilder();
+        for (Map.Entry<String, String[]> parameter : super.getParameterMap().entrySet()) {
+            String[] values = parameter.getValue();
+            for (int i = fromQuery.getOrDefault(parameter.getKey(), 0); i < values.length; i++) {
+                if (!body.isEmpty()) {
+                    body.append('&');
+                }
+                body.append(URLEncoder.encode(parameter.getKey(), charset));
+                if (values[i] != null) {
+                    body.append('=').append(URLEncoder.encode(values[i], charset));
+                }
+            }
+        }
+        byte[] bytes = body.toString().getBytes(charset);
+        cache(bytes, 0, bytes.length);
+    }
+
+    private boolean isFormPost() {
+        String contentType = getContentType();
+        return contentType != null && contentType.contains("application/x-www-form-urlencoded")
+                && "POST".equals(getMethod());
+    }
+
+    private Map<String, Integer> queryParameterCounts(Charset charset) {
+        String query = getQueryString();
+        if (query == null || query.isEmpty()) {
+            return Map.of();
+        }
+        Map<String, Integer> counts = new HashMap<>();
+        for (String pair : query.split("&")) {
+            if (!pair.isEmpty()) {
+                int eq = pair.indexOf('=');
+                counts.merge(URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), charset), 1, Integer::sum);
+            }
+        }
+        return counts;
+    }
+
+    private void cache(byte[] bytes, int offset, int length) {
+        if (length <= 0 || maxCaptureSize <= 0) {
+            return;
+        }
+        if (buffer == null) {
+            long announced = getContentLengthLong();
+            long size = announced > 0 ? Math.max(announced, length) : Math.max(length, MIN_BUFFER_SIZE);
+            buffer = ByteBuffer.allocate((int) Math.min(maxCaptureSize, size));
+        }
+        int room = maxCaptureSize - buffer.position();
+        int toCopy = Math.min(length, room);
+        if (toCopy <= 0) {
+            return;
+        }
+        if (toCopy > buffer.remaining()) {
+            // Views handed out so far keep the old buffer, which is never written again
+            ByteBuffer larger = ByteBuffer.allocate(Math.min(maxCaptureSize, Math.max(buffer.capacity() * 2, buffer.position() + toCopy)));
+            larger.put(buffer.duplicate().flip());
+            buffer = larger;
+        }
+        buffer.put(bytes, offset, toCopy);
+    }
+
+    private class CachingInputStream extends ServletInputStream {
+
+        private final ServletInputStream delegate;
+        private final byte[] single = new byte[1];
+
+        CachingInputStream(ServletInputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public int read() throws IOException {
+            int b = delegate.read();
+            if (b != -1) {
+                single[0] = (byte) b;
+                cache(single, 0, 1);
+            }
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            int count = delegate.read(b, off, len);
+            if (count > 0) {
+                cache(b, off, count);
+            }
+            return count;
+        }
+
+        @Override
+        public boolean isFinished() {
+            return delegate.isFinished();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            delegate.setReadListener(readListener);
+        }
+    }
+}
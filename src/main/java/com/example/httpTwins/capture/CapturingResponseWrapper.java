@@ -0,0 +1,260 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.model.TwinResponse;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+
+import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A response wrapper that tees the body into a size-capped pooled buffer while it is written to the client.
+ * <p>
+ * Nothing is captured until {@link #startCapture} is called, so responses of endpoints that do not
+ * ask for capture pass straight through. Unlike {@code ContentCachingResponseWrapper}, the body is
+ * never held back from the client and at most {@code maxCaptureSize} bytes of it are copied.
+ */
+public class CapturingResponseWrapper extends HttpServletResponseWrapper {
+
+    private final CaptureBufferPool bufferPool;
+    private ByteBuffer buffer;
+    private int maxCaptureSize;
+    private boolean truncate;
+    private boolean overflowed;
+    private long totalBodyLength;
+    private ResponseCaptureListener listener;
+    private ServletOutputStream outputStream;
+    private PrintWriter writer;
+
+    public CapturingResponseWrapper(HttpServletResponse response, CaptureBufferPool bufferPool) {
+        super(response);
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Starts teeing the response body. Must be called on the request thread before the body is written.
+     *
+     * @param maxCaptureSize The maximum number of body bytes to capture.
+     * @param truncate       Whether to deliver the first {@code maxCaptureSize} bytes of a larger body,
+     *                       or to skip the body altogether.
+     * @param listener       Called with the captured response once the handler has finished.
+     */
+    public void startCapture(int maxCaptureSize, boolean truncate, ResponseCaptureListener listener) {
+        if (this.listener != null) {
+            return;
+        }
+        this.maxCaptureSize = maxCaptureSize;
+        this.truncate = truncate;
+        this.listener = listener;
+        this.buffer = maxCaptureSize > 0 ? bufferPool.acquire(maxCaptureSize) : null;
+    }
+
+    public boolean isCapturing() {
+        return listener != null;
+    }
+
+    /**
+     * Finishes the capture and hands the response to the listener. The listener owns the pooled
+     * buffer from then on and releases it through the callback it is given.
+     */
+    public void complete() throws IOException {
+        if (listener == null) {
+            return;
+        }
+        if (writer != null) {
+            writer.flush();
+        }
+        ByteBuffer captured = buffer;
+        ByteBuffer body = captured == null ? null : captured.duplicate().flip();
+        TwinResponse response = new TwinResponse(getStatus(), headerPairs(), body, totalBodyLength, overflowed);
+        ResponseCaptureListener target = listener;
+        listener = null;
+        buffer = null;
+        target.onResponse(response, () -> {
+            if (captured != null) {
+                bufferPool.release(captured);
+            }
+        });
+    }
+
+    /**
+     * Drops the capture without notifying anyone, returning the buffer to the pool.
+     */
+    public void discard() {
+        if (buffer != null) {
+            bufferPool.release(buffer);
+        }
+        buffer = null;
+        listener = null;
+    }
+
+    @Override
+    public ServletOutputStream getOutputStream() throws IOException {
+        if (listener == null) {
+            return super.getOutputStream();
+        }
+        if (outputStream == null) {
+            outputStream = new TeeOutputStream(super.getOutputStream());
+        }
+        return outputStream;
+    }
+
+    @Override
+    public PrintWriter getWriter() throws IOException {
+        if (listener == null) {
+            return super.getWriter();
+        }
+        if (writer == null) {
+            writer = new PrintWriter(new OutputStreamWriter(getOutputStream(), getCharacterEncoding()));
+        }
+        return writer;
+    }
+
+    @Override
+    public void flushBuffer() throws IOException {
+        if (writer != null) {
+            writer.flush();
+        }
+        super.flushBuffer();
+    }
+
+    @Override
+    public void resetBuffer() {
+        drainWriter();
+        super.resetBuffer();
+        clearCapture();
+    }
+
+    @Override
+    public void reset() {
+        drainWriter();
+        super.reset();
+        clearCapture();
+    }
+
+    /**
+     * Moves characters still held by the writer into the response buffer, without committing it,
+     * so that a reset discards them along with the rest of the buffered body.
+     */
+    private void drainWriter() {
+        if (writer != null && outputStream instanceof TeeOutputStream tee) {
+            tee.holdFlush = true;
+            try {
+                writer.flush();
+            } finally {
+                tee.holdFlush = false;
+            }
+        }
+    }
+
+    /**
+     * Forgets what was captured so far; the client will not see the body that was reset either.
+     */
+    private void clearCapture() {
+        totalBodyLength = 0;
+        overflowed = false;
+        if (listener == null || maxCaptureSize <= 0) {
+            return;
+        }
+        if (buffer == null) {
+            buffer = bufferPool.acquire(maxCaptureSize);
+        } else {
+            buffer.clear();
+        }
+    }
+
+    private void capture(byte[] bytes, int offset, int length) {
+        totalBodyLength += length;
+        if (buffer == null) {
+            return;
+        }
+        int room = Math.min(buffer.remaining(), maxCaptureSize - buffer.position());
+        if (length > room) {
+            overflowed = true;
+            if (!truncate) {
+                bufferPool.release(buffer);
+                buffer = null;
+                return;
+            }
+        }
+        buffer.put(bytes, offset, Math.min(length, room));
+    }
+
+    private String[] headerPairs() {
+        List<String> pairs = new ArrayList<>();
+        for (String name : getHeaderNames()) {
+            for (String value : getHeaders(name)) {
+                pairs.add(name);
+                pairs.add(value);
+            }
+        }
+        return pairs.toArray(new String[0]);
+    }
+
+    private class TeeOutputStream extends ServletOutputStream {
+
+        private final ServletOutputStream delegate;
+        private final byte[] single = new byte[1];
+        private boolean holdFlush;
+
+        TeeOutputStream(ServletOutputStream delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public void write(int b) throws IOException {
+            delegate.write(b);
+            single[0] = (byte) b;
+            capture(single, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException {
+            delegate.write(b, off, len);
+            capture(b, off, len);
+        }
+
+        @Override
+        public void flush() throws IOException {
+            if (!holdFlush) {
+                delegate.flush();
+            }
+        }
+
+        @Override
+        public void close() throws IOException {
+            delegate.close();
+        }
+
+        @Override
+        public boolean isReady() {
+            return delegate.isReady();
+        }
+
+        @Override
+        public void setWriteListener(WriteListener writeListener) {
+            delegate.setWriteListener(writeListener);
+        }
+    }
+}
@@ -0,0 +1,31 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.model.TwinResponse;
+
+/**
+ * Receives a captured response once it has been written to the client, on the thread that finished it.
+ */
+@FunctionalInterface
+public interface ResponseCaptureListener {
+
+    /**
+     * @param response The captured response.
+     * @param release  Returns the captured body's buffer to the pool; call it once, after the last reader is done.
+     */
+    void onResponse(TwinResponse response, Runnable release);
+}
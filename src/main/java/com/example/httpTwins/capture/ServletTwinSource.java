@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.model.TwinRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+import org.springframework.web.util.WebUtils;
+
+/**
+ * The servlet request bound to the current thread, as a {@link TwinSource}. Its response can be
+ * captured if the caching filter wrapped it in a {@link CapturingResponseWrapper}.
+ */
+public final class ServletTwinSource implements TwinSource {
+
+    private final HttpServletRequest request;
+    private final HttpServletResponse response;
+
+    private ServletTwinSource(HttpServletRequest request, HttpServletResponse response) {
+        this.request = request;
+        this.response = response;
+    }
+
+    /**
+     * Returns the request the current thread is serving, or {@code null} if it is not serving a servlet request.
+     */
+    public static ServletTwinSource current() {
+        RequestAttributes attributes = RequestContextHolder.getRequestAttributes();
+        if (!(attributes instanceof ServletRequestAttributes servletAttributes)) {
+            return null;
+        }
+        return new ServletTwinSource(servletAttributes.getRequest(), servletAttributes.getResponse());
+    }
+
+    @Override
+    public String getMethod() {
+        return request.getMethod();
+    }
+
+    @Override
+    public String getRequestURI() {
+        return request.getRequestURI();
+    }
+
+    @Override
+    public String getQueryString() {
+        return request.getQueryString();
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return request.getHeader(name);
+    }
+
+    @Override
+    public TwinRequest snapshot() {
+        return TwinRequest.from(request);
+    }
+
+    @Override
+    public void captureResponse(int maxCaptureSize, boolean truncate, ResponseCaptureListener listener) {
+        CapturingResponseWrapper wrapper = response != null
+                ? WebUtils.getNativeResponse(response, CapturingResponseWrapper.class) : null;
+        if (wrapper != null) {
+            wrapper.startCapture(maxCaptureSize, truncate, listener);
+        }
+    }
+}
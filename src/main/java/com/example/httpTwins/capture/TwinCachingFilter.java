@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.util.function.Supplier;
+
+/**
+ * Wraps requests headed for {@code @HttpTwins} endpoints so their body can be handed to the twins,
+ * and their response too when the endpoint asks for it. Every other request passes through untouched.
+ */
+public class TwinCachingFilter extends OncePerRequestFilter {
+
+    private final Supplier<TwinnedEndpointIndex> indexSupplier;
+    private final CaptureBufferPool bufferPool;
+    private volatile TwinnedEndpointIndex index;
+
+    /**
+     * @param indexSupplier Builds the endpoint index; called once, on the first request, when all
+     *                      handler mappings are registered.
+     * @param bufferPool    The pool response capture buffers are borrowed from.
+     */
+    public TwinCachingFilter(Supplier<TwinnedEndpointIndex> indexSupplier, CaptureBufferPool bufferPool) {
+        this.indexSupplier = indexSupplier;
+        this.bufferPool = bufferPool;
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
+            throws ServletException, IOException {
+        TwinnedEndpointIndex.Endpoint endpoint = index().match(request);
+        if (endpoint == null) {
+            filterChain.doFilter(request, response);
+            return;
+        }
+
+        CapturingRequestWrapper wrappedRequest = new CapturingRequestWrapper(request, endpoint.maxRequestCaptureSize());
+        if (!endpoint.captureResponse()) {
+            filterChain.doFilter(wrappedRequest, response);
+            return;
+        }
+
+        // Let the endpoint tee its response; the aspect decides whether to actually start capturing
+        CapturingResponseWrapper wrappedResponse = new CapturingResponseWrapper(response, bufferPool);
+        try {
+            filterChain.doFilter(wrappedRequest, wrappedResponse);
+        } catch (IOException | ServletException | RuntimeException e) {
+            wrappedResponse.discard();
+            throw e;
+        }
+        if (request.isAsyncStarted()) {
+            // The handler returned a CompletableFuture, DeferredResult or the like; the response is
+            // written on an async dispatch, so hand it over once the exchange completes
+            request.getAsyncContext().addListener(new AsyncCaptureListener(wrappedResponse));
+        } else {
+            wrappedResponse.complete();
+        }
+    }
+
+    /**
+     * Completes the capture of an asynchronously written response, on the thread that finishes it.
+     */
+    private record AsyncCaptureListener(CapturingResponseWrapper response) implements AsyncListener {
+
+        @Override
+        public void onComplete(AsyncEvent event) throws IOException {
+            response.complete();
+        }
+
+        @Override
+        public void onTimeout(AsyncEvent event) {
+            response.discard();
+        }
+
+        @Override
+        public void onError(AsyncEvent event) {
+            response.discard();
+        }
+
+        @Override
+        public void onStartAsync(AsyncEvent event) {
+            // Listeners are dropped when async processing is restarted; stay registered
+            event.getAsyncContext().addListener(this);
+        }
+    }
+
+    private TwinnedEndpointIndex index() {
+        TwinnedEndpointIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    current = indexSupplier.get();
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+}
@@ -0,0 +1,297 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.model.TwinRequest;
+import jakarta.servlet.ReadListener;
+import jakarta.servlet.ServletInputStream;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.InvalidMediaTypeException;
+import org.springframework.http.MediaType;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.lang.reflect.Proxy;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A {@link TwinRequest} seen as an {@link HttpServletRequest}, so processors written against
+ * {@code process(HttpServletRequest)} keep working with snapshots.
+ * <p>
+ * It extends {@link ContentCachingRequestWrapper} because such processors read the body through
+ * {@link #getContentAsByteArray()}. The method, URI, query string, headers, attributes, body and the
+ * parameters parsed from the query string and a form body are answered from the snapshot. Anything
+ * else, such as the session, the principal or setting attributes, needs the live request and throws
+ * {@link UnsupportedOperationException}.
+ */
+public class TwinServletRequest extends ContentCachingRequestWrapper {
+
+    private final TwinRequest twin;
+    private ServletInputStream inputStream;
+    private BufferedReader reader;
+    private Map<String, String[]> parameters;
+
+    public TwinServletRequest(TwinRequest twin) {
+        super(detached(twin));
+        this.twin = twin;
+    }
+
+    /**
+     * Returns the snapshot this request reads from.
+     */
+    public TwinRequest getTwinRequest() {
+        return twin;
+    }
+
+    @Override
+    public String getMethod() {
+        return twin.getMethod();
+    }
+
+    @Override
+    public String getRequestURI() {
+        return twin.getRequestURI();
+    }
+
+    @Override
+    public String getQueryString() {
+        return twin.getQueryString();
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return twin.getHeader(name);
+    }
+
+    @Override
+    public Enumeration<String> getHeaders(String name) {
+        List<String> values = twin.getHeaders().get(name);
+        return Collections.enumeration(values != null ? values : List.of());
+    }
+
+    @Override
+    public Enumeration<String> getHeaderNames() {
+        return Collections.enumeration(twin.getHeaders().keySet());
+    }
+
+    @Override
+    public int getIntHeader(String name) {
+        String value = twin.getHeader(name);
+        return value != null ? Integer.parseInt(value) : -1;
+    }
+
+    @Override
+    public String getContentType() {
+        return twin.getHeader("Content-Type");
+    }
+
+    @Override
+    public int getContentLength() {
+        return twin.getBodyLength();
+    }
+
+    @Override
+    public long getContentLengthLong() {
+        return twin.getBodyLength();
+    }
+
+    @Override
+    public String getCharacterEncoding() {
+        Charset charset = charset();
+        return charset != null ? charset.name() : null;
+    }
+
+    @Override
+    public Object getAttribute(String name) {
+        return twin.getAttribute(name);
+    }
+
+    @Override
+    public Enumeration<String> getAttributeNames() {
+        return Collections.enumeration(twin.getAttributes().keySet());
+    }
+
+    @Override
+    public ServletInputStream getInputStream() {
+        if (inputStream == null) {
+            inputStream = new BodyInputStream(twin.getBody());
+        }
+        return inputStream;
+    }
+
+    @Override
+    public BufferedReader getReader() {
+        if (reader == null) {
+            Charset charset = charset();
+            reader = new BufferedReader(new InputStreamReader(getInputStream(),
+                    charset != null ? charset : StandardCharsets.ISO_8859_1));
+        }
+        return reader;
+    }
+
+    @Override
+    public String getParameter(String name) {
+        String[] values = getParameterMap().get(name);
+        return values != null ? values[0] : null;
+    }
+
+    @Override
+    public Map<String, String[]> getParameterMap() {
+        if (parameters == null) {
+            Map<String, List<String>> parsed = new LinkedHashMap<>();
+            parse(twin.getQueryString(), StandardCharsets.UTF_8, parsed);
+            String contentType = getContentType();
+            if (contentType != null && contentType.contains("application/x-www-form-urlencoded")
+                    && "POST".equals(getMethod())) {
+                Charset charset = charset();
+                charset = charset != null ? charset : StandardCharsets.UTF_8;
+                parse(twin.getBodyAsString(charset), charset, parsed);
+            }
+            Map<String, String[]> map = new LinkedHashMap<>(parsed.size());
+            parsed.forEach((name, values) -> map.put(name, values.toArray(new String[0])));
+            parameters = Collections.unmodifiableMap(map);
+        }
+        return parameters;
+    }
+
+    @Override
+    public Enumeration<String> getParameterNames() {
+        return Collections.enumeration(getParameterMap().keySet());
+    }
+
+    @Override
+    public String[] getParameterValues(String name) {
+        String[] values = getParameterMap().get(name);
+        return values != null ? values.clone() : null;
+    }
+
+    /**
+     * Returns the whole body of the snapshot, whether or not it has been read through this request.
+     */
+    @Override
+    public byte[] getContentAsByteArray() {
+        ByteBuffer body = twin.getBody();
+        byte[] bytes = new byte[body.remaining()];
+        body.get(bytes);
+        return bytes;
+    }
+
+    @Override
+    public String getContentAsString() {
+        Charset charset = charset();
+        return twin.getBodyAsString(charset != null ? charset : StandardCharsets.ISO_8859_1);
+    }
+
+    private Charset charset() {
+        String contentType = getContentType();
+        if (contentType == null) {
+            return null;
+        }
+        try {
+            return MediaType.parseMediaType(contentType).getCharset();
+        } catch (InvalidMediaTypeException | IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    private static void parse(String encoded, Charset charset, Map<String, List<String>> into) {
+        if (encoded == null || encoded.isEmpty()) {
+            return;
+        }
+        for (String pair : encoded.split("&")) {
+            if (!pair.isEmpty()) {
+                int eq = pair.indexOf('=');
+                String name = URLDecoder.decode(eq < 0 ? pair : pair.substring(0, eq), charset);
+                String value = eq < 0 ? "" : URLDecoder.decode(pair.substring(eq + 1), charset);
+                into.computeIfAbsent(name, key -> new ArrayList<>(1)).add(value);
+            }
+        }
+    }
+
+    /**
+     * The request {@link ContentCachingRequestWrapper} wraps. It only answers the content length the
+     * wrapper sizes its cache with; everything else is answered by {@link TwinServletRequest} itself.
+     */
+    private static HttpServletRequest detached(TwinRequest twin) {
+        return (HttpServletRequest) Proxy.newProxyInstance(TwinServletRequest.class.getClassLoader(),
+                new Class<?>[]{HttpServletRequest.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getContentLength" -> twin.getBodyLength();
+                    case "getContentLengthLong" -> (long) twin.getBodyLength();
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "toString" -> "TwinRequest " + twin.getMethod() + " " + twin.getRequestURI();
+                    default -> throw new UnsupportedOperationException(
+                            "A request snapshot cannot answer " + method.getName() + "()");
+                });
+    }
+
+    private static final class BodyInputStream extends ServletInputStream {
+
+        private final ByteBuffer body;
+
+        BodyInputStream(ByteBuffer body) {
+            this.body = body;
+        }
+
+        @Override
+        public int read() {
+            return body.hasRemaining() ? body.get() & 0xFF : -1;
+        }
+
+        @Override
+        public int read(byte[] bytes, int offset, int length) {
+            if (length == 0) {
+                return 0;
+            }
+            if (!body.hasRemaining()) {
+                return -1;
+            }
+            int count = Math.min(length, body.remaining());
+            body.get(bytes, offset, count);
+            return count;
+        }
+
+        @Override
+        public int available() {
+            return body.remaining();
+        }
+
+        @Override
+        public boolean isFinished() {
+            return !body.hasRemaining();
+        }
+
+        @Override
+        public boolean isReady() {
+            return true;
+        }
+
+        @Override
+        public void setReadListener(ReadListener readListener) {
+            throw new UnsupportedOperationException("A request snapshot is read synchronously");
+        }
+    }
+}
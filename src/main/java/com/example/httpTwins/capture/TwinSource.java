@@ -0,0 +1,59 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.model.TwinRequest;
+
+/**
+ * The request being twinned and its response, whatever the web stack serving it: the servlet
+ * request bound to the current thread, or a WebFlux exchange. Lookups read the request as it is
+ * when they are called, so sampling and coalescing decisions are made before anything is copied.
+ */
+public interface TwinSource {
+
+    String getMethod();
+
+    /**
+     * The request URI, without the query string.
+     */
+    String getRequestURI();
+
+    /**
+     * The raw query string, or {@code null}.
+     */
+    String getQueryString();
+
+    /**
+     * Returns the first value of the named header, matched case-insensitively, or {@code null}.
+     */
+    String getHeader(String name);
+
+    /**
+     * Copies the request, with as much of its body as the handler has read so far.
+     */
+    TwinRequest snapshot();
+
+    /**
+     * Starts teeing the response body, if the response was wrapped for capture; otherwise the
+     * listener is never called.
+     *
+     * @param maxCaptureSize The maximum number of body bytes to capture.
+     * @param truncate       Whether to deliver the first {@code maxCaptureSize} bytes of a larger body,
+     *                       or to skip the body altogether.
+     * @param listener       Called with the captured response once it has been written.
+     */
+    void captureResponse(int maxCaptureSize, boolean truncate, ResponseCaptureListener listener);
+}
@@ -0,0 +1,178 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.http.server.PathContainer;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.servlet.mvc.method.RequestMappingInfo;
+import org.springframework.web.util.pattern.PathPattern;
+import org.springframework.web.util.pattern.PathPatternParser;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * An index of the handler mappings annotated with {@link HttpTwins}, used by the caching filter to
+ * decide which requests need their body (and possibly their response) captured.
+ * <p>
+ * Literal paths such as {@code /books} are resolved with a single hash lookup; only templated
+ * paths fall back to matching {@link PathPattern}s, and only when such paths exist.
+ */
+public final class TwinnedEndpointIndex {
+
+    private final Map<String, List<Endpoint>> literalPaths;
+    private final List<Endpoint> patternPaths;
+
+    private TwinnedEndpointIndex(Map<String, List<Endpoint>> literalPaths, List<Endpoint> patternPaths) {
+        this.literalPaths = literalPaths;
+        this.patternPaths = patternPaths;
+    }
+
+    /**
+     * Builds the index from the handler methods of a request mapping.
+     *
+     * @param handlerMethods The mappings, typically {@code RequestMappingHandlerMapping.getHandlerMethods()}.
+     * @return The index of the mappings whose handler carries {@link HttpTwins}.
+     */
+    public static TwinnedEndpointIndex from(Map<RequestMappingInfo, HandlerMethod> handlerMethods) {
+        Map<String, List<Endpoint>> literalPaths = new HashMap<>();
+        List<Endpoint> patternPaths = new ArrayList<>();
+        handlerMethods.forEach((info, handlerMethod) -> add(handlerMethod, info.getMethodsCondition().getMethods(),
+                patternsOf(info), literalPaths, patternPaths));
+        return new TwinnedEndpointIndex(literalPaths, patternPaths);
+    }
+
+    /**
+     * Builds the index from the handler methods of a WebFlux request mapping.
+     *
+     * @param handlerMethods The mappings, typically the reactive {@code RequestMappingHandlerMapping.getHandlerMethods()}.
+     * @return The index of the mappings whose handler carries {@link HttpTwins}.
+     */
+    public static TwinnedEndpointIndex fromReactive(
+            Map<org.springframework.web.reactive.result.method.RequestMappingInfo, HandlerMethod> handlerMethods) {
+        Map<String, List<Endpoint>> literalPaths = new HashMap<>();
+        List<Endpoint> patternPaths = new ArrayList<>();
+        handlerMethods.forEach((info, handlerMethod) -> add(handlerMethod, info.getMethodsCondition().getMethods(),
+                info.getPatternsCondition().getPatterns(), literalPaths, patternPaths));
+        return new TwinnedEndpointIndex(literalPaths, patternPaths);
+    }
+
+    /**
+     * Returns the twinned endpoint the request is headed for, or {@code null} if it is not mirrored.
+     */
+    public Endpoint match(HttpServletRequest request) {
+        return match(request.getRequestURI().substring(request.getContextPath().length()), request.getMethod());
+    }
+
+    /**
+     * Returns the twinned endpoint for the path within the application and the method, or
+     * {@code null} if such requests are not mirrored.
+     */
+    public Endpoint match(String path, String method) {
+        List<Endpoint> literal = literalPaths.get(path);
+        if (literal != null) {
+            for (Endpoint endpoint : literal) {
+                if (endpoint.accepts(method)) {
+                    return endpoint;
+                }
+            }
+        }
+        PathContainer pathContainer = null;
+        for (Endpoint endpoint : patternPaths) {
+            // Cheap prefix check first so unrelated paths are never parsed
+            if (!path.startsWith(endpoint.literalPrefix()) || !endpoint.accepts(method)) {
+                continue;
+            }
+            if (pathContainer == null) {
+                pathContainer = PathContainer.parsePath(path);
+            }
+            if (endpoint.pattern().matches(pathContainer)) {
+                return endpoint;
+            }
+        }
+        return null;
+    }
+
+    public boolean isEmpty() {
+        return literalPaths.isEmpty() && patternPaths.isEmpty();
+    }
+
+    private static void add(HandlerMethod handlerMethod, Set<RequestMethod> methods, Set<PathPattern> patterns,
+                            Map<String, List<Endpoint>> literalPaths, List<Endpoint> patternPaths) {
+        HttpTwins httpTwins = handlerMethod.getMethodAnnotation(HttpTwins.class);
+        if (httpTwins == null) {
+            return;
+        }
+        for (PathPattern pattern : patterns) {
+            Endpoint endpoint = new Endpoint(pattern, literalPrefix(pattern.getPatternString()), methods,
+                    httpTwins.maxRequestCaptureSize(), httpTwins.captureResponse() || !httpTwins.shadowDestination().isEmpty());
+            if (pattern.hasPatternSyntax()) {
+                patternPaths.add(endpoint);
+            } else {
+                literalPaths.computeIfAbsent(pattern.getPatternString(), path -> new ArrayList<>()).add(endpoint);
+            }
+        }
+    }
+
+    private static String literalPrefix(String pattern) {
+        int end = pattern.length();
+        for (int i = 0; i < pattern.length(); i++) {
+            char c = pattern.charAt(i);
+            if (c == '{' || c == '*' || c == '?') {
+                end = i;
+                break;
+            }
+        }
+        return pattern.substring(0, end);
+    }
+
+    private static Set<PathPattern> patternsOf(RequestMappingInfo info) {
+        if (info.getPathPatternsCondition() != null) {
+            return info.getPathPatternsCondition().getPatterns();
+        }
+        Set<PathPattern> patterns = new LinkedHashSet<>();
+        for (String pattern : info.getPatternValues()) {
+            patterns.add(PathPatternParser.defaultInstance.parse(pattern));
+        }
+        return patterns;
+    }
+
+    /**
+     * A twinned handler mapping and the capture settings of its {@link HttpTwins} annotation.
+     */
+    public record Endpoint(PathPattern pattern, String literalPrefix, Set<RequestMethod> methods,
+                           int maxRequestCaptureSize, boolean captureResponse) {
+
+        boolean accepts(String method) {
+            if (methods.isEmpty()) {
+                return true;
+            }
+            for (RequestMethod candidate : methods) {
+                if (candidate.name().equals(method)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+}
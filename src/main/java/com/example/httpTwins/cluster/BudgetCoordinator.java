@@ -0,0 +1,40 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.cluster;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Tells a node how many nodes share each destination's budget. Called only from the
+ * {@link ClusterBudgetRegistry}'s refresher thread, never per request.
+ */
+public interface BudgetCoordinator {
+
+    /**
+     * Renews the node's leases on the destinations.
+     *
+     * @param lease How long the leases live without another renewal.
+     * @return The number of nodes holding a live lease on each destination, this one included.
+     */
+    Map<String, Integer> renew(String nodeId, Set<String> destinations, Duration lease);
+
+    /**
+     * Gives up the node's leases, so the other nodes take over its shares without waiting for them to expire.
+     */
+    void release(String nodeId);
+}
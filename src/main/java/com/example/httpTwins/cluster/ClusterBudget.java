@@ -0,0 +1,98 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.cluster;
+
+import com.example.httpTwins.limit.RateLimiter;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * This node's share of a destination's cluster-wide budget.
+ * <p>
+ * The share is the budget divided by the number of nodes holding a lease on the destination, as
+ * last reported by the {@link BudgetCoordinator}. Admission only reads a volatile field and takes a
+ * permit from a lock-free {@link RateLimiter}, so it never waits for the coordinator; when the node
+ * count changes, the limiter is swapped for one with the new share.
+ */
+public final class ClusterBudget {
+
+    private final String destination;
+    private final double clusterRate;
+    private final LongAdder denied = new LongAdder();
+    private volatile int nodes;
+    private volatile RateLimiter limiter;
+
+    ClusterBudget(String destination, double clusterRate) {
+        if (clusterRate <= 0) {
+            throw new IllegalArgumentException("The cluster budget of " + destination + " must be positive");
+        }
+        this.destination = destination;
+        this.clusterRate = clusterRate;
+        this.nodes = 1;
+        this.limiter = new RateLimiter(clusterRate);
+    }
+
+    /**
+     * Takes a permit from this node's share. Never blocks.
+     */
+    public boolean tryAcquire() {
+        if (limiter.tryAcquire()) {
+            return true;
+        }
+        denied.increment();
+        return false;
+    }
+
+    public String getDestination() {
+        return destination;
+    }
+
+    /**
+     * Returns the twins per second the destination may receive from the whole cluster.
+     */
+    public double getClusterRate() {
+        return clusterRate;
+    }
+
+    /**
+     * Returns the twins per second this node may send to the destination.
+     */
+    public double getLocalRate() {
+        return clusterRate / nodes;
+    }
+
+    /**
+     * Returns the number of nodes sharing the budget, this one included.
+     */
+    public int getNodes() {
+        return nodes;
+    }
+
+    /**
+     * Returns the number of twins dropped because this node's share was used up.
+     */
+    public long getDeniedCount() {
+        return denied.sum();
+    }
+
+    void setNodes(int nodes) {
+        int count = Math.max(1, nodes);
+        if (count != this.nodes) {
+            this.limiter = new RateLimiter(clusterRate / count);
+            this.nodes = count;
+        }
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.cluster;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps this node's {@link ClusterBudget}s and renews their leases on a single background thread.
+ * <p>
+ * A node only takes a lease, and with it a share, on the destinations it actually twins to. If
+ * the coordinator cannot be reached, the shares stay as they were until it can.
+ */
+public class ClusterBudgetRegistry implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(ClusterBudgetRegistry.class);
+
+    private final BudgetCoordinator coordinator;
+    private final Map<String, Double> clusterRates;
+    private final String nodeId;
+    private final Duration leaseDuration;
+    private final Map<String, ClusterBudget> budgets = new ConcurrentHashMap<>();
+    private final ScheduledExecutorService refresher;
+    private boolean failing;
+
+    public ClusterBudgetRegistry(ClusterProperties properties, BudgetCoordinator coordinator) {
+        Duration refreshInterval = properties.getRefreshInterval();
+        if (refreshInterval.isNegative() || refreshInterval.isZero() || properties.getLeaseDuration().compareTo(refreshInterval) <= 0) {
+            throw new IllegalArgumentException("HttpTwins cluster budgets need a positive refresh-interval shorter than lease-duration");
+        }
+        this.coordinator = coordinator;
+        this.clusterRates = Map.copyOf(properties.getBudgets());
+        this.nodeId = properties.getNodeId().isBlank() ? UUID.randomUUID().toString() : properties.getNodeId();
+        this.leaseDuration = properties.getLeaseDuration();
+        this.refresher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-cluster-budget");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = refreshInterval.toNanos();
+        this.refresher.scheduleWithFixedDelay(this::refresh, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns this node's share of the destination's budget, taking a lease on it the first time,
+     * or {@code null} if the destination has no cluster-wide budget.
+     */
+    public ClusterBudget get(String destination) {
+        Double clusterRate = clusterRates.get(destination);
+        if (clusterRate == null) {
+            return null;
+        }
+        ClusterBudget budget = budgets.get(destination);
+        if (budget == null) {
+            ClusterBudget created = new ClusterBudget(destination, clusterRate);
+            budget = budgets.putIfAbsent(destination, created);
+            if (budget == null) {
+                budget = created;
+                // Learn the other nodes now rather than mirror at the full budget until the next refresh
+                refresh();
+            }
+        }
+        return budget;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        refresher.shutdown();
+        refresher.awaitTermination(5, TimeUnit.SECONDS);
+        try {
+            coordinator.release(nodeId);
+        } catch (RuntimeException e) {
+            logger.warn("HttpTwins WARNING: Could not release cluster budget leases of node {}. Reason: {}", nodeId, e.getMessage());
+        }
+    }
+
+    synchronized void refresh() {
+        if (budgets.isEmpty()) {
+            return;
+        }
+        Map<String, Integer> nodes;
+        try {
+            nodes = coordinator.renew(nodeId, budgets.keySet(), leaseDuration);
+        } catch (RuntimeException e) {
+            if (!failing) {
+                failing = true;
+                logger.warn("HttpTwins WARNING: Could not renew cluster budget leases, keeping the current shares. Reason: {}", e.getMessage());
+            }
+            return;
+        }
+        if (failing) {
+            failing = false;
+            logger.info("HttpTwins: Cluster budget leases renewed again.");
+        }
+        for (ClusterBudget budget : budgets.values()) {
+            budget.setNodes(nodes.getOrDefault(budget.getDestination(), 1));
+        }
+    }
+}
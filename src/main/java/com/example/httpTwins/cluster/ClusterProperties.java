@@ -0,0 +1,111 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.cluster;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Settings of the budgets shared by all nodes of a cluster, bound from {@code http-twins.cluster.*}.
+ */
+@ConfigurationProperties(prefix = "http-twins.cluster")
+public class ClusterProperties {
+
+    /**
+     * Whether destinations with a budget share it with the other nodes. Off by default, in which
+     * case each node mirrors on its own.
+     */
+    private boolean enabled = false;
+
+    /**
+     * This node's name in the lease table. Blank picks a random one at startup.
+     */
+    private String nodeId = "";
+
+    /**
+     * Twins per second each destination may receive from the whole cluster, keyed by the processor's
+     * simple class name or the remote URL. Every node holding a lease on the destination gets an
+     * equal share.
+     */
+    private Map<String, Double> budgets = new LinkedHashMap<>();
+
+    /**
+     * How long a node's lease lives without being renewed. A node that stops renewing hands its
+     * share over to the others after this long.
+     */
+    private Duration leaseDuration = Duration.ofSeconds(15);
+
+    /**
+     * How often leases are renewed and the shares recomputed; well below {@code lease-duration}.
+     */
+    private Duration refreshInterval = Duration.ofSeconds(5);
+
+    /**
+     * The table holding the leases, created if missing.
+     */
+    private String table = "http_twins_budget_lease";
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    public Map<String, Double> getBudgets() {
+        return budgets;
+    }
+
+    public void setBudgets(Map<String, Double> budgets) {
+        this.budgets = budgets;
+    }
+
+    public Duration getLeaseDuration() {
+        return leaseDuration;
+    }
+
+    public void setLeaseDuration(Duration leaseDuration) {
+        this.leaseDuration = leaseDuration;
+    }
+
+    public Duration getRefreshInterval() {
+        return refreshInterval;
+    }
+
+    public void setRefreshInterval(Duration refreshInterval) {
+        this.refreshInterval = refreshInterval;
+    }
+
+    public String getTable() {
+        return table;
+    }
+
+    public void setTable(String table) {
+        this.table = table;
+    }
+}
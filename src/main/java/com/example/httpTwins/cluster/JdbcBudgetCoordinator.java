@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.cluster;
+
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Coordinates the nodes through a lease table in the application's database.
+ * <p>
+ * Each node keeps one row per destination, {@code (destination, node_id, expires_at)}, and pushes
+ * its expiry forward on every renewal; the nodes sharing a destination are those whose row has
+ * not expired. Expiry times come from each node's clock, so the clocks must agree to well within
+ * the lease duration.
+ */
+public class JdbcBudgetCoordinator implements BudgetCoordinator {
+
+    private static final Pattern IDENTIFIER = Pattern.compile("[A-Za-z_][A-Za-z0-9_]*");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String update;
+    private final String insert;
+    private final String deleteExpired;
+    private final String count;
+    private final String delete;
+
+    public JdbcBudgetCoordinator(JdbcTemplate jdbcTemplate, String table) {
+        if (!IDENTIFIER.matcher(table).matches()) {
+            throw new IllegalArgumentException("Invalid HttpTwins lease table name: " + table);
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.update = "UPDATE " + table + " SET expires_at = ? WHERE destination = ? AND node_id = ?";
+        this.insert = "INSERT INTO " + table + " (destination, node_id, expires_at) VALUES (?, ?, ?)";
+        this.deleteExpired = "DELETE FROM " + table + " WHERE expires_at < ?";
+        this.count = "SELECT destination, COUNT(*) FROM " + table + " WHERE expires_at >= ? GROUP BY destination";
+        this.delete = "DELETE FROM " + table + " WHERE node_id = ?";
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS " + table + " ("
+                + "destination VARCHAR(512) NOT NULL, "
+                + "node_id VARCHAR(128) NOT NULL, "
+                + "expires_at BIGINT NOT NULL, "
+                + "PRIMARY KEY (destination, node_id))");
+    }
+
+    @Override
+    public Map<String, Integer> renew(String nodeId, Set<String> destinations, Duration lease) {
+        long now = System.currentTimeMillis();
+        long expiresAt = now + lease.toMillis();
+        for (String destination : destinations) {
+            if (jdbcTemplate.update(update, expiresAt, destination, nodeId) == 0) {
+                try {
+                    jdbcTemplate.update(insert, destination, nodeId, expiresAt);
+                } catch (DuplicateKeyException e) {
+                    // Another renewal of ours got there first
+                    jdbcTemplate.update(update, expiresAt, destination, nodeId);
+                }
+            }
+        }
+        jdbcTemplate.update(deleteExpired, now);
+        Map<String, Integer> nodes = new HashMap<>();
+        jdbcTemplate.query(count, rs -> {
+            nodes.put(rs.getString(1), rs.getInt(2));
+        }, now);
+        return nodes;
+    }
+
+    @Override
+    public void release(String nodeId) {
+        jdbcTemplate.update(delete, nodeId);
+    }
+}
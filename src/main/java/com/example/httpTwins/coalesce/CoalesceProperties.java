@@ -0,0 +1,55 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.coalesce;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings shared by the coalescing windows of all endpoints, bound from {@code http-twins.coalesce.*}.
+ * The window itself is set per endpoint with {@code @HttpTwins(coalesceWindow = ...)}.
+ */
+@ConfigurationProperties(prefix = "http-twins.coalesce")
+public class CoalesceProperties {
+
+    /**
+     * Windows open at the same time per endpoint. Requests that would open one more are mirrored
+     * one by one until some close.
+     */
+    private int maxKeys = 10_000;
+
+    /**
+     * How often closed windows are looked for; a window's twin is delivered up to this late.
+     */
+    private Duration sweepInterval = Duration.ofMillis(10);
+
+    public int getMaxKeys() {
+        return maxKeys;
+    }
+
+    public void setMaxKeys(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public Duration getSweepInterval() {
+        return sweepInterval;
+    }
+
+    public void setSweepInterval(Duration sweepInterval) {
+        this.sweepInterval = sweepInterval;
+    }
+}
@@ -0,0 +1,128 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.coalesce;
+
+import com.example.httpTwins.lifecycle.TwinFlushable;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps one {@link TwinCoalescer} per endpoint and closes their windows on a single sweeper thread.
+ */
+public class CoalescerRegistry implements TwinFlushable, DisposableBean {
+
+    private final int maxKeys;
+    private final Map<String, TwinCoalescer> coalescers = new ConcurrentHashMap<>();
+    private final List<TwinCoalescer> retired = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService sweeper;
+
+    public CoalescerRegistry(CoalesceProperties properties) {
+        if (properties.getMaxKeys() < 1 || properties.getSweepInterval().isNegative() || properties.getSweepInterval().isZero()) {
+            throw new IllegalArgumentException("HttpTwins coalescing needs max-keys of at least one and a positive sweep-interval");
+        }
+        this.maxKeys = properties.getMaxKeys();
+        this.sweeper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-coalescer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = properties.getSweepInterval().toNanos();
+        this.sweeper.scheduleWithFixedDelay(this::sweep, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Returns the coalescer of the endpoint. A coalescer with other settings is replaced; its open
+     * windows still close on time.
+     *
+     * @param window  How long identical twins are collapsed for.
+     * @param headers The headers that tell otherwise identical requests apart.
+     */
+    public TwinCoalescer get(String endpoint, Duration window, String[] headers) {
+        long windowNanos = window.toNanos();
+        return coalescers.compute(endpoint, (key, current) -> {
+            if (current != null && current.hasSettings(windowNanos, headers)) {
+                return current;
+            }
+            if (current != null) {
+                retired.add(current);
+            }
+            return new TwinCoalescer(endpoint, windowNanos, headers.clone(), maxKeys);
+        });
+    }
+
+    @Override
+    public Stage getFlushStage() {
+        return Stage.BEFORE_FANOUT;
+    }
+
+    /**
+     * Closes all open windows now and delivers their twins. A window is delivered once even if the
+     * sweeper closes it at the same time.
+     */
+    @Override
+    public void flush() {
+        for (TwinCoalescer coalescer : coalescers.values()) {
+            coalescer.flush();
+        }
+        for (TwinCoalescer coalescer : retired) {
+            coalescer.flush();
+        }
+    }
+
+    @Override
+    public boolean isFlushed() {
+        for (TwinCoalescer coalescer : coalescers.values()) {
+            if (!coalescer.isFlushed()) {
+                return false;
+            }
+        }
+        for (TwinCoalescer coalescer : retired) {
+            if (!coalescer.isFlushed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        sweeper.shutdown();
+        sweeper.awaitTermination(5, TimeUnit.SECONDS);
+        // Deliver what is still held rather than lose it
+        flush();
+    }
+
+    private void sweep() {
+        long now = System.nanoTime();
+        for (TwinCoalescer coalescer : coalescers.values()) {
+            coalescer.sweep(now);
+        }
+        for (TwinCoalescer coalescer : retired) {
+            coalescer.sweep(now);
+            if (coalescer.getOpenWindows() == 0) {
+                retired.remove(coalescer);
+            }
+        }
+    }
+}
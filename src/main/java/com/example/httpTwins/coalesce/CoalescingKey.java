@@ -0,0 +1,153 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.coalesce;
+
+import java.util.function.BiFunction;
+
+/**
+ * Hashes what makes two requests identical for coalescing into 64 bits: the method, the normalized
+ * request URI and query string, and the values of the chosen headers.
+ * <p>
+ * The URI is normalized by collapsing repeated slashes and dropping a trailing one; query
+ * parameters are compared regardless of their order, by summing their hashes, and header names
+ * regardless of their case. Everything is hashed in place with FNV-1a, so computing a key allocates
+ * nothing; two different requests sharing a key by chance would be coalesced, which at 64 bits is
+ * negligible next to the number of windows open at once.
+ */
+public final class CoalescingKey {
+
+    private static final long OFFSET_BASIS = 0xcbf29ce484222325L;
+    private static final long PRIME = 0x100000001b3L;
+
+    private CoalescingKey() {
+    }
+
+    /**
+     * Returns the key of the live request. Must be called while it is being served.
+     *
+     * @param headers The names of the headers that tell requests apart, for example {@code Accept}.
+     * @param lookup  Looks up the request's headers by name.
+     */
+    public static long of(String method, String requestUri, String queryString, String[] headers, HeaderLookup lookup) {
+        return of(method, requestUri, queryString, headers, lookup, HeaderLookup::get);
+    }
+
+    /**
+     * Returns the key of the live request without allocating: pass a method reference that captures
+     * nothing, such as {@code TwinSource::getHeader}, rather than one bound to the request.
+     *
+     * @param headers The names of the headers that tell requests apart, for example {@code Accept}.
+     * @param request The request.
+     * @param lookup  Looks up one of the request's headers by name.
+     */
+    public static <R> long of(String method, String requestUri, String queryString, String[] headers, R request,
+                              BiFunction<? super R, String, String> lookup) {
+        long hash = hash(OFFSET_BASIS, method, 0, method.length());
+        hash = mix(hash, ' ');
+        hash = hashPath(hash, requestUri);
+        if (queryString != null && !queryString.isEmpty()) {
+            hash = mix(hash, '?');
+            hash = hashQuery(hash, queryString);
+        }
+        for (String header : headers) {
+            hash = mix(hash, '\n');
+            for (int i = 0; i < header.length(); i++) {
+                hash = mix(hash, Character.toLowerCase(header.charAt(i)));
+            }
+            hash = mix(hash, ':');
+            String value = lookup.apply(request, header);
+            if (value != null) {
+                hash = hash(hash, value, 0, value.length());
+            }
+        }
+        return hash;
+    }
+
+    /**
+     * Hashes the query parameters so that their order does not matter: each is hashed on its own,
+     * scanning the query string by index, and the spread hashes are summed.
+     */
+    private static long hashQuery(long hash, String queryString) {
+        long parameters = 0;
+        int count = 0;
+        int start = 0;
+        int length = queryString.length();
+        while (start <= length) {
+            int end = queryString.indexOf('&', start);
+            if (end < 0) {
+                end = length;
+            }
+            if (end > start) {
+                parameters += spread(hash(OFFSET_BASIS, queryString, start, end));
+                count++;
+            }
+            start = end + 1;
+        }
+        return mixLong(mixLong(hash, parameters), count);
+    }
+
+    private static long hashPath(long hash, String path) {
+        int end = path.length();
+        while (end > 1 && path.charAt(end - 1) == '/') {
+            end--;
+        }
+        char previous = 0;
+        for (int i = 0; i < end; i++) {
+            char c = path.charAt(i);
+            if (c != '/' || previous != '/') {
+                hash = mix(hash, c);
+            }
+            previous = c;
+        }
+        return hash;
+    }
+
+    private static long hash(long hash, String value, int start, int end) {
+        for (int i = start; i < end; i++) {
+            hash = mix(hash, value.charAt(i));
+        }
+        return hash;
+    }
+
+    private static long mixLong(long hash, long value) {
+        for (int shift = 0; shift < 64; shift += 16) {
+            hash = mix(hash, (char) (value >>> shift));
+        }
+        return hash;
+    }
+
+    /**
+     * Murmur3's 64-bit finalizer, so that summed parameter hashes do not cancel out in patterns.
+     */
+    private static long spread(long h) {
+        h ^= h >>> 33;
+        h *= 0xff51afd7ed558ccdL;
+        h ^= h >>> 33;
+        h *= 0xc4ceb9fe1a85ec53L;
+        h ^= h >>> 33;
+        return h;
+    }
+
+    private static long mix(long hash, char c) {
+        hash = (hash ^ (c & 0xff)) * PRIME;
+        return (hash ^ (c >>> 8)) * PRIME;
+    }
+
+    @FunctionalInterface
+    public interface HeaderLookup {
+        String get(String name);
+    }
+}
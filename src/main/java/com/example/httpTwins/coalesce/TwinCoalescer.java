@@ -0,0 +1,230 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.coalesce;
+
+import com.example.httpTwins.model.TwinRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.BiFunction;
+import java.util.function.Consumer;
+
+/**
+ * Collapses identical twins of one endpoint into one delivery per time window.
+ * <p>
+ * The first request with a given {@link CoalescingKey} opens a window and is snapshotted as usual,
+ * but its twin is held back. Identical requests arriving while the window is open are only counted:
+ * they are not even snapshotted. When the window closes, the held twin is delivered once, carrying
+ * the number of requests it stands for in the {@link #COUNT_ATTRIBUTE} attribute.
+ * <p>
+ * Open windows live in a concurrent map bounded by {@code max-keys} and are closed by the
+ * {@link CoalescerRegistry}'s sweeper.
+ */
+public final class TwinCoalescer {
+
+    /**
+     * The request attribute holding the number of identical requests a coalesced twin stands for, as an {@link Integer}.
+     */
+    public static final String COUNT_ATTRIBUTE = "com.example.httpTwins.coalescedCount";
+
+    private static final Logger logger = LoggerFactory.getLogger(TwinCoalescer.class);
+
+    private final String endpoint;
+    private final long windowNanos;
+    private final String[] headers;
+    private final int maxKeys;
+    private final Map<Long, Window> windows = new ConcurrentHashMap<>();
+    private final LongAdder coalesced = new LongAdder();
+    private final AtomicInteger closing = new AtomicInteger();
+
+    TwinCoalescer(String endpoint, long windowNanos, String[] headers, int maxKeys) {
+        this.endpoint = endpoint;
+        this.windowNanos = windowNanos;
+        this.headers = headers;
+        this.maxKeys = maxKeys;
+    }
+
+    /**
+     * Returns the coalescing key of the live request without allocating; see
+     * {@link CoalescingKey#of(String, String, String, String[], Object, BiFunction)}. Must be called
+     * while the request is being served.
+     */
+    public <R> long key(String method, String requestUri, String queryString, R request,
+                        BiFunction<? super R, String, String> lookup) {
+        return CoalescingKey.of(method, requestUri, queryString, headers, request, lookup);
+    }
+
+    /**
+     * Counts the request into the open window with the same key, if there is one.
+     *
+     * @return true if the request was absorbed and must not be mirrored by itself.
+     */
+    public boolean join(long key) {
+        Window window = windows.get(key);
+        if (window != null && window.tryJoin()) {
+            coalesced.increment();
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Opens a window for the twin, to be delivered when it closes.
+     *
+     * @param delivery Mirrors the twin; called on the sweeper thread.
+     * @return {@link Opening#REFUSED} if the twin must be mirrored now instead, because too many
+     * windows are open.
+     */
+    public Opening open(long key, TwinRequest twin, Consumer<TwinRequest> delivery) {
+        if (windows.size() >= maxKeys) {
+            return Opening.REFUSED;
+        }
+        Window prior = windows.putIfAbsent(key, new Window(twin, delivery, System.nanoTime() + windowNanos));
+        if (prior == null) {
+            return Opening.OPENED;
+        }
+        // An identical request opened the window first
+        if (prior.tryJoin()) {
+            coalesced.increment();
+            return Opening.JOINED;
+        }
+        return Opening.REFUSED;
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Returns the number of requests absorbed into another request's twin.
+     */
+    public long getCoalescedCount() {
+        return coalesced.sum();
+    }
+
+    public int getOpenWindows() {
+        return windows.size();
+    }
+
+    boolean hasSettings(long windowNanos, String[] headers) {
+        return this.windowNanos == windowNanos && Arrays.equals(this.headers, headers);
+    }
+
+    /**
+     * Delivers the twins of the windows that have closed by {@code now}.
+     */
+    void sweep(long now) {
+        for (Map.Entry<Long, Window> entry : windows.entrySet()) {
+            if (entry.getValue().closesAt - now <= 0) {
+                close(entry.getKey(), entry.getValue());
+            }
+        }
+    }
+
+    /**
+     * Closes every window at once and delivers its twin.
+     */
+    void flush() {
+        for (Map.Entry<Long, Window> entry : windows.entrySet()) {
+            close(entry.getKey(), entry.getValue());
+        }
+    }
+
+    /**
+     * Whether no window is open or still being delivered.
+     */
+    boolean isFlushed() {
+        return windows.isEmpty() && closing.get() == 0;
+    }
+
+    private void close(Long key, Window window) {
+        // Counted before the removal, so a window is always seen either open or closing
+        closing.incrementAndGet();
+        try {
+            if (windows.remove(key, window)) {
+                deliver(window);
+            }
+        } finally {
+            closing.decrementAndGet();
+        }
+    }
+
+    private void deliver(Window window) {
+        int count = window.close();
+        try {
+            window.delivery.accept(window.twin.withAttribute(COUNT_ATTRIBUTE, count));
+        } catch (RuntimeException e) {
+            logger.error("HttpTwins ERROR: Failed to deliver coalesced twin of {}. Reason: {}", endpoint, e.getMessage(), e);
+        }
+    }
+
+    /**
+     * What became of a twin offered to {@link #open}.
+     */
+    public enum Opening {
+
+        /**
+         * The twin opened a window and is delivered when it closes.
+         */
+        OPENED,
+
+        /**
+         * An identical request opened a window first; the request is absorbed into its twin, like
+         * one that {@link #join joined} it.
+         */
+        JOINED,
+
+        /**
+         * The twin must be mirrored now, by itself.
+         */
+        REFUSED
+    }
+
+    private static final class Window {
+
+        private final TwinRequest twin;
+        private final Consumer<TwinRequest> delivery;
+        private final long closesAt;
+        // The number of requests in the window, or -1 once it is closed
+        private final AtomicInteger count = new AtomicInteger(1);
+
+        private Window(TwinRequest twin, Consumer<TwinRequest> delivery, long closesAt) {
+            this.twin = twin;
+            this.delivery = delivery;
+            this.closesAt = closesAt;
+        }
+
+        private boolean tryJoin() {
+            int current;
+            do {
+                current = count.get();
+                if (current < 0) {
+                    return false;
+                }
+            } while (!count.compareAndSet(current, current + 1));
+            return true;
+        }
+
+        private int close() {
+            return count.getAndSet(-1);
+        }
+    }
+}
@@ -0,0 +1,38 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.config;
+
+import com.example.httpTwins.broker.BrokerProperties;
+import com.example.httpTwins.broker.BrokerTransport;
+import com.example.httpTwins.broker.EmbeddedBroker;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(BrokerProperties.class)
+public class BrokerConfig {
+
+    /**
+     * The in-JVM stand-in, backing {@code BrokerRemoteProcessor} unless another transport is declared.
+     */
+    @Bean
+    @ConditionalOnMissingBean(BrokerTransport.class)
+    public EmbeddedBroker embeddedBroker(BrokerProperties properties) {
+        return new EmbeddedBroker(properties.getEmbeddedDedupWindow(), properties.getEmbeddedRetainedRecords());
+    }
+}
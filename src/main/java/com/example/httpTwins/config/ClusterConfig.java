@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.config;
+
+import com.example.httpTwins.cluster.BudgetCoordinator;
+import com.example.httpTwins.cluster.ClusterBudgetRegistry;
+import com.example.httpTwins.cluster.ClusterProperties;
+import com.example.httpTwins.cluster.JdbcBudgetCoordinator;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnMissingBean;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+@Configuration
+@EnableConfigurationProperties(ClusterProperties.class)
+@ConditionalOnProperty(prefix = "http-twins.cluster", name = "enabled", havingValue = "true")
+public class ClusterConfig {
+
+    /**
+     * Leases kept in the application's own database, unless another coordinator is declared.
+     */
+    @Bean
+    @ConditionalOnMissingBean(BudgetCoordinator.class)
+    public JdbcBudgetCoordinator jdbcBudgetCoordinator(JdbcTemplate jdbcTemplate, ClusterProperties properties) {
+        return new JdbcBudgetCoordinator(jdbcTemplate, properties.getTable());
+    }
+
+    @Bean
+    public ClusterBudgetRegistry clusterBudgetRegistry(ClusterProperties properties, BudgetCoordinator coordinator) {
+        return new ClusterBudgetRegistry(properties, coordinator);
+    }
+}
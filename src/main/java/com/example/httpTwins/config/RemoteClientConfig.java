@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.config;
+
+import com.example.httpTwins.health.DestinationHealthRegistry;
+import com.example.httpTwins.health.HealthProperties;
+import com.example.httpTwins.remote.BatchProperties;
+import com.example.httpTwins.remote.RemoteClientProperties;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import io.micrometer.observation.ObservationRegistry;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties({RemoteClientProperties.class, BatchProperties.class, HealthProperties.class})
+public class RemoteClientConfig {
+
+    @Bean
+    public DestinationHealthRegistry destinationHealthRegistry(HealthProperties properties) {
+        return new DestinationHealthRegistry(properties);
+    }
+
+    @Bean
+    public RemoteHttpClientPool remoteHttpClientPool(RemoteClientProperties properties, DestinationHealthRegistry healthRegistry,
+                                                     ObservationRegistry observationRegistry) {
+        return new RemoteHttpClientPool(properties, healthRegistry, observationRegistry);
+    }
+}
@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.config;
+
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.example.httpTwins.shadow.ShadowComparator;
+import com.example.httpTwins.shadow.ShadowEndpoint;
+import com.example.httpTwins.shadow.ShadowProperties;
+import org.springframework.boot.context.properties.EnableConfigurationProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+@EnableConfigurationProperties(ShadowProperties.class)
+public class ShadowConfig {
+
+    @Bean
+    public ShadowComparator shadowComparator(ShadowProperties properties, RemoteHttpClientPool remoteHttpClientPool) {
+        return new ShadowComparator(properties, remoteHttpClientPool);
+    }
+
+    @Bean
+    public ShadowEndpoint shadowEndpoint(ShadowComparator shadowComparator) {
+        return new ShadowEndpoint(shadowComparator);
+    }
+}
@@ -15,43 +15,58 @@
  */
 package com.example.httpTwins.config;
 
-import jakarta.servlet.FilterChain;
-import jakarta.servlet.ServletException;
-import jakarta.servlet.http.HttpServletRequest;
-import jakarta.servlet.http.HttpServletResponse;
+import com.example.httpTwins.aspect.HttpTwinsAspect;
+import com.example.httpTwins.capture.CaptureBufferPool;
+import com.example.httpTwins.capture.TwinCachingFilter;
+import com.example.httpTwins.capture.TwinnedEndpointIndex;
+import com.example.httpTwins.reactive.TwinExchangeFilter;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnWebApplication;
 import org.springframework.boot.web.servlet.FilterRegistrationBean;
+import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
-import org.springframework.web.client.RestTemplate;
 import org.springframework.web.filter.OncePerRequestFilter;
-import org.springframework.web.util.ContentCachingRequestWrapper;
-
-import java.io.IOException;
+import org.springframework.web.servlet.mvc.method.annotation.RequestMappingHandlerMapping;
 
 @Configuration
 public class WebConfig {
 
     @Bean
-    public FilterRegistrationBean<OncePerRequestFilter> cachingFilter() {
-        FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>();
-        registration.setFilter(new OncePerRequestFilter() {
-            @Override
-            protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain filterChain)
-                    throws ServletException, IOException {
-                // Wrap the request in a ContentCachingRequestWrapper
-                ContentCachingRequestWrapper wrappedRequest = new ContentCachingRequestWrapper(request);
-                // Proceed with the filter chain using the wrapped request
-                filterChain.doFilter(wrappedRequest, response);
-            }
-        });
-        registration.addUrlPatterns("/*"); // Apply to all URLs
-        registration.setName("cachingFilter");
-        registration.setOrder(1); // Ensure it runs before other filters that might read the body
-        return registration;
+    public CaptureBufferPool captureBufferPool(@Value("${http-twins.capture.max-pooled-buffers:64}") int maxPooledBuffers) {
+        return new CaptureBufferPool(maxPooledBuffers);
     }
 
-    @Bean
-    public RestTemplate restTemplate() {
-        return new RestTemplate();
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.SERVLET)
+    static class ServletCaptureConfig {
+
+        @Bean
+        public FilterRegistrationBean<OncePerRequestFilter> cachingFilter(ApplicationContext applicationContext,
+                                                                          CaptureBufferPool captureBufferPool) {
+            FilterRegistrationBean<OncePerRequestFilter> registration = new FilterRegistrationBean<>();
+            // Only requests for @HttpTwins endpoints get their body cached; the index is built from the MVC mappings
+            registration.setFilter(new TwinCachingFilter(() -> TwinnedEndpointIndex.from(
+                    applicationContext.getBean("requestMappingHandlerMapping", RequestMappingHandlerMapping.class).getHandlerMethods()),
+                    captureBufferPool));
+            registration.addUrlPatterns("/*"); // Apply to all URLs
+            registration.setName("cachingFilter");
+            registration.setOrder(1); // Ensure it runs before other filters that might read the body
+            return registration;
+        }
+    }
+
+    @Configuration
+    @ConditionalOnWebApplication(type = ConditionalOnWebApplication.Type.REACTIVE)
+    static class ReactiveCaptureConfig {
+
+        @Bean
+        public TwinExchangeFilter twinExchangeFilter(ApplicationContext applicationContext, CaptureBufferPool captureBufferPool,
+                                                     HttpTwinsAspect httpTwinsAspect) {
+            // Reactive handlers are twinned from the exchange, once they are done, instead of by the aspect
+            return new TwinExchangeFilter(() -> TwinnedEndpointIndex.fromReactive(applicationContext.getBean("requestMappingHandlerMapping",
+                    org.springframework.web.reactive.result.method.annotation.RequestMappingHandlerMapping.class).getHandlerMethods()),
+                    captureBufferPool, httpTwinsAspect::twinRequest);
+        }
     }
 }
@@ -17,10 +17,13 @@ package com.example.httpTwins.controller;
 
 import com.example.httpTwins.annotation.HttpTwins;
 import com.example.httpTwins.model.Book;
-import com.example.httpTwins.repository.BookRepository;
+import com.example.httpTwins.repository.BookStore;
+import com.example.httpTwins.service.AuditSink;
 import com.example.httpTwins.service.RemoteERP;
 import com.example.httpTwins.service.ReportingAgent;
+import com.example.httpTwins.service.TrafficRecorder;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
 import java.util.List;
 
@@ -28,27 +31,47 @@ import java.util.List;
 @RequestMapping("/books")
 public class BookController {
 
-    private final BookRepository bookRepository;
+    private final BookStore bookStore;
 
-    public BookController(BookRepository bookRepository) {
-        this.bookRepository = bookRepository;
+    public BookController(BookStore bookStore) {
+        this.bookStore = bookStore;
     }
 
     @GetMapping
-    @HttpTwins(localdestinations = ReportingAgent.class, active = "${http-twins.get-books.enabled}") // Fan-out to a local reporting agent
-    public List<Book> getBooks() {
-        return bookRepository.findAll();
+    @HttpTwins(
+        localdestinations = ReportingAgent.class, // Fan-out to a local reporting agent
+        active = "${http-twins.get-books.enabled}",
+        sampleRate = "${http-twins.get-books.sample-rate:1}", // Mirror only a fraction of reads in production
+        captureResponse = true,
+        shadowDestination = "${http-twins.get-books.shadow-url:}", // Compare responses with a candidate version
+        coalesceWindow = "${http-twins.get-books.coalesce-window:0}", // Set to mirror a burst of identical reads once
+        coalesceHeaders = "Accept"
+    )
+    public List<Book> getBooks(@RequestParam(defaultValue = "0") int page,
+                               @RequestParam(required = false) Integer size) {
+        return bookStore.page(page, size);
+    }
+
+    /**
+     * Every book as newline-delimited JSON, read and written one page at a time.
+     */
+    @GetMapping(path = "/stream", produces = "application/x-ndjson")
+    public StreamingResponseBody streamBooks() {
+        return bookStore::stream;
     }
 
     @PostMapping
     @HttpTwins(
-        localdestinations = {RemoteERP.class, ReportingAgent.class},
+        // AuditSink keeps the twins on disk; TrafficRecorder records them for replay as a load test
+        localdestinations = {RemoteERP.class, ReportingAgent.class, AuditSink.class, TrafficRecorder.class},
         remoteDestinations = {
-            "https://http-twins-remote-test.free.beeceptor.com/regionalTests", // A test endpoint to receive mirrored requests
-            "https://ecom.buyers/items" // A second remote destination
-        }
+            "${http-twins.create-book.regional-tests-url}", // A test endpoint to receive mirrored requests
+            "${http-twins.create-book.buyers-url}" // A second remote destination
+        },
+        active = "${http-twins.create-book.enabled:true}",
+        shadowDestination = "${http-twins.create-book.shadow-url:}"
     )
     public Book createBook(@RequestBody Book book) {
-        return bookRepository.save(book);
+        return bookStore.save(book);
     }
 }
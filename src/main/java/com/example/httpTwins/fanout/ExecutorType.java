@@ -0,0 +1,36 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.fanout;
+
+/**
+ * The kind of threads a {@link FanoutExecutor} runs twins on.
+ */
+public enum ExecutorType {
+
+    /**
+     * A fixed pool of named platform threads.
+     */
+    PLATFORM,
+
+    /**
+     * A fixed pool of named virtual threads. Like {@link #PLATFORM}, at most {@code threads} twins
+     * run at a time and the rest wait in the queue; the threads are reused between twins and retire
+     * when idle, but blocking I/O does not pin a carrier thread. Not a thread per twin: the pool
+     * keeps the queue and overflow policy meaningful. Requires Java 21 at runtime; falls back to
+     * {@link #PLATFORM} on older JVMs.
+     */
+    VIRTUAL_POOL
+}
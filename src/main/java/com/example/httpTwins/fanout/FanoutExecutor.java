@@ -0,0 +1,381 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.fanout;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bounded executor that runs twins off the request thread.
+ * <p>
+ * Twins wait in a fixed-capacity queue; when it is full the configured {@link OverflowPolicy}
+ * decides what happens. Every twin that is discarded is counted in {@link #getDroppedCount()}.
+ * <p>
+ * Destinations submit through their own {@link FanoutLane}, which caps how many of the executor's
+ * threads they can hold. Lanes also carry a {@link TwinPriority}: critical twins run on a small
+ * pool of reserved threads when one is configured, spilling over to the shared threads only when
+ * it is busy, and best-effort twins are shed as soon as the shared queue passes its shed threshold,
+ * leaving the remaining room to the others.
+ * <p>
+ * On shutdown the executor first stops accepting twins from new requests, then is given time to
+ * run what it already holds; whatever is left when that runs out is discarded through the twins'
+ * drop callbacks, which spill the remote twins whose processor can replay them to disk.
+ */
+public class FanoutExecutor {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanoutExecutor.class);
+
+    private final String name;
+    private final ThreadPoolExecutor delegate;
+    private final ThreadPoolExecutor reserved;
+    private final int shedQueueSize;
+    private final int defaultLaneConcurrency;
+    private final Map<String, FanoutProperties.Lane> laneSpecs;
+    private final Map<String, FanoutLane> lanes = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder shed = new LongAdder();
+    private volatile boolean accepting = true;
+
+    public FanoutExecutor(String name, FanoutProperties.Executor spec) {
+        this(name, spec, Map.of());
+    }
+
+    /**
+     * @param laneSpecs Lane settings keyed by destination name; destinations without an entry get
+     *                  the defaults of {@link FanoutProperties.Lane}.
+     */
+    public FanoutExecutor(String name, FanoutProperties.Executor spec, Map<String, FanoutProperties.Lane> laneSpecs) {
+        if (spec.getThreads() < 1 || spec.getQueueCapacity() < 1) {
+            throw new IllegalArgumentException("HttpTwins executor '" + name + "' needs at least one thread and a queue capacity of at least one");
+        }
+        this.name = name;
+        String prefix = spec.getThreadNamePrefix() != null ? spec.getThreadNamePrefix() : "http-twins-" + name + "-";
+        ThreadFactory threadFactory = spec.getType() == ExecutorType.VIRTUAL_POOL
+                ? virtualThreadFactory(prefix)
+                : platformThreadFactory(prefix);
+        if (threadFactory == null) {
+            logger.warn("HttpTwins WARNING: Virtual threads need Java 21+, executor '{}' falls back to platform threads.", name);
+            threadFactory = platformThreadFactory(prefix);
+        }
+        this.delegate = new ThreadPoolExecutor(spec.getThreads(), spec.getThreads(), 30, TimeUnit.SECONDS,
+                new ArrayBlockingQueue<>(spec.getQueueCapacity()), threadFactory,
+                overflowHandler(spec.getOverflowPolicy(), spec.getBlockTimeout().toNanos()));
+        // Idle workers retire so a quiet executor holds no threads
+        this.delegate.allowCoreThreadTimeOut(true);
+        if (spec.getReservedThreads() > 0) {
+            // No queue: a critical twin that finds every reserved thread busy goes straight on to the
+            // shared pool rather than waiting behind the others or being dropped
+            this.reserved = new ThreadPoolExecutor(spec.getReservedThreads(), spec.getReservedThreads(), 30, TimeUnit.SECONDS,
+                    new SynchronousQueue<>(), platformThreadFactory(prefix + "reserved-"),
+                    (twin, executor) -> {
+                        if (executor.isShutdown()) {
+                            drop(twin);
+                        } else {
+                            delegate.execute(twin);
+                        }
+                    });
+            this.reserved.allowCoreThreadTimeOut(true);
+        } else {
+            this.reserved = null;
+        }
+        this.shedQueueSize = (int) Math.max(0, Math.min(spec.getQueueCapacity(), Math.ceil(spec.getShedThreshold() * spec.getQueueCapacity())));
+        this.defaultLaneConcurrency = Math.max(1, spec.getThreads() / 2);
+        this.laneSpecs = laneSpecs;
+    }
+
+    /**
+     * Submits a twin for asynchronous execution. Never throws when the executor is saturated;
+     * the overflow policy applies instead.
+     *
+     * @param twin The work to run.
+     */
+    public void execute(Runnable twin) {
+        delegate.execute(twin);
+    }
+
+    /**
+     * Submits a twin for asynchronous execution, with a callback run instead of the twin if it is
+     * discarded by the overflow policy or by shutdown. Use it to release resources the twin holds.
+     *
+     * @param twin   The work to run.
+     * @param onDrop Run on the thread that discarded the twin.
+     */
+    public void execute(Runnable twin, Runnable onDrop) {
+        delegate.execute(new DroppableTwin(twin, onDrop));
+    }
+
+    /**
+     * Submits a twin of the given priority. Best-effort twins are shed instead of queued once the
+     * shared queue holds {@code shed-threshold} of its capacity.
+     *
+     * @param twin     The work to run.
+     * @param onDrop   Run on the thread that discarded the twin.
+     * @param priority How important the twin is.
+     */
+    public void execute(Runnable twin, Runnable onDrop, TwinPriority priority) {
+        DroppableTwin droppable = new DroppableTwin(twin, onDrop);
+        if (priority == TwinPriority.CRITICAL && reserved != null) {
+            reserved.execute(droppable);
+        } else if (priority == TwinPriority.BEST_EFFORT && delegate.getQueue().size() >= shedQueueSize) {
+            shed.increment();
+            if (onDrop != null) {
+                onDrop.run();
+            }
+        } else {
+            delegate.execute(droppable);
+        }
+    }
+
+    /**
+     * Passes a lane's next twin on from a thread that has just finished one. Unlike {@link #execute},
+     * the overflow policy does not apply: a worker must neither block on nor drop from its own pool.
+     *
+     * @return false if there was no room for the twin; the caller is then expected to run it.
+     */
+    boolean handOff(Runnable twin, Runnable onDrop, TwinPriority priority) {
+        HandOff handOff = new HandOff(new DroppableTwin(twin, onDrop));
+        if (priority == TwinPriority.CRITICAL && reserved != null) {
+            reserved.execute(handOff);
+        } else {
+            delegate.execute(handOff);
+        }
+        return !handOff.refused;
+    }
+
+    /**
+     * Returns the lane of the destination, created on first use. Its settings come from
+     * {@code http-twins.fanout.lanes.<destination>}; its priority from there too, or else the given one.
+     *
+     * @param destination     The destination name: the processor's simple class name or the remote URL.
+     * @param defaultPriority The priority to use unless the lane's settings name one.
+     */
+    public FanoutLane lane(String destination, TwinPriority defaultPriority) {
+        FanoutProperties.Lane spec = laneSpecs.getOrDefault(destination, new FanoutProperties.Lane());
+        TwinPriority priority = spec.getPriority() != null ? spec.getPriority() : defaultPriority;
+        return lanes.computeIfAbsent(destination + "|" + priority, key -> new FanoutLane(destination, priority, this,
+                spec.getMaxConcurrency() > 0 ? spec.getMaxConcurrency() : defaultLaneConcurrency, spec.getQueueCapacity()));
+    }
+
+    public Collection<FanoutLane> getLanes() {
+        return lanes.values();
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public int getQueueSize() {
+        return delegate.getQueue().size() + (reserved != null ? reserved.getQueue().size() : 0);
+    }
+
+    public int getActiveCount() {
+        return delegate.getActiveCount() + (reserved != null ? reserved.getActiveCount() : 0);
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of best-effort twins shed because the queue was past its shed threshold.
+     */
+    public long getShedCount() {
+        return shed.sum();
+    }
+
+    /**
+     * Stops accepting twins from new requests, see {@link #tryAccept()}. Twins already submitted,
+     * and those waiting in the lanes, still run.
+     */
+    public void stopAccepting() {
+        accepting = false;
+    }
+
+    /**
+     * Checks whether a new request may be twinned, counting it as dropped if not.
+     *
+     * @return false once the executor has stopped accepting twins.
+     */
+    public boolean tryAccept() {
+        if (accepting) {
+            return true;
+        }
+        dropped.increment();
+        return false;
+    }
+
+    /**
+     * Whether no twin is waiting or running, in the executor or in any of its lanes.
+     */
+    public boolean isIdle() {
+        if (getQueueSize() > 0 || getActiveCount() > 0) {
+            return false;
+        }
+        for (FanoutLane lane : lanes.values()) {
+            if (lane.getQueueSize() > 0 || lane.getActiveCount() > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Starts the threads ahead of the first twins; like any idle ones, they retire if none come.
+     */
+    public void prestart() {
+        delegate.prestartAllCoreThreads();
+        if (reserved != null) {
+            reserved.prestartAllCoreThreads();
+        }
+    }
+
+    /**
+     * Discards every waiting twin, in the executor and in its lanes, through its drop callback and
+     * interrupts the running ones.
+     *
+     * @return The number of twins taken off the executor's and the lanes' queues.
+     */
+    public int shutdownNow() {
+        List<Runnable> pending = new ArrayList<>();
+        if (reserved != null) {
+            pending.addAll(reserved.shutdownNow());
+        }
+        pending.addAll(delegate.shutdownNow());
+        pending.forEach(this::drop);
+        int discarded = pending.size();
+        for (FanoutLane lane : lanes.values()) {
+            int laneDiscarded = lane.discardQueued();
+            dropped.add(laneDiscarded);
+            discarded += laneDiscarded;
+        }
+        return discarded;
+    }
+
+    public void shutdown() {
+        if (reserved != null) {
+            reserved.shutdown();
+        }
+        delegate.shutdown();
+    }
+
+    private RejectedExecutionHandler overflowHandler(OverflowPolicy policy, long blockTimeoutNanos) {
+        return (twin, executor) -> {
+            if (executor.isShutdown()) {
+                drop(twin);
+                return;
+            }
+            if (twin instanceof HandOff handOff) {
+                handOff.refused = true;
+                return;
+            }
+            switch (policy) {
+                case DROP_NEWEST -> drop(twin);
+                case DROP_OLDEST -> {
+                    Runnable oldest = executor.getQueue().poll();
+                    if (oldest != null) {
+                        drop(oldest);
+                    }
+                    executor.execute(twin);
+                }
+                case CALLER_RUNS -> twin.run();
+                case BLOCK -> {
+                    try {
+                        if (!executor.getQueue().offer(twin, blockTimeoutNanos, TimeUnit.NANOSECONDS)) {
+                            drop(twin);
+                        }
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        drop(twin);
+                    }
+                }
+            }
+        };
+    }
+
+    private void drop(Runnable twin) {
+        dropped.increment();
+        if (twin instanceof HandOff handOff) {
+            twin = handOff.twin;
+        }
+        if (twin instanceof DroppableTwin droppable && droppable.onDrop() != null) {
+            droppable.onDrop().run();
+        }
+    }
+
+    private record DroppableTwin(Runnable twin, Runnable onDrop) implements Runnable {
+
+        @Override
+        public void run() {
+            twin.run();
+        }
+    }
+
+    /**
+     * A twin passed on by {@link #handOff}; the overflow handler marks it refused instead of applying the policy.
+     */
+    private static final class HandOff implements Runnable {
+
+        private final DroppableTwin twin;
+        private boolean refused;
+
+        private HandOff(DroppableTwin twin) {
+            this.twin = twin;
+        }
+
+        @Override
+        public void run() {
+            twin.run();
+        }
+    }
+
+    private static ThreadFactory platformThreadFactory(String prefix) {
+        AtomicInteger counter = new AtomicInteger();
+        return runnable -> {
+            Thread thread = new Thread(runnable, prefix + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+    }
+
+    /**
+     * Builds {@code Thread.ofVirtual().name(prefix, 1).factory()} reflectively so the project
+     * still compiles for Java 17.
+     */
+    private static ThreadFactory virtualThreadFactory(String prefix) {
+        try {
+            Class<?> builderType = Class.forName("java.lang.Thread$Builder");
+            Object builder = Thread.class.getMethod("ofVirtual").invoke(null);
+            builder = builderType.getMethod("name", String.class, long.class).invoke(builder, prefix, 1L);
+            return (ThreadFactory) builderType.getMethod("factory").invoke(builder);
+        } catch (ReflectiveOperationException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.fanout;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.util.Collection;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds the named {@link FanoutExecutor}s configured under {@code http-twins.fanout.executors}.
+ * Executors are created on first use; the default executor always exists even if it is not configured.
+ */
+public class FanoutExecutorRegistry implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(FanoutExecutorRegistry.class);
+
+    private final FanoutProperties properties;
+    private final Map<String, FanoutExecutor> executors = new ConcurrentHashMap<>();
+    private volatile boolean accepting = true;
+
+    public FanoutExecutorRegistry(FanoutProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the executor with the given name, or the default executor when the name is blank.
+     * Unknown names fall back to the default executor with a warning.
+     *
+     * @param name The executor name, as configured under {@code http-twins.fanout.executors}.
+     * @return The executor to submit twins to.
+     */
+    public FanoutExecutor get(String name) {
+        String defaultName = properties.getDefaultExecutor();
+        if (name == null || name.isBlank()) {
+            name = defaultName;
+        } else if (!name.equals(defaultName) && !properties.getExecutors().containsKey(name)) {
+            logger.warn("HttpTwins WARNING: No executor configured with name '{}', using '{}'.", name, defaultName);
+            name = defaultName;
+        }
+        return executors.computeIfAbsent(name, this::create);
+    }
+
+    public Collection<FanoutExecutor> getExecutors() {
+        return executors.values();
+    }
+
+    /**
+     * Stops every executor from accepting twins from new requests.
+     */
+    public void stopAccepting() {
+        accepting = false;
+        executors.values().forEach(FanoutExecutor::stopAccepting);
+    }
+
+    /**
+     * Whether no twin is waiting or running in any executor.
+     */
+    public boolean isIdle() {
+        for (FanoutExecutor executor : executors.values()) {
+            if (!executor.isIdle()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Discards the twins still waiting in every executor, see {@link FanoutExecutor#shutdownNow()}.
+     *
+     * @return The number of twins discarded.
+     */
+    public int shutdownNow() {
+        int discarded = 0;
+        for (FanoutExecutor executor : executors.values()) {
+            discarded += executor.shutdownNow();
+        }
+        return discarded;
+    }
+
+    /**
+     * Returns the number of twins all executors have dropped so far.
+     */
+    public long getDroppedCount() {
+        long count = 0;
+        for (FanoutExecutor executor : executors.values()) {
+            count += executor.getDroppedCount();
+        }
+        return count;
+    }
+
+    @Override
+    public void destroy() {
+        executors.values().forEach(FanoutExecutor::shutdown);
+    }
+
+    private FanoutExecutor create(String name) {
+        FanoutProperties.Executor spec = properties.getExecutors().getOrDefault(name, new FanoutProperties.Executor());
+        FanoutExecutor executor = new FanoutExecutor(name, spec, properties.getLanes());
+        if (!accepting) {
+            executor.stopAccepting();
+        }
+        return executor;
+    }
+}
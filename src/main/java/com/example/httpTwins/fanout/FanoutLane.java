@@ -0,0 +1,213 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.fanout;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A bulkhead for one destination in front of a {@link FanoutExecutor}.
+ * <p>
+ * At most {@code maxConcurrency} of the lane's twins are handed to the executor at a time; the
+ * rest wait in the lane's own bounded queue, and a twin that finds it full is dropped. A slow
+ * destination therefore fills its own queue and holds at most its share of the executor's threads,
+ * while the other destinations keep running. When a twin finishes, its slot passes straight to the
+ * next one waiting in the lane.
+ */
+public final class FanoutLane {
+
+    private final String name;
+    private final TwinPriority priority;
+    private final FanoutExecutor executor;
+    private final int maxConcurrency;
+    private final ArrayBlockingQueue<LaneTwin> queue;
+    private final AtomicInteger running = new AtomicInteger();
+    private final LongAdder dropped = new LongAdder();
+
+    FanoutLane(String name, TwinPriority priority, FanoutExecutor executor, int maxConcurrency, int queueCapacity) {
+        if (maxConcurrency < 1 || queueCapacity < 1) {
+            throw new IllegalArgumentException("HttpTwins lane '" + name + "' needs a concurrency and a queue capacity of at least one");
+        }
+        this.name = name;
+        this.priority = priority;
+        this.executor = executor;
+        this.maxConcurrency = maxConcurrency;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+    }
+
+    /**
+     * Submits a twin, with a callback run instead of it if the lane or the executor discards it.
+     *
+     * @param twin   The work to run.
+     * @param onDrop Run on the thread that discarded the twin.
+     */
+    public void execute(Runnable twin, Runnable onDrop) {
+        LaneTwin laneTwin = new LaneTwin(twin, onDrop);
+        // Twins already waiting take a free slot first; they are left waiting when the executor drops a running one
+        if (queue.isEmpty() && tryStart()) {
+            dispatch(laneTwin);
+            return;
+        }
+        if (!queue.offer(laneTwin)) {
+            drop(laneTwin);
+            return;
+        }
+        // Every running twin may have finished between the two checks, leaving no one to take it
+        if (tryStart()) {
+            LaneTwin next = queue.poll();
+            if (next != null) {
+                dispatch(next);
+            } else {
+                running.decrementAndGet();
+            }
+        }
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public TwinPriority getPriority() {
+        return priority;
+    }
+
+    public String getExecutorName() {
+        return executor.getName();
+    }
+
+    public int getMaxConcurrency() {
+        return maxConcurrency;
+    }
+
+    /**
+     * Returns the number of twins waiting in the lane, not yet handed to the executor.
+     */
+    public int getQueueSize() {
+        return queue.size();
+    }
+
+    /**
+     * Returns the number of the lane's twins handed to the executor, queued there or running.
+     */
+    public int getActiveCount() {
+        return running.get();
+    }
+
+    /**
+     * Returns the number of twins discarded because the lane's queue was full or the executor shed them.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private boolean tryStart() {
+        int current;
+        do {
+            current = running.get();
+            if (current >= maxConcurrency) {
+                return false;
+            }
+        } while (!running.compareAndSet(current, current + 1));
+        return true;
+    }
+
+    /**
+     * Hands a twin holding a slot to the executor. If the executor discards it, the slot is only
+     * given back: the twins waiting in the lane are started by the next twin to finish or to be
+     * submitted, never from inside the executor's overflow handling.
+     */
+    private void dispatch(LaneTwin laneTwin) {
+        executor.execute(() -> run(laneTwin), () -> {
+            drop(laneTwin);
+            running.decrementAndGet();
+        }, priority);
+    }
+
+    /**
+     * Runs the twin, then passes its slot on to the twins waiting in the lane. Each goes back
+     * through the executor so the lane takes turns with the others; one the executor has no room
+     * for runs here instead, so a worker never blocks on, or drops from, the pool it belongs to.
+     */
+    private void run(LaneTwin laneTwin) {
+        RuntimeException failure = null;
+        for (LaneTwin current = laneTwin; current != null; current = handOffNext()) {
+            try {
+                current.twin.run();
+            } catch (RuntimeException e) {
+                if (failure == null) {
+                    failure = e;
+                } else {
+                    failure.addSuppressed(e);
+                }
+            }
+        }
+        if (failure != null) {
+            throw failure;
+        }
+    }
+
+    /**
+     * Hands the slot just freed to the next waiting twin, or gives it back.
+     *
+     * @return The next twin if the executor had no room for it, to be run by the calling thread; otherwise null.
+     */
+    private LaneTwin handOffNext() {
+        LaneTwin next = queue.poll();
+        if (next == null) {
+            running.decrementAndGet();
+            // A twin queued after the poll above would otherwise wait for the next one to be submitted
+            if (queue.isEmpty() || !tryStart()) {
+                return null;
+            }
+            next = queue.poll();
+            if (next == null) {
+                running.decrementAndGet();
+                return null;
+            }
+        }
+        LaneTwin handed = next;
+        return executor.handOff(() -> run(handed), () -> {
+            drop(handed);
+            running.decrementAndGet();
+        }, priority) ? null : next;
+    }
+
+    /**
+     * Discards every twin waiting in the lane through its drop callback.
+     *
+     * @return The number of twins discarded.
+     */
+    int discardQueued() {
+        int discarded = 0;
+        LaneTwin laneTwin;
+        while ((laneTwin = queue.poll()) != null) {
+            drop(laneTwin);
+            discarded++;
+        }
+        return discarded;
+    }
+
+    private void drop(LaneTwin laneTwin) {
+        dropped.increment();
+        if (laneTwin.onDrop != null) {
+            laneTwin.onDrop.run();
+        }
+    }
+
+    private record LaneTwin(Runnable twin, Runnable onDrop) {
+    }
+}
@@ -0,0 +1,229 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.fanout;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Configuration of the named fan-out executors, bound from {@code http-twins.fanout.*}.
+ * <p>
+ * Example:
+ * <pre>
+ * http-twins.fanout.default-executor=default
+ * http-twins.fanout.executors.default.threads=8
+ * http-twins.fanout.executors.default.queue-capacity=1024
+ * http-twins.fanout.executors.default.overflow-policy=drop-newest
+ * http-twins.fanout.executors.audit.type=virtual-pool
+ * http-twins.fanout.lanes.RemoteERP.max-concurrency=2
+ * http-twins.fanout.lanes.AuditSink.priority=critical
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "http-twins.fanout")
+public class FanoutProperties {
+
+    /**
+     * Name of the executor used when {@code @HttpTwins(executor = ...)} is not set.
+     */
+    private String defaultExecutor = "default";
+
+    /**
+     * Executor definitions keyed by name.
+     */
+    private Map<String, Executor> executors = new LinkedHashMap<>();
+
+    /**
+     * Lane settings keyed by destination: the processor's simple class name, or the remote URL in
+     * brackets ({@code lanes[https://host/path]}).
+     */
+    private Map<String, Lane> lanes = new LinkedHashMap<>();
+
+    public String getDefaultExecutor() {
+        return defaultExecutor;
+    }
+
+    public void setDefaultExecutor(String defaultExecutor) {
+        this.defaultExecutor = defaultExecutor;
+    }
+
+    public Map<String, Executor> getExecutors() {
+        return executors;
+    }
+
+    public void setExecutors(Map<String, Executor> executors) {
+        this.executors = executors;
+    }
+
+    public Map<String, Lane> getLanes() {
+        return lanes;
+    }
+
+    public void setLanes(Map<String, Lane> lanes) {
+        this.lanes = lanes;
+    }
+
+    public static class Executor {
+
+        private ExecutorType type = ExecutorType.PLATFORM;
+
+        /**
+         * Number of worker threads. For {@link ExecutorType#VIRTUAL_POOL} this is the number of
+         * virtual threads in the pool, so of twins running at the same time.
+         */
+        private int threads = Math.max(2, Runtime.getRuntime().availableProcessors());
+
+        /**
+         * Maximum number of twins waiting for a thread.
+         */
+        private int queueCapacity = 1024;
+
+        private OverflowPolicy overflowPolicy = OverflowPolicy.DROP_NEWEST;
+
+        /**
+         * How long {@link OverflowPolicy#BLOCK} waits for queue space.
+         */
+        private Duration blockTimeout = Duration.ofMillis(50);
+
+        /**
+         * Prefix for worker thread names. Defaults to {@code http-twins-<name>-}.
+         */
+        private String threadNamePrefix;
+
+        /**
+         * Platform threads kept for {@link TwinPriority#CRITICAL} twins, on top of {@code threads}.
+         * 0 lets critical twins share the threads with the others.
+         */
+        private int reservedThreads = 0;
+
+        /**
+         * Share of the queue capacity past which {@link TwinPriority#BEST_EFFORT} twins are shed.
+         */
+        private double shedThreshold = 0.8;
+
+        public ExecutorType getType() {
+            return type;
+        }
+
+        public void setType(ExecutorType type) {
+            this.type = type;
+        }
+
+        public int getThreads() {
+            return threads;
+        }
+
+        public void setThreads(int threads) {
+            this.threads = threads;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public OverflowPolicy getOverflowPolicy() {
+            return overflowPolicy;
+        }
+
+        public void setOverflowPolicy(OverflowPolicy overflowPolicy) {
+            this.overflowPolicy = overflowPolicy;
+        }
+
+        public Duration getBlockTimeout() {
+            return blockTimeout;
+        }
+
+        public void setBlockTimeout(Duration blockTimeout) {
+            this.blockTimeout = blockTimeout;
+        }
+
+        public String getThreadNamePrefix() {
+            return threadNamePrefix;
+        }
+
+        public void setThreadNamePrefix(String threadNamePrefix) {
+            this.threadNamePrefix = threadNamePrefix;
+        }
+
+        public int getReservedThreads() {
+            return reservedThreads;
+        }
+
+        public void setReservedThreads(int reservedThreads) {
+            this.reservedThreads = reservedThreads;
+        }
+
+        public double getShedThreshold() {
+            return shedThreshold;
+        }
+
+        public void setShedThreshold(double shedThreshold) {
+            this.shedThreshold = shedThreshold;
+        }
+    }
+
+    /**
+     * The bulkhead of one destination; see {@link FanoutLane}.
+     */
+    public static class Lane {
+
+        /**
+         * Overrides the priority set on {@code @HttpTwins} for this destination.
+         */
+        private TwinPriority priority;
+
+        /**
+         * Twins of this destination handed to the executor at once. 0 means half the executor's
+         * threads, at least one.
+         */
+        private int maxConcurrency = 0;
+
+        /**
+         * Twins of this destination waiting for a slot. When it is full, new ones are dropped.
+         */
+        private int queueCapacity = 256;
+
+        public TwinPriority getPriority() {
+            return priority;
+        }
+
+        public void setPriority(TwinPriority priority) {
+            this.priority = priority;
+        }
+
+        public int getMaxConcurrency() {
+            return maxConcurrency;
+        }
+
+        public void setMaxConcurrency(int maxConcurrency) {
+            this.maxConcurrency = maxConcurrency;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+    }
+}
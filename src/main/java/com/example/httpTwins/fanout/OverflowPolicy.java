@@ -0,0 +1,42 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.fanout;
+
+/**
+ * What a {@link FanoutExecutor} does with a twin when its queue is full.
+ */
+public enum OverflowPolicy {
+
+    /**
+     * Discard the twin that was just submitted.
+     */
+    DROP_NEWEST,
+
+    /**
+     * Discard the oldest queued twin and enqueue the new one.
+     */
+    DROP_OLDEST,
+
+    /**
+     * Run the twin on the submitting (request) thread.
+     */
+    CALLER_RUNS,
+
+    /**
+     * Wait up to the configured block timeout for queue space, then discard the twin.
+     */
+    BLOCK
+}
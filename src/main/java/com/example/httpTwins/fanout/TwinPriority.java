@@ -0,0 +1,39 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.fanout;
+
+/**
+ * How important a destination's twins are when the fan-out executor is short of threads.
+ */
+public enum TwinPriority {
+
+    /**
+     * Twins that must not be lost, such as audit. They run on the executor's reserved threads
+     * first, and on the shared ones only when those are busy.
+     */
+    CRITICAL,
+
+    /**
+     * Twins that are dropped only when their lane or the executor's queue is full.
+     */
+    NORMAL,
+
+    /**
+     * Twins that are shed first, as soon as the executor's queue passes its shed threshold, such
+     * as analytics.
+     */
+    BEST_EFFORT
+}
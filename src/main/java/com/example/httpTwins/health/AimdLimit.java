@@ -0,0 +1,89 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.health;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A concurrency limit that adapts to the destination's latency, additive-increase /
+ * multiplicative-decrease style.
+ * <p>
+ * Every fast, successful call raises the limit by {@code 1 / limit}, so about one per round trip,
+ * but only while the destination is kept at least half busy; an idle destination does not earn
+ * headroom it has never proven. Every failed or slow call multiplies the limit by the backoff
+ * ratio. The limit is a {@code double} kept in an {@link AtomicLong} and updated with CAS.
+ */
+final class AimdLimit {
+
+    private final double minLimit;
+    private final double maxLimit;
+    private final double backoffRatio;
+    private final AtomicLong limitBits;
+    private final AtomicInteger inFlight = new AtomicInteger();
+
+    AimdLimit(int initialLimit, int minLimit, int maxLimit, double backoffRatio) {
+        this.minLimit = Math.max(1, minLimit);
+        this.maxLimit = Math.max(this.minLimit, maxLimit);
+        this.backoffRatio = backoffRatio;
+        this.limitBits = new AtomicLong(Double.doubleToLongBits(Math.min(this.maxLimit, Math.max(this.minLimit, initialLimit))));
+    }
+
+    boolean tryAcquire() {
+        if (inFlight.incrementAndGet() > getLimit()) {
+            inFlight.decrementAndGet();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Releases the permit and adjusts the limit to the call's outcome.
+     */
+    void release(boolean congested) {
+        int running = inFlight.getAndDecrement();
+        while (true) {
+            long bits = limitBits.get();
+            double limit = Double.longBitsToDouble(bits);
+            double next;
+            if (congested) {
+                next = Math.max(minLimit, limit * backoffRatio);
+            } else if (running * 2 >= limit) {
+                next = Math.min(maxLimit, limit + 1 / limit);
+            } else {
+                return;
+            }
+            if (next == limit || limitBits.compareAndSet(bits, Double.doubleToLongBits(next))) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Releases the permit of a call that never reached the destination, leaving the limit as is.
+     */
+    void releaseUnmeasured() {
+        inFlight.decrementAndGet();
+    }
+
+    int getLimit() {
+        return (int) Double.longBitsToDouble(limitBits.get());
+    }
+
+    int getInFlight() {
+        return inFlight.get();
+    }
+}
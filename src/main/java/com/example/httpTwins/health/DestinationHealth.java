@@ -0,0 +1,216 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.health;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Health of one remote destination: a sliding window of call outcomes, a circuit breaker driven by
+ * it, and an {@link AimdLimit adaptive concurrency limit}.
+ * <p>
+ * The circuit starts closed. When the failure or slow-call rate over the window crosses its
+ * threshold it opens, and every call is rejected until the open duration has passed. Then it turns
+ * half-open and lets a few probe calls through: if all of them succeed quickly it closes again,
+ * otherwise it reopens.
+ * <p>
+ * Checking the circuit is a volatile read, so rejecting twins for a dead destination costs next to
+ * nothing. Every successful {@link #tryAcquire()} must be paired with exactly one
+ * {@link #onComplete(long, boolean)} or {@link #onIgnored()}.
+ */
+public final class DestinationHealth {
+
+    private static final Logger logger = LoggerFactory.getLogger(DestinationHealth.class);
+
+    /**
+     * Health of destinations that are not tracked: always closed, never limited.
+     */
+    public static final DestinationHealth UNMONITORED = new DestinationHealth(null, null);
+
+    public enum State {
+        CLOSED, OPEN, HALF_OPEN
+    }
+
+    private final String remoteUrl;
+    private final boolean monitored;
+    private final SlidingWindow window;
+    private final AimdLimit limit;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final double slowCallRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final int halfOpenProbes;
+    private volatile State state = State.CLOSED;
+    private volatile long openUntilNanos;
+    private int probesIssued;
+    private int probesSucceeded;
+
+    DestinationHealth(String remoteUrl, HealthProperties properties) {
+        this.remoteUrl = remoteUrl;
+        this.monitored = properties != null;
+        if (!monitored) {
+            this.window = null;
+            this.limit = null;
+            this.minimumCalls = 0;
+            this.failureRateThreshold = 0;
+            this.slowCallRateThreshold = 0;
+            this.slowCallNanos = 0;
+            this.openNanos = 0;
+            this.halfOpenProbes = 0;
+            return;
+        }
+        this.window = new SlidingWindow(properties.getWindow().toNanos(), properties.getWindowBuckets());
+        this.limit = new AimdLimit(properties.getInitialLimit(), properties.getMinLimit(),
+                properties.getMaxLimit(), properties.getBackoffRatio());
+        this.minimumCalls = Math.max(1, properties.getMinimumCalls());
+        this.failureRateThreshold = properties.getFailureRateThreshold();
+        this.slowCallRateThreshold = properties.getSlowCallRateThreshold();
+        this.slowCallNanos = properties.getSlowCallThreshold().toNanos();
+        this.openNanos = properties.getOpenDuration().toNanos();
+        this.halfOpenProbes = Math.max(1, properties.getHalfOpenProbes());
+    }
+
+    /**
+     * Whether the circuit is open and still within its open duration, so a call would be rejected.
+     * Cheap enough to check before doing any work for a twin.
+     */
+    public boolean isOpen() {
+        return state == State.OPEN && openUntilNanos - System.nanoTime() > 0;
+    }
+
+    /**
+     * Admits a call if the circuit allows it and the concurrency limit has room.
+     */
+    public boolean tryAcquire() {
+        if (!monitored) {
+            return true;
+        }
+        if (state == State.OPEN && openUntilNanos - System.nanoTime() > 0) {
+            return false;
+        }
+        if (!limit.tryAcquire()) {
+            return false;
+        }
+        if (state != State.CLOSED && !tryProbe()) {
+            limit.releaseUnmeasured();
+            return false;
+        }
+        return true;
+    }
+
+    /**
+     * Records the outcome of an admitted call.
+     *
+     * @param latencyNanos How long the call took.
+     * @param failed       Whether it threw or got a retryable status.
+     */
+    public void onComplete(long latencyNanos, boolean failed) {
+        if (!monitored) {
+            return;
+        }
+        boolean slow = latencyNanos >= slowCallNanos;
+        limit.release(failed || slow);
+        long now = System.nanoTime();
+        if (state == State.CLOSED) {
+            window.record(now, failed, slow);
+            SlidingWindow.Snapshot snapshot = window.snapshot(now);
+            if (snapshot.calls() >= minimumCalls && (snapshot.failureRate() >= failureRateThreshold
+                    || snapshot.slowCallRate() >= slowCallRateThreshold)) {
+                open(now, snapshot);
+            }
+        } else {
+            onProbeResult(now, failed || slow);
+        }
+    }
+
+    /**
+     * Returns the permit of an admitted call that was never sent.
+     */
+    public void onIgnored() {
+        if (!monitored) {
+            return;
+        }
+        limit.releaseUnmeasured();
+        if (state == State.HALF_OPEN) {
+            synchronized (this) {
+                if (state == State.HALF_OPEN && probesIssued > 0) {
+                    probesIssued--;
+                }
+            }
+        }
+    }
+
+    public State getState() {
+        return state;
+    }
+
+    /**
+     * Returns the current adaptive concurrency limit, or {@link Integer#MAX_VALUE} if the destination is not tracked.
+     */
+    public int getLimit() {
+        return monitored ? limit.getLimit() : Integer.MAX_VALUE;
+    }
+
+    public int getInFlight() {
+        return monitored ? limit.getInFlight() : 0;
+    }
+
+    private synchronized boolean tryProbe() {
+        if (state == State.OPEN) {
+            if (openUntilNanos - System.nanoTime() > 0) {
+                return false;
+            }
+            state = State.HALF_OPEN;
+            probesIssued = 0;
+            probesSucceeded = 0;
+            logger.info("HttpTwins: Circuit for remote destination '{}' is half-open, sending probes.", remoteUrl);
+        }
+        if (state == State.HALF_OPEN) {
+            if (probesIssued >= halfOpenProbes) {
+                return false;
+            }
+            probesIssued++;
+        }
+        return true;
+    }
+
+    private synchronized void onProbeResult(long now, boolean failed) {
+        if (state != State.HALF_OPEN) {
+            // A late result of a call admitted before the circuit opened
+            return;
+        }
+        if (failed) {
+            openUntilNanos = now + openNanos;
+            state = State.OPEN;
+            logger.warn("HttpTwins WARNING: Probe to remote destination '{}' failed, circuit reopened.", remoteUrl);
+        } else if (++probesSucceeded >= halfOpenProbes) {
+            window.reset();
+            state = State.CLOSED;
+            logger.info("HttpTwins: Circuit for remote destination '{}' closed.", remoteUrl);
+        }
+    }
+
+    private synchronized void open(long now, SlidingWindow.Snapshot snapshot) {
+        if (state != State.CLOSED) {
+            return;
+        }
+        openUntilNanos = now + openNanos;
+        state = State.OPEN;
+        logger.warn("HttpTwins WARNING: Circuit for remote destination '{}' opened after {} calls ({}% failed, {}% slow).",
+                remoteUrl, snapshot.calls(), Math.round(snapshot.failureRate() * 100), Math.round(snapshot.slowCallRate() * 100));
+    }
+}
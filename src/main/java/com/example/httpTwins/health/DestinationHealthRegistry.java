@@ -0,0 +1,47 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.health;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Holds one {@link DestinationHealth} per remote URL, shared by every endpoint and processor that
+ * sends to it.
+ */
+public class DestinationHealthRegistry {
+
+    private final HealthProperties properties;
+    private final Map<String, DestinationHealth> destinations = new ConcurrentHashMap<>();
+
+    public DestinationHealthRegistry(HealthProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the destination's health, or {@link DestinationHealth#UNMONITORED} if tracking is disabled.
+     */
+    public DestinationHealth get(String remoteUrl) {
+        if (!properties.isEnabled()) {
+            return DestinationHealth.UNMONITORED;
+        }
+        DestinationHealth health = destinations.get(remoteUrl);
+        if (health == null) {
+            health = destinations.computeIfAbsent(remoteUrl, url -> new DestinationHealth(url, properties));
+        }
+        return health;
+    }
+}
@@ -0,0 +1,193 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.health;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the per-destination health tracking, bound from {@code http-twins.remote.health.*}.
+ * A remote call fails if it throws or answers with a retryable status (5xx or 429).
+ */
+@ConfigurationProperties(prefix = "http-twins.remote.health")
+public class HealthProperties {
+
+    /**
+     * Track each remote destination and stop sending to failing ones. When disabled, only the fixed
+     * {@code max-in-flight-per-destination} cap applies.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Length of the sliding window the failure and slow-call rates are computed over.
+     */
+    private Duration window = Duration.ofSeconds(10);
+
+    /**
+     * Number of buckets the window is split into; older buckets expire one at a time.
+     */
+    private int windowBuckets = 10;
+
+    /**
+     * Calls needed in the window before the rates are trusted.
+     */
+    private int minimumCalls = 20;
+
+    /**
+     * Share of failed calls in the window that opens the circuit.
+     */
+    private double failureRateThreshold = 0.5;
+
+    /**
+     * A call taking at least this long counts as slow, and shrinks the concurrency limit.
+     */
+    private Duration slowCallThreshold = Duration.ofSeconds(2);
+
+    /**
+     * Share of slow calls in the window that opens the circuit.
+     */
+    private double slowCallRateThreshold = 1.0;
+
+    /**
+     * How long an open circuit rejects twins before letting probes through.
+     */
+    private Duration openDuration = Duration.ofSeconds(5);
+
+    /**
+     * Probe calls let through while half-open. All must succeed to close the circuit.
+     */
+    private int halfOpenProbes = 3;
+
+    /**
+     * Concurrency limit a destination starts with. It grows by about one per round trip while calls are
+     * fast, and is cut by {@link #backoffRatio} on every failed or slow call.
+     */
+    private int initialLimit = 20;
+
+    private int minLimit = 1;
+
+    /**
+     * Upper bound of the adaptive limit; {@code max-in-flight-per-destination} caps it as well.
+     */
+    private int maxLimit = 256;
+
+    private double backoffRatio = 0.9;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public Duration getWindow() {
+        return window;
+    }
+
+    public void setWindow(Duration window) {
+        this.window = window;
+    }
+
+    public int getWindowBuckets() {
+        return windowBuckets;
+    }
+
+    public void setWindowBuckets(int windowBuckets) {
+        this.windowBuckets = windowBuckets;
+    }
+
+    public int getMinimumCalls() {
+        return minimumCalls;
+    }
+
+    public void setMinimumCalls(int minimumCalls) {
+        this.minimumCalls = minimumCalls;
+    }
+
+    public double getFailureRateThreshold() {
+        return failureRateThreshold;
+    }
+
+    public void setFailureRateThreshold(double failureRateThreshold) {
+        this.failureRateThreshold = failureRateThreshold;
+    }
+
+    public Duration getSlowCallThreshold() {
+        return slowCallThreshold;
+    }
+
+    public void setSlowCallThreshold(Duration slowCallThreshold) {
+        this.slowCallThreshold = slowCallThreshold;
+    }
+
+    public double getSlowCallRateThreshold() {
+        return slowCallRateThreshold;
+    }
+
+    public void setSlowCallRateThreshold(double slowCallRateThreshold) {
+        this.slowCallRateThreshold = slowCallRateThreshold;
+    }
+
+    public Duration getOpenDuration() {
+        return openDuration;
+    }
+
+    public void setOpenDuration(Duration openDuration) {
+        this.openDuration = openDuration;
+    }
+
+    public int getHalfOpenProbes() {
+        return halfOpenProbes;
+    }
+
+    public void setHalfOpenProbes(int halfOpenProbes) {
+        this.halfOpenProbes = halfOpenProbes;
+    }
+
+    public int getInitialLimit() {
+        return initialLimit;
+    }
+
+    public void setInitialLimit(int initialLimit) {
+        this.initialLimit = initialLimit;
+    }
+
+    public int getMinLimit() {
+        return minLimit;
+    }
+
+    public void setMinLimit(int minLimit) {
+        this.minLimit = minLimit;
+    }
+
+    public int getMaxLimit() {
+        return maxLimit;
+    }
+
+    public void setMaxLimit(int maxLimit) {
+        this.maxLimit = maxLimit;
+    }
+
+    public double getBackoffRatio() {
+        return backoffRatio;
+    }
+
+    public void setBackoffRatio(double backoffRatio) {
+        this.backoffRatio = backoffRatio;
+    }
+}
@@ -0,0 +1,102 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.health;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Counts calls, failures and slow calls over a sliding time window, split into buckets that
+ * expire one at a time.
+ * <p>
+ * Recording is lock-free. A bucket is recycled by the first thread to see that it has expired, so
+ * a call racing with the recycling may be counted in the wrong bucket or lost; that is harmless
+ * for rates over many calls.
+ */
+final class SlidingWindow {
+
+    private static final int EPOCH = 0;
+    private static final int CALLS = 1;
+    private static final int FAILURES = 2;
+    private static final int SLOW = 3;
+    private static final int STRIDE = 4;
+
+    private final AtomicLongArray buckets;
+    private final int bucketCount;
+    private final long bucketNanos;
+
+    SlidingWindow(long windowNanos, int bucketCount) {
+        this.bucketCount = Math.max(1, bucketCount);
+        this.bucketNanos = Math.max(1, windowNanos / this.bucketCount);
+        this.buckets = new AtomicLongArray(this.bucketCount * STRIDE);
+        for (int i = 0; i < this.bucketCount; i++) {
+            buckets.set(i * STRIDE + EPOCH, Long.MIN_VALUE);
+        }
+    }
+
+    void record(long now, boolean failed, boolean slow) {
+        long epoch = now / bucketNanos;
+        int base = (int) Math.floorMod(epoch, (long) bucketCount) * STRIDE;
+        long current = buckets.get(base + EPOCH);
+        if (current != epoch && buckets.compareAndSet(base + EPOCH, current, epoch)) {
+            buckets.set(base + CALLS, 0);
+            buckets.set(base + FAILURES, 0);
+            buckets.set(base + SLOW, 0);
+        }
+        buckets.incrementAndGet(base + CALLS);
+        if (failed) {
+            buckets.incrementAndGet(base + FAILURES);
+        }
+        if (slow) {
+            buckets.incrementAndGet(base + SLOW);
+        }
+    }
+
+    /**
+     * Sums the buckets still inside the window.
+     */
+    Snapshot snapshot(long now) {
+        long epoch = now / bucketNanos;
+        long calls = 0;
+        long failures = 0;
+        long slow = 0;
+        for (int base = 0; base < buckets.length(); base += STRIDE) {
+            long age = epoch - buckets.get(base + EPOCH);
+            if (age >= 0 && age < bucketCount) {
+                calls += buckets.get(base + CALLS);
+                failures += buckets.get(base + FAILURES);
+                slow += buckets.get(base + SLOW);
+            }
+        }
+        return new Snapshot(calls, failures, slow);
+    }
+
+    void reset() {
+        for (int base = 0; base < buckets.length(); base += STRIDE) {
+            buckets.set(base + EPOCH, Long.MIN_VALUE);
+        }
+    }
+
+    record Snapshot(long calls, long failures, long slow) {
+
+        double failureRate() {
+            return calls == 0 ? 0 : (double) failures / calls;
+        }
+
+        double slowCallRate() {
+            return calls == 0 ? 0 : (double) slow / calls;
+        }
+    }
+}
@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.lifecycle;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the startup warm-up and the shutdown drain of the twins, bound from
+ * {@code http-twins.lifecycle.*}.
+ * <p>
+ * Example:
+ * <pre>
+ * http-twins.lifecycle.drain-timeout=10s
+ * http-twins.lifecycle.warm-up.enabled=true
+ * http-twins.lifecycle.warm-up.connections=2
+ * http-twins.lifecycle.warm-up.method=OPTIONS
+ * </pre>
+ */
+@ConfigurationProperties(prefix = "http-twins.lifecycle")
+public class LifecycleProperties {
+
+    /**
+     * How long to wait on shutdown for queued and in-flight twins to finish. Twins still queued
+     * after that are discarded; remote ones are spilled when the spill queue is enabled.
+     */
+    private Duration drainTimeout = Duration.ofSeconds(10);
+
+    /**
+     * Warm-up of the twinned endpoints before the application takes traffic.
+     */
+    private WarmUp warmUp = new WarmUp();
+
+    public Duration getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    public void setDrainTimeout(Duration drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    public WarmUp getWarmUp() {
+        return warmUp;
+    }
+
+    public void setWarmUp(WarmUp warmUp) {
+        this.warmUp = warmUp;
+    }
+
+    public static class WarmUp {
+
+        /**
+         * Build the routing plans of all {@code @HttpTwins} endpoints, start the fan-out threads and
+         * open connections to the remote destinations on startup. Off by default, since it calls
+         * the remote destinations before the application takes any traffic.
+         */
+        private boolean enabled;
+
+        /**
+         * Connections opened to each remote HTTP destination.
+         */
+        private int connections = 2;
+
+        /**
+         * Method of the requests that open the connections. Their responses are discarded.
+         */
+        private String method = "OPTIONS";
+
+        /**
+         * How long startup waits for the remote destinations to answer. Destinations that do not are
+         * connected on their first twin instead.
+         */
+        private Duration timeout = Duration.ofSeconds(5);
+
+        public boolean isEnabled() {
+            return enabled;
+        }
+
+        public void setEnabled(boolean enabled) {
+            this.enabled = enabled;
+        }
+
+        public int getConnections() {
+            return connections;
+        }
+
+        public void setConnections(int connections) {
+            this.connections = connections;
+        }
+
+        public String getMethod() {
+            return method;
+        }
+
+        public void setMethod(String method) {
+            this.method = method;
+        }
+
+        public Duration getTimeout() {
+            return timeout;
+        }
+
+        public void setTimeout(Duration timeout) {
+            this.timeout = timeout;
+        }
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.lifecycle;
+
+/**
+ * A component that holds twins back on their way to a destination, such as a coalescing window, a
+ * batch, or the ring buffer in front of a writer thread. {@link TwinLifecycle} flushes these stage
+ * by stage when draining, so nothing held in them is lost on shutdown.
+ */
+public interface TwinFlushable {
+
+    /**
+     * Where a component sits on the twins' way. Stages are flushed in this order, each once the ones
+     * before it are empty, since twins only ever move downstream.
+     */
+    enum Stage {
+
+        /**
+         * Ahead of the fan-out executors, such as coalescing windows.
+         */
+        BEFORE_FANOUT,
+
+        /**
+         * Behind the fan-out executors, such as batches, broker accumulators and writer ring buffers.
+         */
+        AFTER_FANOUT
+    }
+
+    Stage getFlushStage();
+
+    /**
+     * Sends on everything held now without waiting for it to arrive.
+     */
+    void flush();
+
+    /**
+     * Whether everything held has been sent on, or given up on.
+     */
+    boolean isFlushed();
+}
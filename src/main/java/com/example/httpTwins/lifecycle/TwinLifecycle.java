@@ -0,0 +1,243 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.lifecycle;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.aspect.TwinRoutingPlan;
+import com.example.httpTwins.aspect.TwinRoutingPlanCache;
+import com.example.httpTwins.fanout.FanoutExecutorRegistry;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationContext;
+import org.springframework.context.SmartLifecycle;
+import org.springframework.core.MethodIntrospector;
+import org.springframework.stereotype.Controller;
+import org.springframework.util.ClassUtils;
+
+import java.lang.reflect.Method;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+
+/**
+ * Warms the twins up before the application takes traffic and drains them after it has stopped.
+ * <p>
+ * It starts before the web server and stops after it. On start it builds the routing plan of every
+ * {@code @HttpTwins} endpoint, which resolves the destination beans, starts the fan-out threads and
+ * opens connections to the remote destinations, so the first requests after a deploy do not pay
+ * for any of it. On stop it turns away twins from late requests and drains the rest stage by stage,
+ * all within the drain timeout: it closes the coalescing windows, waits for the fan-out executors,
+ * then flushes the {@link TwinFlushable} stages behind them, such as batches, broker accumulators
+ * and the audit and recording buffers, and waits for those and the remote calls to finish. Twins
+ * still queued when the timeout runs out are discarded through their drop callbacks, which spill
+ * the remote twins their processor can replay. How many twins were dropped is logged.
+ */
+public class TwinLifecycle implements SmartLifecycle {
+
+    /**
+     * Below the web server's graceful shutdown and start/stop phases: started before it, stopped after it.
+     */
+    public static final int PHASE = SmartLifecycle.DEFAULT_PHASE - 4096;
+
+    private static final Logger logger = LoggerFactory.getLogger(TwinLifecycle.class);
+    private static final long DRAIN_POLL_MILLIS = 20;
+
+    private final LifecycleProperties properties;
+    private final ApplicationContext applicationContext;
+    private final TwinRoutingPlanCache routingPlanCache;
+    private final FanoutExecutorRegistry executorRegistry;
+    private final RemoteHttpClientPool clientPool;
+    private volatile boolean running;
+    private volatile long shutdownDroppedCount;
+
+    public TwinLifecycle(LifecycleProperties properties, ApplicationContext applicationContext,
+                         TwinRoutingPlanCache routingPlanCache, FanoutExecutorRegistry executorRegistry,
+                         RemoteHttpClientPool clientPool) {
+        this.properties = properties;
+        this.applicationContext = applicationContext;
+        this.routingPlanCache = routingPlanCache;
+        this.executorRegistry = executorRegistry;
+        this.clientPool = clientPool;
+    }
+
+    @Override
+    public void start() {
+        if (properties.getWarmUp().isEnabled()) {
+            warmUp();
+        }
+        running = true;
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        drain();
+    }
+
+    @Override
+    public boolean isRunning() {
+        return running;
+    }
+
+    @Override
+    public int getPhase() {
+        return PHASE;
+    }
+
+    /**
+     * Returns the number of twins dropped while shutting down: turned away, or discarded when the
+     * drain timeout ran out.
+     */
+    public long getShutdownDroppedCount() {
+        return shutdownDroppedCount;
+    }
+
+    private void warmUp() {
+        long start = System.nanoTime();
+        Map<Method, HttpTwins> endpoints = twinnedEndpoints();
+        Set<String> remoteUrls = new LinkedHashSet<>();
+        for (Map.Entry<Method, HttpTwins> endpoint : endpoints.entrySet()) {
+            TwinRoutingPlan plan = routingPlanCache.get(endpoint.getKey(), endpoint.getValue());
+            if (!plan.isActive()) {
+                continue;
+            }
+            plan.getExecutor().prestart();
+            for (TwinRoutingPlan.RemoteDestination destination : plan.getRemoteDestinations()) {
+                remoteUrls.add(destination.url());
+            }
+            if (plan.getShadow() != null) {
+                remoteUrls.add(plan.getShadow().url());
+            }
+        }
+
+        // Only HTTP destinations have connections to open; broker topics and the like connect their own way
+        LifecycleProperties.WarmUp warmUp = properties.getWarmUp();
+        AtomicInteger warmed = new AtomicInteger();
+        CompletableFuture<?>[] calls = remoteUrls.stream()
+                .filter(TwinLifecycle::isHttp)
+                .map(url -> clientPool.warmUp(url, warmUp.getConnections(), warmUp.getMethod()).handle((ignored, failure) -> {
+                    if (failure == null) {
+                        warmed.incrementAndGet();
+                    } else {
+                        logger.warn("HttpTwins WARNING: Could not warm up remote destination '{}'. Reason: {}", url, failure.getMessage());
+                    }
+                    return null;
+                }))
+                .toArray(CompletableFuture<?>[]::new);
+        try {
+            CompletableFuture.allOf(calls).get(warmUp.getTimeout().toMillis(), TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException | TimeoutException e) {
+            logger.warn("HttpTwins WARNING: Remote destinations not warmed up within {}, they connect on their first twin.", warmUp.getTimeout());
+        }
+        logger.info("HttpTwins: Warmed up {} endpoints and {} of {} remote destinations in {} ms.", endpoints.size(),
+                warmed.get(), calls.length, TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+    }
+
+    private void drain() {
+        long start = System.nanoTime();
+        Duration timeout = properties.getDrainTimeout();
+        long deadline = start + timeout.toNanos();
+        long droppedBefore = executorRegistry.getDroppedCount();
+        executorRegistry.stopAccepting();
+
+        // Twins only move downstream, so each stage is flushed once everything ahead of it is empty
+        List<TwinFlushable> beforeFanout = flushables(TwinFlushable.Stage.BEFORE_FANOUT);
+        List<TwinFlushable> afterFanout = flushables(TwinFlushable.Stage.AFTER_FANOUT);
+        beforeFanout.forEach(TwinFlushable::flush);
+        boolean drained = awaitUntil(deadline, () -> isFlushed(beforeFanout) && executorRegistry.isIdle());
+        int discarded = drained ? 0 : executorRegistry.shutdownNow();
+
+        // Even past the deadline, send on what the later stages hold rather than leave it to their shutdown
+        afterFanout.forEach(TwinFlushable::flush);
+        drained &= awaitUntil(deadline, () -> isFlushed(afterFanout) && clientPool.getInFlight() == 0);
+
+        shutdownDroppedCount = executorRegistry.getDroppedCount() - droppedBefore;
+        long elapsedMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (drained) {
+            logger.info("HttpTwins: Drained twins in {} ms, {} dropped on shutdown.", elapsedMillis, shutdownDroppedCount);
+        } else {
+            logger.warn("HttpTwins WARNING: Twins not drained within {}: {} queued twins discarded, {} dropped on shutdown, {} remote calls cut off.",
+                    timeout, discarded, shutdownDroppedCount, clientPool.getInFlight());
+        }
+    }
+
+    /**
+     * Returns the beans holding twins back at the given stage.
+     */
+    private List<TwinFlushable> flushables(TwinFlushable.Stage stage) {
+        return applicationContext.getBeanProvider(TwinFlushable.class).orderedStream()
+                .filter(flushable -> flushable.getFlushStage() == stage)
+                .toList();
+    }
+
+    private static boolean isFlushed(List<TwinFlushable> flushables) {
+        for (TwinFlushable flushable : flushables) {
+            if (!flushable.isFlushed()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Polls the condition until it holds or the deadline has passed.
+     *
+     * @return whether the condition held.
+     */
+    private static boolean awaitUntil(long deadline, BooleanSupplier condition) {
+        boolean met = condition.getAsBoolean();
+        try {
+            while (!met && System.nanoTime() < deadline) {
+                Thread.sleep(DRAIN_POLL_MILLIS);
+                met = condition.getAsBoolean();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        return met;
+    }
+
+    /**
+     * Finds the {@code @HttpTwins} handler methods of all controllers.
+     */
+    private Map<Method, HttpTwins> twinnedEndpoints() {
+        Map<Method, HttpTwins> endpoints = new LinkedHashMap<>();
+        for (String beanName : applicationContext.getBeanNamesForAnnotation(Controller.class)) {
+            Class<?> beanType = applicationContext.getType(beanName);
+            if (beanType != null) {
+                endpoints.putAll(MethodIntrospector.selectMethods(ClassUtils.getUserClass(beanType),
+                        (MethodIntrospector.MetadataLookup<HttpTwins>) method -> method.getAnnotation(HttpTwins.class)));
+            }
+        }
+        return endpoints;
+    }
+
+    private static boolean isHttp(String url) {
+        return url.regionMatches(true, 0, "http://", 0, 7) || url.regionMatches(true, 0, "https://", 0, 8);
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.limit;
+
+import com.example.httpTwins.cluster.ClusterBudget;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Admission control for one destination of one endpoint: an optional rate limit, an optional
+ * cap on concurrently running twins and an optional share of a cluster-wide budget. Every
+ * successful {@link #tryAcquire()} must be paired with exactly one {@link #release()}.
+ */
+public final class DestinationGuard {
+
+    public static final DestinationGuard UNLIMITED = new DestinationGuard(null, 0);
+
+    private final RateLimiter rateLimiter;
+    private final int maxConcurrency;
+    private final ClusterBudget clusterBudget;
+    private final AtomicInteger running = new AtomicInteger();
+
+    /**
+     * @param rateLimiter    The rate limit, or {@code null} for none.
+     * @param maxConcurrency The maximum number of twins running at once, or 0 for no cap.
+     */
+    public DestinationGuard(RateLimiter rateLimiter, int maxConcurrency) {
+        this(rateLimiter, maxConcurrency, null);
+    }
+
+    /**
+     * @param rateLimiter    The rate limit, or {@code null} for none.
+     * @param maxConcurrency The maximum number of twins running at once, or 0 for no cap.
+     * @param clusterBudget  This node's share of the destination's cluster-wide budget, or {@code null} for none.
+     */
+    public DestinationGuard(RateLimiter rateLimiter, int maxConcurrency, ClusterBudget clusterBudget) {
+        this.rateLimiter = rateLimiter;
+        this.maxConcurrency = maxConcurrency;
+        this.clusterBudget = clusterBudget;
+    }
+
+    public boolean tryAcquire() {
+        if (maxConcurrency > 0 && running.incrementAndGet() > maxConcurrency) {
+            running.decrementAndGet();
+            return false;
+        }
+        if (rateLimiter != null && !rateLimiter.tryAcquire()) {
+            release();
+            return false;
+        }
+        if (clusterBudget != null && !clusterBudget.tryAcquire()) {
+            release();
+            return false;
+        }
+        return true;
+    }
+
+    public void release() {
+        if (maxConcurrency > 0) {
+            running.decrementAndGet();
+        }
+    }
+
+    public int getRunning() {
+        return running.get();
+    }
+}
@@ -0,0 +1,62 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.limit;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A lock-free token bucket, implemented as the generic cell rate algorithm.
+ * <p>
+ * A single "theoretical arrival time" is pushed forward by one emission interval per permit with
+ * one CAS. Every thread draws on the same budget, so the admitted rate holds however the requests
+ * are spread over the threads. The bucket allows bursts of up to one second worth of permits.
+ */
+public final class RateLimiter {
+
+    private final AtomicLong arrival;
+    private final long intervalNanos;
+    private final long burstNanos;
+
+    /**
+     * @param permitsPerSecond The sustained rate; must be positive.
+     */
+    public RateLimiter(double permitsPerSecond) {
+        if (permitsPerSecond <= 0) {
+            throw new IllegalArgumentException("permitsPerSecond must be positive");
+        }
+        this.intervalNanos = Math.max(1, (long) (TimeUnit.SECONDS.toNanos(1) / permitsPerSecond));
+        this.burstNanos = Math.max(1, (long) Math.ceil(permitsPerSecond)) * intervalNanos;
+        this.arrival = new AtomicLong(System.nanoTime());
+    }
+
+    /**
+     * Takes a permit if one is available. Never blocks.
+     */
+    public boolean tryAcquire() {
+        while (true) {
+            long current = arrival.get();
+            long now = System.nanoTime();
+            long next = Math.max(current, now) + intervalNanos;
+            if (next - now > burstNanos) {
+                return false;
+            }
+            if (arrival.compareAndSet(current, next)) {
+                return true;
+            }
+        }
+    }
+}
@@ -0,0 +1,96 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.limit;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Decides whether a request is mirrored at all. Runs before the request is snapshotted, so
+ * requests that are not sampled cost one comparison (and at most one header lookup), and nothing
+ * is allocated.
+ * <p>
+ * With a header name the decision is deterministic: every request carrying the same header value
+ * (say, a trace id) gets the same answer, on every node. Requests without the header, or samplers
+ * without a header name, are sampled at random.
+ */
+public final class Sampler {
+
+    public static final Sampler ALWAYS = new Sampler(1.0, null);
+
+    private static final double HASH_RANGE = 4294967296.0; // 2^32
+
+    private final double rate;
+    private final long threshold;
+    private final String headerName;
+
+    /**
+     * @param rate       The fraction of requests to mirror, between 0 and 1.
+     * @param headerName The header to hash for deterministic sampling, or {@code null} for random sampling.
+     */
+    public Sampler(double rate, String headerName) {
+        this.rate = Math.max(0.0, Math.min(1.0, rate));
+        this.threshold = (long) (this.rate * HASH_RANGE);
+        this.headerName = headerName == null || headerName.isBlank() ? null : headerName;
+    }
+
+    /**
+     * @param headers Looks up the request's headers by name.
+     */
+    public boolean sample(Function<String, String> headers) {
+        return sample(headers, Function::apply);
+    }
+
+    /**
+     * Samples the request without allocating: pass a method reference that captures nothing, such
+     * as {@code TwinSource::getHeader}, rather than one bound to the request.
+     *
+     * @param request The request.
+     * @param headers Looks up one of the request's headers by name.
+     */
+    public <R> boolean sample(R request, BiFunction<? super R, String, String> headers) {
+        if (rate >= 1.0) {
+            return true;
+        }
+        if (rate <= 0.0) {
+            return false;
+        }
+        if (headerName != null) {
+            String value = headers.apply(request, headerName);
+            if (value != null) {
+                return (mix(value.hashCode()) & 0xFFFFFFFFL) < threshold;
+            }
+        }
+        return ThreadLocalRandom.current().nextDouble() < rate;
+    }
+
+    public double getRate() {
+        return rate;
+    }
+
+    /**
+     * Murmur3 finalizer, so that similar header values spread evenly over the hash range.
+     */
+    private static int mix(int h) {
+        h ^= h >>> 16;
+        h *= 0x85EBCA6B;
+        h ^= h >>> 13;
+        h *= 0xC2B2AE35;
+        h ^= h >>> 16;
+        return h;
+    }
+}
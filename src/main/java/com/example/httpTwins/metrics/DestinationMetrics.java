@@ -0,0 +1,80 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The meters of one destination of one {@code @HttpTwins} endpoint, looked up once when the
+ * routing plan is built. Recording only touches pre-registered meters, so it neither allocates nor
+ * boxes.
+ */
+public final class DestinationMetrics {
+
+    private final Timer queueWait;
+    private final Timer execution;
+    private final Counter succeeded;
+    private final Counter failed;
+    private final Counter dropped;
+    private final Counter unrouted;
+    private final Counter bytes;
+
+    DestinationMetrics(Timer queueWait, Timer execution, Counter succeeded, Counter failed, Counter dropped,
+                       Counter unrouted, Counter bytes) {
+        this.queueWait = queueWait;
+        this.execution = execution;
+        this.succeeded = succeeded;
+        this.failed = failed;
+        this.dropped = dropped;
+        this.unrouted = unrouted;
+        this.bytes = bytes;
+    }
+
+    /**
+     * Records how long a twin waited in the fan-out queue before it started.
+     */
+    public void started(long queueWaitNanos) {
+        queueWait.record(queueWaitNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void succeeded(long executionNanos, int bodyBytes) {
+        execution.record(executionNanos, TimeUnit.NANOSECONDS);
+        succeeded.increment();
+        bytes.increment(bodyBytes);
+    }
+
+    public void failed(long executionNanos) {
+        execution.record(executionNanos, TimeUnit.NANOSECONDS);
+        failed.increment();
+    }
+
+    /**
+     * Counts a twin that was never run: refused by a limit or an open circuit, or discarded by the executor.
+     */
+    public void dropped() {
+        dropped.increment();
+    }
+
+    /**
+     * Counts a request whose twin the destination's routing rule kept from it.
+     */
+    public void unrouted() {
+        unrouted.increment();
+    }
+}
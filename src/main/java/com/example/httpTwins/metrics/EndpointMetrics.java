@@ -0,0 +1,52 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.metrics;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Timer;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The meters of one {@code @HttpTwins} endpoint, looked up once when its routing plan is built.
+ */
+public final class EndpointMetrics {
+
+    private final Timer capture;
+    private final Counter sampled;
+    private final Counter unsampled;
+
+    EndpointMetrics(Timer capture, Counter sampled, Counter unsampled) {
+        this.capture = capture;
+        this.sampled = sampled;
+        this.unsampled = unsampled;
+    }
+
+    /**
+     * Records the time the aspect spent on the request thread: sampling, the snapshot and the dispatch.
+     */
+    public void captured(long nanos) {
+        capture.record(nanos, TimeUnit.NANOSECONDS);
+    }
+
+    public void sampled() {
+        sampled.increment();
+    }
+
+    public void unsampled() {
+        unsampled.increment();
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.metrics;
+
+import com.example.httpTwins.cluster.ClusterBudget;
+import com.example.httpTwins.coalesce.TwinCoalescer;
+import com.example.httpTwins.fanout.FanoutExecutor;
+import com.example.httpTwins.fanout.FanoutLane;
+import com.example.httpTwins.shadow.ShadowStats;
+import com.example.httpTwins.spill.TwinSpillQueue;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.stereotype.Component;
+
+import java.util.Locale;
+import java.util.function.ToDoubleFunction;
+
+/**
+ * Creates the HttpTwins meters, published through Actuator's {@code /actuator/metrics}:
+ * <ul>
+ *     <li>{@code http.twins.capture}: time added to the request thread, per endpoint</li>
+ *     <li>{@code http.twins.requests}: requests seen, per endpoint and {@code sampled} true or false</li>
+ *     <li>{@code http.twins.queue.wait}: time twins waited for an executor thread</li>
+ *     <li>{@code http.twins.execution}: twin latency, as a percentile histogram</li>
+ *     <li>{@code http.twins.twins}: twins per {@code outcome}, one of success, failure, dropped or
+ *     unrouted (kept from the destination by its routing rule)</li>
+ *     <li>{@code http.twins.bytes}: request body bytes mirrored successfully</li>
+ *     <li>{@code http.twins.queue.depth}, {@code http.twins.executor.active},
+ *     {@code http.twins.executor.dropped} and {@code http.twins.executor.shed}: per fan-out executor</li>
+ *     <li>{@code http.twins.lane.queue.depth}, {@code http.twins.lane.active} and
+ *     {@code http.twins.lane.dropped}: per fan-out lane, tagged by {@code executor}, {@code lane} and {@code priority}</li>
+ *     <li>{@code http.twins.coalesced}: requests absorbed into an identical request's twin, and
+ *     {@code http.twins.coalesce.windows}: coalescing windows open; per coalescing endpoint</li>
+ *     <li>{@code http.twins.cluster.share}: twins per second this node may send, {@code http.twins.cluster.nodes}:
+ *     nodes sharing the budget, and {@code http.twins.cluster.denied}: twins over this node's share; per
+ *     destination with a cluster-wide budget</li>
+ *     <li>{@code http.twins.shadow.comparisons}: shadowed responses per {@code outcome}, one of match,
+ *     mismatch, failed or skipped, and {@code http.twins.shadow.latency.delta}: the candidate's
+ *     latency minus the primary's, per {@code aggregate}, one of mean, p50 or p99; per shadowed endpoint</li>
+ *     <li>{@code http.twins.spill.twins}: twins per {@code outcome}, one of spilled, replayed or dropped
+ *     (the log was full or failed), and {@code http.twins.spill.pending}: spilled twins not yet delivered</li>
+ * </ul>
+ * Twin meters are tagged by {@code endpoint} and {@code destination}.
+ */
+@Component
+public class TwinMetrics {
+
+    private final MeterRegistry registry;
+
+    public TwinMetrics(MeterRegistry registry) {
+        this.registry = registry;
+    }
+
+    public EndpointMetrics forEndpoint(String endpoint) {
+        return new EndpointMetrics(
+                Timer.builder("http.twins.capture")
+                        .description("Time HttpTwins adds to the request thread")
+                        .tag("endpoint", endpoint)
+                        .register(registry),
+                requests(endpoint, "true"),
+                requests(endpoint, "false"));
+    }
+
+    public DestinationMetrics forDestination(String endpoint, String destination) {
+        return new DestinationMetrics(
+                Timer.builder("http.twins.queue.wait")
+                        .description("Time twins waited for a fan-out thread")
+                        .tags("endpoint", endpoint, "destination", destination)
+                        .register(registry),
+                Timer.builder("http.twins.execution")
+                        .description("Time from starting a twin until its destination is done with it")
+                        .tags("endpoint", endpoint, "destination", destination)
+                        .publishPercentileHistogram()
+                        .register(registry),
+                twins(endpoint, destination, "success"),
+                twins(endpoint, destination, "failure"),
+                twins(endpoint, destination, "dropped"),
+                twins(endpoint, destination, "unrouted"),
+                Counter.builder("http.twins.bytes")
+                        .description("Request body bytes mirrored successfully")
+                        .baseUnit("bytes")
+                        .tags("endpoint", endpoint, "destination", destination)
+                        .register(registry));
+    }
+
+    /**
+     * Registers the queue gauges of the executor. Registering the same executor again is a no-op.
+     */
+    public void bindExecutor(FanoutExecutor executor) {
+        Gauge.builder("http.twins.queue.depth", executor, FanoutExecutor::getQueueSize)
+                .description("Twins waiting for a fan-out thread")
+                .tag("executor", executor.getName())
+                .register(registry);
+        Gauge.builder("http.twins.executor.active", executor, FanoutExecutor::getActiveCount)
+                .description("Fan-out threads running a twin")
+                .tag("executor", executor.getName())
+                .register(registry);
+        FunctionCounter.builder("http.twins.executor.dropped", executor, FanoutExecutor::getDroppedCount)
+                .description("Twins discarded by the executor's overflow policy")
+                .tag("executor", executor.getName())
+                .register(registry);
+        FunctionCounter.builder("http.twins.executor.shed", executor, FanoutExecutor::getShedCount)
+                .description("Best-effort twins shed because the executor's queue was past its shed threshold")
+                .tag("executor", executor.getName())
+                .register(registry);
+    }
+
+    /**
+     * Registers the gauges of a destination's fan-out lane. Registering the same lane again is a no-op.
+     */
+    public void bindLane(FanoutLane lane) {
+        String priority = lane.getPriority().name().toLowerCase(Locale.ROOT);
+        Gauge.builder("http.twins.lane.queue.depth", lane, FanoutLane::getQueueSize)
+                .description("Twins waiting for a slot in their destination's lane")
+                .tags("executor", lane.getExecutorName(), "lane", lane.getName(), "priority", priority)
+                .register(registry);
+        Gauge.builder("http.twins.lane.active", lane, FanoutLane::getActiveCount)
+                .description("Twins of the lane handed to the executor")
+                .tags("executor", lane.getExecutorName(), "lane", lane.getName(), "priority", priority)
+                .register(registry);
+        FunctionCounter.builder("http.twins.lane.dropped", lane, FanoutLane::getDroppedCount)
+                .description("Twins dropped because their lane's queue was full or the executor discarded them")
+                .tags("executor", lane.getExecutorName(), "lane", lane.getName(), "priority", priority)
+                .register(registry);
+    }
+
+    /**
+     * Registers the meters of a coalescing endpoint. Registering the same endpoint again is a no-op.
+     */
+    public void bindCoalescer(TwinCoalescer coalescer) {
+        FunctionCounter.builder("http.twins.coalesced", coalescer, TwinCoalescer::getCoalescedCount)
+                .description("Requests absorbed into an identical request's twin")
+                .tag("endpoint", coalescer.getEndpoint())
+                .register(registry);
+        Gauge.builder("http.twins.coalesce.windows", coalescer, TwinCoalescer::getOpenWindows)
+                .description("Coalescing windows waiting to close")
+                .tag("endpoint", coalescer.getEndpoint())
+                .register(registry);
+    }
+
+    /**
+     * Registers the meters of this node's share of a cluster-wide budget. Registering the same destination again is a no-op.
+     */
+    public void bindClusterBudget(ClusterBudget budget) {
+        Gauge.builder("http.twins.cluster.share", budget, ClusterBudget::getLocalRate)
+                .description("Twins per second this node may send to the destination")
+                .tag("destination", budget.getDestination())
+                .register(registry);
+        Gauge.builder("http.twins.cluster.nodes", budget, ClusterBudget::getNodes)
+                .description("Nodes sharing the destination's cluster-wide budget")
+                .tag("destination", budget.getDestination())
+                .register(registry);
+        FunctionCounter.builder("http.twins.cluster.denied", budget, ClusterBudget::getDeniedCount)
+                .description("Twins dropped because this node's share of the cluster budget was used up")
+                .tag("destination", budget.getDestination())
+                .register(registry);
+    }
+
+    /**
+     * Registers the meters of a shadowed endpoint's comparison results. Registering the same endpoint again is a no-op.
+     */
+    public void bindShadow(ShadowStats stats) {
+        shadowComparisons(stats, "match", s -> s.getComparedCount() - s.getMismatchedCount());
+        shadowComparisons(stats, "mismatch", ShadowStats::getMismatchedCount);
+        shadowComparisons(stats, "failed", ShadowStats::getFailedCount);
+        shadowComparisons(stats, "skipped", ShadowStats::getSkippedCount);
+        shadowLatencyDelta(stats, "mean", s -> s.getMeanLatencyDeltaNanos() / 1e9);
+        shadowLatencyDelta(stats, "p50", s -> s.getLatencyDeltaPercentileNanos(0.5) / 1e9);
+        shadowLatencyDelta(stats, "p99", s -> s.getLatencyDeltaPercentileNanos(0.99) / 1e9);
+    }
+
+    /**
+     * Registers the meters of the spill log. Registering it again is a no-op.
+     */
+    public void bindSpillQueue(TwinSpillQueue spillQueue) {
+        spillTwins(spillQueue, "spilled", TwinSpillQueue::getSpilledCount);
+        spillTwins(spillQueue, "replayed", TwinSpillQueue::getReplayedCount);
+        spillTwins(spillQueue, "dropped", TwinSpillQueue::getDroppedCount);
+        Gauge.builder("http.twins.spill.pending", spillQueue, TwinSpillQueue::getPendingCount)
+                .description("Spilled twins not yet delivered")
+                .register(registry);
+    }
+
+    private void spillTwins(TwinSpillQueue spillQueue, String outcome, ToDoubleFunction<TwinSpillQueue> count) {
+        FunctionCounter.builder("http.twins.spill.twins", spillQueue, count)
+                .description("Twins written to, replayed from or dropped by the spill log, by outcome")
+                .tag("outcome", outcome)
+                .register(registry);
+    }
+
+    private void shadowComparisons(ShadowStats stats, String outcome, ToDoubleFunction<ShadowStats> count) {
+        FunctionCounter.builder("http.twins.shadow.comparisons", stats, count)
+                .description("Shadowed responses compared with the primary's, by outcome")
+                .tags("endpoint", stats.getEndpoint(), "outcome", outcome)
+                .register(registry);
+    }
+
+    private void shadowLatencyDelta(ShadowStats stats, String aggregate, ToDoubleFunction<ShadowStats> value) {
+        Gauge.builder("http.twins.shadow.latency.delta", stats, value)
+                .description("Candidate latency minus primary latency")
+                .baseUnit("seconds")
+                .tags("endpoint", stats.getEndpoint(), "aggregate", aggregate)
+                .register(registry);
+    }
+
+    private Counter requests(String endpoint, String sampled) {
+        return Counter.builder("http.twins.requests")
+                .description("Requests to @HttpTwins endpoints")
+                .tags("endpoint", endpoint, "sampled", sampled)
+                .register(registry);
+    }
+
+    private Counter twins(String endpoint, String destination, String outcome) {
+        return Counter.builder("http.twins.twins")
+                .description("Twins by outcome")
+                .tags("endpoint", endpoint, "destination", destination, "outcome", outcome)
+                .register(registry);
+    }
+}
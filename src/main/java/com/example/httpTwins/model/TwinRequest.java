@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.model;
+
+import com.example.httpTwins.capture.CapturingRequestWrapper;
+import jakarta.servlet.http.HttpServletRequest;
+import org.springframework.util.LinkedCaseInsensitiveMap;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+import org.springframework.web.util.WebUtils;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * An immutable snapshot of an incoming HTTP request, captured once on the request thread and
+ * shared by every destination of a fan-out.
+ * <p>
+ * Unlike the live {@link HttpServletRequest}, a snapshot stays valid after the container has
+ * recycled the request. The body is held in a single read-only {@link ByteBuffer}; each call to
+ * {@link #getBody()} returns an independent view of it, never a copy.
+ */
+public final class TwinRequest {
+
+    private static final ByteBuffer EMPTY_BODY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private final String method;
+    private final String requestUri;
+    private final String queryString;
+    private final String[] headerPairs;
+    private final ByteBuffer body;
+    private final Map<String, Object> attributes;
+    private volatile Map<String, List<String>> headers;
+
+    /**
+     * @param method      The HTTP method.
+     * @param requestUri  The request URI, without the query string.
+     * @param queryString The query string, or {@code null}.
+     * @param headerPairs Header names and values, alternating ({@code name0, value0, name1, value1, ...}).
+     *                    A name appears once per value.
+     * @param body        The request body; it is not copied, so callers must not modify it afterwards.
+     * @param attributes  The request attributes to carry along.
+     */
+    public TwinRequest(String method, String requestUri, String queryString, String[] headerPairs,
+                       ByteBuffer body, Map<String, Object> attributes) {
+        if (headerPairs.length % 2 != 0) {
+            throw new IllegalArgumentException("Header names and values must come in pairs");
+        }
+        this.method = method;
+        this.requestUri = requestUri;
+        this.queryString = queryString;
+        this.headerPairs = headerPairs;
+        this.body = body == null ? EMPTY_BODY : body.asReadOnlyBuffer();
+        this.attributes = attributes == null ? Collections.emptyMap() : Collections.unmodifiableMap(attributes);
+    }
+
+    /**
+     * Captures a snapshot of the given request. Must be called on the thread serving the request.
+     * <p>
+     * The body is whatever the handler has read so far. It is shared, not copied, with the
+     * {@link CapturingRequestWrapper} installed by the caching filter, or copied from a
+     * {@link ContentCachingRequestWrapper}. Requests that were not wrapped get an empty body.
+     * <p>
+     * Servlet request attributes are not copied: many belong to the framework (handler mappings,
+     * the security context, multipart resolvers) and are large, mutable or not thread-safe. The
+     * snapshot starts without attributes; the library adds its own with {@link #withAttribute}.
+     *
+     * @param request The live request.
+     * @return The snapshot.
+     */
+    public static TwinRequest from(HttpServletRequest request) {
+        List<String> pairs = new ArrayList<>();
+        Enumeration<String> names = request.getHeaderNames();
+        while (names != null && names.hasMoreElements()) {
+            String name = names.nextElement();
+            Enumeration<String> values = request.getHeaders(name);
+            while (values.hasMoreElements()) {
+                pairs.add(name);
+                pairs.add(values.nextElement());
+            }
+        }
+
+        ByteBuffer body = null;
+        CapturingRequestWrapper capturing = WebUtils.getNativeRequest(request, CapturingRequestWrapper.class);
+        if (capturing != null) {
+            body = capturing.getCachedBody();
+        } else {
+            ContentCachingRequestWrapper wrapper = WebUtils.getNativeRequest(request, ContentCachingRequestWrapper.class);
+            if (wrapper != null) {
+                body = ByteBuffer.wrap(wrapper.getContentAsByteArray());
+            }
+        }
+
+        return new TwinRequest(request.getMethod(), request.getRequestURI(), request.getQueryString(),
+                pairs.toArray(new String[0]), body, null);
+    }
+
+    public String getMethod() {
+        return method;
+    }
+
+    public String getRequestURI() {
+        return requestUri;
+    }
+
+    public String getQueryString() {
+        return queryString;
+    }
+
+    /**
+     * Returns the first value of the named header, matched case-insensitively, or {@code null}.
+     */
+    public String getHeader(String name) {
+        for (int i = 0; i < headerPairs.length; i += 2) {
+            if (headerPairs[i].equalsIgnoreCase(name)) {
+                return headerPairs[i + 1];
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns all headers as an unmodifiable, case-insensitive map. The map is built on first use.
+     */
+    public Map<String, List<String>> getHeaders() {
+        Map<String, List<String>> result = headers;
+        if (result == null) {
+            Map<String, List<String>> map = new LinkedCaseInsensitiveMap<>(headerPairs.length / 2);
+            for (int i = 0; i < headerPairs.length; i += 2) {
+                map.computeIfAbsent(headerPairs[i], key -> new ArrayList<>(1)).add(headerPairs[i + 1]);
+            }
+            map.replaceAll((name, values) -> Collections.unmodifiableList(values));
+            result = Collections.unmodifiableMap(map);
+            headers = result;
+        }
+        return result;
+    }
+
+    /**
+     * Calls the consumer once per header value, in arrival order, without building the header map.
+     */
+    public void forEachHeader(HeaderConsumer consumer) {
+        for (int i = 0; i < headerPairs.length; i += 2) {
+            consumer.accept(headerPairs[i], headerPairs[i + 1]);
+        }
+    }
+
+    /**
+     * Returns a read-only view of the body positioned at its start. Views are independent of each
+     * other, so destinations can consume them concurrently.
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    public int getBodyLength() {
+        return body.remaining();
+    }
+
+    /**
+     * Decodes the body into a string. This allocates; prefer {@link #getBody()} on hot paths.
+     */
+    public String getBodyAsString(Charset charset) {
+        return charset.decode(body.duplicate()).toString();
+    }
+
+    public Object getAttribute(String name) {
+        return attributes.get(name);
+    }
+
+    public Map<String, Object> getAttributes() {
+        return attributes;
+    }
+
+    /**
+     * Returns a copy of this snapshot with one more attribute. The headers and body are shared, not copied.
+     */
+    public TwinRequest withAttribute(String name, Object value) {
+        Map<String, Object> copy = new HashMap<>(attributes);
+        copy.put(name, value);
+        return new TwinRequest(method, requestUri, queryString, headerPairs, body, copy);
+    }
+
+    @FunctionalInterface
+    public interface HeaderConsumer {
+        void accept(String name, String value);
+    }
+}
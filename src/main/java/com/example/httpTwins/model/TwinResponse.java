@@ -0,0 +1,97 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.model;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * A copy of the primary response, delivered to twins of endpoints annotated with
+ * {@code @HttpTwins(captureResponse = true)}.
+ * <p>
+ * The body is a read-only view of a pooled buffer that is recycled once every twin has been
+ * called, so it must not be retained beyond the processor callback.
+ */
+public final class TwinResponse {
+
+    private static final ByteBuffer EMPTY_BODY = ByteBuffer.allocate(0).asReadOnlyBuffer();
+
+    private final int status;
+    private final String[] headerPairs;
+    private final ByteBuffer body;
+    private final long totalBodyLength;
+    private final boolean truncated;
+
+    /**
+     * @param status          The HTTP status code.
+     * @param headerPairs     Header names and values, alternating.
+     * @param body            The captured body, or {@code null} if it was skipped.
+     * @param totalBodyLength The number of body bytes the primary response actually wrote.
+     * @param truncated       Whether the captured body is shorter than the real one.
+     */
+    public TwinResponse(int status, String[] headerPairs, ByteBuffer body, long totalBodyLength, boolean truncated) {
+        this.status = status;
+        this.headerPairs = headerPairs;
+        this.body = body == null ? EMPTY_BODY : body.asReadOnlyBuffer();
+        this.totalBodyLength = totalBodyLength;
+        this.truncated = truncated;
+    }
+
+    public int getStatus() {
+        return status;
+    }
+
+    /**
+     * Returns the first value of the named header, matched case-insensitively, or {@code null}.
+     */
+    public String getHeader(String name) {
+        for (int i = 0; i < headerPairs.length; i += 2) {
+            if (headerPairs[i].equalsIgnoreCase(name)) {
+                return headerPairs[i + 1];
+            }
+        }
+        return null;
+    }
+
+    public void forEachHeader(TwinRequest.HeaderConsumer consumer) {
+        for (int i = 0; i < headerPairs.length; i += 2) {
+            consumer.accept(headerPairs[i], headerPairs[i + 1]);
+        }
+    }
+
+    /**
+     * Returns an independent read-only view of the captured body.
+     */
+    public ByteBuffer getBody() {
+        return body.duplicate();
+    }
+
+    public int getCapturedLength() {
+        return body.remaining();
+    }
+
+    public long getTotalBodyLength() {
+        return totalBodyLength;
+    }
+
+    public boolean isTruncated() {
+        return truncated;
+    }
+
+    public String getBodyAsString(Charset charset) {
+        return charset.decode(body.duplicate()).toString();
+    }
+}
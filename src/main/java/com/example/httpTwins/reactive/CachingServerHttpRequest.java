@@ -0,0 +1,81 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.reactive;
+
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.http.server.reactive.ServerHttpRequestDecorator;
+import reactor.core.publisher.Flux;
+
+import java.nio.ByteBuffer;
+
+/**
+ * The WebFlux counterpart of {@code CapturingRequestWrapper}: keeps a copy of the body as the
+ * handler consumes it.
+ * <p>
+ * At most {@code maxCaptureSize} bytes are kept, and the buffer is swapped for a larger one only
+ * when needed. It is not pooled: the snapshot uses it as its body without copying it.
+ */
+final class CachingServerHttpRequest extends ServerHttpRequestDecorator {
+
+    private static final int MIN_BUFFER_SIZE = 1024;
+
+    private final int maxCaptureSize;
+    private ByteBuffer buffer;
+
+    CachingServerHttpRequest(ServerHttpRequest delegate, int maxCaptureSize) {
+        super(delegate);
+        this.maxCaptureSize = maxCaptureSize;
+    }
+
+    @Override
+    public Flux<DataBuffer> getBody() {
+        return maxCaptureSize > 0 ? super.getBody().doOnNext(this::cache) : super.getBody();
+    }
+
+    /**
+     * Returns a read-only view of the body bytes read so far. Bytes are only ever appended after it,
+     * so the view stays valid, and unchanged, for as long as it is held.
+     */
+    synchronized ByteBuffer cachedBody() {
+        return buffer == null ? null : buffer.asReadOnlyBuffer().flip();
+    }
+
+    // Chunks arrive one at a time, but not necessarily on the thread that later takes the snapshot
+    private synchronized void cache(DataBuffer data) {
+        try (DataBuffer.ByteBufferIterator chunks = data.readableByteBuffers()) {
+            while (chunks.hasNext()) {
+                ByteBuffer chunk = chunks.next();
+                if (buffer == null) {
+                    long announced = getHeaders().getContentLength();
+                    long size = announced > 0 ? Math.max(announced, chunk.remaining()) : Math.max(chunk.remaining(), MIN_BUFFER_SIZE);
+                    buffer = ByteBuffer.allocate((int) Math.min(maxCaptureSize, size));
+                }
+                int toCopy = Math.min(chunk.remaining(), maxCaptureSize - buffer.position());
+                if (toCopy <= 0) {
+                    return;
+                }
+                if (toCopy > buffer.remaining()) {
+                    // Views handed out so far keep the old buffer, which is never written again
+                    ByteBuffer larger = ByteBuffer.allocate(Math.min(maxCaptureSize, Math.max(buffer.capacity() * 2, buffer.position() + toCopy)));
+                    larger.put(buffer.duplicate().flip());
+                    buffer = larger;
+                }
+                buffer.put(chunk.limit(chunk.position() + toCopy));
+            }
+        }
+    }
+}
@@ -0,0 +1,191 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.reactive;
+
+import com.example.httpTwins.capture.CaptureBufferPool;
+import com.example.httpTwins.capture.ResponseCaptureListener;
+import com.example.httpTwins.model.TwinResponse;
+import org.reactivestreams.Publisher;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.http.HttpStatusCode;
+import org.springframework.http.server.reactive.ServerHttpResponse;
+import org.springframework.http.server.reactive.ServerHttpResponseDecorator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * The WebFlux counterpart of {@code CapturingResponseWrapper}: tees the response body into a
+ * pooled buffer as it is written, once capture has been started.
+ * <p>
+ * It also tells the filter when the handler is done and the response is about to be written,
+ * which is the last moment the request can be twinned with the body the handler read.
+ */
+final class CapturingServerHttpResponse extends ServerHttpResponseDecorator {
+
+    private final CaptureBufferPool bufferPool;
+    private Runnable beforeWrite;
+    private ByteBuffer buffer;
+    private int maxCaptureSize;
+    private boolean truncate;
+    private boolean overflowed;
+    private long totalBodyLength;
+    private ResponseCaptureListener listener;
+
+    CapturingServerHttpResponse(ServerHttpResponse delegate, CaptureBufferPool bufferPool) {
+        super(delegate);
+        this.bufferPool = bufferPool;
+    }
+
+    /**
+     * Sets the action to run once, before the first write or the completion of an empty response.
+     */
+    void beforeWrite(Runnable beforeWrite) {
+        this.beforeWrite = beforeWrite;
+    }
+
+    /**
+     * Starts teeing the response body. Must be called before the body is written.
+     *
+     * @param maxCaptureSize The maximum number of body bytes to capture.
+     * @param truncate       Whether to deliver the first {@code maxCaptureSize} bytes of a larger body,
+     *                       or to skip the body altogether.
+     * @param listener       Called with the captured response once the exchange has completed.
+     */
+    synchronized void startCapture(int maxCaptureSize, boolean truncate, ResponseCaptureListener listener) {
+        if (this.listener != null) {
+            return;
+        }
+        this.maxCaptureSize = maxCaptureSize;
+        this.truncate = truncate;
+        this.listener = listener;
+        this.buffer = maxCaptureSize > 0 ? bufferPool.acquire(maxCaptureSize) : null;
+    }
+
+    /**
+     * Finishes the capture and hands the response to the listener, which owns the pooled buffer from then on.
+     */
+    void complete() {
+        ResponseCaptureListener target;
+        ByteBuffer captured;
+        TwinResponse response;
+        synchronized (this) {
+            if (listener == null) {
+                return;
+            }
+            captured = buffer;
+            HttpStatusCode status = getStatusCode();
+            response = new TwinResponse(status != null ? status.value() : 200, headerPairs(),
+                    captured == null ? null : captured.duplicate().flip(), totalBodyLength, overflowed);
+            target = listener;
+            listener = null;
+            buffer = null;
+        }
+        target.onResponse(response, () -> {
+            if (captured != null) {
+                bufferPool.release(captured);
+            }
+        });
+    }
+
+    /**
+     * Drops the capture without notifying anyone, returning the buffer to the pool.
+     */
+    synchronized void discard() {
+        if (buffer != null) {
+            bufferPool.release(buffer);
+        }
+        buffer = null;
+        listener = null;
+    }
+
+    @Override
+    public Mono<Void> writeWith(Publisher<? extends DataBuffer> body) {
+        runBeforeWrite();
+        if (!isCapturing()) {
+            return super.writeWith(body);
+        }
+        // Keep single-buffer bodies a Mono, which the server writes without a send operator
+        return super.writeWith(body instanceof Mono
+                ? Mono.<DataBuffer>from(body).doOnNext(this::capture)
+                : Flux.<DataBuffer>from(body).doOnNext(this::capture));
+    }
+
+    @Override
+    public Mono<Void> writeAndFlushWith(Publisher<? extends Publisher<? extends DataBuffer>> body) {
+        runBeforeWrite();
+        if (!isCapturing()) {
+            return super.writeAndFlushWith(body);
+        }
+        return super.writeAndFlushWith(Flux.from(body).map(chunks -> Flux.<DataBuffer>from(chunks).doOnNext(this::capture)));
+    }
+
+    @Override
+    public Mono<Void> setComplete() {
+        runBeforeWrite();
+        return super.setComplete();
+    }
+
+    private void runBeforeWrite() {
+        Runnable action = beforeWrite;
+        if (action != null) {
+            beforeWrite = null;
+            action.run();
+        }
+    }
+
+    private synchronized boolean isCapturing() {
+        return listener != null;
+    }
+
+    private synchronized void capture(DataBuffer data) {
+        int length = data.readableByteCount();
+        totalBodyLength += length;
+        if (buffer == null) {
+            return;
+        }
+        int room = Math.min(buffer.remaining(), maxCaptureSize - buffer.position());
+        if (length > room) {
+            overflowed = true;
+            if (!truncate) {
+                bufferPool.release(buffer);
+                buffer = null;
+                return;
+            }
+        }
+        try (DataBuffer.ByteBufferIterator chunks = data.readableByteBuffers()) {
+            while (chunks.hasNext() && buffer.hasRemaining()) {
+                ByteBuffer chunk = chunks.next();
+                int toCopy = Math.min(chunk.remaining(), Math.min(buffer.remaining(), maxCaptureSize - buffer.position()));
+                buffer.put(chunk.limit(chunk.position() + toCopy));
+            }
+        }
+    }
+
+    private String[] headerPairs() {
+        List<String> pairs = new ArrayList<>();
+        getHeaders().forEach((name, values) -> {
+            for (String value : values) {
+                pairs.add(name);
+                pairs.add(value);
+            }
+        });
+        return pairs.toArray(new String[0]);
+    }
+}
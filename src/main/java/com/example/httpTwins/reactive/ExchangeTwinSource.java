@@ -0,0 +1,76 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.reactive;
+
+import com.example.httpTwins.capture.ResponseCaptureListener;
+import com.example.httpTwins.capture.TwinSource;
+import com.example.httpTwins.model.TwinRequest;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A WebFlux exchange as a {@link TwinSource}. Everything is read from the exchange itself, never
+ * from thread-locals, so it can be used on whichever thread the handler finished on.
+ */
+final class ExchangeTwinSource implements TwinSource {
+
+    private final CachingServerHttpRequest request;
+    private final CapturingServerHttpResponse response;
+
+    ExchangeTwinSource(CachingServerHttpRequest request, CapturingServerHttpResponse response) {
+        this.request = request;
+        this.response = response;
+    }
+
+    @Override
+    public String getMethod() {
+        return request.getMethod().name();
+    }
+
+    @Override
+    public String getRequestURI() {
+        return request.getPath().value();
+    }
+
+    @Override
+    public String getQueryString() {
+        return request.getURI().getRawQuery();
+    }
+
+    @Override
+    public String getHeader(String name) {
+        return request.getHeaders().getFirst(name);
+    }
+
+    @Override
+    public TwinRequest snapshot() {
+        List<String> pairs = new ArrayList<>();
+        request.getHeaders().forEach((name, values) -> {
+            for (String value : values) {
+                pairs.add(name);
+                pairs.add(value);
+            }
+        });
+        return new TwinRequest(getMethod(), getRequestURI(), getQueryString(), pairs.toArray(new String[0]),
+                request.cachedBody(), null);
+    }
+
+    @Override
+    public void captureResponse(int maxCaptureSize, boolean truncate, ResponseCaptureListener listener) {
+        response.startCapture(maxCaptureSize, truncate, listener);
+    }
+}
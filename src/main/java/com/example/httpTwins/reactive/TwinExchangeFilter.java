@@ -0,0 +1,129 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.reactive;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.capture.CaptureBufferPool;
+import com.example.httpTwins.capture.TwinSource;
+import com.example.httpTwins.capture.TwinnedEndpointIndex;
+import org.springframework.core.Ordered;
+import org.springframework.http.server.reactive.ServerHttpRequest;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilter;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Supplier;
+
+/**
+ * Twins WebFlux requests headed for {@code @HttpTwins} endpoints, the reactive counterpart of the
+ * caching filter and the aspect's advice together.
+ * <p>
+ * A reactive handler returns before it has read its body, and on a thread that is not bound to the
+ * request, so the twin cannot be taken when the handler method is called. Instead the request body
+ * is cached as the handler consumes it, and the request is twinned from the exchange when the
+ * handler's result is about to be written, or when the handler completes without writing. The
+ * response, if the endpoint asks for it, is handed over once the exchange completes; it is dropped
+ * if the exchange fails or the client goes away.
+ */
+public class TwinExchangeFilter implements WebFilter, Ordered {
+
+    private final Supplier<TwinnedEndpointIndex> indexSupplier;
+    private final CaptureBufferPool bufferPool;
+    private final Twinner twinner;
+    private volatile TwinnedEndpointIndex index;
+
+    /**
+     * @param indexSupplier Builds the endpoint index; called once, on the first request, when all
+     *                      handler mappings are registered.
+     * @param bufferPool    The pool response capture buffers are borrowed from.
+     * @param twinner       Twins a request, typically {@code HttpTwinsAspect::twinRequest}.
+     */
+    public TwinExchangeFilter(Supplier<TwinnedEndpointIndex> indexSupplier, CaptureBufferPool bufferPool, Twinner twinner) {
+        this.indexSupplier = indexSupplier;
+        this.bufferPool = bufferPool;
+        this.twinner = twinner;
+    }
+
+    @Override
+    public Mono<Void> filter(ServerWebExchange exchange, WebFilterChain chain) {
+        ServerHttpRequest request = exchange.getRequest();
+        TwinnedEndpointIndex.Endpoint endpoint = index().match(
+                request.getPath().pathWithinApplication().value(), request.getMethod().name());
+        if (endpoint == null) {
+            return chain.filter(exchange);
+        }
+
+        CachingServerHttpRequest cachingRequest = new CachingServerHttpRequest(request, endpoint.maxRequestCaptureSize());
+        CapturingServerHttpResponse capturingResponse = new CapturingServerHttpResponse(exchange.getResponse(), bufferPool);
+        ServerWebExchange twinned = exchange.mutate().request(cachingRequest).response(capturingResponse).build();
+        ExchangeTwinSource source = new ExchangeTwinSource(cachingRequest, capturingResponse);
+
+        AtomicBoolean done = new AtomicBoolean();
+        Runnable twin = () -> {
+            if (done.compareAndSet(false, true)
+                    && twinned.getAttribute(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE) instanceof HandlerMethod handler) {
+                HttpTwins httpTwins = handler.getMethodAnnotation(HttpTwins.class);
+                if (httpTwins != null) {
+                    twinner.twin(handler.getMethod(), httpTwins, source);
+                }
+            }
+        };
+        capturingResponse.beforeWrite(twin);
+        return chain.filter(twinned)
+                .doOnSuccess(ignored -> {
+                    twin.run();
+                    capturingResponse.complete();
+                })
+                .doOnError(failure -> capturingResponse.discard())
+                .doOnCancel(capturingResponse::discard);
+    }
+
+    /**
+     * Runs before other filters that might consume the body, like the caching filter does.
+     */
+    @Override
+    public int getOrder() {
+        return Ordered.HIGHEST_PRECEDENCE + 1;
+    }
+
+    private TwinnedEndpointIndex index() {
+        TwinnedEndpointIndex current = index;
+        if (current == null) {
+            synchronized (this) {
+                current = index;
+                if (current == null) {
+                    current = indexSupplier.get();
+                    index = current;
+                }
+            }
+        }
+        return current;
+    }
+
+    /**
+     * Twins a request to the destinations of its handler method.
+     */
+    @FunctionalInterface
+    public interface Twinner {
+
+        void twin(Method method, HttpTwins httpTwins, TwinSource source);
+    }
+}
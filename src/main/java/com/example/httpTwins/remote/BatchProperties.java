@@ -0,0 +1,94 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.remote;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+
+/**
+ * Settings of the batching remote processor, bound from {@code http-twins.remote.batch.*}.
+ * A destination's batch is sent as soon as any one of the limits is reached.
+ */
+@ConfigurationProperties(prefix = "http-twins.remote.batch")
+public class BatchProperties {
+
+    /**
+     * Maximum number of twins per batch.
+     */
+    private int maxRecords = 500;
+
+    /**
+     * Approximate maximum size of a batch before compression.
+     */
+    private DataSize maxBytes = DataSize.ofMegabytes(1);
+
+    /**
+     * Maximum time a twin waits for its batch to fill up.
+     */
+    private Duration linger = Duration.ofMillis(100);
+
+    /**
+     * Gzip the batch and send it with {@code Content-Encoding: gzip}.
+     */
+    private boolean gzip = true;
+
+    /**
+     * Twins buffered per destination. When the buffer is full, new twins are dropped.
+     */
+    private int bufferCapacity = 8192;
+
+    public int getMaxRecords() {
+        return maxRecords;
+    }
+
+    public void setMaxRecords(int maxRecords) {
+        this.maxRecords = maxRecords;
+    }
+
+    public DataSize getMaxBytes() {
+        return maxBytes;
+    }
+
+    public void setMaxBytes(DataSize maxBytes) {
+        this.maxBytes = maxBytes;
+    }
+
+    public Duration getLinger() {
+        return linger;
+    }
+
+    public void setLinger(Duration linger) {
+        this.linger = linger;
+    }
+
+    public boolean isGzip() {
+        return gzip;
+    }
+
+    public void setGzip(boolean gzip) {
+        this.gzip = gzip;
+    }
+
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+}
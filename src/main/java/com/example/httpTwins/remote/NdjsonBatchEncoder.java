@@ -0,0 +1,186 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.remote;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.CharacterCodingException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Locale;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Encodes a batch of {@link TwinRequest}s as newline-delimited JSON, one object per twin:
+ * <pre>
+ * {"method":"POST","uri":"/books","query":null,"headers":[["content-type","application/json"]],"body":"{...}"}
+ * </pre>
+ * Textual bodies (JSON, XML, text and form data) in UTF-8 are written as a string under {@code body};
+ * any other body, including text in another charset or bytes that are not valid UTF-8, is written
+ * base64-encoded under {@code bodyBase64}, so the receiver always gets the bytes that were sent.
+ * Headers are name/value pairs in arrival order.
+ */
+public final class NdjsonBatchEncoder {
+
+    public static final String CONTENT_TYPE = "application/x-ndjson";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory()
+            .setRootValueSeparator("\n")
+            .disable(JsonGenerator.Feature.AUTO_CLOSE_TARGET);
+
+    /**
+     * Rough per-record overhead on top of the body, used to size buffers and byte-based flushes
+     * without encoding twice.
+     */
+    private static final int RECORD_OVERHEAD = 256;
+
+    private NdjsonBatchEncoder() {
+    }
+
+    /**
+     * Returns an estimate of the encoded size of one record.
+     */
+    public static int estimateSize(TwinRequest request) {
+        return request.getBodyLength() + RECORD_OVERHEAD;
+    }
+
+    /**
+     * Encodes the batch.
+     *
+     * @param records       The twins, in the order they should appear.
+     * @param estimatedSize The sum of {@link #estimateSize(TwinRequest)} over the records.
+     * @param gzip          Whether to gzip the encoded lines.
+     * @return The encoded payload.
+     */
+    public static byte[] encode(List<TwinRequest> records, long estimatedSize, boolean gzip) {
+        int initialSize = (int) Math.min(Integer.MAX_VALUE - 8, gzip ? estimatedSize / 4 : estimatedSize);
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(Math.max(initialSize, 512));
+        try (OutputStream out = gzip ? new GZIPOutputStream(buffer, 8192) : buffer;
+             JsonGenerator generator = JSON_FACTORY.createGenerator(out)) {
+            for (TwinRequest record : records) {
+                write(generator, record);
+            }
+            generator.writeRaw('\n');
+        } catch (IOException e) {
+            // Only the in-memory stream is written to
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Encodes a single twin as one JSON object, without the trailing newline.
+     */
+    public static byte[] encodeRecord(TwinRequest record) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(estimateSize(record));
+        try (JsonGenerator generator = JSON_FACTORY.createGenerator(buffer)) {
+            write(generator, record);
+        } catch (IOException e) {
+            // Only the in-memory stream is written to
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    private static void write(JsonGenerator generator, TwinRequest record) throws IOException {
+        generator.writeStartObject();
+        generator.writeStringField("method", record.getMethod());
+        generator.writeStringField("uri", record.getRequestURI());
+        generator.writeStringField("query", record.getQueryString());
+        generator.writeArrayFieldStart("headers");
+        try {
+            record.forEachHeader((name, value) -> {
+                try {
+                    generator.writeStartArray();
+                    generator.writeString(name);
+                    generator.writeString(value);
+                    generator.writeEndArray();
+                } catch (IOException e) {
+                    throw new UncheckedIOException(e);
+                }
+            });
+        } catch (UncheckedIOException e) {
+            throw e.getCause();
+        }
+        generator.writeEndArray();
+        if (record.getBodyLength() > 0) {
+            String text = isTextual(record.getHeader("Content-Type")) ? decodeUtf8(record.getBody()) : null;
+            if (text != null) {
+                generator.writeStringField("body", text);
+            } else {
+                ByteBuffer body = record.getBody();
+                byte[] bytes = new byte[body.remaining()];
+                body.get(bytes);
+                generator.writeBinaryField("bodyBase64", bytes);
+            }
+        }
+        generator.writeEndObject();
+    }
+
+    /**
+     * Whether a body of this content type can be written as text rather than base64: a textual type
+     * in UTF-8, or without a charset, which is taken to be UTF-8.
+     */
+    public static boolean isTextual(String contentType) {
+        if (contentType == null) {
+            return false;
+        }
+        String type = contentType.toLowerCase(Locale.ROOT);
+        return (type.startsWith("text/") || type.contains("json") || type.contains("xml")
+                || type.startsWith("application/x-www-form-urlencoded")) && isUtf8(charsetOf(type));
+    }
+
+    /**
+     * Returns the charset parameter of a lower-cased content type, or {@code null} if it has none.
+     */
+    private static String charsetOf(String type) {
+        int start = type.indexOf("charset=");
+        if (start < 0) {
+            return null;
+        }
+        start += "charset=".length();
+        int end = type.indexOf(';', start);
+        String charset = (end < 0 ? type.substring(start) : type.substring(start, end)).trim();
+        if (charset.length() >= 2 && charset.charAt(0) == '"' && charset.charAt(charset.length() - 1) == '"') {
+            charset = charset.substring(1, charset.length() - 1);
+        }
+        return charset;
+    }
+
+    private static boolean isUtf8(String charset) {
+        // ASCII is a subset of UTF-8, so its bytes can be written as they are
+        return charset == null || charset.equals("utf-8") || charset.equals("utf8") || charset.equals("us-ascii");
+    }
+
+    /**
+     * Decodes a body that claims to be UTF-8, or returns {@code null} if its bytes are not valid
+     * UTF-8 and would be mangled by a lenient decode.
+     */
+    private static String decodeUtf8(ByteBuffer body) {
+        try {
+            return StandardCharsets.UTF_8.newDecoder().decode(body).toString();
+        } catch (CharacterCodingException e) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,106 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.remote;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the HTTP client used to mirror requests to remote destinations, bound from
+ * {@code http-twins.remote.*}.
+ */
+@ConfigurationProperties(prefix = "http-twins.remote")
+public class RemoteClientProperties {
+
+    private Duration connectTimeout = Duration.ofSeconds(2);
+
+    /**
+     * Time allowed from sending the request until the response headers arrive.
+     */
+    private Duration readTimeout = Duration.ofSeconds(5);
+
+    /**
+     * How long a destination's connections are kept after its last twin. Applied to each
+     * destination's own client; the JVM-wide {@code jdk.httpclient.keepalive.timeout}, a launch
+     * flag, still closes any single connection idle for longer than it.
+     */
+    private Duration keepAlive = Duration.ofSeconds(30);
+
+    /**
+     * Maximum number of mirrored requests awaiting a response per destination. Twins beyond the
+     * limit are dropped rather than queued.
+     */
+    private int maxInFlightPerDestination = 256;
+
+    /**
+     * Threads shared by all destinations for completing responses.
+     */
+    private int ioThreads = 2;
+
+    /**
+     * Prefer HTTP/2, multiplexing concurrent twins over one connection where the remote supports it.
+     */
+    private boolean http2 = true;
+
+    public Duration getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    public void setConnectTimeout(Duration connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    public Duration getReadTimeout() {
+        return readTimeout;
+    }
+
+    public void setReadTimeout(Duration readTimeout) {
+        this.readTimeout = readTimeout;
+    }
+
+    public Duration getKeepAlive() {
+        return keepAlive;
+    }
+
+    public void setKeepAlive(Duration keepAlive) {
+        this.keepAlive = keepAlive;
+    }
+
+    public int getMaxInFlightPerDestination() {
+        return maxInFlightPerDestination;
+    }
+
+    public void setMaxInFlightPerDestination(int maxInFlightPerDestination) {
+        this.maxInFlightPerDestination = maxInFlightPerDestination;
+    }
+
+    public int getIoThreads() {
+        return ioThreads;
+    }
+
+    public void setIoThreads(int ioThreads) {
+        this.ioThreads = ioThreads;
+    }
+
+    public boolean isHttp2() {
+        return http2;
+    }
+
+    public void setHttp2(boolean http2) {
+        this.http2 = http2;
+    }
+}
@@ -0,0 +1,351 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.remote;
+
+import com.example.httpTwins.health.DestinationHealth;
+import com.example.httpTwins.health.DestinationHealthRegistry;
+import com.example.httpTwins.health.HealthProperties;
+import com.example.httpTwins.model.TwinRequest;
+import io.micrometer.common.KeyValue;
+import io.micrometer.observation.Observation;
+import io.micrometer.observation.ObservationRegistry;
+import io.micrometer.observation.transport.RequestReplySenderContext;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Non-blocking HTTP engine for mirroring {@link TwinRequest}s to remote destinations.
+ * <p>
+ * Each destination URL gets its own JDK {@link HttpClient}, and with it its own connection pool,
+ * plus a cap on the number of requests awaiting a response. All clients share a small executor,
+ * so the number of threads does not grow with traffic: a mirrored request holds a connection
+ * while it is in flight, never a thread.
+ * <p>
+ * A destination's connections are kept for its keep-alive after its last twin. A reaper retires
+ * the client of a destination that has been idle that long with nothing in flight; the JDK closes
+ * its connections once the client is collected, and the next twin opens fresh ones. This is done
+ * per destination and leaves the JVM-wide {@code jdk.httpclient.keepalive.timeout} alone, which
+ * still closes connections idle for longer than it within a client.
+ * <p>
+ * Every call is admitted by the destination's {@link DestinationHealth} and reports its outcome
+ * back to it, so a failing destination is cut off and a slow one gets fewer concurrent twins.
+ * Each call is also an {@code http.twins.remote} observation, whose trace context is propagated
+ * in the outgoing headers when a tracer is configured.
+ */
+public class RemoteHttpClientPool implements DisposableBean {
+
+    private static final String OBSERVATION_NAME = "http.twins.remote";
+    private static final KeyValue SUCCESS = KeyValue.of("outcome", "success");
+    private static final KeyValue FAILURE = KeyValue.of("outcome", "failure");
+
+    /**
+     * Headers the JDK client manages itself or that must not be forwarded hop to hop.
+     */
+    private static final Set<String> SKIPPED_HEADERS = Set.of(
+            "connection", "content-length", "expect", "host", "upgrade",
+            "keep-alive", "proxy-connection", "te", "trailer", "transfer-encoding");
+
+    private final RemoteClientProperties properties;
+    private final DestinationHealthRegistry healthRegistry;
+    private final ObservationRegistry observationRegistry;
+    private final ExecutorService ioExecutor;
+    private final ScheduledExecutorService reaper;
+    private final Map<String, Destination> destinations = new ConcurrentHashMap<>();
+
+    public RemoteHttpClientPool(RemoteClientProperties properties) {
+        this(properties, new DestinationHealthRegistry(new HealthProperties()), ObservationRegistry.NOOP);
+    }
+
+    public RemoteHttpClientPool(RemoteClientProperties properties, DestinationHealthRegistry healthRegistry,
+                                ObservationRegistry observationRegistry) {
+        this.properties = properties;
+        this.healthRegistry = healthRegistry;
+        this.observationRegistry = observationRegistry;
+        AtomicInteger counter = new AtomicInteger();
+        this.ioExecutor = Executors.newFixedThreadPool(properties.getIoThreads(), runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-remote-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.reaper = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-remote-reaper");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Checking twice per keep-alive retires a destination at most half a keep-alive late
+        long intervalMillis = Math.max(100, properties.getKeepAlive().toMillis() / 2);
+        this.reaper.scheduleWithFixedDelay(this::retireIdleDestinations, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+     * Sends the twin to the remote URL without blocking the calling thread.
+     *
+     * @param request     The request snapshot to mirror.
+     * @param remoteUrl   The destination URL.
+     * @param bodyHandler How to consume the remote response body.
+     * @return A future completed with the remote response, or failed with a
+     *         {@link RejectedExecutionException} if the destination's circuit is open or its
+     *         in-flight limit is reached.
+     */
+    public <T> CompletableFuture<HttpResponse<T>> send(TwinRequest request, String remoteUrl,
+                                                       HttpResponse.BodyHandler<T> bodyHandler) {
+        Destination destination = destinations.computeIfAbsent(remoteUrl, this::createDestination);
+        DestinationHealth health = destination.health;
+        if (!health.tryAcquire()) {
+            return CompletableFuture.failedFuture(new RejectedExecutionException(health.getState() == DestinationHealth.State.CLOSED
+                    ? "Concurrency limit of " + health.getLimit() + " reached for " + remoteUrl
+                    : "Circuit " + health.getState() + " for " + remoteUrl));
+        }
+        if (!destination.inFlight.tryAcquire()) {
+            health.onIgnored();
+            return CompletableFuture.failedFuture(new RejectedExecutionException(
+                    "In-flight limit of " + properties.getMaxInFlightPerDestination() + " reached for " + remoteUrl));
+        }
+        long start = System.nanoTime();
+        destination.lastUsedNanos = start;
+        Observation observation = Observation.NOOP;
+        try {
+            HttpRequest.Builder builder = requestBuilder(request, destination.uri);
+            observation = startObservation(builder, destination);
+            Observation call = observation;
+            CompletableFuture<HttpResponse<T>> response = destination.client.sendAsync(builder.build(), bodyHandler);
+            return response.whenComplete((result, failure) -> {
+                destination.lastUsedNanos = System.nanoTime();
+                destination.inFlight.release();
+                boolean failed = failure != null || isRetryable(result.statusCode());
+                health.onComplete(System.nanoTime() - start, failed);
+                if (failure != null) {
+                    call.error(failure);
+                }
+                call.lowCardinalityKeyValue(failed ? FAILURE : SUCCESS).stop();
+            });
+        } catch (RuntimeException e) {
+            destination.inFlight.release();
+            health.onIgnored();
+            observation.error(e).stop();
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Opens connections to the destination ahead of its first twin, so that the first twins do not
+     * pay for resolving its host, the TLS handshake and the TCP connection. Each connection is opened
+     * by a request without a body, whose response is discarded whatever its status; warm-up calls
+     * count neither against the destination's health nor against its in-flight limit.
+     *
+     * @param remoteUrl   The destination URL.
+     * @param connections How many requests to send at once, and so how many HTTP/1.1 connections to
+     *                    leave in the pool; HTTP/2 destinations share one connection.
+     * @param method      The method of the warm-up requests, such as {@code OPTIONS} or {@code HEAD}.
+     * @return A future completed once every warm-up request has been answered.
+     */
+    public CompletableFuture<Void> warmUp(String remoteUrl, int connections, String method) {
+        try {
+            Destination destination = destinations.computeIfAbsent(remoteUrl, this::createDestination);
+            destination.lastUsedNanos = System.nanoTime();
+            HttpRequest request = HttpRequest.newBuilder(destination.uri)
+                    .timeout(properties.getReadTimeout())
+                    .method(method, HttpRequest.BodyPublishers.noBody())
+                    .build();
+            CompletableFuture<?>[] calls = new CompletableFuture<?>[Math.max(1, connections)];
+            for (int i = 0; i < calls.length; i++) {
+                calls[i] = destination.client.sendAsync(request, HttpResponse.BodyHandlers.discarding());
+            }
+            return CompletableFuture.allOf(calls);
+        } catch (RuntimeException e) {
+            return CompletableFuture.failedFuture(e);
+        }
+    }
+
+    /**
+     * Whether a response with this status means the destination could not take the twin right now,
+     * so it is worth sending again later.
+     */
+    public static boolean isRetryable(int statusCode) {
+        return statusCode >= 500 || statusCode == 429;
+    }
+
+    /**
+     * Whether the header is copied from the twin to the outgoing request; hop-by-hop headers and
+     * those the JDK client sets itself are not.
+     */
+    public static boolean isForwarded(String headerName) {
+        return !SKIPPED_HEADERS.contains(headerName.toLowerCase(Locale.ROOT));
+    }
+
+    /**
+     * Returns a publisher of the twin's body that shares the snapshot's buffer instead of copying it.
+     */
+    public static HttpRequest.BodyPublisher bodyPublisher(TwinRequest request) {
+        return request.getBodyLength() > 0
+                ? HttpRequest.BodyPublishers.fromPublisher(new SharedBodyPublisher(request), request.getBodyLength())
+                : HttpRequest.BodyPublishers.noBody();
+    }
+
+    /**
+     * Returns the number of requests currently awaiting a response from the destination.
+     */
+    public int getInFlight(String remoteUrl) {
+        Destination destination = destinations.get(remoteUrl);
+        return destination == null ? 0 : properties.getMaxInFlightPerDestination() - destination.inFlight.availablePermits();
+    }
+
+    /**
+     * Returns the number of requests currently awaiting a response, across all destinations.
+     */
+    public int getInFlight() {
+        int inFlight = 0;
+        for (Destination destination : destinations.values()) {
+            inFlight += properties.getMaxInFlightPerDestination() - destination.inFlight.availablePermits();
+        }
+        return inFlight;
+    }
+
+    /**
+     * Returns the number of destinations with a live client, and so possibly open connections.
+     */
+    public int getDestinationCount() {
+        return destinations.size();
+    }
+
+    @Override
+    public void destroy() {
+        reaper.shutdownNow();
+        ioExecutor.shutdownNow();
+        destinations.clear();
+    }
+
+    /**
+     * Drops the clients of destinations idle for longer than the keep-alive with nothing in flight.
+     */
+    private void retireIdleDestinations() {
+        long now = System.nanoTime();
+        long keepAliveNanos = properties.getKeepAlive().toNanos();
+        for (Map.Entry<String, Destination> entry : destinations.entrySet()) {
+            Destination destination = entry.getValue();
+            if (now - destination.lastUsedNanos >= keepAliveNanos
+                    && destination.inFlight.availablePermits() == properties.getMaxInFlightPerDestination()) {
+                destinations.remove(entry.getKey(), destination);
+            }
+        }
+    }
+
+    private Destination createDestination(String remoteUrl) {
+        HttpClient client = HttpClient.newBuilder()
+                .version(properties.isHttp2() ? HttpClient.Version.HTTP_2 : HttpClient.Version.HTTP_1_1)
+                .connectTimeout(properties.getConnectTimeout())
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(ioExecutor)
+                .build();
+        return new Destination(URI.create(remoteUrl), client, new Semaphore(properties.getMaxInFlightPerDestination()),
+                healthRegistry.get(remoteUrl), KeyValue.of("destination", remoteUrl), System.nanoTime());
+    }
+
+    /**
+     * Starts the call's observation, a child of the current one, and lets it write its trace headers.
+     */
+    private Observation startObservation(HttpRequest.Builder builder, Destination destination) {
+        if (observationRegistry.isNoop()) {
+            return Observation.NOOP;
+        }
+        RequestReplySenderContext<HttpRequest.Builder, HttpResponse<?>> context =
+                new RequestReplySenderContext<>(HttpRequest.Builder::setHeader);
+        context.setCarrier(builder);
+        context.setRemoteServiceName(destination.uri.getHost());
+        return Observation.createNotStarted(OBSERVATION_NAME, () -> context, observationRegistry)
+                .lowCardinalityKeyValue(destination.tag)
+                .start();
+    }
+
+    private HttpRequest.Builder requestBuilder(TwinRequest request, URI uri) {
+        HttpRequest.Builder builder = HttpRequest.newBuilder(uri).timeout(properties.getReadTimeout());
+        request.forEachHeader((name, value) -> {
+            if (isForwarded(name)) {
+                builder.header(name, value);
+            }
+        });
+        return builder.method(request.getMethod(), bodyPublisher(request));
+    }
+
+    private static final class Destination {
+
+        private final URI uri;
+        private final HttpClient client;
+        private final Semaphore inFlight;
+        private final DestinationHealth health;
+        private final KeyValue tag;
+        private volatile long lastUsedNanos;
+
+        private Destination(URI uri, HttpClient client, Semaphore inFlight, DestinationHealth health, KeyValue tag,
+                            long lastUsedNanos) {
+            this.uri = uri;
+            this.client = client;
+            this.inFlight = inFlight;
+            this.health = health;
+            this.tag = tag;
+            this.lastUsedNanos = lastUsedNanos;
+        }
+    }
+
+    /**
+     * Publishes a fresh view of the snapshot's shared body to each subscriber, so retries and
+     * concurrent destinations never copy it.
+     */
+    private record SharedBodyPublisher(TwinRequest request) implements Flow.Publisher<ByteBuffer> {
+
+        @Override
+        public void subscribe(Flow.Subscriber<? super ByteBuffer> subscriber) {
+            AtomicBoolean done = new AtomicBoolean();
+            subscriber.onSubscribe(new Flow.Subscription() {
+                @Override
+                public void request(long n) {
+                    if (n <= 0) {
+                        if (done.compareAndSet(false, true)) {
+                            subscriber.onError(new IllegalArgumentException("Non-positive request: " + n));
+                        }
+                    } else if (done.compareAndSet(false, true)) {
+                        subscriber.onNext(request.getBody());
+                        subscriber.onComplete();
+                    }
+                }
+
+                @Override
+                public void cancel() {
+                    done.set(true);
+                }
+            });
+        }
+    }
+}
@@ -0,0 +1,131 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.replay;
+
+import com.example.httpTwins.model.TwinRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Layout of a recording file, in big-endian byte order:
+ * <pre>
+ * header   magic:int "HTWR", version:int, startEpochMillis:long
+ * record   length:int, offsetNanos:long, payload[length]     (repeated)
+ * index    position:int                                     (one per record)
+ * trailer  indexPosition:int, count:int, magic:int "HTWI"
+ * </pre>
+ * A record's offset is the time since the file's first twin was recorded. Its payload is the
+ * method, URI, query string, header pairs and body; lengths and counts are unsigned varints, and a
+ * string's length is stored plus one, so that 0 stands for {@code null}. Request attributes are
+ * not recorded.
+ * <p>
+ * The index and trailer are written when the file is closed. A file without them, cut short by a
+ * crash, is read by scanning its records up to the first incomplete one.
+ */
+final class RecordingFormat {
+
+    static final int MAGIC = 0x48545752;
+    static final int INDEX_MAGIC = 0x48545749;
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int RECORD_HEADER_SIZE = 12;
+    static final int TRAILER_SIZE = 12;
+
+    private RecordingFormat() {
+    }
+
+    /**
+     * Writes the twin's payload at the buffer's position.
+     *
+     * @throws java.nio.BufferOverflowException if it does not fit.
+     */
+    static void encode(TwinRequest twin, ByteBuffer out) {
+        putString(out, twin.getMethod());
+        putString(out, twin.getRequestURI());
+        putString(out, twin.getQueryString());
+        List<String> pairs = new ArrayList<>();
+        twin.forEachHeader((name, value) -> {
+            pairs.add(name);
+            pairs.add(value);
+        });
+        putVarint(out, pairs.size());
+        for (String value : pairs) {
+            putString(out, value);
+        }
+        ByteBuffer body = twin.getBody();
+        putVarint(out, body.remaining());
+        out.put(body);
+    }
+
+    /**
+     * Decodes a payload. The body is not copied: it is a view of the payload's buffer.
+     */
+    static TwinRequest decode(ByteBuffer payload) {
+        ByteBuffer in = payload.duplicate();
+        String method = getString(in);
+        String uri = getString(in);
+        String query = getString(in);
+        String[] pairs = new String[getVarint(in)];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = getString(in);
+        }
+        int bodyLength = getVarint(in);
+        return new TwinRequest(method, uri, query, pairs, in.slice(in.position(), bodyLength), null);
+    }
+
+    private static void putString(ByteBuffer out, String value) {
+        if (value == null) {
+            putVarint(out, 0);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        putVarint(out, bytes.length + 1);
+        out.put(bytes);
+    }
+
+    private static String getString(ByteBuffer in) {
+        int length = getVarint(in);
+        if (length == 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length - 1];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static void putVarint(ByteBuffer out, int value) {
+        while ((value & ~0x7F) != 0) {
+            out.put((byte) ((value & 0x7F) | 0x80));
+            value >>>= 7;
+        }
+        out.put((byte) value);
+    }
+
+    private static int getVarint(ByteBuffer in) {
+        int value = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            byte b = in.get();
+            value |= (b & 0x7F) << shift;
+            if (b >= 0) {
+                return value;
+            }
+        }
+        throw new IllegalStateException("Malformed varint in recording");
+    }
+}
@@ -0,0 +1,119 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.replay;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Paths;
+
+/**
+ * Settings of the traffic recorder, bound from {@code http-twins.recording.*}.
+ */
+@ConfigurationProperties(prefix = "http-twins.recording")
+public class RecordingProperties {
+
+    /**
+     * Write twins sent to the traffic recorder to disk. When disabled the recorder ignores them.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory holding the recording files. Created if missing.
+     */
+    private String directory = Paths.get(System.getProperty("java.io.tmpdir"), "http-twins-recordings").toString();
+
+    /**
+     * Name of the recording files before the start time and extension.
+     */
+    private String filePrefix = "twins-";
+
+    /**
+     * Size at which the current file is closed and a new one started; at most 2GB.
+     */
+    private DataSize maxFileSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Files kept, including the current one; the oldest is deleted on rollover.
+     */
+    private int maxFiles = 10;
+
+    /**
+     * Twins waiting for the writer. When it is full, new twins are dropped.
+     */
+    private int bufferCapacity = 8192;
+
+    /**
+     * Bytes collected before each write to the file.
+     */
+    private DataSize writeBufferSize = DataSize.ofKilobytes(256);
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public String getFilePrefix() {
+        return filePrefix;
+    }
+
+    public void setFilePrefix(String filePrefix) {
+        this.filePrefix = filePrefix;
+    }
+
+    public DataSize getMaxFileSize() {
+        return maxFileSize;
+    }
+
+    public void setMaxFileSize(DataSize maxFileSize) {
+        this.maxFileSize = maxFileSize;
+    }
+
+    public int getMaxFiles() {
+        return maxFiles;
+    }
+
+    public void setMaxFiles(int maxFiles) {
+        this.maxFiles = maxFiles;
+    }
+
+    public int getBufferCapacity() {
+        return bufferCapacity;
+    }
+
+    public void setBufferCapacity(int bufferCapacity) {
+        this.bufferCapacity = bufferCapacity;
+    }
+
+    public DataSize getWriteBufferSize() {
+        return writeBufferSize;
+    }
+
+    public void setWriteBufferSize(DataSize writeBufferSize) {
+        this.writeBufferSize = writeBufferSize;
+    }
+}
@@ -0,0 +1,166 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.replay;
+
+import com.example.httpTwins.model.TwinRequest;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Reads a recording file (see {@link RecordingFormat}) through a read-only memory mapping.
+ * <p>
+ * Opening the file reads only its index, so any twin can be reached directly. The twins returned
+ * are decoded on demand and their bodies are views of the mapping: nothing is read into the heap
+ * until the page holding it is touched. Safe for concurrent use.
+ */
+public final class RecordingReader {
+
+    private final Path path;
+    private final ByteBuffer mapping;
+    private final long startEpochMillis;
+    private final int[] positions;
+
+    private RecordingReader(Path path, ByteBuffer mapping, long startEpochMillis, int[] positions) {
+        this.path = path;
+        this.mapping = mapping;
+        this.startEpochMillis = startEpochMillis;
+        this.positions = positions;
+    }
+
+    /**
+     * Maps the file. The mapping outlives this call; it is released once the reader is unreachable.
+     *
+     * @throws IOException if the file cannot be read or is not a recording.
+     */
+    public static RecordingReader open(Path path) throws IOException {
+        ByteBuffer mapping;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > RecordingWriter.MAX_FILE_SIZE) {
+                throw new IOException(path + " is too large to be a recording");
+            }
+            mapping = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+        }
+        if (mapping.limit() < RecordingFormat.HEADER_SIZE || mapping.getInt(0) != RecordingFormat.MAGIC) {
+            throw new IOException(path + " is not a recording");
+        }
+        if (mapping.getInt(4) != RecordingFormat.VERSION) {
+            throw new IOException(path + " is a recording of unsupported version " + mapping.getInt(4));
+        }
+        int[] positions = readIndex(mapping);
+        return new RecordingReader(path, mapping, mapping.getLong(8), positions != null ? positions : scan(mapping));
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of twins recorded.
+     */
+    public int size() {
+        return positions.length;
+    }
+
+    /**
+     * Returns the wall-clock time of offset zero.
+     */
+    public long getStartEpochMillis() {
+        return startEpochMillis;
+    }
+
+    /**
+     * Returns when the twin was recorded, relative to offset zero.
+     */
+    public long getOffsetNanos(int index) {
+        return mapping.getLong(positions[index] + 4);
+    }
+
+    /**
+     * Decodes the twin, with its body mapped rather than copied.
+     */
+    public TwinRequest get(int index) {
+        int position = positions[index];
+        return RecordingFormat.decode(mapping.slice(position + RecordingFormat.RECORD_HEADER_SIZE, mapping.getInt(position)));
+    }
+
+    /**
+     * Returns the index of the first twin recorded at or after the offset, or {@link #size()} if there is none.
+     */
+    public int indexOf(long offsetNanos) {
+        int low = 0;
+        int high = positions.length;
+        while (low < high) {
+            int middle = (low + high) >>> 1;
+            if (getOffsetNanos(middle) < offsetNanos) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return low;
+    }
+
+    /**
+     * Returns the record positions from the index, or {@code null} if the file has none.
+     */
+    private static int[] readIndex(ByteBuffer mapping) {
+        int size = mapping.limit();
+        if (size < RecordingFormat.HEADER_SIZE + RecordingFormat.TRAILER_SIZE
+                || mapping.getInt(size - 4) != RecordingFormat.INDEX_MAGIC) {
+            return null;
+        }
+        int indexPosition = mapping.getInt(size - RecordingFormat.TRAILER_SIZE);
+        int count = mapping.getInt(size - 8);
+        if (count < 0 || indexPosition < RecordingFormat.HEADER_SIZE
+                || (long) indexPosition + 4L * count != size - RecordingFormat.TRAILER_SIZE) {
+            return null;
+        }
+        int[] positions = new int[count];
+        for (int i = 0; i < count; i++) {
+            positions[i] = mapping.getInt(indexPosition + 4 * i);
+        }
+        return positions;
+    }
+
+    /**
+     * Finds the records of a file that was not closed, up to the first incomplete one.
+     */
+    private static int[] scan(ByteBuffer mapping) {
+        int[] positions = new int[1024];
+        int count = 0;
+        long position = RecordingFormat.HEADER_SIZE;
+        int size = mapping.limit();
+        while (position + RecordingFormat.RECORD_HEADER_SIZE <= size) {
+            int length = mapping.getInt((int) position);
+            long end = position + RecordingFormat.RECORD_HEADER_SIZE + length;
+            if (length < 0 || end > size) {
+                break;
+            }
+            if (count == positions.length) {
+                positions = Arrays.copyOf(positions, count * 2);
+            }
+            positions[count++] = (int) position;
+            position = end;
+        }
+        return Arrays.copyOf(positions, count);
+    }
+}
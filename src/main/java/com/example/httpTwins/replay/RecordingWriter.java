@@ -0,0 +1,157 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.replay;
+
+import com.example.httpTwins.model.TwinRequest;
+
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+
+/**
+ * Appends twins to a new recording file (see {@link RecordingFormat}) through a write buffer, and
+ * writes the index on {@link #close()}. Not thread-safe: a single thread records into a file.
+ */
+public final class RecordingWriter implements AutoCloseable {
+
+    /**
+     * Files are read back through a single mapping, so they stay below 2 GB.
+     */
+    public static final long MAX_FILE_SIZE = Integer.MAX_VALUE;
+
+    /**
+     * The extension of recording files.
+     */
+    public static final String EXTENSION = ".twr";
+
+    private final Path path;
+    private final FileChannel channel;
+    private final ByteBuffer buffer;
+    private ByteBuffer record = ByteBuffer.allocate(64 * 1024);
+    private int[] positions = new int[1024];
+    private int count;
+    private long size;
+
+    /**
+     * Creates the file; it must not exist yet.
+     *
+     * @param startEpochMillis The wall-clock time of offset zero.
+     * @param bufferSize       The bytes collected before each write to the file.
+     */
+    public RecordingWriter(Path path, long startEpochMillis, int bufferSize) throws IOException {
+        this.path = path;
+        this.channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE);
+        this.buffer = ByteBuffer.allocateDirect(Math.max(bufferSize, RecordingFormat.HEADER_SIZE));
+        buffer.putInt(RecordingFormat.MAGIC).putInt(RecordingFormat.VERSION).putLong(startEpochMillis);
+        this.size = RecordingFormat.HEADER_SIZE;
+    }
+
+    /**
+     * Appends a twin.
+     *
+     * @param offsetNanos The time since offset zero; never less than the previous twin's.
+     * @throws IOException if the write fails, or if the file would outgrow {@link #MAX_FILE_SIZE}.
+     */
+    public void append(long offsetNanos, TwinRequest twin) throws IOException {
+        ByteBuffer encoded = encode(offsetNanos, twin);
+        long indexSize = 4L * (count + 1) + RecordingFormat.TRAILER_SIZE;
+        if (size + encoded.remaining() + indexSize > MAX_FILE_SIZE) {
+            throw new IOException("Recording " + path + " is full");
+        }
+        if (count == positions.length) {
+            positions = Arrays.copyOf(positions, count * 2);
+        }
+        positions[count++] = (int) size;
+        size += encoded.remaining();
+        write(encoded);
+    }
+
+    public Path getPath() {
+        return path;
+    }
+
+    /**
+     * Returns the number of twins appended.
+     */
+    public int getCount() {
+        return count;
+    }
+
+    /**
+     * Returns the file's size so far, including buffered bytes but not the index.
+     */
+    public long getSize() {
+        return size;
+    }
+
+    /**
+     * Writes out the buffered twins.
+     */
+    public void flush() throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            int indexPosition = (int) size;
+            ByteBuffer index = ByteBuffer.allocate(4 * count + RecordingFormat.TRAILER_SIZE);
+            for (int i = 0; i < count; i++) {
+                index.putInt(positions[i]);
+            }
+            index.putInt(indexPosition).putInt(count).putInt(RecordingFormat.INDEX_MAGIC).flip();
+            write(index);
+            flush();
+        } finally {
+            channel.close();
+        }
+    }
+
+    private ByteBuffer encode(long offsetNanos, TwinRequest twin) {
+        while (true) {
+            record.clear().position(RecordingFormat.RECORD_HEADER_SIZE);
+            try {
+                RecordingFormat.encode(twin, record);
+                break;
+            } catch (BufferOverflowException e) {
+                record = ByteBuffer.allocate(record.capacity() * 2);
+            }
+        }
+        record.putInt(0, record.position() - RecordingFormat.RECORD_HEADER_SIZE).putLong(4, offsetNanos);
+        return record.flip();
+    }
+
+    private void write(ByteBuffer bytes) throws IOException {
+        if (bytes.remaining() > buffer.remaining()) {
+            flush();
+        }
+        if (bytes.remaining() > buffer.capacity()) {
+            while (bytes.hasRemaining()) {
+                channel.write(bytes);
+            }
+        } else {
+            buffer.put(bytes);
+        }
+    }
+}
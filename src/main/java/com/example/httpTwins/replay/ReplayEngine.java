@@ -0,0 +1,154 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.replay;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Replays a recording against a target, turning captured traffic into a repeatable load test.
+ * <p>
+ * A single thread walks the recording in order. At a paced {@link ReplayRate} it sends each twin
+ * when its scaled offset comes due; at the maximum rate it sends as soon as one of the
+ * {@code maxInFlight} slots is free. Requests go out through the JDK's asynchronous
+ * {@link HttpClient}, so a slow target ties up connections, not threads, and bodies are streamed
+ * straight from the recording's mapping.
+ */
+public final class ReplayEngine implements AutoCloseable {
+
+    private final String target;
+    private final ReplayRate rate;
+    private final int maxInFlight;
+    private final Duration timeout;
+    private final ExecutorService ioExecutor;
+    private final HttpClient client;
+
+    /**
+     * @param target      The base URL the recorded request URIs are appended to, such as {@code http://localhost:8080}.
+     * @param maxInFlight The most twins awaiting a response at once.
+     * @param timeout     How long to wait for each response.
+     */
+    public ReplayEngine(String target, ReplayRate rate, int maxInFlight, Duration timeout) {
+        if (maxInFlight < 1) {
+            throw new IllegalArgumentException("maxInFlight must be at least one");
+        }
+        this.target = target.endsWith("/") ? target.substring(0, target.length() - 1) : target;
+        this.rate = rate;
+        this.maxInFlight = maxInFlight;
+        this.timeout = timeout;
+        AtomicInteger counter = new AtomicInteger();
+        this.ioExecutor = Executors.newFixedThreadPool(Math.max(2, Runtime.getRuntime().availableProcessors()), runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-replay-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(timeout)
+                .followRedirects(HttpClient.Redirect.NEVER)
+                .executor(ioExecutor)
+                .build();
+    }
+
+    /**
+     * Replays the whole recording and waits for the last response.
+     */
+    public ReplayReport replay(RecordingReader recording) throws InterruptedException {
+        return replay(recording, 0, recording.size());
+    }
+
+    /**
+     * Replays the twins from index {@code from}, inclusive, to {@code to}, exclusive, and waits for
+     * the last response. The first of them is sent right away.
+     */
+    public ReplayReport replay(RecordingReader recording, int from, int to) throws InterruptedException {
+        Semaphore inFlight = new Semaphore(maxInFlight);
+        LatencyHistogram latency = new LatencyHistogram();
+        LongAdder succeeded = new LongAdder();
+        LongAdder clientErrors = new LongAdder();
+        LongAdder serverErrors = new LongAdder();
+        LongAdder failed = new LongAdder();
+        long maxLag = 0;
+        long base = from < to ? recording.getOffsetNanos(from) : 0;
+        long start = System.nanoTime();
+        for (int i = from; i < to; i++) {
+            long due = start + rate.scale(recording.getOffsetNanos(i) - base);
+            if (rate.isPaced()) {
+                long wait;
+                while ((wait = due - System.nanoTime()) > 0) {
+                    LockSupport.parkNanos(wait);
+                }
+            }
+            inFlight.acquire();
+            long sent = System.nanoTime();
+            if (rate.isPaced()) {
+                maxLag = Math.max(maxLag, sent - due);
+            }
+            HttpRequest request;
+            try {
+                request = request(recording.get(i));
+            } catch (IllegalArgumentException e) {
+                // A recorded URI or header the client refuses
+                failed.increment();
+                inFlight.release();
+                continue;
+            }
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding()).whenComplete((response, failure) -> {
+                if (failure != null) {
+                    failed.increment();
+                } else {
+                    latency.record(System.nanoTime() - sent);
+                    int status = response.statusCode();
+                    (status >= 500 ? serverErrors : status >= 400 ? clientErrors : succeeded).increment();
+                }
+                inFlight.release();
+            });
+        }
+        // Every request times out eventually, so the last slots always come back
+        inFlight.acquire(maxInFlight);
+        long elapsed = System.nanoTime() - start;
+        return new ReplayReport(to - from, succeeded.sum(), clientErrors.sum(), serverErrors.sum(), failed.sum(),
+                elapsed, maxLag, latency);
+    }
+
+    @Override
+    public void close() {
+        ioExecutor.shutdownNow();
+    }
+
+    private HttpRequest request(TwinRequest twin) {
+        String uri = target + twin.getRequestURI() + (twin.getQueryString() != null ? "?" + twin.getQueryString() : "");
+        HttpRequest.Builder builder = HttpRequest.newBuilder(URI.create(uri)).timeout(timeout);
+        twin.forEachHeader((name, value) -> {
+            if (RemoteHttpClientPool.isForwarded(name)) {
+                builder.header(name, value);
+            }
+        });
+        return builder.method(twin.getMethod(), RemoteHttpClientPool.bodyPublisher(twin)).build();
+    }
+}
@@ -0,0 +1,66 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.replay;
+
+import java.util.Locale;
+
+/**
+ * How fast a recording is replayed, as a multiple of the rate it was recorded at.
+ *
+ * @param speed 1 for the original pace, 2 for twice as fast, or infinite for as fast as the target answers.
+ */
+public record ReplayRate(double speed) {
+
+    public static final ReplayRate ORIGINAL = new ReplayRate(1);
+    public static final ReplayRate MAXIMUM = new ReplayRate(Double.POSITIVE_INFINITY);
+
+    public ReplayRate {
+        if (!(speed > 0)) {
+            throw new IllegalArgumentException("The replay speed must be positive");
+        }
+    }
+
+    /**
+     * Parses {@code original}, {@code max} or a speed such as {@code 2x} or {@code 0.5}.
+     */
+    public static ReplayRate parse(String value) {
+        String rate = value.trim().toLowerCase(Locale.ROOT);
+        return switch (rate) {
+            case "original" -> ORIGINAL;
+            case "max", "maximum" -> MAXIMUM;
+            default -> new ReplayRate(Double.parseDouble(rate.endsWith("x") ? rate.substring(0, rate.length() - 1) : rate));
+        };
+    }
+
+    /**
+     * Whether twins are sent on a schedule, rather than as soon as a slot is free.
+     */
+    public boolean isPaced() {
+        return speed != Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Returns how long after the start of the replay a twin recorded at the offset is due.
+     */
+    long scale(long offsetNanos) {
+        return (long) (offsetNanos / speed);
+    }
+
+    @Override
+    public String toString() {
+        return isPaced() ? speed + "x" : "max";
+    }
+}
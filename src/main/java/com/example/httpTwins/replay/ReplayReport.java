@@ -0,0 +1,121 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.replay;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The outcome of one replay: what was sent, how the target answered and how fast.
+ */
+public final class ReplayReport {
+
+    private final long sent;
+    private final long succeeded;
+    private final long clientErrors;
+    private final long serverErrors;
+    private final long failed;
+    private final long elapsedNanos;
+    private final long maxLagNanos;
+    private final LatencyHistogram latency;
+
+    ReplayReport(long sent, long succeeded, long clientErrors, long serverErrors, long failed,
+                 long elapsedNanos, long maxLagNanos, LatencyHistogram latency) {
+        this.sent = sent;
+        this.succeeded = succeeded;
+        this.clientErrors = clientErrors;
+        this.serverErrors = serverErrors;
+        this.failed = failed;
+        this.elapsedNanos = elapsedNanos;
+        this.maxLagNanos = maxLagNanos;
+        this.latency = latency;
+    }
+
+    public long getSentCount() {
+        return sent;
+    }
+
+    /**
+     * Returns the number of 2xx and 3xx responses.
+     */
+    public long getSucceededCount() {
+        return succeeded;
+    }
+
+    /**
+     * Returns the number of 4xx responses.
+     */
+    public long getClientErrorCount() {
+        return clientErrors;
+    }
+
+    /**
+     * Returns the number of 5xx responses.
+     */
+    public long getServerErrorCount() {
+        return serverErrors;
+    }
+
+    /**
+     * Returns the number of twins that got no response, because they failed or timed out.
+     */
+    public long getFailedCount() {
+        return failed;
+    }
+
+    public long getElapsedNanos() {
+        return elapsedNanos;
+    }
+
+    /**
+     * Returns the twins sent per second.
+     */
+    public double getThroughput() {
+        return elapsedNanos == 0 ? 0 : sent * 1e9 / elapsedNanos;
+    }
+
+    /**
+     * Returns how late the most delayed twin left compared with its schedule; zero for unpaced replays.
+     */
+    public long getMaxLagNanos() {
+        return maxLagNanos;
+    }
+
+    /**
+     * Returns the response times, from sending a twin to receiving the whole response.
+     */
+    public LatencyHistogram getLatency() {
+        return latency;
+    }
+
+    @Override
+    public String toString() {
+        return String.format(Locale.ROOT, "Replayed %d twins in %.2f s (%.1f/s)%n"
+                        + "  responses: %d 2xx/3xx, %d 4xx, %d 5xx, %d failed%n"
+                        + "  latency:   mean %s, p50 %s, p90 %s, p99 %s, p99.9 %s, max %s%n"
+                        + "  max lag:   %s",
+                sent, elapsedNanos / 1e9, getThroughput(),
+                succeeded, clientErrors, serverErrors, failed,
+                millis((long) latency.getMeanNanos()), millis(latency.getPercentileNanos(0.5)),
+                millis(latency.getPercentileNanos(0.9)), millis(latency.getPercentileNanos(0.99)),
+                millis(latency.getPercentileNanos(0.999)), millis(latency.getMaxNanos()),
+                millis(maxLagNanos));
+    }
+
+    private static String millis(long nanos) {
+        return String.format(Locale.ROOT, "%.2f ms", nanos / (double) TimeUnit.MILLISECONDS.toNanos(1));
+    }
+}
@@ -0,0 +1,83 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.replay;
+
+import org.springframework.boot.convert.DurationStyle;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Replays recording files from the command line:
+ * <pre>
+ * ReplayTool &lt;target-url&gt; &lt;recording&gt;... [--rate original|max|&lt;speed&gt;x] [--concurrency &lt;n&gt;]
+ *            [--timeout &lt;duration&gt;] [--skip &lt;duration&gt;]
+ * </pre>
+ * Each file is replayed in turn and its report printed. {@code --skip} starts each file that far
+ * into its recording.
+ */
+public final class ReplayTool {
+
+    private static final String USAGE = "Usage: ReplayTool <target-url> <recording>... [--rate original|max|<speed>x] "
+            + "[--concurrency <n>] [--timeout <duration>] [--skip <duration>]";
+
+    private ReplayTool() {
+    }
+
+    public static void main(String[] args) throws IOException, InterruptedException {
+        List<Path> recordings = new ArrayList<>();
+        String target = null;
+        ReplayRate rate = ReplayRate.ORIGINAL;
+        int concurrency = 256;
+        Duration timeout = Duration.ofSeconds(30);
+        Duration skip = Duration.ZERO;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                switch (args[i]) {
+                    case "--rate" -> rate = ReplayRate.parse(args[++i]);
+                    case "--concurrency" -> concurrency = Integer.parseInt(args[++i]);
+                    case "--timeout" -> timeout = DurationStyle.detectAndParse(args[++i]);
+                    case "--skip" -> skip = DurationStyle.detectAndParse(args[++i]);
+                    default -> {
+                        if (target == null) {
+                            target = args[i];
+                        } else {
+                            recordings.add(Path.of(args[i]));
+                        }
+                    }
+                }
+            }
+        } catch (IllegalArgumentException | ArrayIndexOutOfBoundsException e) {
+            recordings.clear();
+        }
+        if (target == null || target.isBlank() || recordings.isEmpty()) {
+            System.err.println(USAGE);
+            System.exit(2);
+        }
+
+        try (ReplayEngine engine = new ReplayEngine(target, rate, concurrency, timeout)) {
+            for (Path path : recordings) {
+                RecordingReader recording = RecordingReader.open(path);
+                int from = recording.indexOf(skip.toNanos());
+                System.out.printf("%s: %d of %d twins to %s at %s%n", path, recording.size() - from, recording.size(), target, rate);
+                System.out.println(engine.replay(recording, from, recording.size()));
+            }
+        }
+    }
+}
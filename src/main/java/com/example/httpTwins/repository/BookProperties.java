@@ -0,0 +1,174 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.repository;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+
+/**
+ * Settings of the book endpoints' persistence, bound from {@code books.*}.
+ */
+@ConfigurationProperties(prefix = "books")
+public class BookProperties {
+
+    /**
+     * Books per page of {@code GET /books} when the request does not say.
+     */
+    private int pageSize = 100;
+
+    /**
+     * The largest page a request may ask for; larger sizes are capped.
+     */
+    private int maxPageSize = 1000;
+
+    private Cache cache = new Cache();
+
+    private Write write = new Write();
+
+    public int getPageSize() {
+        return pageSize;
+    }
+
+    public void setPageSize(int pageSize) {
+        this.pageSize = pageSize;
+    }
+
+    public int getMaxPageSize() {
+        return maxPageSize;
+    }
+
+    public void setMaxPageSize(int maxPageSize) {
+        this.maxPageSize = maxPageSize;
+    }
+
+    public Cache getCache() {
+        return cache;
+    }
+
+    public void setCache(Cache cache) {
+        this.cache = cache;
+    }
+
+    public Write getWrite() {
+        return write;
+    }
+
+    public void setWrite(Write write) {
+        this.write = write;
+    }
+
+    public static class Cache {
+
+        /**
+         * Pages kept in memory; the least recently read is evicted first. 0 disables the cache.
+         */
+        private int maxEntries = 256;
+
+        /**
+         * How long a page is served from memory at most. Writes through this application
+         * invalidate the cache at once; the time-to-live bounds how stale it gets when the table is
+         * written to by anyone else.
+         */
+        private Duration ttl = Duration.ofSeconds(30);
+
+        public int getMaxEntries() {
+            return maxEntries;
+        }
+
+        public void setMaxEntries(int maxEntries) {
+            this.maxEntries = maxEntries;
+        }
+
+        public Duration getTtl() {
+            return ttl;
+        }
+
+        public void setTtl(Duration ttl) {
+            this.ttl = ttl;
+        }
+    }
+
+    public static class Write {
+
+        /**
+         * How inserts are written. Group commit makes a request wait for other requests' books and
+         * for a shared transaction, so it is opt-in.
+         */
+        private BookWriteMode mode = BookWriteMode.DIRECT;
+
+        /**
+         * The most books inserted in one transaction; best kept equal to {@code hibernate.jdbc.batch_size}.
+         */
+        private int maxBatch = 50;
+
+        /**
+         * How long the committer waits for more books once it has one. Zero commits whatever has
+         * queued up during the previous commit, so batches only form under load.
+         */
+        private Duration maxWait = Duration.ZERO;
+
+        /**
+         * Books waiting for the committer. When it is full, requests write directly.
+         */
+        private int queueCapacity = 10_000;
+
+        /**
+         * How long a request waits for the committer to commit its book before it fails.
+         */
+        private Duration commitTimeout = Duration.ofSeconds(10);
+
+        public BookWriteMode getMode() {
+            return mode;
+        }
+
+        public void setMode(BookWriteMode mode) {
+            this.mode = mode;
+        }
+
+        public int getMaxBatch() {
+            return maxBatch;
+        }
+
+        public void setMaxBatch(int maxBatch) {
+            this.maxBatch = maxBatch;
+        }
+
+        public Duration getMaxWait() {
+            return maxWait;
+        }
+
+        public void setMaxWait(Duration maxWait) {
+            this.maxWait = maxWait;
+        }
+
+        public int getQueueCapacity() {
+            return queueCapacity;
+        }
+
+        public void setQueueCapacity(int queueCapacity) {
+            this.queueCapacity = queueCapacity;
+        }
+
+        public Duration getCommitTimeout() {
+            return commitTimeout;
+        }
+
+        public void setCommitTimeout(Duration commitTimeout) {
+            this.commitTimeout = commitTimeout;
+        }
+    }
+}
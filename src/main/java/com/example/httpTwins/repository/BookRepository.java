@@ -16,9 +16,23 @@
 package com.example.httpTwins.repository;
 
 import com.example.httpTwins.model.Book;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
 import org.springframework.stereotype.Repository;
 
+import java.util.List;
+
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
+
+    /**
+     * Returns one page of books without counting the whole table, as {@code findAll(Pageable)} would.
+     */
+    List<Book> findAllBy(Pageable pageable);
+
+    /**
+     * Returns the books following {@code id} in id order, for keyset pagination.
+     */
+    List<Book> findByIdGreaterThanOrderByIdAsc(long id, Limit limit);
 }
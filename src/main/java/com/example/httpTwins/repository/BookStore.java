@@ -0,0 +1,165 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.repository;
+
+import com.example.httpTwins.model.Book;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.SequenceWriter;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.dao.QueryTimeoutException;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * Reads and writes books on behalf of {@code /books}.
+ * <p>
+ * Pages of {@code GET /books} are served from a small in-memory cache that every write through
+ * this store invalidates, and the whole table is only ever read in bounded pages. Inserts are
+ * either saved on the request thread or, in {@link BookWriteMode#GROUP_COMMIT}, handed to a
+ * {@link GroupCommitter} so concurrent requests share one transaction and one batched insert.
+ */
+public class BookStore implements DisposableBean {
+
+    private final BookRepository repository;
+    private final BookProperties properties;
+    private final ObjectMapper objectMapper;
+    private final PageCache<PageKey, Book> cache;
+    private final GroupCommitter<Book> committer;
+
+    public BookStore(BookRepository repository, BookProperties properties, ObjectMapper objectMapper) {
+        this.repository = repository;
+        this.properties = properties;
+        this.objectMapper = objectMapper;
+        this.cache = new PageCache<>(properties.getCache().getMaxEntries(), properties.getCache().getTtl().toNanos());
+        BookProperties.Write write = properties.getWrite();
+        this.committer = write.getMode() == BookWriteMode.GROUP_COMMIT
+                ? new GroupCommitter<>("http-twins-book-writer", repository::saveAll, cache::invalidate, BookStore::unsaved,
+                        write.getMaxBatch(), write.getMaxWait().toNanos(), write.getQueueCapacity())
+                : null;
+    }
+
+    /**
+     * Returns one page of books in id order.
+     *
+     * @param page The zero-based page number.
+     * @param size Books per page, or {@code null} for the configured default; capped at the maximum.
+     */
+    public List<Book> page(int page, Integer size) {
+        int pageNumber = Math.max(page, 0);
+        int pageSize = Math.min(Math.max(size != null ? size : properties.getPageSize(), 1), properties.getMaxPageSize());
+        return cache.get(new PageKey(pageNumber, pageSize),
+                () -> repository.findAllBy(PageRequest.of(pageNumber, pageSize, Sort.by("id"))));
+    }
+
+    /**
+     * Writes every book as newline-delimited JSON, reading the table one keyset page at a time so
+     * neither the heap nor the response buffer ever holds all of it.
+     */
+    public void stream(OutputStream out) throws IOException {
+        int pageSize = properties.getMaxPageSize();
+        long lastId = 0;
+        try (SequenceWriter writer = objectMapper.writer()
+                .without(JsonGenerator.Feature.AUTO_CLOSE_TARGET)
+                .withRootValueSeparator("\n")
+                .writeValues(out)) {
+            List<Book> books;
+            do {
+                books = repository.findByIdGreaterThanOrderByIdAsc(lastId, Limit.of(pageSize));
+                for (Book book : books) {
+                    writer.write(book);
+                    lastId = book.getId();
+                }
+                writer.flush();
+            } while (books.size() == pageSize);
+        }
+        if (lastId > 0) {
+            out.write('\n');
+        }
+    }
+
+    /**
+     * Saves the book and returns it with its id once it is committed.
+     *
+     * @throws QueryTimeoutException if the group committer did not commit it within the commit timeout;
+     *                               it may still be committed later.
+     */
+    public Book save(Book book) {
+        CompletableFuture<Book> saved = committer != null ? committer.submit(book) : null;
+        if (saved == null) {
+            // Direct mode, or the committer is backed up or stopped: this request pays for its own transaction
+            Book result = repository.save(book);
+            cache.invalidate();
+            return result;
+        }
+        Duration timeout = properties.getWrite().getCommitTimeout();
+        try {
+            return saved.get(timeout.toNanos(), TimeUnit.NANOSECONDS);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+            if (e.getCause() instanceof Error cause) {
+                throw cause;
+            }
+            throw new CompletionException(e.getCause());
+        } catch (TimeoutException e) {
+            throw new QueryTimeoutException("Book not committed within " + timeout, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted while waiting for the book to be committed", e);
+        }
+    }
+
+    /**
+     * Returns the number of insert transactions committed by the group committer, 0 in direct mode.
+     */
+    public long getGroupCommitCount() {
+        return committer != null ? committer.getBatchCount() : 0;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (committer != null) {
+            committer.close();
+        }
+    }
+
+    /**
+     * Copies the book without the id a rolled-back insert assigned it, so saving it inserts it again
+     * instead of merging a row that was never committed.
+     */
+    private static Book unsaved(Book book) {
+        Book copy = new Book();
+        copy.setTitle(book.getTitle());
+        copy.setAuthor(book.getAuthor());
+        return copy;
+    }
+
+    private record PageKey(int page, int size) {
+    }
+}
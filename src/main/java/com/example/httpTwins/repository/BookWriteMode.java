@@ -0,0 +1,33 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.repository;
+
+/**
+ * How {@code POST /books} writes a book.
+ */
+public enum BookWriteMode {
+
+    /**
+     * One transaction per request, on the request thread.
+     */
+    DIRECT,
+
+    /**
+     * Requests arriving together share one transaction and one batched insert; each still waits for
+     * its book to be committed before answering.
+     */
+    GROUP_COMMIT
+}
@@ -0,0 +1,217 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.repository;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+import java.util.function.UnaryOperator;
+
+/**
+ * Commits entities submitted by many request threads in shared transactions.
+ * <p>
+ * A single committer thread takes everything queued, up to {@code maxBatch}, and saves it in one
+ * call, so concurrent requests pay for one transaction and one batched insert between them. While
+ * a batch commits the next one queues up: batches grow with the load by themselves, and a lone
+ * request is committed at once unless {@code maxWait} asks the committer to linger. Each caller's
+ * future completes only once its entity is committed.
+ * <p>
+ * If a batch fails, its entities are retried one by one, so one bad entity fails only its own request.
+ * The retries save fresh copies: the rolled-back transaction may have left state on the originals,
+ * such as generated ids, that would make them look already persisted. An {@link Error} stops the
+ * committer for good: every entity it holds fails with it, and later submissions are refused.
+ *
+ * @param <T> The entity type.
+ */
+public final class GroupCommitter<T> implements AutoCloseable {
+
+    private static final Logger logger = LoggerFactory.getLogger(GroupCommitter.class);
+
+    private final Function<List<T>, List<T>> saveAll;
+    private final Runnable onCommit;
+    private final UnaryOperator<T> retryCopy;
+    private final BlockingQueue<Pending<T>> queue;
+    private final int maxBatch;
+    private final long maxWaitNanos;
+    private final Thread committer;
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder committed = new LongAdder();
+    private volatile boolean running = true;
+
+    /**
+     * @param saveAll   Saves a batch in one transaction and returns the saved entities, in order.
+     * @param onCommit  Runs on the committer thread after each commit.
+     * @param retryCopy Copies an entity of a failed batch, without anything its failed save set on it.
+     */
+    public GroupCommitter(String name, Function<List<T>, List<T>> saveAll, Runnable onCommit, UnaryOperator<T> retryCopy,
+                          int maxBatch, long maxWaitNanos, int queueCapacity) {
+        if (maxBatch < 1) {
+            throw new IllegalArgumentException("maxBatch must be at least one");
+        }
+        this.saveAll = saveAll;
+        this.onCommit = onCommit;
+        this.retryCopy = retryCopy;
+        this.queue = new ArrayBlockingQueue<>(queueCapacity);
+        this.maxBatch = maxBatch;
+        this.maxWaitNanos = maxWaitNanos;
+        this.committer = new Thread(this::run, name);
+        this.committer.setDaemon(true);
+        this.committer.start();
+    }
+
+    /**
+     * Queues the entity for the next commit.
+     *
+     * @return A future completed with the saved entity, or {@code null} if the queue is full or
+     *         the committer has stopped, in which case the caller must save it itself.
+     */
+    public CompletableFuture<T> submit(T entity) {
+        if (!running) {
+            return null;
+        }
+        Pending<T> pending = new Pending<>(entity, new CompletableFuture<>());
+        if (!queue.offer(pending)) {
+            return null;
+        }
+        // The committer may have stopped after the check above; whoever takes the entity back completes it
+        if (!running && queue.remove(pending)) {
+            return null;
+        }
+        return pending.future;
+    }
+
+    /**
+     * Whether the committer still takes entities: it has not been closed and has not died.
+     */
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Returns the number of transactions committed.
+     */
+    public long getBatchCount() {
+        return batches.sum();
+    }
+
+    /**
+     * Returns the number of entities committed.
+     */
+    public long getCommittedCount() {
+        return committed.sum();
+    }
+
+    /**
+     * Stops taking entities and commits those already queued.
+     */
+    @Override
+    public void close() throws InterruptedException {
+        // Not interrupted: an interrupt could abort a commit in progress
+        running = false;
+        committer.join(TimeUnit.SECONDS.toMillis(10));
+        // Entities that slipped in as the committer stopped
+        failQueued(new RejectedExecutionException("Committer '" + committer.getName() + "' is closed"));
+    }
+
+    private void run() {
+        List<Pending<T>> batch = new ArrayList<>(maxBatch);
+        while (running || !queue.isEmpty()) {
+            try {
+                Pending<T> first = queue.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                if (maxWaitNanos > 0 && running) {
+                    long deadline = System.nanoTime() + maxWaitNanos;
+                    Pending<T> next;
+                    while (batch.size() < maxBatch
+                            && (next = queue.poll(deadline - System.nanoTime(), TimeUnit.NANOSECONDS)) != null) {
+                        batch.add(next);
+                    }
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                running = false;
+            }
+            queue.drainTo(batch, maxBatch - batch.size());
+            if (!batch.isEmpty()) {
+                try {
+                    commit(batch);
+                } catch (Throwable e) {
+                    // Anything commit does not handle, such as an OutOfMemoryError, leaves the committer in no state to go on
+                    running = false;
+                    logger.error("HttpTwins ERROR: Committer '{}' stopped, failing {} queued entities. Reason: {}",
+                            committer.getName(), batch.size() + queue.size(), e.toString(), e);
+                    for (Pending<T> pending : batch) {
+                        pending.future.completeExceptionally(e);
+                    }
+                    failQueued(e);
+                    return;
+                }
+                batch.clear();
+            }
+        }
+    }
+
+    private void failQueued(Throwable failure) {
+        Pending<T> pending;
+        while ((pending = queue.poll()) != null) {
+            pending.future.completeExceptionally(failure);
+        }
+    }
+
+    private void commit(List<Pending<T>> batch) {
+        List<T> entities = new ArrayList<>(batch.size());
+        for (Pending<T> pending : batch) {
+            entities.add(pending.entity);
+        }
+        try {
+            List<T> saved = saveAll.apply(entities);
+            batches.increment();
+            committed.add(batch.size());
+            onCommit.run();
+            for (int i = 0; i < batch.size(); i++) {
+                batch.get(i).future.complete(saved.get(i));
+            }
+        } catch (RuntimeException e) {
+            logger.warn("HttpTwins WARNING: Group commit of {} entities failed, retrying them one by one. Reason: {}", batch.size(), e.getMessage());
+            for (Pending<T> pending : batch) {
+                try {
+                    T saved = saveAll.apply(List.of(retryCopy.apply(pending.entity))).get(0);
+                    batches.increment();
+                    committed.increment();
+                    onCommit.run();
+                    pending.future.complete(saved);
+                } catch (RuntimeException failure) {
+                    pending.future.completeExceptionally(failure);
+                }
+            }
+        }
+    }
+
+    private record Pending<T>(T entity, CompletableFuture<T> future) {
+    }
+}
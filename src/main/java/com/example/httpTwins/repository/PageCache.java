@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.repository;
+
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * A bounded, least-recently-used cache of result pages, invalidated by writes.
+ * <p>
+ * Every entry remembers the write generation it was loaded in. {@link #invalidate()} only bumps
+ * the generation, so it costs nothing on the write path; entries of an older generation are
+ * misses. A page loaded while a write commits is stamped with the generation from before the
+ * load, so it is never served after that write.
+ *
+ * @param <K> The page key.
+ * @param <V> The element type.
+ */
+public final class PageCache<K, V> {
+
+    private final int maxEntries;
+    private final long ttlNanos;
+    private final Map<K, Entry<V>> entries;
+    private final AtomicLong generation = new AtomicLong();
+
+    /**
+     * @param maxEntries The most pages kept; 0 disables caching.
+     * @param ttlNanos   How long a page is served at most.
+     */
+    public PageCache(int maxEntries, long ttlNanos) {
+        this.maxEntries = maxEntries;
+        this.ttlNanos = ttlNanos;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<K, Entry<V>> eldest) {
+                return size() > PageCache.this.maxEntries;
+            }
+        };
+    }
+
+    /**
+     * Returns the cached page, or loads and caches it. Concurrent misses on the same key each load it.
+     */
+    public List<V> get(K key, Supplier<List<V>> loader) {
+        if (maxEntries <= 0) {
+            return loader.get();
+        }
+        long current = generation.get();
+        long now = System.nanoTime();
+        Entry<V> entry;
+        synchronized (entries) {
+            entry = entries.get(key);
+        }
+        if (entry != null && entry.generation == current && now - entry.loadedAt < ttlNanos) {
+            return entry.page;
+        }
+        List<V> page = List.copyOf(loader.get());
+        synchronized (entries) {
+            entries.put(key, new Entry<>(page, current, now));
+        }
+        return page;
+    }
+
+    /**
+     * Makes every cached page a miss.
+     */
+    public void invalidate() {
+        generation.incrementAndGet();
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    private record Entry<V>(List<V> page, long generation, long loadedAt) {
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.routing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Reads the values of a few JSON fields out of a request body with a streaming parser. The field
+ * paths are compiled into a trie: subtrees no path goes through are skipped without being decoded,
+ * and parsing stops as soon as every field still needed has been found.
+ */
+final class BodyFieldReader {
+
+    private final JsonFactory factory;
+    private final Node root = new Node();
+
+    /**
+     * @param paths Dot-separated field paths; the value of {@code paths[i]} is read into index {@code i}.
+     */
+    BodyFieldReader(JsonFactory factory, String[] paths) {
+        this.factory = factory;
+        for (int i = 0; i < paths.length; i++) {
+            Node node = root;
+            for (String name : paths[i].trim().split("\\.")) {
+                node = node.children.computeIfAbsent(name, key -> new Node());
+            }
+            node.field = i;
+        }
+    }
+
+    /**
+     * Returns the text of the first scalar value of each field, {@code null} for the fields not
+     * found. A body that is not valid JSON yields the values read up to the error.
+     *
+     * @param needed Which fields must be found; parsing stops once they all are.
+     */
+    String[] read(ByteBuffer body, boolean[] needed) {
+        String[] values = new String[needed.length];
+        int remaining = 0;
+        for (boolean field : needed) {
+            if (field) {
+                remaining++;
+            }
+        }
+        if (remaining == 0 || !body.hasRemaining()) {
+            return values;
+        }
+        try (JsonParser parser = factory.createParser(new ByteBufferBackedInputStream(body))) {
+            JsonToken token = parser.nextToken();
+            if (token != null) {
+                readValue(parser, token, root, values, needed, remaining);
+            }
+        } catch (IOException e) {
+            // Not JSON, or cut short: whatever was not found yet does not match
+        }
+        return values;
+    }
+
+    /**
+     * Reads the value the parser is on, returning the number of needed fields still missing.
+     */
+    private static int readValue(JsonParser parser, JsonToken token, Node node, String[] values, boolean[] needed,
+                                 int remaining) throws IOException {
+        if (token == JsonToken.START_OBJECT) {
+            if (node.children.isEmpty()) {
+                parser.skipChildren();
+                return remaining;
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                Node child = node.children.get(parser.currentName());
+                JsonToken value = parser.nextToken();
+                if (child == null) {
+                    parser.skipChildren();
+                    continue;
+                }
+                remaining = readValue(parser, value, child, values, needed, remaining);
+                if (remaining == 0) {
+                    return 0;
+                }
+            }
+        } else if (token == JsonToken.START_ARRAY) {
+            JsonToken element;
+            while ((element = parser.nextToken()) != JsonToken.END_ARRAY && element != null) {
+                remaining = readValue(parser, element, node, values, needed, remaining);
+                if (remaining == 0) {
+                    return 0;
+                }
+            }
+        } else if (node.field >= 0 && values[node.field] == null && token != JsonToken.VALUE_NULL) {
+            values[node.field] = parser.getText();
+            if (needed[node.field]) {
+                remaining--;
+            }
+        }
+        return remaining;
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private int field = -1;
+    }
+}
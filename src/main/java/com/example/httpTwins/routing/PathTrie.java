@@ -0,0 +1,104 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.routing;
+
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The path patterns of a routing table's destinations, compiled into a trie of URI segments. Each
+ * node holds the destinations, as bits, whose pattern ends there or continues with {@code **}, so
+ * a URI is matched against every pattern in one walk of its segments.
+ */
+final class PathTrie {
+
+    private final Node root = new Node();
+    private long unconstrained;
+
+    /**
+     * Adds the destination's pattern; a blank pattern matches every URI.
+     */
+    void add(String pattern, long bit) {
+        String trimmed = pattern.trim();
+        if (trimmed.isEmpty()) {
+            unconstrained |= bit;
+            return;
+        }
+        Node node = root;
+        for (String segment : trimmed.split("/")) {
+            if (segment.isEmpty()) {
+                continue;
+            }
+            if (segment.equals("**")) {
+                node.rest |= bit;
+                return;
+            }
+            if (segment.equals("*") || segment.startsWith("{") && segment.endsWith("}")) {
+                if (node.any == null) {
+                    node.any = new Node();
+                }
+                node = node.any;
+            } else {
+                node = node.children.computeIfAbsent(segment, key -> new Node());
+            }
+        }
+        node.terminal |= bit;
+    }
+
+    /**
+     * Returns the destinations whose pattern matches the URI.
+     */
+    long match(String uri) {
+        return unconstrained | match(root, uri, skipSlashes(uri, 0));
+    }
+
+    private static long match(Node node, String uri, int start) {
+        long matched = node.rest;
+        if (start >= uri.length()) {
+            return matched | node.terminal;
+        }
+        int end = uri.indexOf('/', start);
+        if (end < 0) {
+            end = uri.length();
+        }
+        int next = skipSlashes(uri, end);
+        if (!node.children.isEmpty()) {
+            Node literal = node.children.get(uri.substring(start, end));
+            if (literal != null) {
+                matched |= match(literal, uri, next);
+            }
+        }
+        if (node.any != null) {
+            matched |= match(node.any, uri, next);
+        }
+        return matched;
+    }
+
+    private static int skipSlashes(String uri, int index) {
+        while (index < uri.length() && uri.charAt(index) == '/') {
+            index++;
+        }
+        return index;
+    }
+
+    private static final class Node {
+
+        private final Map<String, Node> children = new HashMap<>();
+        private Node any;
+        private long terminal;
+        private long rest;
+    }
+}
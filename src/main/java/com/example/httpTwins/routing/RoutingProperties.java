@@ -0,0 +1,139 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.routing;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Content-based routing of twins, bound from {@code http-twins.routing.*}. A destination with a rule
+ * only gets the twins of requests matching all of the rule's predicates; destinations without one
+ * get every twin. For example:
+ * <pre>
+ * http-twins.routing.destinations.RemoteERP.body.author=(?i).*herbert.*
+ * http-twins.routing.destinations.ReportingAgent.path=/books/**
+ * http-twins.routing.destinations.ReportingAgent.headers.X-Tenant=acme|globex
+ * http-twins.routing.destinations[https://ecom.buyers/items].query.region=eu-.*
+ * </pre>
+ * Predicate values are regular expressions that must match the whole value; a header, query
+ * parameter or body field that is missing never matches. Body fields are dot-separated JSON field
+ * paths that reach into arrays transparently, and match the first scalar value found.
+ * <p>
+ * The same rules can be kept in a properties {@link #file}, with the keys of this prefix left out
+ * ({@code destinations.RemoteERP.body.author=...}, with the colon of a URL escaped as {@code \:}).
+ * It is reloaded when it changes, and its rules replace those of the same destinations here.
+ */
+@ConfigurationProperties(prefix = "http-twins.routing")
+public class RoutingProperties {
+
+    /**
+     * Rules keyed by destination: the processor's simple class name, or the remote URL in brackets.
+     */
+    private Map<String, Rule> destinations = new LinkedHashMap<>();
+
+    /**
+     * A properties file of further rules. Empty if there is none.
+     */
+    private String file = "";
+
+    /**
+     * How often the file is checked for changes.
+     */
+    private Duration reloadInterval = Duration.ofSeconds(5);
+
+    public Map<String, Rule> getDestinations() {
+        return destinations;
+    }
+
+    public void setDestinations(Map<String, Rule> destinations) {
+        this.destinations = destinations;
+    }
+
+    public String getFile() {
+        return file;
+    }
+
+    public void setFile(String file) {
+        this.file = file;
+    }
+
+    public Duration getReloadInterval() {
+        return reloadInterval;
+    }
+
+    public void setReloadInterval(Duration reloadInterval) {
+        this.reloadInterval = reloadInterval;
+    }
+
+    public static class Rule {
+
+        /**
+         * A pattern the request URI must match, segment by segment: {@code *} or {@code {name}}
+         * matches one segment, a trailing {@code **} any number of them. Empty matches every URI.
+         */
+        private String path = "";
+
+        /**
+         * Header names, matched case-insensitively, and the pattern of their first value.
+         */
+        private Map<String, String> headers = new LinkedHashMap<>();
+
+        /**
+         * Query parameter names and the pattern of their first, decoded value.
+         */
+        private Map<String, String> query = new LinkedHashMap<>();
+
+        /**
+         * JSON field paths of the request body and the pattern of their value.
+         */
+        private Map<String, String> body = new LinkedHashMap<>();
+
+        public String getPath() {
+            return path;
+        }
+
+        public void setPath(String path) {
+            this.path = path;
+        }
+
+        public Map<String, String> getHeaders() {
+            return headers;
+        }
+
+        public void setHeaders(Map<String, String> headers) {
+            this.headers = headers;
+        }
+
+        public Map<String, String> getQuery() {
+            return query;
+        }
+
+        public void setQuery(Map<String, String> query) {
+            this.query = query;
+        }
+
+        public Map<String, String> getBody() {
+            return body;
+        }
+
+        public void setBody(Map<String, String> body) {
+            this.body = body;
+        }
+    }
+}
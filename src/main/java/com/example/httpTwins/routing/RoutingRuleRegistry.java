@@ -0,0 +1,180 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.routing;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.boot.context.properties.bind.Bindable;
+import org.springframework.boot.context.properties.bind.Binder;
+import org.springframework.boot.context.properties.source.MapConfigurationPropertySource;
+import org.springframework.context.ApplicationEventPublisher;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Keeps the routing rules, from {@code http-twins.routing.destinations} and the rules file, and
+ * compiles them into a {@link RoutingTable} per endpoint.
+ * <p>
+ * The file is checked for changes on a single background thread. A changed file whose rules are
+ * all valid replaces the previous one's and publishes a {@link RoutingRulesChangedEvent}; one with
+ * an invalid rule is reported and the previous rules stay in force.
+ */
+public class RoutingRuleRegistry implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(RoutingRuleRegistry.class);
+
+    private final RoutingProperties properties;
+    private final ApplicationEventPublisher publisher;
+    private final JsonFactory factory = new JsonFactory();
+    private final Path file;
+    private final ScheduledExecutorService reloader;
+    private volatile Map<String, RoutingProperties.Rule> fileRules = Map.of();
+    private String fileStamp;
+
+    public RoutingRuleRegistry(RoutingProperties properties, ApplicationEventPublisher publisher) {
+        this.properties = properties;
+        this.publisher = publisher;
+        if (properties.getFile().isBlank()) {
+            this.file = null;
+            this.reloader = null;
+            return;
+        }
+        Duration reloadInterval = properties.getReloadInterval();
+        if (reloadInterval.isNegative() || reloadInterval.isZero()) {
+            throw new IllegalArgumentException("HttpTwins routing needs a positive reload-interval");
+        }
+        this.file = Path.of(properties.getFile().trim());
+        reload();
+        this.reloader = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-routing-reload");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = reloadInterval.toNanos();
+        this.reloader.scheduleWithFixedDelay(this::reload, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    /**
+     * Compiles the rules of the endpoint's destinations. Invalid rules are reported and left out.
+     *
+     * @param endpoint     The endpoint, for reporting.
+     * @param destinations The endpoint's destinations, in the bit order of the table.
+     * @return The table, or {@code null} if no destination has a valid rule or there are too many to route.
+     */
+    public RoutingTable table(String endpoint, List<String> destinations) {
+        Map<String, RoutingProperties.Rule> rules = new LinkedHashMap<>();
+        properties.getDestinations().forEach((destination, rule) -> {
+            String invalid = validate(destination, rule);
+            if (invalid == null) {
+                rules.put(destination, rule);
+            } else {
+                logger.warn("HttpTwins WARNING: Ignoring routing rule of {} on {}. Reason: {}", destination, endpoint, invalid);
+            }
+        });
+        rules.putAll(fileRules);
+        try {
+            return RoutingTable.compile(destinations, rules, factory);
+        } catch (IllegalArgumentException e) {
+            logger.warn("HttpTwins WARNING: Not routing the twins of {}. Reason: {}", endpoint, e.getMessage());
+            return null;
+        }
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (reloader != null) {
+            reloader.shutdown();
+            reloader.awaitTermination(5, TimeUnit.SECONDS);
+        }
+    }
+
+    /**
+     * Loads the file if it changed since it was last loaded.
+     */
+    synchronized void reload() {
+        String stamp;
+        Properties loaded = new Properties();
+        try {
+            stamp = Files.getLastModifiedTime(file).toMillis() + ":" + Files.size(file);
+            if (stamp.equals(fileStamp)) {
+                return;
+            }
+            try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+                loaded.load(reader);
+            }
+        } catch (IOException e) {
+            if (fileStamp == null || !fileStamp.isEmpty()) {
+                logger.warn("HttpTwins WARNING: Could not read routing rules file {}, keeping the current rules. Reason: {}", file, e.getMessage());
+                fileStamp = "";
+            }
+            return;
+        }
+        boolean initial = fileStamp == null;
+        fileStamp = stamp;
+
+        Map<String, RoutingProperties.Rule> rules;
+        try {
+            Map<String, String> entries = new LinkedHashMap<>();
+            loaded.forEach((key, value) -> entries.put(key.toString(), value.toString()));
+            rules = new Binder(new MapConfigurationPropertySource(entries))
+                    .bind("destinations", Bindable.mapOf(String.class, RoutingProperties.Rule.class))
+                    .orElse(Map.of());
+        } catch (RuntimeException e) {
+            logger.warn("HttpTwins WARNING: Invalid routing rules file {}, keeping the current rules. Reason: {}", file, e.getMessage());
+            return;
+        }
+        for (Map.Entry<String, RoutingProperties.Rule> rule : rules.entrySet()) {
+            String invalid = validate(rule.getKey(), rule.getValue());
+            if (invalid != null) {
+                logger.warn("HttpTwins WARNING: Invalid routing rule of {} in {}, keeping the current rules. Reason: {}",
+                        rule.getKey(), file, invalid);
+                return;
+            }
+        }
+
+        fileRules = Map.copyOf(rules);
+        logger.info("HttpTwins: Loaded {} routing rules from {}.", rules.size(), file);
+        if (!initial) {
+            publisher.publishEvent(new RoutingRulesChangedEvent(this));
+        }
+    }
+
+    /**
+     * Returns why the rule cannot be compiled, or {@code null} if it can.
+     */
+    private String validate(String destination, RoutingProperties.Rule rule) {
+        try {
+            RoutingTable.compile(List.of(destination), Map.of(destination, rule), factory);
+            return null;
+        } catch (IllegalArgumentException e) {
+            return e.getMessage();
+        }
+    }
+}
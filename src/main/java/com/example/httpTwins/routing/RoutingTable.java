@@ -0,0 +1,177 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.routing;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.net.URLDecoder;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * The routing rules of one endpoint's destinations, compiled into a decision tree over the request.
+ * <p>
+ * Destinations are bits of a {@code long}, in the order they were given. {@link #route} starts from
+ * the destinations whose path pattern matches the URI, one walk of a {@link PathTrie}, then drops
+ * those failing a header, query or body predicate, cheapest first. A predicate is only evaluated
+ * while some destination still depends on it, so the body is only parsed if a destination left
+ * needs a body field, and only until the fields still needed are found.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class RoutingTable {
+
+    /**
+     * The routing result that sends a twin to every destination.
+     */
+    public static final long ALL = -1L;
+
+    private final String[] destinations;
+    private final PathTrie paths;
+    private final ValueTest[] headers;
+    private final ValueTest[] query;
+    private final ValueTest[] body;
+    private final BodyFieldReader bodyReader;
+    private final long bodyMask;
+
+    private RoutingTable(String[] destinations, PathTrie paths, ValueTest[] headers, ValueTest[] query,
+                         ValueTest[] body, JsonFactory factory) {
+        this.destinations = destinations;
+        this.paths = paths;
+        this.headers = headers;
+        this.query = query;
+        this.body = body;
+        String[] fields = new String[body.length];
+        long bodyMask = 0;
+        for (int i = 0; i < body.length; i++) {
+            fields[i] = body[i].getName();
+            bodyMask |= body[i].getMask();
+        }
+        this.bodyReader = new BodyFieldReader(factory, fields);
+        this.bodyMask = bodyMask;
+    }
+
+    /**
+     * Compiles the rules of the destinations.
+     *
+     * @param destinations The destinations, at most 64; the one at index {@code i} is bit {@code i} of the result of {@link #route}.
+     * @param rules        Rules by destination name. Destinations without a rule get every twin.
+     * @return The table, or {@code null} if none of the destinations has a rule.
+     * @throws IllegalArgumentException If there are more than 64 destinations or a pattern is not a valid regular expression.
+     */
+    public static RoutingTable compile(List<String> destinations, Map<String, RoutingProperties.Rule> rules, JsonFactory factory) {
+        if (destinations.stream().noneMatch(rules::containsKey)) {
+            return null;
+        }
+        if (destinations.size() > Long.SIZE) {
+            throw new IllegalArgumentException("At most " + Long.SIZE + " destinations can be routed, not " + destinations.size());
+        }
+        PathTrie paths = new PathTrie();
+        ValueTest.Builder headers = new ValueTest.Builder();
+        ValueTest.Builder query = new ValueTest.Builder();
+        ValueTest.Builder body = new ValueTest.Builder();
+        for (int i = 0; i < destinations.size(); i++) {
+            long bit = 1L << i;
+            RoutingProperties.Rule rule = rules.get(destinations.get(i));
+            if (rule == null) {
+                paths.add("", bit);
+                continue;
+            }
+            paths.add(rule.getPath(), bit);
+            rule.getHeaders().forEach((name, pattern) -> headers.add(name.toLowerCase(Locale.ROOT), pattern, bit));
+            rule.getQuery().forEach((name, pattern) -> query.add(name, pattern, bit));
+            rule.getBody().forEach((path, pattern) -> body.add(path.trim(), pattern, bit));
+        }
+        return new RoutingTable(destinations.toArray(new String[0]), paths, headers.build(), query.build(), body.build(), factory);
+    }
+
+    /**
+     * Returns the destinations the request is routed to, as bits.
+     */
+    public long route(TwinRequest request) {
+        long routed = paths.match(request.getRequestURI());
+        for (ValueTest test : headers) {
+            if ((routed & test.getMask()) != 0) {
+                routed &= ~test.rejected(request.getHeader(test.getName()));
+            }
+        }
+        Map<String, String> parameters = null;
+        for (ValueTest test : query) {
+            if ((routed & test.getMask()) != 0) {
+                if (parameters == null) {
+                    parameters = parseQuery(request.getQueryString());
+                }
+                routed &= ~test.rejected(parameters.get(test.getName()));
+            }
+        }
+        if ((routed & bodyMask) != 0) {
+            boolean[] needed = new boolean[body.length];
+            for (int i = 0; i < body.length; i++) {
+                needed[i] = (routed & body[i].getMask()) != 0;
+            }
+            String[] values = bodyReader.read(request.getBody(), needed);
+            for (int i = 0; i < body.length; i++) {
+                if (needed[i]) {
+                    routed &= ~body[i].rejected(values[i]);
+                }
+            }
+        }
+        return routed;
+    }
+
+    /**
+     * Returns whether the destination at the index is among those routed to.
+     */
+    public static boolean isRouted(long routed, int destination) {
+        return (routed & 1L << destination) != 0;
+    }
+
+    /**
+     * The destinations in bit order.
+     */
+    public List<String> getDestinations() {
+        return List.of(destinations);
+    }
+
+    /**
+     * Returns the first value of each query parameter, decoded.
+     */
+    private static Map<String, String> parseQuery(String queryString) {
+        Map<String, String> parameters = new HashMap<>();
+        if (queryString == null || queryString.isEmpty()) {
+            return parameters;
+        }
+        for (String parameter : queryString.split("&")) {
+            int equals = parameter.indexOf('=');
+            String name = decode(equals < 0 ? parameter : parameter.substring(0, equals));
+            String value = equals < 0 ? "" : decode(parameter.substring(equals + 1));
+            parameters.putIfAbsent(name, value);
+        }
+        return parameters;
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, StandardCharsets.UTF_8);
+        } catch (IllegalArgumentException e) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.routing;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.regex.Pattern;
+
+/**
+ * The predicates of a routing table on one header, query parameter or body field. Destinations
+ * with the same pattern share it, so each distinct pattern is matched once per request.
+ */
+final class ValueTest {
+
+    private final String name;
+    private final Pattern[] patterns;
+    private final long[] bits;
+    private final long mask;
+
+    private ValueTest(String name, Map<String, Long> patterns) {
+        this.name = name;
+        this.patterns = new Pattern[patterns.size()];
+        this.bits = new long[patterns.size()];
+        long mask = 0;
+        int i = 0;
+        for (Map.Entry<String, Long> pattern : patterns.entrySet()) {
+            this.patterns[i] = Pattern.compile(pattern.getKey());
+            this.bits[i] = pattern.getValue();
+            mask |= pattern.getValue();
+            i++;
+        }
+        this.mask = mask;
+    }
+
+    String getName() {
+        return name;
+    }
+
+    /**
+     * The destinations that test this value.
+     */
+    long getMask() {
+        return mask;
+    }
+
+    /**
+     * Returns the destinations whose pattern the value does not match; a missing value matches none.
+     */
+    long rejected(String value) {
+        if (value == null) {
+            return mask;
+        }
+        long rejected = 0;
+        for (int i = 0; i < patterns.length; i++) {
+            if (!patterns[i].matcher(value).matches()) {
+                rejected |= bits[i];
+            }
+        }
+        return rejected;
+    }
+
+    /**
+     * Collects the predicates of several destinations on the same values, by name.
+     */
+    static final class Builder {
+
+        private final Map<String, Map<String, Long>> tests = new LinkedHashMap<>();
+
+        void add(String name, String pattern, long bit) {
+            tests.computeIfAbsent(name, key -> new LinkedHashMap<>()).merge(pattern, bit, (a, b) -> a | b);
+        }
+
+        ValueTest[] build() {
+            ValueTest[] built = new ValueTest[tests.size()];
+            int i = 0;
+            for (Map.Entry<String, Map<String, Long>> test : tests.entrySet()) {
+                built[i++] = new ValueTest(test.getKey(), test.getValue());
+            }
+            return built;
+        }
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.service;
+
+import com.example.httpTwins.audit.AuditProperties;
+import com.example.httpTwins.audit.AuditRecordEncoder;
+import com.example.httpTwins.audit.RollingFileWriter;
+import com.example.httpTwins.lifecycle.TwinFlushable;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.support.MpscRingBuffer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.nio.file.Paths;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * A {@link RequestProcessor} that keeps an audit trail of twins on disk, for use as a local
+ * destination in place of logging them.
+ * <p>
+ * {@link #process} only offers the twin to a lock-free ring buffer and returns; it never formats,
+ * logs or touches the disk. A single writer thread encodes the twins (see {@link AuditRecordEncoder})
+ * into one reusable buffer and appends it to size-capped, rotated files with few large writes
+ * (see {@link RollingFileWriter}). When the ring buffer is full the twin is dropped and counted,
+ * so a slow disk can never hold up the fan-out.
+ */
+@Component
+public class AuditSink implements RequestProcessor, TwinFlushable, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(AuditSink.class);
+    private static final long ERROR_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final MpscRingBuffer<TwinRequest> buffer;
+    private final AuditRecordEncoder encoder;
+    private final RollingFileWriter writer;
+    private final Thread writerThread;
+    private final LongAdder written = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    public AuditSink(AuditProperties properties) {
+        this.enabled = properties.isEnabled();
+        if (!enabled) {
+            this.buffer = null;
+            this.encoder = null;
+            this.writer = null;
+            this.writerThread = null;
+            return;
+        }
+        this.buffer = new MpscRingBuffer<>(properties.getBufferCapacity());
+        this.encoder = new AuditRecordEncoder(properties.getFormat(), properties.getRedactHeaders(),
+                (int) Math.min(Integer.MAX_VALUE - 1, properties.getMaxBodySize().toBytes()));
+        try {
+            this.writer = new RollingFileWriter(Paths.get(properties.getDirectory()), properties.getFilePrefix(),
+                    properties.getFormat().getExtension(), properties.getMaxFileSize().toBytes(), properties.getMaxFiles(),
+                    (int) Math.min(Integer.MAX_VALUE, properties.getWriteBufferSize().toBytes()));
+        } catch (IOException e) {
+            throw new UncheckedIOException("HttpTwins could not open the audit directory " + properties.getDirectory(), e);
+        }
+        this.writerThread = new Thread(this::run, "http-twins-audit-writer");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void process(HttpServletRequest request) {
+        process(TwinRequest.from(request));
+    }
+
+    @Override
+    public void process(TwinRequest request) {
+        if (!enabled) {
+            return;
+        }
+        if (!buffer.offer(request)) {
+            dropped.increment();
+        } else if (idle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Returns the number of twins encoded into the audit files.
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Returns the number of twins not audited because the buffer was full or the record did not fit.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public Stage getFlushStage() {
+        return Stage.AFTER_FANOUT;
+    }
+
+    /**
+     * Wakes the writer. It empties the buffer on its own, so there is nothing else to hurry.
+     */
+    @Override
+    public void flush() {
+        if (enabled) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Whether every buffered twin has reached the audit files and the writer has gone idle.
+     */
+    @Override
+    public boolean isFlushed() {
+        return !enabled || (idle && buffer.isEmpty());
+    }
+
+    @Override
+    public void destroy() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        if (!writerThread.isAlive()) {
+            // The writer is gone, so this thread is now the only consumer
+            drain();
+        }
+        writer.close();
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (drain() == 0) {
+                    // Idle: let the records reach the file, then sleep until process() offers more
+                    writer.flush();
+                    awaitTwins();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("HttpTwins ERROR: Failed to write the audit trail. Reason: {}", e.getMessage());
+                LockSupport.parkNanos(ERROR_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Parks the writer until a twin is offered or the sink is closed. The flag is raised before the
+     * buffer is checked once more, so a twin offered in between either is seen here or unparks the writer.
+     */
+    private void awaitTwins() {
+        idle = true;
+        try {
+            while (running && buffer.isEmpty()) {
+                LockSupport.park(this);
+            }
+        } finally {
+            idle = false;
+        }
+    }
+
+    /**
+     * Encodes every buffered twin. Runs on the writer thread, or on shutdown once it has stopped.
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        TwinRequest request;
+        while ((request = buffer.poll()) != null) {
+            write(request);
+            count++;
+        }
+        return count;
+    }
+
+    private void write(TwinRequest request) throws IOException {
+        long timestamp = System.currentTimeMillis();
+        ByteBuffer out = writer.buffer();
+        int start = out.position();
+        try {
+            encoder.encode(request, timestamp, out);
+        } catch (BufferOverflowException e) {
+            // Make room and try once more; a record larger than the whole buffer is dropped
+            out.position(start);
+            writer.flush();
+            try {
+                encoder.encode(request, timestamp, out);
+            } catch (BufferOverflowException tooLarge) {
+                out.clear();
+                dropped.increment();
+                logger.warn("HttpTwins WARNING: Dropped audit record for {} {}. Reason: larger than the write buffer of {} bytes",
+                        request.getMethod(), request.getRequestURI(), out.capacity());
+                return;
+            }
+        }
+        written.increment();
+        writer.endRecord();
+    }
+}
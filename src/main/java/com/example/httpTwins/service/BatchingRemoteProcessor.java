@@ -0,0 +1,278 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.service;
+
+import com.example.httpTwins.lifecycle.TwinFlushable;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.BatchProperties;
+import com.example.httpTwins.remote.NdjsonBatchEncoder;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.example.httpTwins.support.MpscRingBuffer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.net.URI;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A {@link RemoteProcessor} that sends twins in batches instead of one call each. Select it with
+ * {@code @HttpTwins(remoteProcessor = BatchingRemoteProcessor.class)}.
+ * <p>
+ * Twins are buffered per destination in a lock-free ring buffer and sent as one
+ * {@code application/x-ndjson} POST (see {@link NdjsonBatchEncoder}) as soon as the batch reaches
+ * {@code max-records} or {@code max-bytes}, or its oldest twin has waited about {@code linger}.
+ * A single flusher thread drains all destinations; the send itself goes through the shared
+ * {@link RemoteHttpClientPool} and never blocks it.
+ */
+@Component
+public class BatchingRemoteProcessor implements RemoteProcessor, TwinFlushable, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(BatchingRemoteProcessor.class);
+
+    private final RemoteHttpClientPool clientPool;
+    private final int maxRecords;
+    private final long maxBytes;
+    private final long lingerNanos;
+    private final boolean gzip;
+    private final int bufferCapacity;
+    private final ScheduledExecutorService flusher;
+    private final Map<String, Batch> batches = new ConcurrentHashMap<>();
+    private final LongAdder dropped = new LongAdder();
+    private final AtomicInteger pendingFlushes = new AtomicInteger();
+
+    public BatchingRemoteProcessor(RemoteHttpClientPool clientPool, BatchProperties properties) {
+        if (properties.getMaxRecords() < 1 || properties.getBufferCapacity() < 1 || properties.getLinger().isNegative()) {
+            throw new IllegalArgumentException("HttpTwins batching needs max-records and buffer-capacity of at least one and a non-negative linger");
+        }
+        this.clientPool = clientPool;
+        this.maxRecords = properties.getMaxRecords();
+        this.maxBytes = Math.max(1, properties.getMaxBytes().toBytes());
+        this.lingerNanos = properties.getLinger().toNanos();
+        this.gzip = properties.isGzip();
+        this.bufferCapacity = properties.getBufferCapacity();
+        this.flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-batch-flusher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        // Checking four times per linger period bounds the extra wait to a quarter of it
+        long tickNanos = Math.max(TimeUnit.MILLISECONDS.toNanos(1), lingerNanos / 4);
+        this.flusher.scheduleWithFixedDelay(this::flushLingering, tickNanos, tickNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void process(HttpServletRequest request, String remoteUrl) {
+        process(TwinRequest.from(request), remoteUrl);
+    }
+
+    @Override
+    public void process(TwinRequest request, String remoteUrl) {
+        processAsync(request, remoteUrl);
+    }
+
+    /**
+     * Buffers the twin and returns at once; the future does not wait for the batch to be sent. It
+     * fails only if the destination's buffer is full.
+     */
+    @Override
+    public CompletableFuture<Void> processAsync(TwinRequest request, String remoteUrl) {
+        Batch batch = batches.get(remoteUrl);
+        if (batch == null) {
+            batch = batches.computeIfAbsent(remoteUrl, Batch::new);
+        }
+        if (!batch.buffer.offer(request)) {
+            dropped.increment();
+            logger.warn("HttpTwins WARNING: Dropped mirrored request to remote destination '{}'. Reason: batch buffer of {} is full", remoteUrl, batch.buffer.capacity());
+            return CompletableFuture.failedFuture(new RejectedExecutionException("Batch buffer of " + batch.buffer.capacity() + " is full for " + remoteUrl));
+        }
+        if (batch.buffer.size() == 1) {
+            // First twin of a new batch starts the linger clock; a racing second twin only moves it slightly
+            batch.oldestNanos = System.nanoTime();
+        }
+        long pendingBytes = batch.pendingBytes.addAndGet(NdjsonBatchEncoder.estimateSize(request));
+        if ((batch.buffer.size() >= maxRecords || pendingBytes >= maxBytes) && batch.flushScheduled.compareAndSet(false, true)) {
+            try {
+                Batch full = batch;
+                flusher.execute(() -> {
+                    full.flushScheduled.set(false);
+                    drain(full, false);
+                });
+            } catch (RejectedExecutionException e) {
+                // Shutting down; destroy() sends what is left
+                batch.flushScheduled.set(false);
+            }
+        }
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Returns the number of twins waiting to be sent to the destination.
+     */
+    public int getBuffered(String remoteUrl) {
+        Batch batch = batches.get(remoteUrl);
+        return batch == null ? 0 : batch.buffer.size();
+    }
+
+    /**
+     * Returns the number of twins dropped because a destination's buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public Stage getFlushStage() {
+        return Stage.AFTER_FANOUT;
+    }
+
+    /**
+     * Sends every destination's batch now, however small, on the flusher thread.
+     */
+    @Override
+    public void flush() {
+        pendingFlushes.incrementAndGet();
+        try {
+            flusher.execute(() -> {
+                try {
+                    for (Batch batch : batches.values()) {
+                        drain(batch, true);
+                    }
+                } finally {
+                    pendingFlushes.decrementAndGet();
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; destroy() sends what is left
+            pendingFlushes.decrementAndGet();
+        }
+    }
+
+    /**
+     * Whether all buffers are empty and their batches handed to the client pool, which tracks them
+     * as in flight from there on.
+     */
+    @Override
+    public boolean isFlushed() {
+        if (pendingFlushes.get() > 0) {
+            return false;
+        }
+        for (Batch batch : batches.values()) {
+            if (!batch.buffer.isEmpty()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        flusher.shutdown();
+        flusher.awaitTermination(5, TimeUnit.SECONDS);
+        // The flusher is gone, so this thread is now the only consumer
+        for (Batch batch : batches.values()) {
+            drain(batch, true);
+        }
+    }
+
+    private void flushLingering() {
+        long now = System.nanoTime();
+        for (Batch batch : batches.values()) {
+            if (!batch.buffer.isEmpty() && now - batch.oldestNanos >= lingerNanos) {
+                drain(batch, true);
+            }
+        }
+    }
+
+    /**
+     * Sends full batches, and with {@code force} also whatever is left. Runs on the flusher only.
+     */
+    private void drain(Batch batch, boolean force) {
+        while (force || batch.buffer.size() >= maxRecords || batch.pendingBytes.get() >= maxBytes) {
+            List<TwinRequest> records = new ArrayList<>(Math.min(batch.buffer.size(), maxRecords));
+            long taken = 0;
+            TwinRequest record;
+            while (records.size() < maxRecords && taken < maxBytes && (record = batch.buffer.poll()) != null) {
+                records.add(record);
+                taken += NdjsonBatchEncoder.estimateSize(record);
+            }
+            if (records.isEmpty()) {
+                return;
+            }
+            batch.pendingBytes.addAndGet(-taken);
+            batch.oldestNanos = System.nanoTime();
+            send(batch.url, records, taken);
+        }
+    }
+
+    private void send(String remoteUrl, List<TwinRequest> records, long estimatedSize) {
+        byte[] payload;
+        try {
+            payload = NdjsonBatchEncoder.encode(records, estimatedSize, gzip);
+        } catch (RuntimeException e) {
+            logger.error("HttpTwins ERROR: Failed to encode batch of {} for remote destination '{}'. Reason: {}", records.size(), remoteUrl, e.getMessage());
+            return;
+        }
+        String[] headers = gzip
+                ? new String[]{"Content-Type", NdjsonBatchEncoder.CONTENT_TYPE, "Content-Encoding", "gzip"}
+                : new String[]{"Content-Type", NdjsonBatchEncoder.CONTENT_TYPE};
+        TwinRequest batchRequest = new TwinRequest("POST", URI.create(remoteUrl).getRawPath(), null, headers,
+                ByteBuffer.wrap(payload), null);
+        int count = records.size();
+        clientPool.send(batchRequest, remoteUrl, HttpResponse.BodyHandlers.discarding())
+                .whenComplete((response, error) -> {
+                    Throwable failure = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (failure == null) {
+                        logger.info("HttpTwins: Successfully mirrored batch of {} requests ({} bytes) to remote destination: {}", count, payload.length, remoteUrl);
+                    } else if (failure instanceof RejectedExecutionException) {
+                        logger.warn("HttpTwins WARNING: Dropped batch of {} mirrored requests to remote destination '{}'. Reason: {}", count, remoteUrl, failure.getMessage());
+                    } else {
+                        logger.error("HttpTwins ERROR: Failed to mirror batch of {} requests to remote destination '{}'. Reason: {}", count, remoteUrl, failure.getMessage());
+                    }
+                });
+    }
+
+    private final class Batch {
+
+        private final String url;
+        private final MpscRingBuffer<TwinRequest> buffer;
+        private final AtomicLong pendingBytes = new AtomicLong();
+        private final AtomicBoolean flushScheduled = new AtomicBoolean();
+        private volatile long oldestNanos = System.nanoTime();
+
+        private Batch(String url) {
+            this.url = url;
+            this.buffer = new MpscRingBuffer<>(bufferCapacity);
+        }
+    }
+}
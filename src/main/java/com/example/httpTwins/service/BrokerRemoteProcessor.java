@@ -0,0 +1,113 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.service;
+
+import com.example.httpTwins.broker.BrokerProducer;
+import com.example.httpTwins.broker.BrokerProperties;
+import com.example.httpTwins.broker.BrokerTransport;
+import com.example.httpTwins.lifecycle.TwinFlushable;
+import com.example.httpTwins.model.TwinRequest;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A {@link RemoteProcessor} that publishes twins to a message broker instead of calling an HTTP
+ * endpoint. Select it with {@code @HttpTwins(remoteProcessor = BrokerRemoteProcessor.class)} and
+ * name topics as remote destinations, in the form {@code broker://<topic>}.
+ * <p>
+ * Twins are batched, compressed and keyed by the {@link BrokerProducer} and published through the
+ * {@link BrokerTransport} bean: the in-JVM {@code EmbeddedBroker} unless the application declares
+ * another. The returned future completes once the broker has acknowledged the twin, so the
+ * endpoint's {@code maxConcurrency} covers the whole round trip.
+ */
+@Component
+public class BrokerRemoteProcessor implements RemoteProcessor, TwinFlushable, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(BrokerRemoteProcessor.class);
+    private static final String SCHEME = "broker:";
+
+    private final BrokerProducer producer;
+
+    public BrokerRemoteProcessor(BrokerTransport transport, BrokerProperties properties) {
+        this.producer = new BrokerProducer(transport, properties);
+    }
+
+    @Override
+    public void process(HttpServletRequest request, String remoteUrl) {
+        process(TwinRequest.from(request), remoteUrl);
+    }
+
+    @Override
+    public void process(TwinRequest request, String remoteUrl) {
+        processAsync(request, remoteUrl);
+    }
+
+    @Override
+    public CompletableFuture<Void> processAsync(TwinRequest request, String remoteUrl) {
+        CompletableFuture<Void> acknowledged = producer.send(topicOf(remoteUrl), request);
+        if (acknowledged.isCompletedExceptionally()) {
+            acknowledged.exceptionally(failure -> {
+                logger.warn("HttpTwins WARNING: Dropped mirrored request to remote destination '{}'. Reason: {}", remoteUrl, failure.getMessage());
+                return null;
+            });
+        }
+        return acknowledged;
+    }
+
+    public BrokerProducer getProducer() {
+        return producer;
+    }
+
+    @Override
+    public Stage getFlushStage() {
+        return Stage.AFTER_FANOUT;
+    }
+
+    @Override
+    public void flush() {
+        producer.flush();
+    }
+
+    /**
+     * Whether every twin handed to the producer has been acknowledged or failed.
+     */
+    @Override
+    public boolean isFlushed() {
+        return producer.getPendingCount() == 0;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        producer.close();
+    }
+
+    /**
+     * Returns the topic of a {@code broker://<topic>} or {@code broker:<topic>} destination; any
+     * other destination is taken as a topic name as it is.
+     */
+    static String topicOf(String remoteUrl) {
+        if (!remoteUrl.regionMatches(true, 0, SCHEME, 0, SCHEME.length())) {
+            return remoteUrl;
+        }
+        String topic = remoteUrl.substring(SCHEME.length());
+        return topic.startsWith("//") ? topic.substring(2) : topic;
+    }
+}
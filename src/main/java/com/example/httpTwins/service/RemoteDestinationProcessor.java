@@ -15,45 +15,69 @@
  */
 package com.example.httpTwins.service;
 
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.example.httpTwins.spill.TwinSpillQueue;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.HttpEntity;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpMethod;
 import org.springframework.stereotype.Component;
-import org.springframework.web.client.RestTemplate;
-import org.springframework.web.util.ContentCachingRequestWrapper;
 
-import java.util.Collections;
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.RejectedExecutionException;
 
 @Component
 public class RemoteDestinationProcessor implements RemoteProcessor {
 
     private static final Logger logger = LoggerFactory.getLogger(RemoteDestinationProcessor.class);
-    private final RestTemplate restTemplate;
+    private final RemoteHttpClientPool clientPool;
+    private final TwinSpillQueue spillQueue;
 
-    public RemoteDestinationProcessor(RestTemplate restTemplate) {
-        this.restTemplate = restTemplate;
+    public RemoteDestinationProcessor(RemoteHttpClientPool clientPool, TwinSpillQueue spillQueue) {
+        this.clientPool = clientPool;
+        this.spillQueue = spillQueue;
     }
 
     @Override
     public void process(HttpServletRequest request, String remoteUrl) {
-        try {
-            byte[] body = ((ContentCachingRequestWrapper) request).getContentAsByteArray();
-
-            HttpHeaders headers = new HttpHeaders();
-            Collections.list(request.getHeaderNames())
-                .forEach(name -> headers.add(name, request.getHeader(name)));
+        process(TwinRequest.from(request), remoteUrl);
+    }
 
-            HttpEntity<byte[]> entity = new HttpEntity<>(body, headers);
-            HttpMethod method = HttpMethod.valueOf(request.getMethod());
+    @Override
+    public void process(TwinRequest request, String remoteUrl) {
+        processAsync(request, remoteUrl);
+    }
 
-            restTemplate.exchange(remoteUrl, method, entity, String.class);
-            logger.info("HttpTwins: Successfully mirrored request to remote destination: {}", remoteUrl);
+    @Override
+    public CompletableFuture<Void> processAsync(TwinRequest request, String remoteUrl) {
+        // Returns as soon as the request is handed to the client; the response is handled on the pool's I/O threads
+        return clientPool.send(request, remoteUrl, HttpResponse.BodyHandlers.discarding())
+                .handle((response, error) -> {
+                    Throwable failure = error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+                    if (failure == null && !RemoteHttpClientPool.isRetryable(response.statusCode())) {
+                        logger.info("HttpTwins: Successfully mirrored request to remote destination: {}", remoteUrl);
+                        return null;
+                    }
+                    String reason = failure != null ? failure.getMessage() : "status " + response.statusCode();
+                    // Failed and rejected twins go to the spill log to be replayed once the destination recovers
+                    if (spill(request, remoteUrl)) {
+                        logger.warn("HttpTwins WARNING: Spilled mirrored request to remote destination '{}'. Reason: {}", remoteUrl, reason);
+                    } else if (failure instanceof RejectedExecutionException) {
+                        logger.warn("HttpTwins WARNING: Dropped mirrored request to remote destination '{}'. Reason: {}", remoteUrl, reason);
+                    } else {
+                        logger.error("HttpTwins ERROR: Failed to mirror request to remote destination '{}'. Reason: {}", remoteUrl, reason);
+                    }
+                    throw new CompletionException(failure != null ? failure
+                            : new IOException("Remote destination answered with " + reason));
+                });
+    }
 
-        } catch (Exception e) {
-            logger.error("HttpTwins ERROR: Failed to mirror request to remote destination '{}'. Reason: {}", remoteUrl, e.getMessage());
-        }
+    @Override
+    public boolean spill(TwinRequest request, String remoteUrl) {
+        // The spill log replays single requests, which is exactly what this processor sends
+        return spillQueue.spill(request, remoteUrl);
     }
 }
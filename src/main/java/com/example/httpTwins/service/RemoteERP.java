@@ -15,15 +15,12 @@
  */
 package com.example.httpTwins.service;
 
+import com.example.httpTwins.model.TwinRequest;
 import com.example.httpTwins.service.RequestProcessor;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.stereotype.Service;
-import org.springframework.web.util.ContentCachingRequestWrapper;
-
-import java.nio.charset.StandardCharsets;
-import java.util.Collections;
 
 @Service
 public class RemoteERP implements RequestProcessor {
@@ -32,24 +29,12 @@ public class RemoteERP implements RequestProcessor {
 
     @Override
     public void process(HttpServletRequest request) {
-        logger.info("\n==================== HttpTwins Request for [RemoteERP] ====================");
-        logger.info("Method: {}", request.getMethod());
-        logger.info("URI: {}", request.getRequestURI());
-
-        logger.info("--- Headers ---");
-        Collections.list(request.getHeaderNames())
-            .forEach(name -> logger.info("{}: {}", name, request.getHeader(name)));
-
-        logger.info("--- Body ---");
-        ContentCachingRequestWrapper wrapper = (ContentCachingRequestWrapper) request;
-        byte[] body = wrapper.getContentAsByteArray();
-        if (body.length > 0) {
-            logger.info(new String(body, StandardCharsets.UTF_8));
-        } else {
-            logger.info("[No Body]");
-        }
+        process(TwinRequest.from(request));
+    }
 
-        logger.info("-> Executing RemoteERP business logic...");
-        logger.info("=========================================================================\n");
+    @Override
+    public void process(TwinRequest request) {
+        // One line per twin; the full request, headers and body included, is kept by the AuditSink
+        logger.info("HttpTwins: [RemoteERP] {} {} ({} body bytes)", request.getMethod(), request.getRequestURI(), request.getBodyLength());
     }
 }
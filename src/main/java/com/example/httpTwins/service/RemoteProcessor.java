@@ -15,8 +15,12 @@
  */
 package com.example.httpTwins.service;
 
+import com.example.httpTwins.capture.TwinServletRequest;
+import com.example.httpTwins.model.TwinRequest;
 import jakarta.servlet.http.HttpServletRequest;
 
+import java.util.concurrent.CompletableFuture;
+
 /**
  * Defines the contract for a class that can process a mirrored HTTP request and send it to a remote destination.
  */
@@ -29,4 +33,46 @@ public interface RemoteProcessor {
      * @param remoteUrl The remote URL to which the request should be sent.
      */
     void process(HttpServletRequest request, String remoteUrl);
+
+    /**
+     * Sends a snapshot of the incoming HTTP request to the specified remote URL.
+     * <p>
+     * The default hands {@link #process(HttpServletRequest, String)} a {@link TwinServletRequest}
+     * reading from the snapshot, so existing processors keep working. Processors should override it
+     * to read the snapshot directly.
+     *
+     * @param request The immutable request snapshot, shared with the other destinations.
+     * @param remoteUrl The remote URL to which the request should be sent.
+     */
+    default void process(TwinRequest request, String remoteUrl) {
+        process(new TwinServletRequest(request), remoteUrl);
+    }
+
+    /**
+     * Sends a snapshot of the incoming HTTP request to the specified remote URL and reports when
+     * the remote call is over. Processors that send asynchronously should override this so
+     * concurrency limits cover the whole round trip; the default runs {@link #process(TwinRequest, String)}.
+     *
+     * @param request The immutable request snapshot, shared with the other destinations.
+     * @param remoteUrl The remote URL to which the request should be sent.
+     * @return A future completed when the remote call has finished, exceptionally if the twin
+     *         could not be delivered.
+     */
+    default CompletableFuture<Void> processAsync(TwinRequest request, String remoteUrl) {
+        process(request, remoteUrl);
+        return CompletableFuture.completedFuture(null);
+    }
+
+    /**
+     * Keeps a twin that could not be sent right now so it can be delivered later. Only processors
+     * whose wire format the spill log replays faithfully should keep it; the default keeps nothing.
+     * Called on request threads, so it must not block or do I/O.
+     *
+     * @param request The immutable request snapshot that could not be sent.
+     * @param remoteUrl The remote URL the request was meant for.
+     * @return {@code true} if the twin was kept for a later delivery, {@code false} if it is dropped.
+     */
+    default boolean spill(TwinRequest request, String remoteUrl) {
+        return false;
+    }
 }
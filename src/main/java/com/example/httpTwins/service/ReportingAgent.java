@@ -15,6 +15,9 @@
  */
 package com.example.httpTwins.service;
 
+import com.example.httpTwins.coalesce.TwinCoalescer;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.model.TwinResponse;
 import com.example.httpTwins.service.RequestProcessor;
 import jakarta.servlet.http.HttpServletRequest;
 import org.slf4j.Logger;
@@ -28,9 +31,21 @@ public class ReportingAgent implements RequestProcessor {
 
     @Override
     public void process(HttpServletRequest request) {
-        logger.info("\n--- HttpTwins Request for [ReportingAgent] ---");
-        logger.info("Processing {} request for URI: {}", request.getMethod(), request.getRequestURI());
-        logger.info("-> Executing ReportingAgent business logic...");
-        logger.info("--------------------------------------------\n");
+        process(TwinRequest.from(request));
+    }
+
+    @Override
+    public void process(TwinRequest request) {
+        if (request.getAttribute(TwinCoalescer.COUNT_ATTRIBUTE) instanceof Integer count) {
+            logger.info("HttpTwins: [ReportingAgent] {} {} x{}", request.getMethod(), request.getRequestURI(), count);
+        } else {
+            logger.info("HttpTwins: [ReportingAgent] {} {}", request.getMethod(), request.getRequestURI());
+        }
+    }
+
+    @Override
+    public void processResponse(TwinRequest request, TwinResponse response) {
+        logger.info("HttpTwins: [ReportingAgent] {} {} answered {} with {} body bytes{}", request.getMethod(), request.getRequestURI(),
+                response.getStatus(), response.getTotalBodyLength(), response.isTruncated() ? " (capture truncated)" : "");
     }
 }
@@ -15,6 +15,9 @@
  */
 package com.example.httpTwins.service;
 
+import com.example.httpTwins.capture.TwinServletRequest;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.model.TwinResponse;
 import jakarta.servlet.http.HttpServletRequest;
 
 /**
@@ -28,4 +31,30 @@ public interface RequestProcessor {
      * @param request The HttpServletRequest to be processed.
      */
     void process(HttpServletRequest request);
+
+    /**
+     * Processes a snapshot of the incoming HTTP request. This is what the aspect calls, off the
+     * request thread.
+     * <p>
+     * The default hands {@link #process(HttpServletRequest)} a {@link TwinServletRequest} reading from
+     * the snapshot, so existing processors keep working. Processors should override it to read the
+     * snapshot directly.
+     *
+     * @param request The immutable request snapshot, shared with the other destinations.
+     */
+    default void process(TwinRequest request) {
+        process(new TwinServletRequest(request));
+    }
+
+    /**
+     * Processes a copy of the primary response. Only called for endpoints annotated with
+     * {@code @HttpTwins(captureResponse = true)}, after the controller has finished.
+     * <p>
+     * The response body is backed by a pooled buffer and must not be used after this method returns.
+     *
+     * @param request The request snapshot the response belongs to.
+     * @param response The captured response.
+     */
+    default void processResponse(TwinRequest request, TwinResponse response) {
+    }
 }
@@ -0,0 +1,256 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.service;
+
+import com.example.httpTwins.lifecycle.TwinFlushable;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.replay.RecordingProperties;
+import com.example.httpTwins.replay.RecordingWriter;
+import com.example.httpTwins.support.MpscRingBuffer;
+import jakarta.servlet.http.HttpServletRequest;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.Stream;
+
+/**
+ * A {@link RequestProcessor} that records twins with their timing, to be replayed later as a load
+ * test with {@link com.example.httpTwins.replay.ReplayTool}.
+ * <p>
+ * Like {@link AuditSink}, {@link #process} only stamps the twin and offers it to a lock-free ring
+ * buffer; a single writer thread appends the twins to indexed recording files (see
+ * {@link RecordingWriter}), starting a new one when the current one reaches {@code max-file-size}.
+ * Twins are stamped when they reach the recorder, so their spacing includes the fan-out queue's
+ * jitter. When the ring buffer is full the twin is dropped and counted.
+ */
+@Component
+public class TrafficRecorder implements RequestProcessor, TwinFlushable, DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TrafficRecorder.class);
+    private static final long ERROR_BACKOFF_NANOS = TimeUnit.MILLISECONDS.toNanos(1);
+
+    private final boolean enabled;
+    private final MpscRingBuffer<Stamped> buffer;
+    private final Path directory;
+    private final String filePrefix;
+    private final long maxFileSize;
+    private final int maxFiles;
+    private final int writeBufferSize;
+    private final Deque<Path> files = new ArrayDeque<>();
+    private final Thread writerThread;
+    private final LongAdder recorded = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private RecordingWriter writer;
+    private long originNanos;
+    private volatile boolean running = true;
+    private volatile boolean idle;
+
+    public TrafficRecorder(RecordingProperties properties) {
+        this.enabled = properties.isEnabled();
+        this.directory = Paths.get(properties.getDirectory());
+        this.filePrefix = properties.getFilePrefix();
+        this.maxFileSize = Math.min(properties.getMaxFileSize().toBytes(), RecordingWriter.MAX_FILE_SIZE / 2);
+        this.maxFiles = Math.max(1, properties.getMaxFiles());
+        this.writeBufferSize = (int) Math.min(Integer.MAX_VALUE, properties.getWriteBufferSize().toBytes());
+        if (!enabled) {
+            this.buffer = null;
+            this.writerThread = null;
+            return;
+        }
+        this.buffer = new MpscRingBuffer<>(properties.getBufferCapacity());
+        try {
+            Files.createDirectories(directory);
+            try (Stream<Path> listing = Files.list(directory)) {
+                listing.filter(this::isRecording).sorted().forEach(files::add);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("HttpTwins could not open the recording directory " + directory, e);
+        }
+        this.writerThread = new Thread(this::run, "http-twins-recorder");
+        this.writerThread.setDaemon(true);
+        this.writerThread.start();
+    }
+
+    @Override
+    public void process(HttpServletRequest request) {
+        process(TwinRequest.from(request));
+    }
+
+    @Override
+    public void process(TwinRequest request) {
+        if (!enabled) {
+            return;
+        }
+        if (!buffer.offer(new Stamped(System.nanoTime(), request))) {
+            dropped.increment();
+        } else if (idle) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Returns the number of twins written to recording files.
+     */
+    public long getRecordedCount() {
+        return recorded.sum();
+    }
+
+    /**
+     * Returns the number of twins not recorded because the buffer was full or the write failed.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    @Override
+    public Stage getFlushStage() {
+        return Stage.AFTER_FANOUT;
+    }
+
+    /**
+     * Wakes the writer. It empties the buffer on its own, so there is nothing else to hurry.
+     */
+    @Override
+    public void flush() {
+        if (enabled) {
+            LockSupport.unpark(writerThread);
+        }
+    }
+
+    /**
+     * Whether every buffered twin has reached the recording files and the writer has gone idle.
+     */
+    @Override
+    public boolean isFlushed() {
+        return !enabled || (idle && buffer.isEmpty());
+    }
+
+    @Override
+    public void destroy() throws InterruptedException, IOException {
+        if (!enabled) {
+            return;
+        }
+        running = false;
+        LockSupport.unpark(writerThread);
+        writerThread.join(TimeUnit.SECONDS.toMillis(5));
+        if (!writerThread.isAlive()) {
+            // The writer is gone, so this thread is now the only consumer
+            drain();
+            if (writer != null) {
+                writer.close();
+            }
+        }
+    }
+
+    private void run() {
+        while (running) {
+            try {
+                if (drain() == 0) {
+                    // Idle: let the twins reach the file, then sleep until process() offers more
+                    if (writer != null) {
+                        writer.flush();
+                    }
+                    awaitTwins();
+                }
+            } catch (IOException | RuntimeException e) {
+                logger.error("HttpTwins ERROR: Failed to write the recording. Reason: {}", e.getMessage());
+                LockSupport.parkNanos(ERROR_BACKOFF_NANOS);
+            }
+        }
+    }
+
+    /**
+     * Parks the writer until a twin is offered or the recorder is closed, as {@link AuditSink} does.
+     */
+    private void awaitTwins() {
+        idle = true;
+        try {
+            while (running && buffer.isEmpty()) {
+                LockSupport.park(this);
+            }
+        } finally {
+            idle = false;
+        }
+    }
+
+    /**
+     * Records every buffered twin. Runs on the writer thread, or on shutdown once it has stopped.
+     */
+    private int drain() throws IOException {
+        int count = 0;
+        Stamped stamped;
+        while ((stamped = buffer.poll()) != null) {
+            count++;
+            try {
+                write(stamped);
+            } catch (IOException e) {
+                dropped.increment();
+                throw e;
+            }
+        }
+        return count;
+    }
+
+    private void write(Stamped stamped) throws IOException {
+        if (writer != null && writer.getSize() >= maxFileSize) {
+            RecordingWriter full = writer;
+            writer = null;
+            full.close();
+        }
+        if (writer == null) {
+            open(stamped.nanos);
+        }
+        writer.append(stamped.nanos - originNanos, stamped.twin);
+        recorded.increment();
+    }
+
+    /**
+     * Starts a new file whose offset zero is the given twin, deleting the oldest files past {@code max-files}.
+     */
+    private void open(long nanos) throws IOException {
+        long now = System.currentTimeMillis();
+        Path path = directory.resolve(String.format("%s%013d%s", filePrefix, now, RecordingWriter.EXTENSION));
+        while (files.contains(path) || Files.exists(path)) {
+            path = directory.resolve(String.format("%s%013d%s", filePrefix, ++now, RecordingWriter.EXTENSION));
+        }
+        writer = new RecordingWriter(path, now, writeBufferSize);
+        originNanos = nanos;
+        files.add(path);
+        while (files.size() > maxFiles) {
+            Files.deleteIfExists(files.removeFirst());
+        }
+    }
+
+    private boolean isRecording(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(filePrefix) && name.endsWith(RecordingWriter.EXTENSION);
+    }
+
+    private record Stamped(long nanos, TwinRequest twin) {
+    }
+}
@@ -0,0 +1,84 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.shadow;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Flow;
+
+/**
+ * Collects a response body into one heap buffer of at most {@code maxSize} bytes. A longer body is
+ * still read to the end, so the connection can be reused, but yields {@code null}.
+ */
+final class CappedBodySubscriber implements HttpResponse.BodySubscriber<ByteBuffer> {
+
+    private static final int INITIAL_CAPACITY = 8 * 1024;
+
+    private final int maxSize;
+    private final CompletableFuture<ByteBuffer> result = new CompletableFuture<>();
+    private ByteBuffer body;
+
+    CappedBodySubscriber(int maxSize, long contentLength) {
+        this.maxSize = maxSize;
+        this.body = ByteBuffer.allocate((int) Math.min(maxSize, contentLength >= 0 ? contentLength : INITIAL_CAPACITY));
+    }
+
+    static HttpResponse.BodyHandler<ByteBuffer> handler(int maxSize) {
+        return info -> new CappedBodySubscriber(maxSize, info.headers().firstValueAsLong("Content-Length").orElse(-1));
+    }
+
+    @Override
+    public CompletionStage<ByteBuffer> getBody() {
+        return result;
+    }
+
+    @Override
+    public void onSubscribe(Flow.Subscription subscription) {
+        subscription.request(Long.MAX_VALUE);
+    }
+
+    @Override
+    public void onNext(List<ByteBuffer> items) {
+        for (ByteBuffer item : items) {
+            if (body == null) {
+                return;
+            }
+            long needed = (long) body.position() + item.remaining();
+            if (needed > maxSize) {
+                body = null;
+                return;
+            }
+            if (needed > body.capacity()) {
+                ByteBuffer larger = ByteBuffer.allocate((int) Math.min(maxSize, Math.max(needed, 2L * body.capacity())));
+                body = larger.put(body.flip());
+            }
+            body.put(item);
+        }
+    }
+
+    @Override
+    public void onError(Throwable throwable) {
+        result.completeExceptionally(throwable);
+    }
+
+    @Override
+    public void onComplete() {
+        result.complete(body == null ? null : body.flip());
+    }
+}
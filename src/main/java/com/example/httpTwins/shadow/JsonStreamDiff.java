@@ -0,0 +1,244 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.shadow;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * A structural comparison of two JSON documents that walks both token streams in lockstep and
+ * stops at the first difference, so neither document is ever built as a tree.
+ * <p>
+ * Objects are equal when they have the same fields with equal values, in any order. As long as
+ * both sides list their fields in the same order, which is the norm for two versions of one
+ * service, everything is compared token by token; only an object whose fields come in a different
+ * order has the rest of its fields read into trees, and only that object. Arrays are compared
+ * element by element, numbers by value ({@code 1} equals {@code 1.0}). Fields named in the ignored
+ * set are skipped at any depth.
+ * <p>
+ * Thread-safe; one instance serves every comparison thread.
+ */
+public final class JsonStreamDiff {
+
+    static final String MISSING = "(missing)";
+    private static final int MAX_VALUE_LENGTH = 120;
+
+    private final ObjectMapper mapper = new ObjectMapper();
+    private final JsonFactory factory = mapper.getFactory();
+    private final Set<String> ignoredFields;
+
+    public JsonStreamDiff(Set<String> ignoredFields) {
+        this.ignoredFields = Set.copyOf(ignoredFields);
+    }
+
+    /**
+     * Compares the two documents.
+     *
+     * @return The first difference, or {@code null} if they are equal.
+     * @throws IOException If either side is not valid JSON.
+     */
+    public ShadowDifference diff(InputStream primary, InputStream candidate) throws IOException {
+        try (JsonParser p = factory.createParser(primary); JsonParser c = factory.createParser(candidate)) {
+            StringBuilder path = new StringBuilder("$");
+            ShadowDifference difference = compareValue(p, p.nextToken(), c, c.nextToken(), path);
+            if (difference == null && (p.nextToken() != null || c.nextToken() != null)) {
+                return new ShadowDifference(path.toString(), "(trailing content)", "(trailing content)");
+            }
+            return difference;
+        }
+    }
+
+    private ShadowDifference compareValue(JsonParser p, JsonToken tp, JsonParser c, JsonToken tc, StringBuilder path)
+            throws IOException {
+        if (tp == null || tc == null) {
+            return tp == tc ? null : difference(path, describe(p, tp), describe(c, tc));
+        }
+        if (tp == JsonToken.START_OBJECT && tc == JsonToken.START_OBJECT) {
+            return compareObject(p, c, path);
+        }
+        if (tp == JsonToken.START_ARRAY && tc == JsonToken.START_ARRAY) {
+            return compareArray(p, c, path);
+        }
+        if (tp.isNumeric() && tc.isNumeric()) {
+            return p.getDecimalValue().compareTo(c.getDecimalValue()) == 0 ? null
+                    : difference(path, describe(p, tp), describe(c, tc));
+        }
+        if (tp != tc || tp == JsonToken.VALUE_STRING && !p.getText().equals(c.getText())) {
+            return difference(path, describe(p, tp), describe(c, tc));
+        }
+        return null;
+    }
+
+    private ShadowDifference compareObject(JsonParser p, JsonParser c, StringBuilder path) throws IOException {
+        int length = path.length();
+        while (true) {
+            JsonToken tp = nextField(p);
+            JsonToken tc = nextField(c);
+            if (tp == JsonToken.END_OBJECT && tc == JsonToken.END_OBJECT) {
+                return null;
+            }
+            if (tp == JsonToken.END_OBJECT) {
+                return difference(path.append('.').append(c.currentName()), MISSING, describe(c, c.nextToken()));
+            }
+            if (tc == JsonToken.END_OBJECT) {
+                return difference(path.append('.').append(p.currentName()), describe(p, p.nextToken()), MISSING);
+            }
+            String name = p.currentName();
+            if (!name.equals(c.currentName())) {
+                // Same fields, different order: settle the rest of this object on trees
+                return compareTrees(readRemainingFields(p), readRemainingFields(c), path);
+            }
+            path.append('.').append(name);
+            ShadowDifference difference = compareValue(p, p.nextToken(), c, c.nextToken(), path);
+            if (difference != null) {
+                return difference;
+            }
+            path.setLength(length);
+        }
+    }
+
+    private ShadowDifference compareArray(JsonParser p, JsonParser c, StringBuilder path) throws IOException {
+        int length = path.length();
+        for (int index = 0; ; index++) {
+            JsonToken tp = p.nextToken();
+            JsonToken tc = c.nextToken();
+            if (tp == JsonToken.END_ARRAY && tc == JsonToken.END_ARRAY) {
+                return null;
+            }
+            path.append('[').append(index).append(']');
+            if (tp == JsonToken.END_ARRAY) {
+                return difference(path, MISSING, describe(c, tc));
+            }
+            if (tc == JsonToken.END_ARRAY) {
+                return difference(path, describe(p, tp), MISSING);
+            }
+            ShadowDifference difference = compareValue(p, tp, c, tc, path);
+            if (difference != null) {
+                return difference;
+            }
+            path.setLength(length);
+        }
+    }
+
+    /**
+     * Moves to the next field name that is not ignored, skipping ignored fields and their values.
+     *
+     * @return {@link JsonToken#FIELD_NAME} or {@link JsonToken#END_OBJECT}.
+     */
+    private JsonToken nextField(JsonParser parser) throws IOException {
+        JsonToken token = parser.nextToken();
+        while (token == JsonToken.FIELD_NAME && ignoredFields.contains(parser.currentName())) {
+            parser.nextToken();
+            parser.skipChildren();
+            token = parser.nextToken();
+        }
+        return token;
+    }
+
+    /**
+     * Reads the fields from the current field name to the end of the object, without ignored ones.
+     */
+    private ObjectNode readRemainingFields(JsonParser parser) throws IOException {
+        ObjectNode node = mapper.createObjectNode();
+        for (JsonToken token = JsonToken.FIELD_NAME; token == JsonToken.FIELD_NAME; token = nextField(parser)) {
+            String name = parser.currentName();
+            parser.nextToken();
+            node.set(name, mapper.readTree(parser));
+        }
+        return node;
+    }
+
+    private ShadowDifference compareTrees(JsonNode primary, JsonNode candidate, StringBuilder path) {
+        if (primary.isObject() && candidate.isObject()) {
+            int length = path.length();
+            for (Iterator<Map.Entry<String, JsonNode>> fields = primary.fields(); fields.hasNext(); ) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                if (ignoredFields.contains(field.getKey())) {
+                    continue;
+                }
+                path.append('.').append(field.getKey());
+                JsonNode other = candidate.get(field.getKey());
+                ShadowDifference difference = other == null
+                        ? difference(path, describe(field.getValue()), MISSING)
+                        : compareTrees(field.getValue(), other, path);
+                if (difference != null) {
+                    return difference;
+                }
+                path.setLength(length);
+            }
+            for (Iterator<String> names = candidate.fieldNames(); names.hasNext(); ) {
+                String name = names.next();
+                if (!ignoredFields.contains(name) && !primary.has(name)) {
+                    return difference(path.append('.').append(name), MISSING, describe(candidate.get(name)));
+                }
+            }
+            return null;
+        }
+        if (primary.isArray() && candidate.isArray()) {
+            int length = path.length();
+            for (int index = 0; index < Math.max(primary.size(), candidate.size()); index++) {
+                path.append('[').append(index).append(']');
+                ShadowDifference difference = index >= primary.size() ? difference(path, MISSING, describe(candidate.get(index)))
+                        : index >= candidate.size() ? difference(path, describe(primary.get(index)), MISSING)
+                        : compareTrees(primary.get(index), candidate.get(index), path);
+                if (difference != null) {
+                    return difference;
+                }
+                path.setLength(length);
+            }
+            return null;
+        }
+        if (primary.isNumber() && candidate.isNumber()) {
+            return primary.decimalValue().compareTo(candidate.decimalValue()) == 0 ? null
+                    : difference(path, describe(primary), describe(candidate));
+        }
+        return primary.equals(candidate) ? null : difference(path, describe(primary), describe(candidate));
+    }
+
+    private static ShadowDifference difference(StringBuilder path, String primary, String candidate) {
+        return new ShadowDifference(path.toString(), primary, candidate);
+    }
+
+    private static String describe(JsonParser parser, JsonToken token) throws IOException {
+        if (token == null) {
+            return "(end of document)";
+        }
+        return switch (token) {
+            case START_OBJECT -> "{...}";
+            case START_ARRAY -> "[...]";
+            case VALUE_STRING -> shorten('"' + parser.getText() + '"');
+            default -> shorten(parser.getText());
+        };
+    }
+
+    private static String describe(JsonNode node) {
+        return node.isContainerNode() ? (node.isObject() ? "{...}" : "[...]") : shorten(node.toString());
+    }
+
+    static String shorten(String value) {
+        return value.length() <= MAX_VALUE_LENGTH ? value : value.substring(0, MAX_VALUE_LENGTH) + "...";
+    }
+}
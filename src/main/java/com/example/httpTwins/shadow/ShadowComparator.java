@@ -0,0 +1,190 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.shadow;
+
+import com.example.httpTwins.lifecycle.TwinFlushable;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.model.TwinResponse;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.IOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Compares the responses of a primary endpoint and a candidate service it is shadowed to, for
+ * endpoints annotated with {@code @HttpTwins(shadowDestination = ...)}.
+ * <p>
+ * The candidate receives a copy of each request through the {@link RemoteHttpClientPool}; its
+ * response body is kept up to {@code max-body-size}. Once the primary response has been captured
+ * too, the pair is compared on a small background pool: the status first, then the body, with a
+ * streaming {@link JsonStreamDiff} for JSON and byte by byte otherwise. Results are aggregated per
+ * endpoint in {@link ShadowStats}. Pairs that arrive while the pool's queue is full are skipped,
+ * never waited for.
+ */
+public class ShadowComparator implements TwinFlushable, DisposableBean {
+
+    private final RemoteHttpClientPool clientPool;
+    private final JsonStreamDiff diff;
+    private final int maxBodySize;
+    private final int recentMismatches;
+    private final ThreadPoolExecutor diffExecutor;
+    private final Map<String, ShadowStats> stats = new ConcurrentHashMap<>();
+    private final AtomicInteger awaitingCandidates = new AtomicInteger();
+    private final AtomicInteger comparing = new AtomicInteger();
+
+    public ShadowComparator(ShadowProperties properties, RemoteHttpClientPool clientPool) {
+        this.clientPool = clientPool;
+        this.diff = new JsonStreamDiff(new HashSet<>(properties.getIgnoredFields()));
+        this.maxBodySize = (int) Math.min(Integer.MAX_VALUE, properties.getMaxBodySize().toBytes());
+        this.recentMismatches = properties.getRecentMismatches();
+        int threads = Math.max(1, properties.getDiffThreads());
+        AtomicInteger counter = new AtomicInteger();
+        this.diffExecutor = new ThreadPoolExecutor(threads, threads, 0, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(Math.max(1, properties.getQueueCapacity())), runnable -> {
+                    Thread thread = new Thread(runnable, "http-twins-shadow-diff-" + counter.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+    }
+
+    /**
+     * Returns the statistics of the endpoint, creating them on first use.
+     */
+    public ShadowStats statsFor(String endpoint) {
+        return stats.computeIfAbsent(endpoint, name -> new ShadowStats(name, recentMismatches));
+    }
+
+    public Collection<ShadowStats> getStats() {
+        return stats.values();
+    }
+
+    /**
+     * Starts shadowing a request. The caller sends it with {@link ShadowExchange#send()} and hands
+     * over the primary response with {@link ShadowExchange#onPrimary}.
+     */
+    public ShadowExchange start(TwinRequest request, String candidateUrl, ShadowStats endpointStats) {
+        return new ShadowExchange(this, request, candidateUrl, endpointStats);
+    }
+
+    @Override
+    public Stage getFlushStage() {
+        return Stage.AFTER_FANOUT;
+    }
+
+    /**
+     * Does nothing: pairs are compared as soon as both responses are in, never held back.
+     */
+    @Override
+    public void flush() {
+    }
+
+    /**
+     * Whether no candidate response is outstanding and no pair is waiting to be compared. Exchanges
+     * still missing the primary response are not waited for.
+     */
+    @Override
+    public boolean isFlushed() {
+        // A candidate's arrival submits its pair before it stops counting as outstanding, so read in that order
+        return awaitingCandidates.get() == 0 && comparing.get() == 0;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        diffExecutor.shutdown();
+        diffExecutor.awaitTermination(5, TimeUnit.SECONDS);
+    }
+
+    /**
+     * Sends the request to the candidate. The exchange calls {@link #candidateArrived()} once it has
+     * handled the response.
+     */
+    CompletableFuture<HttpResponse<ByteBuffer>> send(TwinRequest request, String candidateUrl) {
+        awaitingCandidates.incrementAndGet();
+        return clientPool.send(request, candidateUrl, CappedBodySubscriber.handler(maxBodySize));
+    }
+
+    void candidateArrived() {
+        awaitingCandidates.decrementAndGet();
+    }
+
+    void submit(ShadowExchange exchange) {
+        comparing.incrementAndGet();
+        try {
+            diffExecutor.execute(() -> compare(exchange));
+        } catch (RejectedExecutionException e) {
+            comparing.decrementAndGet();
+            exchange.getStats().skipped();
+            exchange.release();
+        }
+    }
+
+    private void compare(ShadowExchange exchange) {
+        ShadowStats endpointStats = exchange.getStats();
+        try {
+            if (exchange.isCancelled()) {
+                endpointStats.skipped();
+                return;
+            }
+            if (exchange.isFailed()) {
+                endpointStats.failed();
+                return;
+            }
+            TwinResponse primary = exchange.getPrimary();
+            HttpResponse<ByteBuffer> candidate = exchange.getCandidate();
+            if (primary.isTruncated() || candidate.body() == null) {
+                endpointStats.skipped();
+                return;
+            }
+            endpointStats.compared(exchange.getPrimaryNanos(), exchange.getCandidateNanos(), difference(primary, candidate));
+        } finally {
+            exchange.release();
+            comparing.decrementAndGet();
+        }
+    }
+
+    private ShadowDifference difference(TwinResponse primary, HttpResponse<ByteBuffer> candidate) {
+        if (primary.getStatus() != candidate.statusCode()) {
+            return new ShadowDifference("status", Integer.toString(primary.getStatus()), Integer.toString(candidate.statusCode()));
+        }
+        ByteBuffer primaryBody = primary.getBody();
+        ByteBuffer candidateBody = candidate.body();
+        String contentType = primary.getHeader("Content-Type");
+        if (contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json")
+                && primaryBody.hasRemaining() && candidateBody.hasRemaining()) {
+            try {
+                return diff.diff(new ByteBufferBackedInputStream(primaryBody), new ByteBufferBackedInputStream(candidateBody.duplicate()));
+            } catch (IOException e) {
+                return new ShadowDifference("body", "(not comparable)", JsonStreamDiff.shorten(String.valueOf(e.getMessage())));
+            }
+        }
+        return primaryBody.equals(candidateBody) ? null
+                : new ShadowDifference("body", primaryBody.remaining() + " bytes", candidateBody.remaining() + " bytes");
+    }
+}
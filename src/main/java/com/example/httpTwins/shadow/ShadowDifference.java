@@ -0,0 +1,26 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.shadow;
+
+/**
+ * The first difference found between a primary response and its candidate.
+ *
+ * @param path      Where the responses differ: {@code status}, {@code body}, or a JSON path such as {@code $.books[3].title}.
+ * @param primary   The primary's value at that path, shortened; {@code (missing)} if it has none.
+ * @param candidate The candidate's value at that path, shortened; {@code (missing)} if it has none.
+ */
+public record ShadowDifference(String path, String primary, String candidate) {
+}
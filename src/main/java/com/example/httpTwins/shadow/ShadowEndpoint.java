@@ -0,0 +1,58 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.shadow;
+
+import org.springframework.boot.actuate.endpoint.annotation.Endpoint;
+import org.springframework.boot.actuate.endpoint.annotation.ReadOperation;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Reports the shadow comparison results per endpoint at {@code /actuator/twinshadow}.
+ */
+@Endpoint(id = "twinshadow")
+public class ShadowEndpoint {
+
+    private final ShadowComparator comparator;
+
+    public ShadowEndpoint(ShadowComparator comparator) {
+        this.comparator = comparator;
+    }
+
+    @ReadOperation
+    public Map<String, EndpointReport> report() {
+        Map<String, EndpointReport> report = new TreeMap<>();
+        for (ShadowStats stats : comparator.getStats()) {
+            report.put(stats.getEndpoint(), new EndpointReport(stats.getComparedCount(), stats.getMismatchedCount(),
+                    stats.getFailedCount(), stats.getSkippedCount(), stats.getMismatchRate(),
+                    stats.getMeanLatencyDeltaNanos() / 1_000_000.0,
+                    stats.getLatencyDeltaPercentileNanos(0.5) / 1_000_000.0,
+                    stats.getLatencyDeltaPercentileNanos(0.99) / 1_000_000.0,
+                    stats.getRecentMismatches()));
+        }
+        return report;
+    }
+
+    /**
+     * The results of one endpoint. Latency deltas are the candidate's latency minus the primary's, in milliseconds.
+     */
+    public record EndpointReport(long compared, long mismatched, long failed, long skipped, double mismatchRate,
+                                 double meanLatencyDeltaMillis, double p50LatencyDeltaMillis, double p99LatencyDeltaMillis,
+                                 List<ShadowDifference> recentMismatches) {
+    }
+}
@@ -0,0 +1,126 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.shadow;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.model.TwinResponse;
+
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * One request shadowed to a candidate: pairs the primary's captured response with the candidate's,
+ * whichever arrives last, and hands the pair to the {@link ShadowComparator}.
+ */
+public final class ShadowExchange {
+
+    private final ShadowComparator comparator;
+    private final TwinRequest request;
+    private final String candidateUrl;
+    private final ShadowStats stats;
+    private final long primaryStart;
+    private final AtomicInteger pending = new AtomicInteger(2);
+    // Written before the side's arrival and read after the last one, which the counter orders
+    private TwinResponse primary;
+    private Runnable release;
+    private long primaryNanos;
+    private HttpResponse<ByteBuffer> candidate;
+    private Throwable failure;
+    private boolean cancelled;
+    private long candidateNanos;
+
+    ShadowExchange(ShadowComparator comparator, TwinRequest request, String candidateUrl, ShadowStats stats) {
+        this.comparator = comparator;
+        this.request = request;
+        this.candidateUrl = candidateUrl;
+        this.stats = stats;
+        this.primaryStart = System.nanoTime();
+    }
+
+    /**
+     * Sends the request to the candidate without waiting for the response.
+     */
+    public void send() {
+        long start = System.nanoTime();
+        comparator.send(request, candidateUrl).whenComplete((response, error) -> {
+            candidateNanos = System.nanoTime() - start;
+            candidate = response;
+            failure = error;
+            try {
+                arrive();
+            } finally {
+                comparator.candidateArrived();
+            }
+        });
+    }
+
+    /**
+     * Gives up on the candidate, for example because the fan-out executor dropped the send.
+     */
+    public void cancel() {
+        cancelled = true;
+        arrive();
+    }
+
+    /**
+     * Hands over the primary response. The exchange calls {@code release} once it is done with the body.
+     */
+    public void onPrimary(TwinResponse response, Runnable release) {
+        this.primaryNanos = System.nanoTime() - primaryStart;
+        this.primary = response;
+        this.release = release;
+        arrive();
+    }
+
+    TwinResponse getPrimary() {
+        return primary;
+    }
+
+    long getPrimaryNanos() {
+        return primaryNanos;
+    }
+
+    HttpResponse<ByteBuffer> getCandidate() {
+        return candidate;
+    }
+
+    long getCandidateNanos() {
+        return candidateNanos;
+    }
+
+    ShadowStats getStats() {
+        return stats;
+    }
+
+    boolean isFailed() {
+        return failure != null;
+    }
+
+    boolean isCancelled() {
+        return cancelled;
+    }
+
+    void release() {
+        release.run();
+    }
+
+    private void arrive() {
+        if (pending.decrementAndGet() == 0) {
+            comparator.submit(this);
+        }
+    }
+}
@@ -0,0 +1,95 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.shadow;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Settings of the shadow comparison of primary and candidate responses, bound from {@code http-twins.shadow.*}.
+ */
+@ConfigurationProperties(prefix = "http-twins.shadow")
+public class ShadowProperties {
+
+    /**
+     * JSON field names left out of the comparison at any depth, such as generated ids and timestamps.
+     */
+    private List<String> ignoredFields = new ArrayList<>(List.of("id", "createdAt", "updatedAt", "timestamp"));
+
+    /**
+     * Threads comparing responses.
+     */
+    private int diffThreads = 2;
+
+    /**
+     * Response pairs waiting for a comparison thread. When it is full, new pairs are skipped.
+     */
+    private int queueCapacity = 256;
+
+    /**
+     * Candidate body bytes kept for the comparison; pairs with a longer candidate body are skipped.
+     * Primary bodies are capped by the endpoint's {@code maxCaptureSize}.
+     */
+    private DataSize maxBodySize = DataSize.ofMegabytes(1);
+
+    /**
+     * Mismatches kept per endpoint as examples; older ones are overwritten.
+     */
+    private int recentMismatches = 20;
+
+    public List<String> getIgnoredFields() {
+        return ignoredFields;
+    }
+
+    public void setIgnoredFields(List<String> ignoredFields) {
+        this.ignoredFields = ignoredFields;
+    }
+
+    public int getDiffThreads() {
+        return diffThreads;
+    }
+
+    public void setDiffThreads(int diffThreads) {
+        this.diffThreads = diffThreads;
+    }
+
+    public int getQueueCapacity() {
+        return queueCapacity;
+    }
+
+    public void setQueueCapacity(int queueCapacity) {
+        this.queueCapacity = queueCapacity;
+    }
+
+    public DataSize getMaxBodySize() {
+        return maxBodySize;
+    }
+
+    public void setMaxBodySize(DataSize maxBodySize) {
+        this.maxBodySize = maxBodySize;
+    }
+
+    public int getRecentMismatches() {
+        return recentMismatches;
+    }
+
+    public void setRecentMismatches(int recentMismatches) {
+        this.recentMismatches = recentMismatches;
+    }
+}
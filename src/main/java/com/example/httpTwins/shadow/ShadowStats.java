@@ -0,0 +1,175 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.shadow;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The comparison results of one shadowed endpoint, aggregated in a fixed amount of memory no
+ * matter how much traffic it sees: counters, a histogram of latency deltas and a small ring of
+ * recent mismatches.
+ * <p>
+ * The latency delta is the candidate's latency minus the primary's, so a positive delta means the
+ * candidate is slower. The histogram has one bucket per power of two microseconds on each side of
+ * zero, which makes its percentiles accurate to within a factor of two.
+ */
+public final class ShadowStats {
+
+    private static final int BUCKETS_PER_SIDE = 32;
+
+    private final String endpoint;
+    private final LongAdder compared = new LongAdder();
+    private final LongAdder mismatched = new LongAdder();
+    private final LongAdder failed = new LongAdder();
+    private final LongAdder skipped = new LongAdder();
+    private final LongAdder deltaNanos = new LongAdder();
+    private final AtomicLongArray deltaBuckets = new AtomicLongArray(2 * BUCKETS_PER_SIDE + 1);
+    private final AtomicReferenceArray<ShadowDifference> recent;
+    private final AtomicLong recentCount = new AtomicLong();
+
+    public ShadowStats(String endpoint, int recentMismatches) {
+        this.endpoint = endpoint;
+        this.recent = new AtomicReferenceArray<>(Math.max(1, recentMismatches));
+    }
+
+    public String getEndpoint() {
+        return endpoint;
+    }
+
+    /**
+     * Records a completed comparison of two responses.
+     *
+     * @param difference The first difference, or {@code null} if the responses matched.
+     */
+    public void compared(long primaryNanos, long candidateNanos, ShadowDifference difference) {
+        compared.increment();
+        long delta = candidateNanos - primaryNanos;
+        deltaNanos.add(delta);
+        deltaBuckets.incrementAndGet(bucket(delta));
+        if (difference != null) {
+            mismatched.increment();
+            recent.set((int) (recentCount.getAndIncrement() % recent.length()), difference);
+        }
+    }
+
+    /**
+     * Counts a pair whose candidate call failed, so there was nothing to compare.
+     */
+    public void failed() {
+        failed.increment();
+    }
+
+    /**
+     * Counts a pair left uncompared: a body was too large or the comparison queue was full.
+     */
+    public void skipped() {
+        skipped.increment();
+    }
+
+    public long getComparedCount() {
+        return compared.sum();
+    }
+
+    public long getMismatchedCount() {
+        return mismatched.sum();
+    }
+
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    public long getSkippedCount() {
+        return skipped.sum();
+    }
+
+    /**
+     * Returns the share of compared pairs that differed, between 0 and 1.
+     */
+    public double getMismatchRate() {
+        long total = compared.sum();
+        return total == 0 ? 0 : (double) mismatched.sum() / total;
+    }
+
+    public double getMeanLatencyDeltaNanos() {
+        long total = compared.sum();
+        return total == 0 ? 0 : (double) deltaNanos.sum() / total;
+    }
+
+    /**
+     * Returns an estimate of the given percentile of the latency delta.
+     *
+     * @param percentile Between 0 and 1, such as 0.99.
+     */
+    public long getLatencyDeltaPercentileNanos(double percentile) {
+        long total = 0;
+        for (int i = 0; i < deltaBuckets.length(); i++) {
+            total += deltaBuckets.get(i);
+        }
+        if (total == 0) {
+            return 0;
+        }
+        long rank = (long) Math.ceil(percentile * total);
+        long seen = 0;
+        for (int i = 0; i < deltaBuckets.length(); i++) {
+            seen += deltaBuckets.get(i);
+            if (seen >= Math.max(1, rank)) {
+                return bucketValue(i);
+            }
+        }
+        return bucketValue(deltaBuckets.length() - 1);
+    }
+
+    /**
+     * Returns the most recent mismatches, oldest first.
+     */
+    public List<ShadowDifference> getRecentMismatches() {
+        long count = recentCount.get();
+        int size = (int) Math.min(count, recent.length());
+        List<ShadowDifference> result = new ArrayList<>(size);
+        for (long i = count - size; i < count; i++) {
+            ShadowDifference difference = recent.get((int) (i % recent.length()));
+            if (difference != null) {
+                result.add(difference);
+            }
+        }
+        return result;
+    }
+
+    /**
+     * Bucket 0 holds the largest negative deltas, {@code BUCKETS_PER_SIDE} deltas under a
+     * microsecond, and the last bucket the largest positive ones.
+     */
+    private static int bucket(long deltaNanos) {
+        long micros = TimeUnit.NANOSECONDS.toMicros(Math.abs(deltaNanos));
+        int magnitude = Math.min(BUCKETS_PER_SIDE, 64 - Long.numberOfLeadingZeros(micros));
+        return deltaNanos < 0 ? BUCKETS_PER_SIDE - magnitude : BUCKETS_PER_SIDE + magnitude;
+    }
+
+    /**
+     * Returns the bound of the bucket farthest from zero, in nanoseconds.
+     */
+    private static long bucketValue(int bucket) {
+        int magnitude = Math.abs(bucket - BUCKETS_PER_SIDE);
+        long nanos = magnitude == 0 ? 0 : TimeUnit.MICROSECONDS.toNanos(1L << magnitude);
+        return bucket < BUCKETS_PER_SIDE ? -nanos : nanos;
+    }
+}
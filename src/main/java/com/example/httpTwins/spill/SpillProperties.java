@@ -0,0 +1,158 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.spill;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.file.Paths;
+import java.time.Duration;
+
+/**
+ * Settings of the durable spill queue for remote twins, bound from {@code http-twins.spill.*}.
+ */
+@ConfigurationProperties(prefix = "http-twins.spill")
+public class SpillProperties {
+
+    /**
+     * Write undeliverable remote twins to disk and replay them later. When disabled they are dropped.
+     */
+    private boolean enabled = false;
+
+    /**
+     * Directory holding the segment files. Created if missing.
+     */
+    private String directory = Paths.get(System.getProperty("java.io.tmpdir"), "http-twins-spill").toString();
+
+    /**
+     * Size of each memory-mapped segment file. A single twin must fit in one segment.
+     */
+    private DataSize segmentSize = DataSize.ofMegabytes(16);
+
+    /**
+     * Maximum disk space of all segments together. Twins that do not fit are dropped.
+     */
+    private DataSize maxSize = DataSize.ofMegabytes(256);
+
+    /**
+     * Twins waiting to be written by the spill writer thread. Twins spilled while it is full are
+     * dropped, so threads spilling never wait for the disk.
+     */
+    private int writeQueueCapacity = 1024;
+
+    /**
+     * Pause between two drain passes.
+     */
+    private Duration drainInterval = Duration.ofSeconds(1);
+
+    /**
+     * Twins replayed concurrently within a drain pass.
+     */
+    private int drainBatchSize = 64;
+
+    /**
+     * Wait after the first failed replay to a destination; doubled on every further failure.
+     */
+    private Duration initialBackoff = Duration.ofSeconds(1);
+
+    private Duration maxBackoff = Duration.ofMinutes(1);
+
+    /**
+     * A full segment whose live records take less than this share of it is rewritten into the
+     * current segment, so acknowledged records stop taking up disk space.
+     */
+    private double compactionThreshold = 0.25;
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    public void setEnabled(boolean enabled) {
+        this.enabled = enabled;
+    }
+
+    public String getDirectory() {
+        return directory;
+    }
+
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    public DataSize getSegmentSize() {
+        return segmentSize;
+    }
+
+    public void setSegmentSize(DataSize segmentSize) {
+        this.segmentSize = segmentSize;
+    }
+
+    public DataSize getMaxSize() {
+        return maxSize;
+    }
+
+    public void setMaxSize(DataSize maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    public int getWriteQueueCapacity() {
+        return writeQueueCapacity;
+    }
+
+    public void setWriteQueueCapacity(int writeQueueCapacity) {
+        this.writeQueueCapacity = writeQueueCapacity;
+    }
+
+    public Duration getDrainInterval() {
+        return drainInterval;
+    }
+
+    public void setDrainInterval(Duration drainInterval) {
+        this.drainInterval = drainInterval;
+    }
+
+    public int getDrainBatchSize() {
+        return drainBatchSize;
+    }
+
+    public void setDrainBatchSize(int drainBatchSize) {
+        this.drainBatchSize = drainBatchSize;
+    }
+
+    public Duration getInitialBackoff() {
+        return initialBackoff;
+    }
+
+    public void setInitialBackoff(Duration initialBackoff) {
+        this.initialBackoff = initialBackoff;
+    }
+
+    public Duration getMaxBackoff() {
+        return maxBackoff;
+    }
+
+    public void setMaxBackoff(Duration maxBackoff) {
+        this.maxBackoff = maxBackoff;
+    }
+
+    public double getCompactionThreshold() {
+        return compactionThreshold;
+    }
+
+    public void setCompactionThreshold(double compactionThreshold) {
+        this.compactionThreshold = compactionThreshold;
+    }
+}
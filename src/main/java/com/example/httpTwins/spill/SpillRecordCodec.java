@@ -0,0 +1,114 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.spill;
+
+import com.example.httpTwins.model.TwinRequest;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Binary form of a spilled twin: the destination URL, then method, URI, query string, header
+ * pairs and body. Strings are a length-prefixed UTF-8 sequence, with length -1 for {@code null}.
+ * Request attributes are not persisted.
+ */
+final class SpillRecordCodec {
+
+    private SpillRecordCodec() {
+    }
+
+    static byte[] encode(TwinRequest request, String remoteUrl) {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(request.getBodyLength() + 256);
+        try (DataOutputStream out = new DataOutputStream(buffer)) {
+            writeString(out, remoteUrl);
+            writeString(out, request.getMethod());
+            writeString(out, request.getRequestURI());
+            writeString(out, request.getQueryString());
+            List<String> pairs = new ArrayList<>();
+            request.forEachHeader((name, value) -> {
+                pairs.add(name);
+                pairs.add(value);
+            });
+            out.writeInt(pairs.size());
+            for (String value : pairs) {
+                writeString(out, value);
+            }
+            ByteBuffer body = request.getBody();
+            out.writeInt(body.remaining());
+            byte[] chunk = new byte[Math.min(body.remaining(), 8192)];
+            while (body.hasRemaining()) {
+                int length = Math.min(chunk.length, body.remaining());
+                body.get(chunk, 0, length);
+                out.write(chunk, 0, length);
+            }
+        } catch (IOException e) {
+            // Only the in-memory stream is written to
+            throw new UncheckedIOException(e);
+        }
+        return buffer.toByteArray();
+    }
+
+    /**
+     * Reads only the destination URL, without decoding the rest of the record.
+     */
+    static String readUrl(ByteBuffer payload) {
+        return readString(payload.duplicate());
+    }
+
+    /**
+     * Decodes the twin. The body is copied, so the result stays valid after its segment is deleted.
+     */
+    static TwinRequest decode(ByteBuffer payload) {
+        ByteBuffer in = payload.duplicate();
+        readString(in);
+        String method = readString(in);
+        String uri = readString(in);
+        String query = readString(in);
+        String[] pairs = new String[in.getInt()];
+        for (int i = 0; i < pairs.length; i++) {
+            pairs[i] = readString(in);
+        }
+        byte[] body = new byte[in.getInt()];
+        in.get(body);
+        return new TwinRequest(method, uri, query, pairs, ByteBuffer.wrap(body), null);
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(ByteBuffer in) {
+        int length = in.getInt();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        in.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,212 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.spill;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.CRC32;
+
+/**
+ * One memory-mapped, append-only segment file of the spill log.
+ * <p>
+ * Each record is {@code length:int, crc:int, state:byte, payload}. The CRC covers the payload; the
+ * state starts {@link #LIVE} and is flipped in place to {@link #ACKED} once the twin is delivered.
+ * The length is written last and a zero length ends the log, so a record torn by a crash fails its
+ * CRC and is cut off when the segment is reopened.
+ * <p>
+ * Appends must be serialized by the caller. Reads and acknowledgements may run concurrently with
+ * appends; they only touch records below {@link #getWritePosition()}.
+ */
+final class SpillSegment {
+
+    static final int HEADER_SIZE = 9;
+    static final byte LIVE = 1;
+    static final byte ACKED = 2;
+
+    private static final String PREFIX = "spill-";
+    private static final String SUFFIX = ".seg";
+
+    private final long id;
+    private final Path path;
+    private final MappedByteBuffer buffer;
+    private final int capacity;
+    private final AtomicInteger liveCount = new AtomicInteger();
+    private final AtomicLong liveBytes = new AtomicLong();
+    private volatile int writePosition;
+    private volatile boolean dirty;
+
+    private SpillSegment(long id, Path path, MappedByteBuffer buffer) {
+        this.id = id;
+        this.path = path;
+        this.buffer = buffer;
+        this.capacity = buffer.capacity();
+    }
+
+    static SpillSegment create(Path directory, long id, int capacity) throws IOException {
+        Path path = directory.resolve(PREFIX + String.format("%020d", id) + SUFFIX);
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            // The mapping stays valid after the channel is closed
+            return new SpillSegment(id, path, channel.map(FileChannel.MapMode.READ_WRITE, 0, capacity));
+        }
+    }
+
+    /**
+     * Maps an existing segment and rebuilds its state by scanning it, stopping at the first record
+     * that is missing or fails its CRC.
+     */
+    static SpillSegment open(Path path) throws IOException {
+        SpillSegment segment;
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            segment = new SpillSegment(parseId(path), path, channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size()));
+        }
+        int position = 0;
+        while (position + HEADER_SIZE <= segment.capacity) {
+            int length = segment.buffer.getInt(position);
+            if (length <= 0 || length > segment.capacity - position - HEADER_SIZE) {
+                break;
+            }
+            byte state = segment.buffer.get(position + 8);
+            if ((state != LIVE && state != ACKED) || crc(segment.buffer, position + HEADER_SIZE, length) != segment.buffer.getInt(position + 4)) {
+                break;
+            }
+            if (state == LIVE) {
+                segment.liveCount.incrementAndGet();
+                segment.liveBytes.addAndGet(HEADER_SIZE + length);
+            }
+            position += HEADER_SIZE + length;
+        }
+        segment.writePosition = position;
+        return segment;
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    static long parseId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    /**
+     * Appends a live record.
+     *
+     * @return The record's position, or -1 if it does not fit.
+     */
+    int append(byte[] payload, int crc) {
+        int position = writePosition;
+        int end = position + HEADER_SIZE + payload.length;
+        if (end > capacity) {
+            return -1;
+        }
+        buffer.put(position + HEADER_SIZE, payload);
+        buffer.putInt(position + 4, crc);
+        buffer.put(position + 8, LIVE);
+        if (end + 4 <= capacity) {
+            // Stale bytes of a record cut off during recovery must not be read as the next record
+            buffer.putInt(end, 0);
+        }
+        buffer.putInt(position, payload.length);
+        liveCount.incrementAndGet();
+        liveBytes.addAndGet(HEADER_SIZE + payload.length);
+        dirty = true;
+        writePosition = end;
+        return position;
+    }
+
+    int length(int position) {
+        return buffer.getInt(position);
+    }
+
+    boolean isLive(int position) {
+        return buffer.get(position + 8) == LIVE;
+    }
+
+    /**
+     * Returns a read-only view of the record's payload. It is only valid while the segment exists.
+     */
+    ByteBuffer payload(int position) {
+        return buffer.slice(position + HEADER_SIZE, length(position)).asReadOnlyBuffer();
+    }
+
+    /**
+     * Marks the record delivered. Must be called by one thread at a time.
+     */
+    void ack(int position) {
+        if (isLive(position)) {
+            buffer.put(position + 8, ACKED);
+            liveCount.decrementAndGet();
+            liveBytes.addAndGet(-(HEADER_SIZE + length(position)));
+            dirty = true;
+        }
+    }
+
+    /**
+     * Flushes changes to the storage device.
+     */
+    void force() {
+        if (dirty) {
+            dirty = false;
+            buffer.force();
+        }
+    }
+
+    void delete() throws IOException {
+        // The mapping itself is released when the buffer is garbage collected
+        Files.deleteIfExists(path);
+    }
+
+    static int crc(byte[] payload) {
+        CRC32 crc = new CRC32();
+        crc.update(payload);
+        return (int) crc.getValue();
+    }
+
+    private static int crc(ByteBuffer buffer, int offset, int length) {
+        CRC32 crc = new CRC32();
+        crc.update(buffer.slice(offset, length));
+        return (int) crc.getValue();
+    }
+
+    long getId() {
+        return id;
+    }
+
+    int getCapacity() {
+        return capacity;
+    }
+
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    int getLiveCount() {
+        return liveCount.get();
+    }
+
+    long getLiveBytes() {
+        return liveBytes.get();
+    }
+}
@@ -0,0 +1,433 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.spill;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.DisposableBean;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+
+/**
+ * Durable overflow tier for remote twins that could not be delivered: the destination failed or
+ * was saturated, or the fan-out queue was full.
+ * <p>
+ * Spilled twins are appended to a log of memory-mapped {@link SpillSegment} files, so they survive
+ * a restart and take no heap while they wait. Threads spilling a twin only hand it to a bounded
+ * write queue, or drop it if that is full; a writer thread encodes and appends it, so request and
+ * fan-out threads never wait on the log's lock or on the disk. A background drainer replays them through the
+ * {@link RemoteHttpClientPool} and acknowledges each delivered twin in place. A destination that
+ * keeps failing is backed off exponentially, without holding up the others. Segments with no live
+ * twins left are deleted, and sparse ones are compacted by moving their live twins to the end of
+ * the log.
+ * <p>
+ * Delivery is at least once: a twin may be replayed twice if the process dies between the
+ * delivery and its acknowledgement reaching the disk.
+ */
+public class TwinSpillQueue implements DisposableBean {
+
+    private static final Logger logger = LoggerFactory.getLogger(TwinSpillQueue.class);
+
+    private final boolean enabled;
+    private final RemoteHttpClientPool clientPool;
+    private final Path directory;
+    private final int segmentSize;
+    private final int maxSegments;
+    private final int drainBatchSize;
+    private final long initialBackoffNanos;
+    private final long maxBackoffNanos;
+    private final double compactionThreshold;
+    private final List<SpillSegment> segments = new CopyOnWriteArrayList<>();
+    private final ReentrantLock appendLock = new ReentrantLock();
+    private final Map<String, Backoff> backoffs = new HashMap<>();
+    private final ArrayBlockingQueue<PendingSpill> writeQueue;
+    private final Thread writer;
+    private final AtomicBoolean writeQueueFull = new AtomicBoolean();
+    private final ScheduledExecutorService drainer;
+    private final LongAdder spilled = new LongAdder();
+    private final LongAdder replayed = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private volatile SpillSegment active;
+    private volatile boolean writing = true;
+    private long nextSegmentId;
+    // Guarded by appendLock; the log only warns when it becomes full, not on every twin it turns away
+    private boolean full;
+
+    public TwinSpillQueue(SpillProperties properties, RemoteHttpClientPool clientPool) {
+        this.enabled = properties.isEnabled();
+        this.clientPool = clientPool;
+        this.directory = Paths.get(properties.getDirectory());
+        this.segmentSize = (int) Math.min(Integer.MAX_VALUE, properties.getSegmentSize().toBytes());
+        this.maxSegments = (int) Math.max(1, properties.getMaxSize().toBytes() / Math.max(1, segmentSize));
+        this.drainBatchSize = Math.max(1, properties.getDrainBatchSize());
+        this.initialBackoffNanos = properties.getInitialBackoff().toNanos();
+        this.maxBackoffNanos = properties.getMaxBackoff().toNanos();
+        this.compactionThreshold = properties.getCompactionThreshold();
+        if (!enabled) {
+            this.writeQueue = null;
+            this.writer = null;
+            this.drainer = null;
+            return;
+        }
+        if (segmentSize <= SpillSegment.HEADER_SIZE) {
+            throw new IllegalArgumentException("HttpTwins spill segment-size is too small: " + properties.getSegmentSize());
+        }
+        try {
+            recover();
+        } catch (IOException e) {
+            throw new UncheckedIOException("HttpTwins could not open the spill directory " + directory, e);
+        }
+        this.writeQueue = new ArrayBlockingQueue<>(Math.max(1, properties.getWriteQueueCapacity()));
+        this.writer = new Thread(this::write, "http-twins-spill-writer");
+        this.writer.setDaemon(true);
+        this.writer.start();
+        this.drainer = Executors.newSingleThreadScheduledExecutor(runnable -> {
+            Thread thread = new Thread(runnable, "http-twins-spill-drainer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalNanos = properties.getDrainInterval().toNanos();
+        this.drainer.scheduleWithFixedDelay(this::drainSafely, intervalNanos, intervalNanos, TimeUnit.NANOSECONDS);
+    }
+
+    public boolean isEnabled() {
+        return enabled;
+    }
+
+    /**
+     * Hands the twin to the writer thread, which writes it to the log for later delivery to the
+     * destination. Never blocks.
+     *
+     * @return false if spilling is disabled, the destination is not an HTTP URL, or the write queue
+     *         is full; the twin is then lost. A twin handed over is still dropped if the log is full.
+     */
+    public boolean spill(TwinRequest request, String remoteUrl) {
+        // Replays go through the HTTP client, so twins for other transports, such as brokers, cannot be spilled
+        if (!enabled || !isHttp(remoteUrl)) {
+            return false;
+        }
+        if (writeQueue.offer(new PendingSpill(request, remoteUrl))) {
+            return true;
+        }
+        dropped.increment();
+        if (writeQueueFull.compareAndSet(false, true)) {
+            logger.warn("HttpTwins WARNING: Spill writer for {} is falling behind, dropping twins until it catches up.", directory);
+        }
+        return false;
+    }
+
+    public long getSpilledCount() {
+        return spilled.sum();
+    }
+
+    public long getReplayedCount() {
+        return replayed.sum();
+    }
+
+    /**
+     * Returns the number of twins that could not be spilled because the write queue or the log was
+     * full, or the log failed.
+     * Published as {@code http.twins.spill.twins} with outcome dropped.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Returns the number of spilled twins written to the log and not yet delivered.
+     */
+    public int getPendingCount() {
+        int pending = 0;
+        for (SpillSegment segment : segments) {
+            pending += segment.getLiveCount();
+        }
+        return pending;
+    }
+
+    @Override
+    public void destroy() throws InterruptedException {
+        if (drainer == null) {
+            return;
+        }
+        // The writer finishes the twins already handed to it before it stops
+        writing = false;
+        writer.join(TimeUnit.SECONDS.toMillis(5));
+        drainer.shutdown();
+        drainer.awaitTermination(5, TimeUnit.SECONDS);
+        for (SpillSegment segment : segments) {
+            segment.force();
+        }
+    }
+
+    private static boolean isHttp(String remoteUrl) {
+        return remoteUrl.regionMatches(true, 0, "http://", 0, 7) || remoteUrl.regionMatches(true, 0, "https://", 0, 8);
+    }
+
+    private void recover() throws IOException {
+        Files.createDirectories(directory);
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.filter(SpillSegment::isSegmentFile).sorted().toList();
+        }
+        for (Path file : files) {
+            SpillSegment segment = SpillSegment.open(file);
+            nextSegmentId = Math.max(nextSegmentId, segment.getId() + 1);
+            if (segment.getLiveCount() == 0) {
+                segment.delete();
+            } else {
+                segments.add(segment);
+            }
+        }
+        if (!segments.isEmpty()) {
+            logger.info("HttpTwins: Recovered {} spilled twins from {}.", getPendingCount(), directory);
+        }
+        // Recovered segments are never appended to, so a torn tail stays cut off
+        active = SpillSegment.create(directory, nextSegmentId++, segmentSize);
+        segments.add(active);
+    }
+
+    /**
+     * Encodes and appends the twins handed over by {@link #spill}. Runs on the writer thread only.
+     */
+    private void write() {
+        while (writing || !writeQueue.isEmpty()) {
+            PendingSpill pending;
+            try {
+                pending = writeQueue.poll(100, TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                return;
+            }
+            if (pending == null) {
+                continue;
+            }
+            try {
+                if (append(SpillRecordCodec.encode(pending.request, pending.remoteUrl))) {
+                    spilled.increment();
+                } else {
+                    dropped.increment();
+                }
+            } catch (RuntimeException e) {
+                dropped.increment();
+                logger.error("HttpTwins ERROR: Failed to spill a twin for '{}'. Reason: {}", pending.remoteUrl, e.getMessage(), e);
+            }
+            if (writeQueue.isEmpty() && writeQueueFull.compareAndSet(true, false)) {
+                logger.info("HttpTwins: Spill writer for {} caught up, {} twins dropped so far.", directory, dropped.sum());
+            }
+        }
+    }
+
+    /**
+     * Appends an encoded twin to the active segment, rolling over to a new one when it is full.
+     * Only called by the writer and, when compacting, the drainer, never by the threads spilling.
+     */
+    private boolean append(byte[] payload) {
+        if (payload.length > segmentSize - SpillSegment.HEADER_SIZE) {
+            logger.warn("HttpTwins WARNING: Twin of {} bytes does not fit in a spill segment of {} bytes.", payload.length, segmentSize);
+            return false;
+        }
+        int crc = SpillSegment.crc(payload);
+        appendLock.lock();
+        try {
+            if (active.append(payload, crc) >= 0) {
+                accepting();
+                return true;
+            }
+            if (segments.size() >= maxSegments) {
+                if (!full) {
+                    full = true;
+                    logger.warn("HttpTwins WARNING: Spill log in {} is full, dropping twins until the drainer makes room.", directory);
+                }
+                return false;
+            }
+            active.force();
+            active = SpillSegment.create(directory, nextSegmentId++, segmentSize);
+            segments.add(active);
+            if (active.append(payload, crc) >= 0) {
+                accepting();
+                return true;
+            }
+            return false;
+        } catch (IOException e) {
+            logger.error("HttpTwins ERROR: Failed to roll over the spill log in {}. Reason: {}", directory, e.getMessage());
+            return false;
+        } finally {
+            appendLock.unlock();
+        }
+    }
+
+    /**
+     * Notes that the log took a twin again, after it was full. Called with the append lock held.
+     */
+    private void accepting() {
+        if (full) {
+            full = false;
+            logger.info("HttpTwins: Spill log in {} has room again, {} twins dropped so far.", directory, dropped.sum());
+        }
+    }
+
+    private void drainSafely() {
+        try {
+            drain();
+            compact();
+            active.force();
+        } catch (RuntimeException e) {
+            logger.error("HttpTwins ERROR: Spill drain pass failed. Reason: {}", e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Replays every live twin whose destination is not backed off, oldest first. Runs on the drainer only.
+     */
+    void drain() {
+        long now = System.nanoTime();
+        List<Replay> batch = new ArrayList<>(drainBatchSize);
+        for (SpillSegment segment : segments) {
+            int end = segment.getWritePosition();
+            for (int position = 0; position < end && segment.getLiveCount() > 0;
+                 position += SpillSegment.HEADER_SIZE + segment.length(position)) {
+                if (!segment.isLive(position)) {
+                    continue;
+                }
+                String remoteUrl = SpillRecordCodec.readUrl(segment.payload(position));
+                Backoff backoff = backoffs.get(remoteUrl);
+                if (backoff != null && backoff.retryAtNanos - now > 0) {
+                    continue;
+                }
+                batch.add(new Replay(segment, position, remoteUrl));
+                if (batch.size() >= drainBatchSize) {
+                    replay(batch);
+                    batch.clear();
+                    now = System.nanoTime();
+                }
+            }
+        }
+        replay(batch);
+    }
+
+    private void replay(List<Replay> batch) {
+        if (batch.isEmpty()) {
+            return;
+        }
+        List<CompletableFuture<Boolean>> results = new ArrayList<>(batch.size());
+        for (Replay replay : batch) {
+            TwinRequest request = SpillRecordCodec.decode(replay.segment.payload(replay.position));
+            results.add(clientPool.send(request, replay.remoteUrl, HttpResponse.BodyHandlers.discarding())
+                    .handle((response, failure) -> failure == null && !RemoteHttpClientPool.isRetryable(response.statusCode())));
+        }
+        // Acknowledge on this thread, so the drainer stays the only writer of record states
+        CompletableFuture.allOf(results.toArray(new CompletableFuture[0])).join();
+        long now = System.nanoTime();
+        for (int i = 0; i < batch.size(); i++) {
+            Replay replay = batch.get(i);
+            if (results.get(i).join()) {
+                replay.segment.ack(replay.position);
+                replayed.increment();
+                if (backoffs.remove(replay.remoteUrl) != null) {
+                    logger.info("HttpTwins: Remote destination {} recovered, replaying spilled twins.", replay.remoteUrl);
+                }
+            } else {
+                backoffs.computeIfAbsent(replay.remoteUrl, Backoff::new).failed(now);
+            }
+        }
+    }
+
+    /**
+     * Deletes full segments without live twins and moves the live twins of sparse ones to the end of the log.
+     */
+    private void compact() {
+        for (SpillSegment segment : segments) {
+            if (segment == active) {
+                continue;
+            }
+            if (segment.getLiveCount() > 0 && segment.getLiveBytes() < segment.getCapacity() * compactionThreshold) {
+                int end = segment.getWritePosition();
+                for (int position = 0; position < end && segment.getLiveCount() > 0;
+                     position += SpillSegment.HEADER_SIZE + segment.length(position)) {
+                    if (segment.isLive(position)) {
+                        ByteBuffer payload = segment.payload(position);
+                        byte[] copy = new byte[payload.remaining()];
+                        payload.get(copy);
+                        if (!append(copy)) {
+                            return;
+                        }
+                        segment.ack(position);
+                    }
+                }
+                active.force();
+            }
+            if (segment.getLiveCount() == 0) {
+                segments.remove(segment);
+                try {
+                    segment.delete();
+                } catch (IOException e) {
+                    logger.warn("HttpTwins WARNING: Could not delete drained spill segment {}. Reason: {}", segment.getId(), e.getMessage());
+                }
+            }
+        }
+    }
+
+    private record PendingSpill(TwinRequest request, String remoteUrl) {
+    }
+
+    private record Replay(SpillSegment segment, int position, String remoteUrl) {
+    }
+
+    private final class Backoff {
+
+        private final String remoteUrl;
+        private int failures;
+        private long retryAtNanos;
+
+        private Backoff(String remoteUrl) {
+            this.remoteUrl = remoteUrl;
+        }
+
+        private void failed(long now) {
+            failures++;
+            long delay = initialBackoffNanos << Math.min(failures - 1, 30);
+            delay = delay <= 0 || delay > maxBackoffNanos ? maxBackoffNanos : delay;
+            // Up to 20% jitter keeps instances from retrying a recovering destination in lockstep
+            delay += (long) (delay * 0.2 * ThreadLocalRandom.current().nextDouble());
+            retryAtNanos = now + delay;
+            if (failures == 1) {
+                logger.warn("HttpTwins WARNING: Replay to remote destination '{}' failed, backing off.", remoteUrl);
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.transform;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A set of dot-separated JSON field paths compiled into a trie, walked one field name at a time
+ * while the body streams by.
+ */
+final class FieldTree {
+
+    private final Map<String, FieldTree> children = new HashMap<>();
+    private boolean terminal;
+
+    private FieldTree() {
+    }
+
+    /**
+     * Compiles the paths, or returns {@code null} if there are none.
+     */
+    static FieldTree compile(Collection<String> paths) {
+        FieldTree root = null;
+        for (String path : paths) {
+            String trimmed = path.trim();
+            if (trimmed.isEmpty()) {
+                continue;
+            }
+            if (root == null) {
+                root = new FieldTree();
+            }
+            FieldTree node = root;
+            for (String name : trimmed.split("\\.")) {
+                node = node.children.computeIfAbsent(name, key -> new FieldTree());
+            }
+            node.terminal = true;
+        }
+        return root;
+    }
+
+    /**
+     * Returns the node of the named field below this one, or {@code null} if no path goes through it.
+     */
+    FieldTree child(String name) {
+        return children.get(name);
+    }
+
+    /**
+     * Whether a path ends at this node.
+     */
+    boolean isTerminal() {
+        return terminal;
+    }
+}
@@ -0,0 +1,206 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.transform;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.util.ByteBufferBackedInputStream;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * A destination's transform, compiled once from its {@link TransformProperties.Transform} and
+ * applied to many requests: field projection, exclusion and masking of a JSON body, header removal
+ * and addition, and a rewrite of the request URI.
+ * <p>
+ * The body is rewritten in a single pass of a streaming parser into a generator, without building a
+ * tree; fields that are left out are skipped without being decoded. Only JSON bodies are rewritten.
+ * A body that is not valid JSON is left out of the twin rather than forwarded untransformed, so a
+ * masked field can never leak.
+ * <p>
+ * Instances are immutable and thread-safe.
+ */
+public final class PayloadTransform {
+
+    private static final Logger logger = LoggerFactory.getLogger(PayloadTransform.class);
+
+    private final JsonFactory factory;
+    private final FieldTree include;
+    private final FieldTree exclude;
+    private final FieldTree masked;
+    private final String mask;
+    private final Set<String> removedHeaders;
+    private final String[] addedHeaders;
+    private final Pattern pathPattern;
+    private final String pathReplacement;
+    private final LongAdder failed = new LongAdder();
+
+    PayloadTransform(TransformProperties.Transform spec, JsonFactory factory) {
+        this.factory = factory;
+        this.include = FieldTree.compile(spec.getIncludeFields());
+        this.exclude = FieldTree.compile(spec.getExcludeFields());
+        this.masked = FieldTree.compile(spec.getMaskFields());
+        this.mask = spec.getMask();
+        this.removedHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+        this.removedHeaders.addAll(spec.getRemoveHeaders());
+        // Added headers replace any arriving with the same name
+        this.removedHeaders.addAll(spec.getAddHeaders().keySet());
+        List<String> added = new ArrayList<>();
+        for (Map.Entry<String, String> header : spec.getAddHeaders().entrySet()) {
+            added.add(header.getKey());
+            added.add(header.getValue());
+        }
+        this.addedHeaders = added.toArray(new String[0]);
+        this.pathPattern = spec.getPathPattern().isEmpty() ? null : Pattern.compile(spec.getPathPattern());
+        this.pathReplacement = spec.getPathReplacement();
+    }
+
+    /**
+     * Returns the transformed copy of the request. The original is left untouched.
+     */
+    public TwinRequest apply(TwinRequest request) {
+        String requestUri = pathPattern != null
+                ? pathPattern.matcher(request.getRequestURI()).replaceAll(pathReplacement)
+                : request.getRequestURI();
+        ByteBuffer body = request.getBody();
+        if ((include != null || exclude != null || masked != null) && body.hasRemaining()
+                && isJson(request.getHeader("Content-Type"))) {
+            body = transformBody(body, requestUri);
+        }
+        return new TwinRequest(request.getMethod(), requestUri, request.getQueryString(), headers(request), body,
+                request.getAttributes());
+    }
+
+    /**
+     * Returns the number of bodies left out because they were not valid JSON.
+     */
+    public long getFailedCount() {
+        return failed.sum();
+    }
+
+    private String[] headers(TwinRequest request) {
+        List<String> pairs = new ArrayList<>();
+        request.forEachHeader((name, value) -> {
+            if (!removedHeaders.contains(name)) {
+                pairs.add(name);
+                pairs.add(value);
+            }
+        });
+        for (String header : addedHeaders) {
+            pairs.add(header);
+        }
+        return pairs.toArray(new String[0]);
+    }
+
+    private ByteBuffer transformBody(ByteBuffer body, String requestUri) {
+        BodyOutputStream out = new BodyOutputStream(body.remaining());
+        try (JsonParser parser = factory.createParser(new ByteBufferBackedInputStream(body));
+             JsonGenerator generator = factory.createGenerator(out)) {
+            if (parser.nextToken() != null) {
+                copy(parser, generator, include, exclude, masked);
+            }
+        } catch (IOException e) {
+            failed.increment();
+            logger.warn("HttpTwins WARNING: Left the body of a twin of {} out, it could not be transformed. Reason: {}",
+                    requestUri, e.getMessage());
+            return null;
+        }
+        return out.toByteBuffer();
+    }
+
+    /**
+     * Copies the value at the parser's current token, keeping the fields selected by {@code include}
+     * ({@code null} keeps everything), leaving out the ones selected by {@code exclude} and masking the
+     * ones selected by {@code masked}.
+     */
+    private void copy(JsonParser parser, JsonGenerator generator, FieldTree include, FieldTree exclude, FieldTree masked)
+            throws IOException {
+        if (include == null && exclude == null && masked == null) {
+            generator.copyCurrentStructure(parser);
+            return;
+        }
+        JsonToken token = parser.currentToken();
+        if (token == JsonToken.START_OBJECT) {
+            generator.writeStartObject();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String name = parser.currentName();
+                JsonToken value = parser.nextToken();
+                FieldTree includeChild = include != null ? include.child(name) : null;
+                FieldTree excludeChild = exclude != null ? exclude.child(name) : null;
+                FieldTree maskedChild = masked != null ? masked.child(name) : null;
+                boolean leftOut = include != null && (includeChild == null || !includeChild.isTerminal() && value.isScalarValue());
+                if (leftOut || excludeChild != null && excludeChild.isTerminal()) {
+                    parser.skipChildren();
+                    continue;
+                }
+                generator.writeFieldName(name);
+                if (maskedChild != null && maskedChild.isTerminal()) {
+                    parser.skipChildren();
+                    generator.writeString(mask);
+                } else {
+                    // Below a selected field everything is kept
+                    copy(parser, generator, includeChild != null && includeChild.isTerminal() ? null : includeChild,
+                            excludeChild, maskedChild);
+                }
+            }
+            generator.writeEndObject();
+        } else if (token == JsonToken.START_ARRAY) {
+            // Paths reach into arrays, applying to every element
+            generator.writeStartArray();
+            while (parser.nextToken() != JsonToken.END_ARRAY) {
+                if (include == null || !parser.currentToken().isScalarValue()) {
+                    copy(parser, generator, include, exclude, masked);
+                }
+            }
+            generator.writeEndArray();
+        } else {
+            generator.copyCurrentEvent(parser);
+        }
+    }
+
+    private static boolean isJson(String contentType) {
+        return contentType != null && contentType.toLowerCase(Locale.ROOT).contains("json");
+    }
+
+    /**
+     * Hands its buffer over as the twin's body instead of copying it.
+     */
+    private static final class BodyOutputStream extends ByteArrayOutputStream {
+
+        private BodyOutputStream(int size) {
+            super(size);
+        }
+
+        private ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(buf, 0, count);
+        }
+    }
+}
@@ -0,0 +1,159 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.transform;
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Per-destination transforms of the twins, bound from {@code http-twins.transform.*}. For example:
+ * <pre>
+ * http-twins.transform.destinations.ReportingAgent.include-fields=title,author
+ * http-twins.transform.destinations.RemoteERP.mask-fields=customer.email,payment.card
+ * http-twins.transform.destinations.RemoteERP.remove-headers=Authorization,Cookie
+ * http-twins.transform.destinations[https://ecom.buyers/items].add-headers.X-Twin=true
+ * </pre>
+ * Field paths are dot-separated JSON field names and reach into arrays transparently, so
+ * {@code items.price} selects the price of every element of {@code items}.
+ */
+@ConfigurationProperties(prefix = "http-twins.transform")
+public class TransformProperties {
+
+    /**
+     * Transforms keyed by destination: the processor's simple class name, or the remote URL in
+     * brackets. Destinations without an entry get the request as it came in.
+     */
+    private Map<String, Transform> destinations = new LinkedHashMap<>();
+
+    public Map<String, Transform> getDestinations() {
+        return destinations;
+    }
+
+    public void setDestinations(Map<String, Transform> destinations) {
+        this.destinations = destinations;
+    }
+
+    public static class Transform {
+
+        /**
+         * JSON fields to keep; everything else is left out. Empty keeps every field.
+         */
+        private List<String> includeFields = new ArrayList<>();
+
+        /**
+         * JSON fields to leave out.
+         */
+        private List<String> excludeFields = new ArrayList<>();
+
+        /**
+         * JSON fields whose value, scalar or not, is replaced by {@link #mask}.
+         */
+        private List<String> maskFields = new ArrayList<>();
+
+        /**
+         * The string masked fields are replaced with.
+         */
+        private String mask = "****";
+
+        /**
+         * Headers removed from the twin, matched case-insensitively.
+         */
+        private List<String> removeHeaders = new ArrayList<>();
+
+        /**
+         * Headers set on the twin, replacing any with the same name.
+         */
+        private Map<String, String> addHeaders = new LinkedHashMap<>();
+
+        /**
+         * A regular expression matched against the twin's request URI. Empty leaves the URI as is.
+         */
+        private String pathPattern = "";
+
+        /**
+         * What each match of {@link #pathPattern} is replaced with; may refer to groups as {@code $1}.
+         */
+        private String pathReplacement = "";
+
+        public List<String> getIncludeFields() {
+            return includeFields;
+        }
+
+        public void setIncludeFields(List<String> includeFields) {
+            this.includeFields = includeFields;
+        }
+
+        public List<String> getExcludeFields() {
+            return excludeFields;
+        }
+
+        public void setExcludeFields(List<String> excludeFields) {
+            this.excludeFields = excludeFields;
+        }
+
+        public List<String> getMaskFields() {
+            return maskFields;
+        }
+
+        public void setMaskFields(List<String> maskFields) {
+            this.maskFields = maskFields;
+        }
+
+        public String getMask() {
+            return mask;
+        }
+
+        public void setMask(String mask) {
+            this.mask = mask;
+        }
+
+        public List<String> getRemoveHeaders() {
+            return removeHeaders;
+        }
+
+        public void setRemoveHeaders(List<String> removeHeaders) {
+            this.removeHeaders = removeHeaders;
+        }
+
+        public Map<String, String> getAddHeaders() {
+            return addHeaders;
+        }
+
+        public void setAddHeaders(Map<String, String> addHeaders) {
+            this.addHeaders = addHeaders;
+        }
+
+        public String getPathPattern() {
+            return pathPattern;
+        }
+
+        public void setPathPattern(String pathPattern) {
+            this.pathPattern = pathPattern;
+        }
+
+        public String getPathReplacement() {
+            return pathReplacement;
+        }
+
+        public void setPathReplacement(String pathReplacement) {
+            this.pathReplacement = pathReplacement;
+        }
+    }
+}
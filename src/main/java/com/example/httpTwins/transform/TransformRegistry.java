@@ -0,0 +1,69 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.transform;
+
+import com.fasterxml.jackson.core.JsonFactory;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Compiles the transforms configured under {@code http-twins.transform.destinations} and keeps
+ * them. Destinations configured with the same transform get the same {@link PayloadTransform}
+ * instance, so the aspect computes it once per request for all of them.
+ */
+public class TransformRegistry {
+
+    private final TransformProperties properties;
+    private final JsonFactory factory = new JsonFactory();
+    private final Map<Key, PayloadTransform> transforms = new ConcurrentHashMap<>();
+
+    public TransformRegistry(TransformProperties properties) {
+        this.properties = properties;
+    }
+
+    /**
+     * Returns the compiled transform of the destination, or {@code null} if it has none.
+     *
+     * @param destination The destination name: the processor's simple class name or the remote URL.
+     */
+    public PayloadTransform forDestination(String destination) {
+        TransformProperties.Transform spec = properties.getDestinations().get(destination);
+        if (spec == null) {
+            return null;
+        }
+        return transforms.computeIfAbsent(Key.of(spec), key -> new PayloadTransform(spec, factory));
+    }
+
+    /**
+     * The settings of a transform, normalized so that equivalent settings are equal.
+     */
+    private record Key(List<String> includeFields, List<String> excludeFields, List<String> maskFields, String mask,
+                       List<String> removeHeaders, Map<String, String> addHeaders, String pathPattern, String pathReplacement) {
+
+        static Key of(TransformProperties.Transform spec) {
+            TreeSet<String> removeHeaders = new TreeSet<>(String.CASE_INSENSITIVE_ORDER);
+            removeHeaders.addAll(spec.getRemoveHeaders());
+            return new Key(List.copyOf(new TreeSet<>(spec.getIncludeFields())), List.copyOf(new TreeSet<>(spec.getExcludeFields())),
+                    List.copyOf(new TreeSet<>(spec.getMaskFields())), spec.getMask(),
+                    removeHeaders.stream().map(String::toLowerCase).toList(), new TreeMap<>(spec.getAddHeaders()),
+                    spec.getPathPattern(), spec.getPathReplacement());
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2024 Gyanendra Ojha
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.example.httpTwins.transform;
+
+import com.example.httpTwins.model.TwinRequest;
+
+/**
+ * One transform applied to one request, computed by the first destination that needs it and then
+ * shared with every other destination using the same transform.
+ */
+public final class TransformedTwin {
+
+    private final PayloadTransform transform;
+    private final TwinRequest source;
+    private volatile TwinRequest result;
+
+    public TransformedTwin(PayloadTransform transform, TwinRequest source) {
+        this.transform = transform;
+        this.source = source;
+    }
+
+    /**
+     * Returns the transformed request, transforming it on the calling thread if no one has yet.
+     */
+    public TwinRequest get() {
+        TwinRequest transformed = result;
+        if (transformed == null) {
+            synchronized (this) {
+                transformed = result;
+                if (transformed == null) {
+                    transformed = transform.apply(source);
+                    result = transformed;
+                }
+            }
+        }
+        return transformed;
+    }
+}
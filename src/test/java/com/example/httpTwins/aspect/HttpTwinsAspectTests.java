@@ -0,0 +1,263 @@
+package com.example.httpTwins.aspect;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.capture.ResponseCaptureListener;
+import com.example.httpTwins.capture.TwinSource;
+import com.example.httpTwins.coalesce.CoalesceProperties;
+import com.example.httpTwins.coalesce.CoalescerRegistry;
+import com.example.httpTwins.fanout.FanoutExecutor;
+import com.example.httpTwins.fanout.FanoutExecutorRegistry;
+import com.example.httpTwins.fanout.FanoutProperties;
+import com.example.httpTwins.health.DestinationHealth;
+import com.example.httpTwins.health.DestinationHealthRegistry;
+import com.example.httpTwins.health.HealthProperties;
+import com.example.httpTwins.metrics.TwinMetrics;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.BatchProperties;
+import com.example.httpTwins.remote.RemoteClientProperties;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.example.httpTwins.service.BatchingRemoteProcessor;
+import com.example.httpTwins.service.RemoteDestinationProcessor;
+import com.example.httpTwins.service.RequestProcessor;
+import com.example.httpTwins.spill.SpillProperties;
+import com.example.httpTwins.spill.TwinSpillQueue;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import io.micrometer.observation.ObservationRegistry;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.context.support.GenericApplicationContext;
+
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class HttpTwinsAspectTests {
+
+    // Nothing listens on the discard port; twins in these tests never get as far as being sent
+    private static final String BULK_URL = "http://127.0.0.1:9/bulk";
+    private static final String MIRROR_URL = "http://127.0.0.1:9/mirror";
+
+    @TempDir
+    Path directory;
+
+    private GenericApplicationContext context;
+    private FanoutExecutorRegistry executorRegistry;
+    private TwinSpillQueue spillQueue;
+    private BatchingRemoteProcessor batchingProcessor;
+    private DestinationHealthRegistry healthRegistry;
+    private CoalescerRegistry coalescerRegistry;
+    private final CountingProcessor countingProcessor = new CountingProcessor();
+    private HttpTwinsAspect aspect;
+    private final CountDownLatch release = new CountDownLatch(1);
+    private final AtomicInteger responseCaptures = new AtomicInteger();
+
+    @BeforeEach
+    void setUp() {
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(new RemoteClientProperties());
+        SpillProperties spillProperties = new SpillProperties();
+        spillProperties.setEnabled(true);
+        spillProperties.setDirectory(directory.toString());
+        spillProperties.setDrainInterval(Duration.ofHours(1));
+        spillQueue = new TwinSpillQueue(spillProperties, pool);
+        batchingProcessor = new BatchingRemoteProcessor(pool, new BatchProperties());
+        CoalesceProperties coalesceProperties = new CoalesceProperties();
+        coalesceProperties.setSweepInterval(Duration.ofHours(1));
+        coalescerRegistry = new CoalescerRegistry(coalesceProperties);
+
+        context = new GenericApplicationContext();
+        context.registerBean(RemoteHttpClientPool.class, () -> pool);
+        context.registerBean(TwinSpillQueue.class, () -> spillQueue);
+        context.registerBean(BatchingRemoteProcessor.class, () -> batchingProcessor);
+        context.registerBean(RemoteDestinationProcessor.class, () -> new RemoteDestinationProcessor(pool, spillQueue));
+        context.registerBean(CoalescerRegistry.class, () -> coalescerRegistry);
+        context.registerBean(CountingProcessor.class, () -> countingProcessor);
+        context.refresh();
+
+        // One thread and one queue slot, both taken by blockers, so every twin is dropped by the executor
+        FanoutProperties.Executor blocked = new FanoutProperties.Executor();
+        blocked.setThreads(1);
+        blocked.setQueueCapacity(1);
+        FanoutProperties fanoutProperties = new FanoutProperties();
+        fanoutProperties.getExecutors().put("blocked", blocked);
+        executorRegistry = new FanoutExecutorRegistry(fanoutProperties);
+        HealthProperties healthProperties = new HealthProperties();
+        healthProperties.setEnabled(true);
+        healthRegistry = new DestinationHealthRegistry(healthProperties);
+        TwinRoutingPlanCache routingPlanCache = new TwinRoutingPlanCache(context, context.getEnvironment(), executorRegistry,
+                healthRegistry, new TwinMetrics(new SimpleMeterRegistry()));
+        aspect = new HttpTwinsAspect(routingPlanCache, ObservationRegistry.NOOP);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        executorRegistry.destroy();
+        context.close();
+    }
+
+    @Test
+    void droppedTwinsAreSpilledOnlyForSingleRequestDestinations() throws Exception {
+        FanoutExecutor executor = executorRegistry.get("blocked");
+        executor.execute(this::awaitRelease);
+        executor.execute(this::awaitRelease);
+
+        // The spill log replays single requests; a bulk endpoint must not get them
+        twin("batched");
+        assertThat(spillQueue.getSpilledCount()).isZero();
+        assertThat(batchingProcessor.getBuffered(BULK_URL)).isZero();
+
+        twin("single");
+        awaitSpilled(1);
+    }
+
+    @Test
+    void twinsForAnOpenCircuitAreSpilledOnlyForSingleRequestDestinations() throws Exception {
+        openCircuit(BULK_URL);
+        openCircuit(MIRROR_URL);
+
+        twin("batchedOnDefaultExecutor");
+        assertThat(spillQueue.getSpilledCount()).isZero();
+        assertThat(batchingProcessor.getBuffered(BULK_URL)).isZero();
+
+        twin("singleOnDefaultExecutor");
+        awaitSpilled(1);
+    }
+
+    @Test
+    void coalescedRequestsDoNotHandTheirResponsesToTheDestinations() throws Exception {
+        twin("coalesced");
+        twin("coalesced");
+        assertThat(responseCaptures.get()).isZero();
+
+        // The request twin goes out once the window closes
+        coalescerRegistry.flush();
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (countingProcessor.processed.get() == 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(countingProcessor.processed.get()).isEqualTo(1);
+
+        twin("captured");
+        assertThat(responseCaptures.get()).isEqualTo(1);
+    }
+
+    private void openCircuit(String url) {
+        DestinationHealth health = healthRegistry.get(url);
+        for (int i = 0; i < new HealthProperties().getMinimumCalls(); i++) {
+            assertThat(health.tryAcquire()).isTrue();
+            health.onComplete(0, true);
+        }
+        assertThat(health.isOpen()).isTrue();
+    }
+
+    /**
+     * Waits for the spill writer, which writes the twins in the order they were spilled.
+     */
+    private void awaitSpilled(long count) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (spillQueue.getSpilledCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(spillQueue.getSpilledCount()).isEqualTo(count);
+    }
+
+    private void twin(String endpoint) throws NoSuchMethodException {
+        Method method = Endpoints.class.getMethod(endpoint);
+        aspect.twinRequest(method, method.getAnnotation(HttpTwins.class), new StubSource());
+    }
+
+    private void awaitRelease() {
+        try {
+            release.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    public static class Endpoints {
+
+        @HttpTwins(remoteDestinations = BULK_URL, remoteProcessor = BatchingRemoteProcessor.class, executor = "blocked")
+        public void batched() {
+        }
+
+        @HttpTwins(remoteDestinations = MIRROR_URL, executor = "blocked")
+        public void single() {
+        }
+
+        @HttpTwins(remoteDestinations = BULK_URL, remoteProcessor = BatchingRemoteProcessor.class)
+        public void batchedOnDefaultExecutor() {
+        }
+
+        @HttpTwins(remoteDestinations = MIRROR_URL)
+        public void singleOnDefaultExecutor() {
+        }
+
+        @HttpTwins(localdestinations = CountingProcessor.class, captureResponse = true, coalesceWindow = "1m")
+        public void coalesced() {
+        }
+
+        @HttpTwins(localdestinations = CountingProcessor.class, captureResponse = true)
+        public void captured() {
+        }
+    }
+
+    static class CountingProcessor implements RequestProcessor {
+
+        private final AtomicInteger processed = new AtomicInteger();
+
+        @Override
+        public void process(HttpServletRequest request) {
+            process(TwinRequest.from(request));
+        }
+
+        @Override
+        public void process(TwinRequest request) {
+            processed.incrementAndGet();
+        }
+    }
+
+    private class StubSource implements TwinSource {
+
+        @Override
+        public String getMethod() {
+            return "POST";
+        }
+
+        @Override
+        public String getRequestURI() {
+            return "/books";
+        }
+
+        @Override
+        public String getQueryString() {
+            return null;
+        }
+
+        @Override
+        public String getHeader(String name) {
+            return "Content-Type".equalsIgnoreCase(name) ? "application/json" : null;
+        }
+
+        @Override
+        public TwinRequest snapshot() {
+            return new TwinRequest("POST", "/books", null, new String[]{"Content-Type", "application/json"},
+                    ByteBuffer.wrap("{\"title\":\"Dune\"}".getBytes(StandardCharsets.UTF_8)), Map.of());
+        }
+
+        @Override
+        public void captureResponse(int maxCaptureSize, boolean truncate, ResponseCaptureListener listener) {
+            responseCaptures.incrementAndGet();
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.example.httpTwins.aspect;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.fanout.FanoutExecutorRegistry;
+import com.example.httpTwins.fanout.FanoutProperties;
+import com.example.httpTwins.health.DestinationHealthRegistry;
+import com.example.httpTwins.health.HealthProperties;
+import com.example.httpTwins.metrics.TwinMetrics;
+import com.example.httpTwins.routing.RoutingProperties;
+import com.example.httpTwins.routing.RoutingRuleRegistry;
+import com.example.httpTwins.routing.RoutingRulesChangedEvent;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.cloud.context.environment.EnvironmentChangeEvent;
+import org.springframework.cloud.context.scope.refresh.RefreshScopeRefreshedEvent;
+import org.springframework.context.ApplicationEvent;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
+import org.springframework.core.env.MapPropertySource;
+
+import java.lang.reflect.Method;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwinRoutingPlanCacheTests {
+
+    private final Map<String, Object> properties = new HashMap<>();
+    private AnnotationConfigApplicationContext context;
+    private TwinRoutingPlanCache routingPlanCache;
+    private FanoutExecutorRegistry executorRegistry;
+
+    @BeforeEach
+    void setUp() {
+        properties.put("books.twins.active", "true");
+        executorRegistry = new FanoutExecutorRegistry(new FanoutProperties());
+        context = new AnnotationConfigApplicationContext();
+        context.getEnvironment().getPropertySources().addFirst(new MapPropertySource("test", properties));
+        context.registerBean(TwinRoutingPlanCache.class, () -> new TwinRoutingPlanCache(context, context.getEnvironment(),
+                executorRegistry, new DestinationHealthRegistry(new HealthProperties()), new TwinMetrics(new SimpleMeterRegistry())));
+        context.refresh();
+        routingPlanCache = context.getBean(TwinRoutingPlanCache.class);
+    }
+
+    @AfterEach
+    void tearDown() {
+        context.close();
+        executorRegistry.destroy();
+    }
+
+    @Test
+    void plansAreBuiltOncePerMethod() throws Exception {
+        assertThat(plan()).isSameAs(plan());
+    }
+
+    @Test
+    void environmentChangeRebuildsThePlans() throws Exception {
+        assertRebuiltOn(new EnvironmentChangeEvent(context, Set.of("books.twins.active")));
+    }
+
+    @Test
+    void refreshScopeRefreshRebuildsThePlans() throws Exception {
+        assertRebuiltOn(new RefreshScopeRefreshedEvent());
+    }
+
+    @Test
+    void routingRuleChangeRebuildsThePlans() throws Exception {
+        assertRebuiltOn(new RoutingRulesChangedEvent(new RoutingRuleRegistry(new RoutingProperties(), context)));
+    }
+
+    private void assertRebuiltOn(ApplicationEvent event) throws Exception {
+        TwinRoutingPlan before = plan();
+        assertThat(before.isActive()).isTrue();
+
+        // The cached plan keeps the value it was built with until the event
+        properties.put("books.twins.active", "false");
+        assertThat(plan()).isSameAs(before);
+
+        context.publishEvent(event);
+        TwinRoutingPlan after = plan();
+        assertThat(after).isNotSameAs(before);
+        assertThat(after.isActive()).isFalse();
+    }
+
+    private TwinRoutingPlan plan() throws NoSuchMethodException {
+        Method method = Endpoints.class.getMethod("books");
+        return routingPlanCache.get(method, method.getAnnotation(HttpTwins.class));
+    }
+
+    public static class Endpoints {
+
+        @HttpTwins(active = "${books.twins.active}")
+        public void books() {
+        }
+    }
+}
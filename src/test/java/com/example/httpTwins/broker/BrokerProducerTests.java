@@ -0,0 +1,142 @@
+package com.example.httpTwins.broker;
+
+import com.example.httpTwins.model.TwinRequest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BrokerProducerTests {
+
+    private static final String TOPIC = "books";
+
+    @Test
+    void publishesCompressedBatchesAndDiscardsReplayedTwins() throws Exception {
+        List<BrokerBatch> batches = new CopyOnWriteArrayList<>();
+        EmbeddedBroker broker = new EmbeddedBroker(1000, 1000);
+        BrokerProperties properties = properties();
+        properties.setMaxRecords(10);
+        // Only full batches are sent
+        properties.setLinger(Duration.ofMinutes(1));
+        BrokerProducer producer = new BrokerProducer(batch -> {
+            batches.add(batch);
+            return broker.publish(batch);
+        }, properties);
+        try {
+            List<CompletableFuture<Void>> acknowledged = new ArrayList<>();
+            for (int i = 0; i < 100; i++) {
+                acknowledged.add(producer.send(TOPIC, twin(i)));
+            }
+            CompletableFuture.allOf(acknowledged.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            assertThat(batches).hasSize(10);
+            assertThat(batches.get(0).compression()).isEqualTo(BrokerCompression.GZIP);
+            assertThat(broker.getEndOffset(TOPIC)).isEqualTo(100);
+
+            // Replays of the first ten twins carry the same keys
+            acknowledged.clear();
+            for (int i = 0; i < 10; i++) {
+                acknowledged.add(producer.send(TOPIC, twin(i)));
+            }
+            CompletableFuture.allOf(acknowledged.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            assertThat(broker.getEndOffset(TOPIC)).isEqualTo(100);
+            assertThat(broker.getDuplicateCount()).isEqualTo(10);
+            assertThat(producer.getPublishedCount()).isEqualTo(110);
+            assertThat(producer.getPendingCount()).isZero();
+        } finally {
+            producer.close();
+        }
+
+        BrokerRecord first = broker.read(TOPIC, 0, 1).get(0);
+        assertThat(first.key()).isEqualTo(IdempotencyKeys.derive(twin(0), "Idempotency-Key"));
+        assertThat(new String(first.value(), StandardCharsets.UTF_8)).contains("\"body\":\"{\\\"title\\\":\\\"Book 0\\\"}\"");
+    }
+
+    @Test
+    void retriesBatchesUntilTheBrokerIsBack() throws Exception {
+        EmbeddedBroker broker = new EmbeddedBroker(1000, 1000);
+        broker.setAvailable(false);
+        BrokerProperties properties = properties();
+        properties.setRetryBackoff(Duration.ofMillis(50));
+        properties.setRetries(10);
+        BrokerProducer producer = new BrokerProducer(broker, properties);
+        try {
+            CompletableFuture<Void> acknowledged = producer.send(TOPIC, twin(1));
+            Thread.sleep(100);
+            assertThat(acknowledged.isDone()).isFalse();
+            broker.setAvailable(true);
+            acknowledged.get(5, TimeUnit.SECONDS);
+            assertThat(broker.getEndOffset(TOPIC)).isEqualTo(1);
+        } finally {
+            producer.close();
+        }
+    }
+
+    @Test
+    void rejectsTwinsOnceTooManyAwaitAcknowledgement() throws Exception {
+        // A broker that never acknowledges
+        BrokerProperties properties = properties();
+        properties.setMaxPendingRecords(5);
+        properties.setMaxBlock(Duration.ofMillis(10));
+        BrokerProducer producer = new BrokerProducer(batch -> new CompletableFuture<>(), properties);
+        try {
+            for (int i = 0; i < 5; i++) {
+                assertThat(producer.send(TOPIC, twin(i)).isDone()).isFalse();
+            }
+            CompletableFuture<Void> rejected = producer.send(TOPIC, twin(5));
+            assertThat(rejected.isCompletedExceptionally()).isTrue();
+            assertThat(rejected.handle((ignored, failure) -> failure).join()).isInstanceOf(RejectedExecutionException.class);
+            assertThat(producer.getRejectedCount()).isEqualTo(1);
+            assertThat(producer.getPendingCount()).isEqualTo(5);
+        } finally {
+            producer.close();
+        }
+    }
+
+    @Test
+    void flushPublishesOpenBatchesWithoutWaitingForTheirLinger() throws Exception {
+        BrokerProperties properties = properties();
+        properties.setLinger(Duration.ofMinutes(1));
+        List<BrokerBatch> published = new CopyOnWriteArrayList<>();
+        BrokerProducer producer = new BrokerProducer(batch -> {
+            published.add(batch);
+            return CompletableFuture.completedFuture(null);
+        }, properties);
+        try {
+            List<CompletableFuture<Void>> acknowledged = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                acknowledged.add(producer.send(TOPIC, twin(i)));
+            }
+            assertThat(producer.getPendingCount()).isEqualTo(3);
+
+            producer.flush();
+            CompletableFuture.allOf(acknowledged.toArray(new CompletableFuture[0])).get(5, TimeUnit.SECONDS);
+            assertThat(published).hasSize(1);
+            assertThat(producer.getPendingCount()).isZero();
+        } finally {
+            producer.close();
+        }
+    }
+
+    private static BrokerProperties properties() {
+        BrokerProperties properties = new BrokerProperties();
+        properties.setLinger(Duration.ofMillis(5));
+        return properties;
+    }
+
+    private static TwinRequest twin(int i) {
+        return new TwinRequest("POST", "/books", null,
+                new String[]{"Content-Type", "application/json"},
+                ByteBuffer.wrap(("{\"title\":\"Book " + i + "\"}").getBytes(StandardCharsets.UTF_8)),
+                Map.of());
+    }
+}
@@ -0,0 +1,56 @@
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.model.TwinRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CapturingRequestWrapperTests {
+
+    @Test
+    void formPostBodyIsRebuiltFromItsParameters() {
+        // The container has parsed the form; the body stream is never read
+        MockHttpServletRequest live = new MockHttpServletRequest("POST", "/books");
+        live.setContentType("application/x-www-form-urlencoded");
+        live.setQueryString("draft=true");
+        live.addParameter("draft", "true");
+        live.addParameter("title", "Dune");
+        live.addParameter("author", "Frank Herbert");
+        CapturingRequestWrapper request = new CapturingRequestWrapper(live, 1024);
+
+        assertThat(request.getParameter("title")).isEqualTo("Dune");
+        assertThat(StandardCharsets.UTF_8.decode(request.getCachedBody()).toString())
+                .isEqualTo("title=Dune&author=Frank+Herbert");
+    }
+
+    @Test
+    void bodyAlreadyReadIsNotReplacedByTheParameters() throws Exception {
+        MockHttpServletRequest live = new MockHttpServletRequest("POST", "/books");
+        live.setContentType("application/x-www-form-urlencoded");
+        live.setContent("title=Dune".getBytes(StandardCharsets.UTF_8));
+        live.addParameter("title", "Dune");
+        CapturingRequestWrapper request = new CapturingRequestWrapper(live, 1024);
+        request.getInputStream().readAllBytes();
+        request.getParameterMap();
+
+        assertThat(StandardCharsets.UTF_8.decode(request.getCachedBody()).toString()).isEqualTo("title=Dune");
+    }
+
+    @Test
+    void snapshotKeepsTheBodyReadSoFarWhileTheRestIsCaptured() throws Exception {
+        byte[] content = "{\"title\":\"Dune\",\"author\":\"Frank Herbert\"}".getBytes(StandardCharsets.UTF_8);
+        MockHttpServletRequest live = new MockHttpServletRequest("POST", "/books");
+        live.setContent(content);
+        CapturingRequestWrapper request = new CapturingRequestWrapper(live, 1024);
+        request.getInputStream().readNBytes(16);
+
+        TwinRequest snapshot = TwinRequest.from(request);
+        request.getInputStream().readAllBytes();
+
+        assertThat(snapshot.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"title\":\"Dune\",");
+        assertThat(request.getCachedBody().remaining()).isEqualTo(content.length);
+    }
+}
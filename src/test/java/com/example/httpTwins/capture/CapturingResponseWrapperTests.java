@@ -0,0 +1,142 @@
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.model.TwinResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class CapturingResponseWrapperTests {
+
+    private static final byte[] BODY = "{\"title\":\"Dune\",\"author\":\"Frank Herbert\"}".getBytes(StandardCharsets.UTF_8);
+
+    @Test
+    void bodyWithinTheCapIsCapturedWhole() throws Exception {
+        MockHttpServletResponse live = new MockHttpServletResponse();
+        AtomicReference<TwinResponse> captured = new AtomicReference<>();
+        CapturingResponseWrapper response = new CapturingResponseWrapper(live, new CaptureBufferPool(4));
+        response.startCapture(1024, true, (twin, release) -> captured.set(twin));
+        response.setStatus(201);
+        response.setHeader("Content-Type", "application/json");
+        response.getOutputStream().write(BODY);
+        response.complete();
+
+        TwinResponse twin = captured.get();
+        assertThat(twin.getStatus()).isEqualTo(201);
+        assertThat(twin.getHeader("content-type")).isEqualTo("application/json");
+        assertThat(twin.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo(new String(BODY, StandardCharsets.UTF_8));
+        assertThat(twin.getTotalBodyLength()).isEqualTo(BODY.length);
+        assertThat(twin.isTruncated()).isFalse();
+        assertThat(live.getContentAsByteArray()).isEqualTo(BODY);
+    }
+
+    @Test
+    void largerBodyIsTruncatedToTheCapWhileTheClientGetsAllOfIt() throws Exception {
+        MockHttpServletResponse live = new MockHttpServletResponse();
+        AtomicReference<TwinResponse> captured = new AtomicReference<>();
+        CapturingResponseWrapper response = new CapturingResponseWrapper(live, new CaptureBufferPool(4));
+        response.startCapture(8, true, (twin, release) -> captured.set(twin));
+        // Split across a single-byte write and an array write, both teed
+        response.getOutputStream().write(BODY[0]);
+        response.getOutputStream().write(BODY, 1, BODY.length - 1);
+        response.complete();
+
+        TwinResponse twin = captured.get();
+        assertThat(twin.getCapturedLength()).isEqualTo(8);
+        assertThat(twin.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"title\"");
+        assertThat(twin.getTotalBodyLength()).isEqualTo(BODY.length);
+        assertThat(twin.isTruncated()).isTrue();
+        assertThat(live.getContentAsByteArray()).isEqualTo(BODY);
+    }
+
+    @Test
+    void largerBodyIsSkippedWhenNotTruncating() throws Exception {
+        MockHttpServletResponse live = new MockHttpServletResponse();
+        AtomicReference<TwinResponse> captured = new AtomicReference<>();
+        CapturingResponseWrapper response = new CapturingResponseWrapper(live, new CaptureBufferPool(4));
+        response.startCapture(8, false, (twin, release) -> captured.set(twin));
+        response.setStatus(200);
+        response.getOutputStream().write(BODY);
+        response.complete();
+
+        TwinResponse twin = captured.get();
+        assertThat(twin.getStatus()).isEqualTo(200);
+        assertThat(twin.getCapturedLength()).isZero();
+        assertThat(twin.getTotalBodyLength()).isEqualTo(BODY.length);
+        assertThat(twin.isTruncated()).isTrue();
+        assertThat(live.getContentAsByteArray()).isEqualTo(BODY);
+    }
+
+    @Test
+    void bodyWrittenThroughTheWriterIsCapturedInTheResponseEncoding() throws Exception {
+        MockHttpServletResponse live = new MockHttpServletResponse();
+        live.setCharacterEncoding("UTF-8");
+        AtomicReference<TwinResponse> captured = new AtomicReference<>();
+        CapturingResponseWrapper response = new CapturingResponseWrapper(live, new CaptureBufferPool(4));
+        response.startCapture(1024, true, (twin, release) -> captured.set(twin));
+        PrintWriter writer = response.getWriter();
+        writer.write("Les Misérables");
+        response.complete();
+
+        TwinResponse twin = captured.get();
+        assertThat(twin.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("Les Misérables");
+        assertThat(twin.getTotalBodyLength()).isEqualTo("Les Misérables".getBytes(StandardCharsets.UTF_8).length);
+    }
+
+    @Test
+    void bodyResetBeforeItIsCommittedIsLeftOutOfTheCapture() throws Exception {
+        MockHttpServletResponse live = new MockHttpServletResponse();
+        AtomicReference<TwinResponse> captured = new AtomicReference<>();
+        CapturingResponseWrapper response = new CapturingResponseWrapper(live, new CaptureBufferPool(4));
+        response.startCapture(8, false, (twin, release) -> captured.set(twin));
+        // Overflows the cap, then is thrown away by an error page
+        response.getOutputStream().write(BODY);
+        response.resetBuffer();
+        response.getOutputStream().write("Dune".getBytes(StandardCharsets.UTF_8));
+        response.complete();
+
+        TwinResponse twin = captured.get();
+        assertThat(twin.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("Dune");
+        assertThat(twin.getTotalBodyLength()).isEqualTo(4);
+        assertThat(twin.isTruncated()).isFalse();
+        assertThat(live.getContentAsByteArray()).isEqualTo("Dune".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void resetAlsoDropsWhatTheWriterStillHolds() throws Exception {
+        MockHttpServletResponse live = new MockHttpServletResponse();
+        live.setCharacterEncoding("UTF-8");
+        AtomicReference<TwinResponse> captured = new AtomicReference<>();
+        CapturingResponseWrapper response = new CapturingResponseWrapper(live, new CaptureBufferPool(4));
+        response.startCapture(1024, true, (twin, release) -> captured.set(twin));
+        PrintWriter writer = response.getWriter();
+        response.setStatus(201);
+        writer.write("{\"title\":\"Dune\"}");
+        response.reset();
+        assertThat(live.isCommitted()).isFalse();
+        response.setStatus(500);
+        writer.write("{\"error\":\"boom\"}");
+        response.complete();
+
+        TwinResponse twin = captured.get();
+        assertThat(twin.getStatus()).isEqualTo(500);
+        assertThat(twin.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"error\":\"boom\"}");
+        assertThat(live.getContentAsString()).isEqualTo("{\"error\":\"boom\"}");
+    }
+
+    @Test
+    void responsesOfEndpointsNotCapturingPassStraightThrough() throws Exception {
+        MockHttpServletResponse live = new MockHttpServletResponse();
+        CapturingResponseWrapper response = new CapturingResponseWrapper(live, new CaptureBufferPool(4));
+        response.getOutputStream().write(BODY);
+        response.complete();
+
+        assertThat(response.isCapturing()).isFalse();
+        assertThat(response.getOutputStream()).isSameAs(live.getOutputStream());
+        assertThat(live.getContentAsByteArray()).isEqualTo(BODY);
+    }
+}
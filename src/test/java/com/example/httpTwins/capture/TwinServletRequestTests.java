@@ -0,0 +1,55 @@
+package com.example.httpTwins.capture;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.service.RequestProcessor;
+import jakarta.servlet.http.HttpServletRequest;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.util.ContentCachingRequestWrapper;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TwinServletRequestTests {
+
+    @Test
+    void processorWrittenForTheServletRequestReceivesTheSnapshot() {
+        AtomicReference<String> seen = new AtomicReference<>();
+        // Implements only the servlet overload, reading the body the way processors always have
+        RequestProcessor legacy = request -> seen.set(request.getMethod() + " " + request.getRequestURI()
+                + " " + request.getParameter("draft") + " " + request.getHeader("content-type") + " "
+                + new String(((ContentCachingRequestWrapper) request).getContentAsByteArray(), StandardCharsets.UTF_8));
+
+        legacy.process(new TwinRequest("POST", "/books", "draft=true", new String[]{"Content-Type", "application/json"},
+                ByteBuffer.wrap("{\"title\":\"Dune\"}".getBytes(StandardCharsets.UTF_8)), null));
+
+        assertThat(seen.get()).isEqualTo("POST /books true application/json {\"title\":\"Dune\"}");
+    }
+
+    @Test
+    void bodyCanBeReadAsAStreamAndFormParametersAreParsed() throws Exception {
+        TwinServletRequest request = new TwinServletRequest(new TwinRequest("POST", "/books", "draft=true",
+                new String[]{"Content-Type", "application/x-www-form-urlencoded; charset=UTF-8"},
+                ByteBuffer.wrap("title=Les+Mis%C3%A9rables&draft=false".getBytes(StandardCharsets.UTF_8)),
+                Map.of("com.example.httpTwins.coalescedCount", 3)));
+
+        assertThat(request.getParameterValues("draft")).containsExactly("true", "false");
+        assertThat(request.getParameter("title")).isEqualTo("Les Misérables");
+        assertThat(request.getCharacterEncoding()).isEqualTo("UTF-8");
+        assertThat(request.getAttribute("com.example.httpTwins.coalescedCount")).isEqualTo(3);
+        assertThat(new String(request.getInputStream().readAllBytes(), StandardCharsets.UTF_8))
+                .isEqualTo("title=Les+Mis%C3%A9rables&draft=false");
+    }
+
+    @Test
+    void liveRequestStateIsNotAvailable() {
+        HttpServletRequest request = new TwinServletRequest(new TwinRequest("GET", "/books", null, new String[0], null, null));
+
+        assertThatThrownBy(request::getSession).isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> request.setAttribute("tenant", "acme")).isInstanceOf(UnsupportedOperationException.class);
+    }
+}
@@ -0,0 +1,74 @@
+package com.example.httpTwins.cluster;
+
+import com.example.httpTwins.HttpTwinsApplication;
+import org.junit.jupiter.api.Test;
+import org.springframework.boot.builder.SpringApplicationBuilder;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ClusterBudgetTests {
+
+    private static final String DESTINATION = "RemoteERP";
+
+    @Test
+    void nodesSplitTheBudgetAndTakeOverTheShareOfOneThatLeaves() throws Exception {
+        List<ConfigurableApplicationContext> nodes = new ArrayList<>();
+        try {
+            for (int i = 0; i < 3; i++) {
+                nodes.add(start("node-" + i));
+            }
+            Set<String> ports = new HashSet<>();
+            List<ClusterBudget> budgets = new ArrayList<>();
+            for (ConfigurableApplicationContext node : nodes) {
+                ports.add(node.getEnvironment().getProperty("local.server.port"));
+                budgets.add(node.getBean(ClusterBudgetRegistry.class).get(DESTINATION));
+            }
+            assertThat(ports).hasSize(3);
+            assertThat(nodes.get(0).getBean(ClusterBudgetRegistry.class).get("ReportingAgent")).isNull();
+
+            await(() -> budgets.stream().allMatch(budget -> budget.getNodes() == 3));
+            for (ClusterBudget budget : budgets) {
+                assertThat(budget.getLocalRate()).isEqualTo(10.0);
+            }
+
+            // A node shutting down releases its lease right away
+            nodes.remove(2).close();
+            await(() -> budgets.get(0).getNodes() == 2 && budgets.get(1).getNodes() == 2);
+            assertThat(budgets.get(0).getLocalRate()).isEqualTo(15.0);
+            assertThat(budgets.get(1).getLocalRate()).isEqualTo(15.0);
+        } finally {
+            nodes.forEach(ConfigurableApplicationContext::close);
+        }
+    }
+
+    private static ConfigurableApplicationContext start(String nodeId) {
+        // Every node runs on its own port against one shared in-memory database
+        return new SpringApplicationBuilder(HttpTwinsApplication.class)
+                .properties("server.port=0",
+                        "spring.datasource.url=jdbc:h2:mem:cluster-budget;DB_CLOSE_DELAY=-1",
+                        "spring.jpa.hibernate.ddl-auto=update",
+                        "http-twins.audit.enabled=false",
+                        "http-twins.cluster.enabled=true",
+                        "http-twins.cluster.node-id=" + nodeId,
+                        "http-twins.cluster.budgets." + DESTINATION + "=30",
+                        "http-twins.cluster.lease-duration=2s",
+                        "http-twins.cluster.refresh-interval=50ms")
+                .run();
+    }
+
+    private static void await(BooleanSupplier condition) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+}
@@ -0,0 +1,126 @@
+package com.example.httpTwins.coalesce;
+
+import com.example.httpTwins.model.TwinRequest;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwinCoalescerTests {
+
+    private static final String[] HEADERS = {"Accept"};
+    private static final int KEYS = 20_000;
+
+    @Test
+    void deliversOneTwinPerWindowWithTheNumberOfRequestsItStandsFor() {
+        TwinCoalescer coalescer = new TwinCoalescer("GET /books", TimeUnit.SECONDS.toNanos(1), HEADERS, 100);
+        List<TwinRequest> delivered = new CopyOnWriteArrayList<>();
+        long key = key("/books", "page=1", "application/json");
+
+        assertThat(coalescer.join(key)).isFalse();
+        assertThat(coalescer.open(key, twin(), delivered::add)).isEqualTo(TwinCoalescer.Opening.OPENED);
+        for (int i = 0; i < 8; i++) {
+            assertThat(coalescer.join(key)).isTrue();
+        }
+        // A request racing the opener into open() is absorbed all the same
+        assertThat(coalescer.open(key, twin(), delivered::add)).isEqualTo(TwinCoalescer.Opening.JOINED);
+        coalescer.sweep(System.nanoTime());
+        assertThat(delivered).hasSize(0);
+
+        coalescer.sweep(System.nanoTime() + TimeUnit.SECONDS.toNanos(2));
+        assertThat(delivered).hasSize(1);
+        assertThat(delivered.get(0).getAttribute(TwinCoalescer.COUNT_ATTRIBUTE)).isEqualTo(10);
+        assertThat(coalescer.getCoalescedCount()).isEqualTo(9);
+        assertThat(coalescer.getOpenWindows()).isZero();
+
+        // The next identical request opens a new window
+        assertThat(coalescer.join(key)).isFalse();
+    }
+
+    @Test
+    void treatsEquivalentUrisAsIdenticalButNotOtherHeaderValues() {
+        long key = key("/books", "page=1&size=20", "application/json");
+        assertThat(key("//books/", "size=20&page=1", "application/json")).isEqualTo(key);
+        assertThat(key("/books", "page=2&size=20", "application/json")).isNotEqualTo(key);
+        assertThat(key("/books", "page=1&size=20", "application/xml")).isNotEqualTo(key);
+        assertThat(CoalescingKey.of("HEAD", "/books", "page=1&size=20", HEADERS, name -> "application/json")).isNotEqualTo(key);
+        assertThat(key("/books", "page=1&size=20&sort=title", "application/json")).isNotEqualTo(key);
+        assertThat(key("/books", "page=20&size=1", "application/json")).isNotEqualTo(key);
+        // Header names are matched regardless of case
+        assertThat(CoalescingKey.of("GET", "/books", "page=1&size=20", new String[]{"ACCEPT"}, name -> "application/json")).isEqualTo(key);
+    }
+
+    @Test
+    void keysAreComputedWithoutAllocating() {
+        Map<String, String> request = Map.of("Accept", "application/json");
+        // Less than a byte per key: any object created per request would take at least sixteen
+        assertThat(allocatedBytes(() -> CoalescingKey.of("GET", "//books/", "size=20&page=1&sort=title", HEADERS, request, Map::get)))
+                .isLessThan(KEYS);
+    }
+
+    @Test
+    void mirrorsDirectlyOnceTooManyWindowsAreOpen() {
+        TwinCoalescer coalescer = new TwinCoalescer("GET /books", TimeUnit.SECONDS.toNanos(1), HEADERS, 2);
+        List<TwinRequest> delivered = new CopyOnWriteArrayList<>();
+
+        assertThat(coalescer.open(key("/books/1", null, null), twin(), delivered::add)).isEqualTo(TwinCoalescer.Opening.OPENED);
+        assertThat(coalescer.open(key("/books/2", null, null), twin(), delivered::add)).isEqualTo(TwinCoalescer.Opening.OPENED);
+        assertThat(coalescer.open(key("/books/3", null, null), twin(), delivered::add)).isEqualTo(TwinCoalescer.Opening.REFUSED);
+
+        coalescer.flush();
+        assertThat(delivered).hasSize(2);
+        assertThat(coalescer.getOpenWindows()).isZero();
+    }
+
+    @Test
+    void registryFlushDeliversTheOpenWindowsOfEveryEndpoint() throws Exception {
+        CoalesceProperties properties = new CoalesceProperties();
+        properties.setSweepInterval(Duration.ofHours(1));
+        CoalescerRegistry registry = new CoalescerRegistry(properties);
+        List<TwinRequest> delivered = new CopyOnWriteArrayList<>();
+        try {
+            TwinCoalescer books = registry.get("GET /books", Duration.ofMinutes(1), HEADERS);
+            TwinCoalescer authors = registry.get("GET /authors", Duration.ofMinutes(1), HEADERS);
+            assertThat(books.open(key("/books", null, null), twin(), delivered::add)).isEqualTo(TwinCoalescer.Opening.OPENED);
+            assertThat(authors.open(key("/authors", null, null), twin(), delivered::add)).isEqualTo(TwinCoalescer.Opening.OPENED);
+            assertThat(registry.isFlushed()).isFalse();
+
+            registry.flush();
+            assertThat(delivered).hasSize(2);
+            assertThat(registry.isFlushed()).isTrue();
+        } finally {
+            registry.destroy();
+        }
+    }
+
+    /**
+     * Returns the bytes the current thread allocates running the task {@code KEYS} times, once warmed up.
+     */
+    private static long allocatedBytes(Runnable task) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < KEYS; i++) {
+            task.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < KEYS; i++) {
+            task.run();
+        }
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+
+    private static long key(String uri, String query, String accept) {
+        return CoalescingKey.of("GET", uri, query, HEADERS, name -> accept);
+    }
+
+    private static TwinRequest twin() {
+        return new TwinRequest("GET", "/books", null, new String[]{"Accept", "application/json"},
+                ByteBuffer.allocate(0), Map.of());
+    }
+}
@@ -0,0 +1,158 @@
+package com.example.httpTwins.fanout;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FanoutExecutorTests {
+
+    @Test
+    void dropNewestDiscardsTheSubmittedTwin() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        FanoutExecutor executor = saturated(OverflowPolicy.DROP_NEWEST, Duration.ZERO, release, ran, dropped);
+        try {
+            executor.execute(() -> ran.add("newest"), () -> dropped.add("newest"));
+            assertThat(dropped).containsExactly("newest");
+
+            release.countDown();
+            awaitIdle(executor);
+            assertThat(ran).containsExactly("blocker", "queued");
+            assertThat(executor.getDroppedCount()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void dropOldestDiscardsTheLongestQueuedTwin() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        FanoutExecutor executor = saturated(OverflowPolicy.DROP_OLDEST, Duration.ZERO, release, ran, dropped);
+        try {
+            executor.execute(() -> ran.add("newest"), () -> dropped.add("newest"));
+            assertThat(dropped).containsExactly("queued");
+
+            release.countDown();
+            awaitIdle(executor);
+            assertThat(ran).containsExactly("blocker", "newest");
+            assertThat(executor.getDroppedCount()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void callerRunsRunsTheTwinOnTheSubmittingThread() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        FanoutExecutor executor = saturated(OverflowPolicy.CALLER_RUNS, Duration.ZERO, release, ran, dropped);
+        try {
+            Thread caller = Thread.currentThread();
+            List<Thread> threads = new CopyOnWriteArrayList<>();
+            executor.execute(() -> {
+                threads.add(Thread.currentThread());
+                ran.add("newest");
+            }, () -> dropped.add("newest"));
+            assertThat(threads).containsExactly(caller);
+            assertThat(ran).containsExactly("newest");
+
+            release.countDown();
+            awaitIdle(executor);
+            assertThat(ran).containsExactly("newest", "blocker", "queued");
+            assertThat(dropped).isEmpty();
+            assertThat(executor.getDroppedCount()).isZero();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void blockWaitsForRoomUpToTheBlockTimeout() throws Exception {
+        List<String> ran = new CopyOnWriteArrayList<>();
+        List<String> dropped = new CopyOnWriteArrayList<>();
+        CountDownLatch release = new CountDownLatch(1);
+        FanoutExecutor executor = saturated(OverflowPolicy.BLOCK, Duration.ofMillis(50), release, ran, dropped);
+        try {
+            long start = System.nanoTime();
+            executor.execute(() -> ran.add("timed out"), () -> dropped.add("timed out"));
+            assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(50));
+            assertThat(dropped).containsExactly("timed out");
+
+            // Room that frees up while the caller waits takes the twin
+            Thread releaser = new Thread(() -> {
+                sleep(10);
+                release.countDown();
+            });
+            releaser.start();
+            executor.execute(() -> ran.add("waited"), () -> dropped.add("waited"));
+            releaser.join();
+            awaitIdle(executor);
+            assertThat(ran).containsExactly("blocker", "queued", "waited");
+            assertThat(executor.getDroppedCount()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Returns an executor of one thread and one queue slot, the thread held by a blocker until
+     * {@code release} and the slot taken by a queued twin.
+     */
+    private static FanoutExecutor saturated(OverflowPolicy policy, Duration blockTimeout, CountDownLatch release,
+                                            List<String> ran, List<String> dropped) throws InterruptedException {
+        FanoutProperties.Executor spec = new FanoutProperties.Executor();
+        spec.setThreads(1);
+        spec.setQueueCapacity(1);
+        spec.setOverflowPolicy(policy);
+        spec.setBlockTimeout(blockTimeout);
+        FanoutExecutor executor = new FanoutExecutor("saturated", spec);
+        CountDownLatch started = new CountDownLatch(1);
+        executor.execute(() -> {
+            started.countDown();
+            await(release);
+            ran.add("blocker");
+        }, () -> dropped.add("blocker"));
+        assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+        executor.execute(() -> ran.add("queued"), () -> dropped.add("queued"));
+        assertThat(executor.getQueueSize()).isEqualTo(1);
+        return executor;
+    }
+
+    private static void awaitIdle(FanoutExecutor executor) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!executor.isIdle() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(executor.isIdle()).isTrue();
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package com.example.httpTwins.fanout;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FanoutLaneTests {
+
+    @Test
+    void slowDestinationDoesNotStarveTheOthers() throws Exception {
+        FanoutProperties.Executor spec = new FanoutProperties.Executor();
+        spec.setThreads(4);
+        FanoutProperties.Lane slowSpec = new FanoutProperties.Lane();
+        slowSpec.setMaxConcurrency(2);
+        slowSpec.setQueueCapacity(10);
+        FanoutExecutor executor = new FanoutExecutor("lanes", spec, Map.of("slow", slowSpec));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            FanoutLane slow = executor.lane("slow", TwinPriority.NORMAL);
+            FanoutLane fast = executor.lane("fast", TwinPriority.NORMAL);
+            AtomicInteger slowDropped = new AtomicInteger();
+            for (int i = 0; i < 20; i++) {
+                slow.execute(() -> await(release), slowDropped::incrementAndGet);
+            }
+            // Two running, ten waiting in the lane, the rest dropped; the executor still has free threads
+            assertThat(slow.getActiveCount()).isEqualTo(2);
+            assertThat(slow.getQueueSize()).isEqualTo(10);
+            assertThat(slowDropped).hasValue(8);
+            assertThat(slow.getDroppedCount()).isEqualTo(8);
+
+            CountDownLatch fastDone = new CountDownLatch(50);
+            for (int i = 0; i < 50; i++) {
+                fast.execute(fastDone::countDown, null);
+            }
+            assertThat(fastDone.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(fast.getDroppedCount()).isZero();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void bestEffortTwinsAreShedFirstAndCriticalOnesUseReservedThreads() throws Exception {
+        FanoutProperties.Executor spec = new FanoutProperties.Executor();
+        spec.setThreads(1);
+        spec.setQueueCapacity(10);
+        spec.setShedThreshold(0.5);
+        spec.setReservedThreads(1);
+        FanoutExecutor executor = new FanoutExecutor("priorities", spec);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            // Saturate the shared thread and fill its queue up to the shed threshold
+            for (int i = 0; i < 6; i++) {
+                executor.execute(() -> await(release), null, TwinPriority.NORMAL);
+            }
+            AtomicInteger shed = new AtomicInteger();
+            executor.execute(() -> { }, shed::incrementAndGet, TwinPriority.BEST_EFFORT);
+            assertThat(shed).hasValue(1);
+            assertThat(executor.getShedCount()).isEqualTo(1);
+
+            // Normal twins still take the remaining room
+            AtomicInteger dropped = new AtomicInteger();
+            executor.execute(() -> { }, dropped::incrementAndGet, TwinPriority.NORMAL);
+            assertThat(dropped).hasValue(0);
+
+            CountDownLatch critical = new CountDownLatch(1);
+            executor.execute(critical::countDown, null, TwinPriority.CRITICAL);
+            assertThat(critical.await(5, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void criticalTwinsFindingTheReservedThreadsBusyRunOnTheSharedOnes() throws Exception {
+        FanoutProperties.Executor spec = new FanoutProperties.Executor();
+        spec.setThreads(2);
+        spec.setReservedThreads(1);
+        FanoutExecutor executor = new FanoutExecutor("critical", spec);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            CountDownLatch started = new CountDownLatch(1);
+            executor.execute(() -> {
+                started.countDown();
+                await(release);
+            }, null, TwinPriority.CRITICAL);
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+
+            // Runs right away on a shared thread instead of queueing behind the busy reserved one
+            CountDownLatch overflow = new CountDownLatch(1);
+            AtomicReference<String> thread = new AtomicReference<>();
+            executor.execute(() -> {
+                thread.set(Thread.currentThread().getName());
+                overflow.countDown();
+            }, null, TwinPriority.CRITICAL);
+            assertThat(overflow.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(thread.get()).doesNotContain("reserved");
+            assertThat(executor.getDroppedCount()).isZero();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void finishingTwinRunsTheLaneBacklogItselfWhenTheExecutorDropsNewest() throws Exception {
+        assertBacklogRunsOnAFullExecutor(OverflowPolicy.DROP_NEWEST);
+    }
+
+    @Test
+    void finishingTwinRunsTheLaneBacklogItselfWhenTheExecutorBlocks() throws Exception {
+        assertBacklogRunsOnAFullExecutor(OverflowPolicy.BLOCK);
+    }
+
+    @Test
+    void droppedTwinOnlyGivesBackItsSlot() throws Exception {
+        FanoutProperties.Executor spec = new FanoutProperties.Executor();
+        spec.setThreads(1);
+        spec.setQueueCapacity(2);
+        spec.setOverflowPolicy(OverflowPolicy.DROP_OLDEST);
+        FanoutProperties.Lane laneSpec = new FanoutProperties.Lane();
+        laneSpec.setMaxConcurrency(2);
+        FanoutExecutor executor = new FanoutExecutor("drop-oldest", spec, Map.of("slow", laneSpec));
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            executor.execute(() -> await(release));
+            FanoutLane slow = executor.lane("slow", TwinPriority.NORMAL);
+            FanoutLane other = executor.lane("other", TwinPriority.NORMAL);
+            AtomicInteger ran = new AtomicInteger();
+            AtomicInteger slowDropped = new AtomicInteger();
+            // Two in the executor's queue, filling it, and three waiting in the lane
+            for (int i = 0; i < 5; i++) {
+                slow.execute(ran::incrementAndGet, slowDropped::incrementAndGet);
+            }
+            assertThat(slow.getQueueSize()).isEqualTo(3);
+
+            // Pushes the lane's oldest twin out; the lane must not refill the executor from the overflow handler
+            other.execute(ran::incrementAndGet, null);
+            assertThat(slowDropped).hasValue(1);
+            assertThat(slow.getActiveCount()).isEqualTo(1);
+            assertThat(slow.getQueueSize()).isEqualTo(3);
+            assertThat(other.getDroppedCount()).isZero();
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!executor.isIdle() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(ran).hasValue(5);
+            assertThat(slow.getDroppedCount()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void assertBacklogRunsOnAFullExecutor(OverflowPolicy policy) throws Exception {
+        FanoutProperties.Executor spec = new FanoutProperties.Executor();
+        spec.setThreads(1);
+        spec.setQueueCapacity(1);
+        spec.setOverflowPolicy(policy);
+        spec.setBlockTimeout(Duration.ofSeconds(10));
+        FanoutProperties.Lane laneSpec = new FanoutProperties.Lane();
+        laneSpec.setMaxConcurrency(1);
+        FanoutExecutor executor = new FanoutExecutor(policy.name(), spec, Map.of("slow", laneSpec));
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        try {
+            FanoutLane slow = executor.lane("slow", TwinPriority.NORMAL);
+            AtomicInteger ran = new AtomicInteger();
+            slow.execute(() -> {
+                started.countDown();
+                await(release);
+                ran.incrementAndGet();
+            }, null);
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            for (int i = 0; i < 3; i++) {
+                slow.execute(ran::incrementAndGet, null);
+            }
+            // Fills the executor's queue behind the running twin
+            CountDownLatch queued = new CountDownLatch(1);
+            executor.execute(queued::countDown);
+
+            long start = System.nanoTime();
+            release.countDown();
+            assertThat(queued.await(5, TimeUnit.SECONDS)).isTrue();
+            // Neither dropped nor stuck waiting for room in the pool the worker itself belongs to
+            assertThat(ran).hasValue(4);
+            assertThat(slow.getDroppedCount()).isZero();
+            assertThat(executor.getDroppedCount()).isZero();
+            assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(5));
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
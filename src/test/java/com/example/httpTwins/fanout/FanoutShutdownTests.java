@@ -0,0 +1,107 @@
+package com.example.httpTwins.fanout;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class FanoutShutdownTests {
+
+    @Test
+    void runsTheTwinsItHoldsAfterItStopsAccepting() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        FanoutExecutor executor = executor();
+        try {
+            FanoutLane lane = executor.lane("RemoteERP", TwinPriority.NORMAL);
+            AtomicInteger ran = new AtomicInteger();
+            lane.execute(() -> {
+                await(release);
+                ran.incrementAndGet();
+            }, null);
+            for (int i = 0; i < 3; i++) {
+                lane.execute(ran::incrementAndGet, null);
+            }
+
+            executor.stopAccepting();
+            assertThat(executor.tryAccept()).isFalse();
+            assertThat(executor.isIdle()).isFalse();
+
+            release.countDown();
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (!executor.isIdle() && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(executor.isIdle()).isTrue();
+            assertThat(ran).hasValue(4);
+            assertThat(executor.getDroppedCount()).isEqualTo(1);
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    void discardsWhatIsLeftThroughTheDropCallbacks() throws Exception {
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        FanoutExecutor executor = executor();
+        try {
+            FanoutLane lane = executor.lane("RemoteERP", TwinPriority.NORMAL);
+            AtomicInteger dropped = new AtomicInteger();
+            // Holds its thread even when interrupted, so only the calling thread hands on the lane's twins
+            lane.execute(() -> {
+                started.countDown();
+                awaitUninterruptibly(release);
+            }, dropped::incrementAndGet);
+            assertThat(started.await(5, TimeUnit.SECONDS)).isTrue();
+            // One waiting in the executor's queue, two in the lane's
+            for (int i = 0; i < 3; i++) {
+                lane.execute(() -> { }, dropped::incrementAndGet);
+            }
+
+            // The twins waiting in the lane are discarded along with the executor's
+            assertThat(executor.shutdownNow()).isEqualTo(3);
+            assertThat(dropped).hasValue(3);
+            assertThat(executor.getDroppedCount()).isEqualTo(3);
+            assertThat(lane.getQueueSize()).isZero();
+        } finally {
+            release.countDown();
+            executor.shutdown();
+        }
+    }
+
+    private static FanoutExecutor executor() {
+        FanoutProperties.Executor spec = new FanoutProperties.Executor();
+        spec.setThreads(1);
+        spec.setQueueCapacity(10);
+        FanoutProperties.Lane laneSpec = new FanoutProperties.Lane();
+        laneSpec.setMaxConcurrency(2);
+        return new FanoutExecutor("shutdown", spec, Map.of("RemoteERP", laneSpec));
+    }
+
+    private static void awaitUninterruptibly(CountDownLatch latch) {
+        boolean interrupted = false;
+        while (latch.getCount() > 0) {
+            try {
+                latch.await(10, TimeUnit.SECONDS);
+            } catch (InterruptedException e) {
+                interrupted = true;
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
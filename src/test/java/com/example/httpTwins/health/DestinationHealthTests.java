@@ -0,0 +1,86 @@
+package com.example.httpTwins.health;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DestinationHealthTests {
+
+    private static final long FAST = Duration.ofMillis(1).toNanos();
+
+    @Test
+    void opensOnFailuresAndClosesAfterSuccessfulProbes() throws Exception {
+        HealthProperties properties = new HealthProperties();
+        properties.setEnabled(true);
+        properties.setMinimumCalls(10);
+        properties.setOpenDuration(Duration.ofMillis(50));
+        properties.setHalfOpenProbes(2);
+        DestinationHealth health = new DestinationHealthRegistry(properties).get("https://ecom.buyers/items");
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(health.tryAcquire()).isTrue();
+            health.onComplete(FAST, true);
+        }
+        assertThat(health.getState()).isEqualTo(DestinationHealth.State.OPEN);
+        assertThat(health.isOpen()).isTrue();
+        assertThat(health.tryAcquire()).isFalse();
+
+        Thread.sleep(60);
+        assertThat(health.isOpen()).isFalse();
+        // Only the configured number of probes gets through while half-open
+        assertThat(health.tryAcquire()).isTrue();
+        assertThat(health.tryAcquire()).isTrue();
+        assertThat(health.tryAcquire()).isFalse();
+        assertThat(health.getState()).isEqualTo(DestinationHealth.State.HALF_OPEN);
+
+        health.onComplete(FAST, false);
+        health.onComplete(FAST, false);
+        assertThat(health.getState()).isEqualTo(DestinationHealth.State.CLOSED);
+        assertThat(health.getInFlight()).isZero();
+    }
+
+    @Test
+    void shrinksConcurrencyLimitOnSlowCallsAndRegrowsWhenFast() {
+        HealthProperties properties = new HealthProperties();
+        properties.setEnabled(true);
+        properties.setInitialLimit(20);
+        properties.setSlowCallThreshold(Duration.ofMillis(100));
+        // Keep the circuit closed, so only the limit reacts
+        properties.setSlowCallRateThreshold(2.0);
+        DestinationHealth health = new DestinationHealthRegistry(properties).get("https://ecom.buyers/items");
+
+        for (int i = 0; i < 20; i++) {
+            assertThat(health.tryAcquire()).isTrue();
+        }
+        assertThat(health.tryAcquire()).isFalse();
+        for (int i = 0; i < 20; i++) {
+            health.onComplete(Duration.ofMillis(200).toNanos(), false);
+        }
+        int shrunk = health.getLimit();
+        assertThat(shrunk).isLessThan(10);
+
+        for (int round = 0; round < 50; round++) {
+            int limit = health.getLimit();
+            for (int i = 0; i < limit; i++) {
+                health.tryAcquire();
+            }
+            for (int i = 0; i < limit; i++) {
+                health.onComplete(FAST, false);
+            }
+        }
+        assertThat(health.getLimit()).isGreaterThan(shrunk);
+        assertThat(health.getState()).isEqualTo(DestinationHealth.State.CLOSED);
+    }
+
+    @Test
+    void disabledTrackingNeverRejects() {
+        DestinationHealth health = new DestinationHealthRegistry(new HealthProperties()).get("https://ecom.buyers/items");
+        for (int i = 0; i < 1000; i++) {
+            assertThat(health.tryAcquire()).isTrue();
+            health.onComplete(FAST, true);
+        }
+        assertThat(health.isOpen()).isFalse();
+    }
+}
@@ -0,0 +1,40 @@
+package com.example.httpTwins.limit;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class DestinationGuardTests {
+
+    @Test
+    void capsTheTwinsRunningAtOnce() {
+        DestinationGuard guard = new DestinationGuard(null, 2);
+        assertThat(guard.tryAcquire()).isTrue();
+        assertThat(guard.tryAcquire()).isTrue();
+        assertThat(guard.tryAcquire()).isFalse();
+        assertThat(guard.getRunning()).isEqualTo(2);
+
+        guard.release();
+        assertThat(guard.tryAcquire()).isTrue();
+        assertThat(guard.getRunning()).isEqualTo(2);
+    }
+
+    @Test
+    void twinTurnedAwayByTheRateLimitGivesBackItsConcurrencySlot() {
+        // One permit a second, and a burst of one
+        DestinationGuard guard = new DestinationGuard(new RateLimiter(1), 1);
+        assertThat(guard.tryAcquire()).isTrue();
+        guard.release();
+
+        assertThat(guard.tryAcquire()).isFalse();
+        assertThat(guard.getRunning()).isZero();
+    }
+
+    @Test
+    void unlimitedGuardAdmitsEverything() {
+        for (int i = 0; i < 1000; i++) {
+            assertThat(DestinationGuard.UNLIMITED.tryAcquire()).isTrue();
+        }
+        assertThat(DestinationGuard.UNLIMITED.getRunning()).isZero();
+    }
+}
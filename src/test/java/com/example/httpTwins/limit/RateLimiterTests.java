@@ -0,0 +1,72 @@
+package com.example.httpTwins.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RateLimiterTests {
+
+    private static final int RATE = 500;
+
+    @Test
+    void admitsTheConfiguredRateWhenTheLoadIsUneven() throws Exception {
+        RateLimiter limiter = new RateLimiter(RATE);
+        AtomicInteger admitted = new AtomicInteger();
+        long start = System.nanoTime();
+        long end = start + TimeUnit.MILLISECONDS.toNanos(500);
+
+        // Three threads asking now and then, one asking all the time: all draw on the same budget
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            threads.add(new Thread(() -> {
+                while (System.nanoTime() < end) {
+                    if (limiter.tryAcquire()) {
+                        admitted.incrementAndGet();
+                    }
+                    sleep(50);
+                }
+            }));
+        }
+        threads.add(new Thread(() -> {
+            while (System.nanoTime() < end) {
+                if (limiter.tryAcquire()) {
+                    admitted.incrementAndGet();
+                }
+            }
+        }));
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        double elapsedSeconds = (System.nanoTime() - start) / 1e9;
+
+        // One second's burst up front, then the sustained rate
+        double expected = RATE + RATE * elapsedSeconds;
+        assertThat(admitted.get()).isBetween((int) (expected * 0.9), (int) expected + 1);
+    }
+
+    @Test
+    void refusesOnceTheBurstIsSpent() {
+        RateLimiter limiter = new RateLimiter(10);
+        int admitted = 0;
+        for (int i = 0; i < 100; i++) {
+            if (limiter.tryAcquire()) {
+                admitted++;
+            }
+        }
+        assertThat(admitted).isBetween(10, 11);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,78 @@
+package com.example.httpTwins.limit;
+
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class SamplerTests {
+
+    private static final int REQUESTS = 20_000;
+
+    @Test
+    void fullAndZeroRatesNeedNoLookup() {
+        assertThat(Sampler.ALWAYS.sample(name -> {
+            throw new AssertionError("header looked up");
+        })).isTrue();
+        assertThat(new Sampler(0.0, "X-Trace-Id").sample(name -> {
+            throw new AssertionError("header looked up");
+        })).isFalse();
+    }
+
+    @Test
+    void sampleByHeaderGivesEveryRequestWithTheSameValueTheSameAnswer() {
+        Sampler sampler = new Sampler(0.25, "X-Trace-Id");
+        int sampled = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            String traceId = "trace-" + i;
+            boolean first = sampler.sample(name -> name.equals("X-Trace-Id") ? traceId : null);
+            for (int repeat = 0; repeat < 3; repeat++) {
+                assertThat(sampler.sample(name -> name.equals("X-Trace-Id") ? traceId : null)).isEqualTo(first);
+            }
+            if (first) {
+                sampled++;
+            }
+        }
+        // A fresh sampler, as on another node, agrees
+        assertThat(new Sampler(0.25, "X-Trace-Id").sample(name -> "trace-7"))
+                .isEqualTo(sampler.sample(name -> "trace-7"));
+        assertThat(sampled / (double) REQUESTS).isBetween(0.23, 0.27);
+    }
+
+    @Test
+    void requestsWithoutTheHeaderAreSampledAtRandom() {
+        Sampler sampler = new Sampler(0.1, "X-Trace-Id");
+        int sampled = 0;
+        for (int i = 0; i < REQUESTS; i++) {
+            if (sampler.sample(name -> null)) {
+                sampled++;
+            }
+        }
+        assertThat(sampled / (double) REQUESTS).isBetween(0.08, 0.12);
+    }
+
+    @Test
+    void samplingARequestAllocatesNothing() {
+        Sampler sampler = new Sampler(0.5, "X-Trace-Id");
+        Map<String, String> request = Map.of("X-Trace-Id", "trace-7");
+        // Less than a byte per call: any object created per request would take at least sixteen
+        assertThat(allocatedBytes(() -> sampler.sample(request, Map::get))).isLessThan(REQUESTS);
+    }
+
+    /**
+     * Returns the bytes the current thread allocates running the task {@code REQUESTS} times, once warmed up.
+     */
+    private static long allocatedBytes(Runnable task) {
+        com.sun.management.ThreadMXBean threads = (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        for (int i = 0; i < REQUESTS; i++) {
+            task.run();
+        }
+        long before = threads.getCurrentThreadAllocatedBytes();
+        for (int i = 0; i < REQUESTS; i++) {
+            task.run();
+        }
+        return threads.getCurrentThreadAllocatedBytes() - before;
+    }
+}
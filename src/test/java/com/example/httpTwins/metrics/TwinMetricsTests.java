@@ -0,0 +1,98 @@
+package com.example.httpTwins.metrics;
+
+import com.example.httpTwins.fanout.FanoutExecutor;
+import com.example.httpTwins.fanout.FanoutLane;
+import com.example.httpTwins.fanout.FanoutProperties;
+import com.example.httpTwins.fanout.TwinPriority;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwinMetricsTests {
+
+    private static final String ENDPOINT = "POST /books";
+    private static final String DESTINATION = "RemoteERP";
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+    private final TwinMetrics metrics = new TwinMetrics(registry);
+
+    @Test
+    void endpointMetersAreTaggedByEndpointAndSampling() {
+        EndpointMetrics endpoint = metrics.forEndpoint(ENDPOINT);
+        endpoint.sampled();
+        endpoint.sampled();
+        endpoint.unsampled();
+        endpoint.captured(TimeUnit.MICROSECONDS.toNanos(5));
+
+        assertThat(registry.get("http.twins.requests").tags("endpoint", ENDPOINT, "sampled", "true").counter().count()).isEqualTo(2.0);
+        assertThat(registry.get("http.twins.requests").tags("endpoint", ENDPOINT, "sampled", "false").counter().count()).isEqualTo(1.0);
+        assertThat(registry.get("http.twins.capture").tag("endpoint", ENDPOINT).timer().count()).isEqualTo(1);
+    }
+
+    @Test
+    void destinationMetersAreTaggedByEndpointDestinationAndOutcome() {
+        DestinationMetrics destination = metrics.forDestination(ENDPOINT, DESTINATION);
+        destination.started(TimeUnit.MILLISECONDS.toNanos(1));
+        destination.succeeded(TimeUnit.MILLISECONDS.toNanos(3), 42);
+        destination.failed(TimeUnit.MILLISECONDS.toNanos(2));
+        destination.dropped();
+        destination.unrouted();
+        destination.unrouted();
+
+        assertThat(twins("success")).isEqualTo(1.0);
+        assertThat(twins("failure")).isEqualTo(1.0);
+        assertThat(twins("dropped")).isEqualTo(1.0);
+        assertThat(twins("unrouted")).isEqualTo(2.0);
+        assertThat(registry.get("http.twins.bytes").tags("endpoint", ENDPOINT, "destination", DESTINATION).counter().count())
+                .isEqualTo(42.0);
+        assertThat(registry.get("http.twins.queue.wait").tags("endpoint", ENDPOINT, "destination", DESTINATION).timer().count())
+                .isEqualTo(1);
+        assertThat(registry.get("http.twins.execution").tags("endpoint", ENDPOINT, "destination", DESTINATION).timer().count())
+                .isEqualTo(2);
+    }
+
+    @Test
+    void rebuildingThePlansReusesTheSameMeters() {
+        metrics.forEndpoint(ENDPOINT).sampled();
+        metrics.forDestination(ENDPOINT, DESTINATION).dropped();
+        int meters = registry.getMeters().size();
+
+        metrics.forEndpoint(ENDPOINT).sampled();
+        metrics.forDestination(ENDPOINT, DESTINATION).dropped();
+
+        assertThat(registry.getMeters()).hasSize(meters);
+        assertThat(registry.get("http.twins.requests").tags("endpoint", ENDPOINT, "sampled", "true").counter().count()).isEqualTo(2.0);
+        assertThat(twins("dropped")).isEqualTo(2.0);
+    }
+
+    @Test
+    void executorAndLaneMetersAreTaggedByExecutorLaneAndPriority() {
+        FanoutExecutor executor = new FanoutExecutor("audit", new FanoutProperties.Executor());
+        try {
+            FanoutLane lane = executor.lane(DESTINATION, TwinPriority.CRITICAL);
+            metrics.bindExecutor(executor);
+            metrics.bindLane(lane);
+            metrics.bindExecutor(executor);
+
+            assertThat(registry.get("http.twins.queue.depth").tag("executor", "audit").gauge().value()).isZero();
+            assertThat(registry.get("http.twins.executor.active").tag("executor", "audit").gauge().value()).isZero();
+            assertThat(registry.get("http.twins.executor.dropped").tag("executor", "audit").functionCounter().count()).isZero();
+            assertThat(registry.get("http.twins.executor.shed").tag("executor", "audit").functionCounter().count()).isZero();
+            assertThat(registry.get("http.twins.lane.queue.depth")
+                    .tags("executor", "audit", "lane", DESTINATION, "priority", "critical").gauge().value()).isZero();
+            assertThat(registry.get("http.twins.lane.dropped")
+                    .tags("executor", "audit", "lane", DESTINATION, "priority", "critical").functionCounter()).isNotNull();
+            assertThat(registry.find("http.twins.queue.depth").gauges()).hasSize(1);
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    private double twins(String outcome) {
+        return registry.get("http.twins.twins").tags("endpoint", ENDPOINT, "destination", DESTINATION, "outcome", outcome)
+                .counter().count();
+    }
+}
@@ -0,0 +1,91 @@
+package com.example.httpTwins.model;
+
+import com.example.httpTwins.capture.CapturingRequestWrapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.mock.web.MockHttpServletRequest;
+
+import java.nio.ByteBuffer;
+import java.nio.ReadOnlyBufferException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+class TwinRequestTests {
+
+    @Test
+    void snapshotIsUnaffectedByLaterChangesToTheLiveRequest() throws Exception {
+        MockHttpServletRequest live = new MockHttpServletRequest("POST", "/books");
+        live.setQueryString("draft=true");
+        live.addHeader("Content-Type", "application/json");
+        live.addHeader("Accept", "application/json");
+        live.addHeader("Accept", "text/plain");
+        live.setContent("{\"title\":\"Dune\"}".getBytes(StandardCharsets.UTF_8));
+        CapturingRequestWrapper request = new CapturingRequestWrapper(live, 1024);
+        request.getInputStream().readAllBytes();
+        TwinRequest snapshot = TwinRequest.from(request);
+
+        live.setMethod("GET");
+        live.addHeader("Accept", "application/xml");
+
+        assertThat(snapshot.getMethod()).isEqualTo("POST");
+        assertThat(snapshot.getRequestURI()).isEqualTo("/books");
+        assertThat(snapshot.getQueryString()).isEqualTo("draft=true");
+        assertThat(snapshot.getHeaders().get("accept")).containsExactly("application/json", "text/plain");
+        assertThat(snapshot.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"title\":\"Dune\"}");
+    }
+
+    @Test
+    void servletRequestAttributesAreNotCopied() {
+        MockHttpServletRequest live = new MockHttpServletRequest("GET", "/books");
+        live.setAttribute("org.springframework.web.servlet.HandlerMapping.bestMatchingHandler", new Object());
+        live.setAttribute("tenant", "acme");
+
+        TwinRequest snapshot = TwinRequest.from(live);
+
+        assertThat(snapshot.getAttributes()).isEmpty();
+    }
+
+    @Test
+    void headersAttributesAndBodyCannotBeModified() {
+        TwinRequest snapshot = new TwinRequest("POST", "/books", null, new String[]{"Accept", "application/json"},
+                ByteBuffer.wrap("{\"title\":\"Dune\"}".getBytes(StandardCharsets.UTF_8)), Map.of("tenant", "acme"));
+
+        assertThatThrownBy(() -> snapshot.getHeaders().put("Accept", List.of("text/plain")))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.getHeaders().get("Accept").add("text/plain"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.getAttributes().put("tenant", "other"))
+                .isInstanceOf(UnsupportedOperationException.class);
+        assertThatThrownBy(() -> snapshot.getBody().put(0, (byte) '['))
+                .isInstanceOf(ReadOnlyBufferException.class);
+    }
+
+    @Test
+    void bodyViewsAreIndependentOfEachOther() {
+        TwinRequest snapshot = new TwinRequest("POST", "/books", null, new String[0],
+                ByteBuffer.wrap("Dune".getBytes(StandardCharsets.UTF_8)), null);
+
+        ByteBuffer first = snapshot.getBody();
+        first.get(new byte[first.remaining()]);
+
+        assertThat(first.hasRemaining()).isFalse();
+        assertThat(snapshot.getBody().remaining()).isEqualTo(4);
+        assertThat(snapshot.getBodyLength()).isEqualTo(4);
+        assertThat(snapshot.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("Dune");
+    }
+
+    @Test
+    void withAttributeLeavesTheOriginalAsItWas() {
+        TwinRequest original = new TwinRequest("GET", "/books", null, new String[0], null, Map.of("tenant", "acme"));
+
+        TwinRequest copy = original.withAttribute("coalesced", 3);
+
+        assertThat(copy.getAttribute("coalesced")).isEqualTo(3);
+        assertThat(copy.getAttribute("tenant")).isEqualTo("acme");
+        assertThat(original.getAttribute("coalesced")).isNull();
+        assertThat(original.getAttributes()).hasSize(1);
+    }
+}
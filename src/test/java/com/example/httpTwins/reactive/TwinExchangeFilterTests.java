@@ -0,0 +1,108 @@
+package com.example.httpTwins.reactive;
+
+import com.example.httpTwins.annotation.HttpTwins;
+import com.example.httpTwins.capture.CaptureBufferPool;
+import com.example.httpTwins.capture.TwinnedEndpointIndex;
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.model.TwinResponse;
+import org.junit.jupiter.api.Test;
+import org.springframework.core.io.buffer.DataBuffer;
+import org.springframework.core.io.buffer.DataBufferUtils;
+import org.springframework.http.HttpStatus;
+import org.springframework.mock.http.server.reactive.MockServerHttpRequest;
+import org.springframework.mock.web.server.MockServerWebExchange;
+import org.springframework.web.bind.annotation.RequestMethod;
+import org.springframework.web.method.HandlerMethod;
+import org.springframework.web.reactive.HandlerMapping;
+import org.springframework.web.reactive.result.method.RequestMappingInfo;
+import org.springframework.web.server.ServerWebExchange;
+import org.springframework.web.server.WebFilterChain;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwinExchangeFilterTests {
+
+    private static final String BOOK = "{\"title\":\"Dune\"}";
+    private static final String CREATED = "{\"id\":1,\"title\":\"Dune\"}";
+
+    @Test
+    void twinsTheRequestOnceTheHandlerHasReadItsBodyAndCapturesTheResponse() throws Exception {
+        HandlerMethod handler = new HandlerMethod(new BookHandler(), BookHandler.class.getMethod("create", Mono.class));
+        List<TwinRequest> twins = new CopyOnWriteArrayList<>();
+        List<String> responses = new CopyOnWriteArrayList<>();
+        AtomicReference<TwinResponse> captured = new AtomicReference<>();
+        TwinExchangeFilter filter = new TwinExchangeFilter(() -> index(handler), new CaptureBufferPool(4), (method, httpTwins, source) -> {
+            assertThat(method).isEqualTo(handler.getMethod());
+            twins.add(source.snapshot());
+            source.captureResponse(1024, false, (response, release) -> {
+                captured.set(response);
+                responses.add(response.getBodyAsString(StandardCharsets.UTF_8));
+                release.run();
+            });
+        });
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.post("/books?notify=true")
+                .header("Content-Type", "application/json")
+                .body(BOOK));
+
+        // Reads the whole body, then writes the created book, like an annotated controller would
+        WebFilterChain chain = twinned -> {
+            twinned.getAttributes().put(HandlerMapping.BEST_MATCHING_HANDLER_ATTRIBUTE, handler);
+            return DataBufferUtils.join(twinned.getRequest().getBody()).flatMap(body -> {
+                DataBufferUtils.release(body);
+                assertThat(twins).isEmpty();
+                DataBuffer created = twinned.getResponse().bufferFactory().wrap(CREATED.getBytes(StandardCharsets.UTF_8));
+                twinned.getResponse().setStatusCode(HttpStatus.CREATED);
+                return twinned.getResponse().writeWith(Mono.just(created));
+            });
+        };
+        filter.filter(exchange, chain).block(Duration.ofSeconds(5));
+
+        assertThat(twins).hasSize(1);
+        TwinRequest twin = twins.get(0);
+        assertThat(twin.getMethod()).isEqualTo("POST");
+        assertThat(twin.getRequestURI()).isEqualTo("/books");
+        assertThat(twin.getQueryString()).isEqualTo("notify=true");
+        assertThat(twin.getHeader("Content-Type")).isEqualTo("application/json");
+        assertThat(twin.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo(BOOK);
+        assertThat(responses).containsExactly(CREATED);
+        assertThat(captured.get().getStatus()).isEqualTo(201);
+        assertThat(exchange.getResponse().getBodyAsString().block(Duration.ofSeconds(5))).isEqualTo(CREATED);
+    }
+
+    @Test
+    void passesOtherRequestsThroughUntouched() throws Exception {
+        HandlerMethod handler = new HandlerMethod(new BookHandler(), BookHandler.class.getMethod("create", Mono.class));
+        TwinExchangeFilter filter = new TwinExchangeFilter(() -> index(handler), new CaptureBufferPool(4),
+                (method, httpTwins, source) -> { throw new AssertionError("Not twinned"); });
+        MockServerWebExchange exchange = MockServerWebExchange.from(MockServerHttpRequest.get("/books"));
+        AtomicReference<ServerWebExchange> passed = new AtomicReference<>();
+
+        filter.filter(exchange, next -> {
+            passed.set(next);
+            return next.getResponse().setComplete();
+        }).block(Duration.ofSeconds(5));
+
+        assertThat(passed.get()).isSameAs(exchange);
+    }
+
+    private static TwinnedEndpointIndex index(HandlerMethod handler) {
+        return TwinnedEndpointIndex.fromReactive(
+                Map.of(RequestMappingInfo.paths("/books").methods(RequestMethod.POST).build(), handler));
+    }
+
+    static class BookHandler {
+
+        @HttpTwins(remoteDestinations = "https://audit.example/books", captureResponse = true)
+        public Mono<String> create(Mono<String> book) {
+            return book;
+        }
+    }
+}
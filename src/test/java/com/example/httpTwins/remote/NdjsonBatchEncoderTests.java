@@ -0,0 +1,63 @@
+package com.example.httpTwins.remote;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class NdjsonBatchEncoderTests {
+
+    private final ObjectMapper mapper = new ObjectMapper();
+
+    @Test
+    void utf8BodyIsWrittenAsText() throws Exception {
+        byte[] body = "{\"title\":\"Les Misérables\"}".getBytes(StandardCharsets.UTF_8);
+        JsonNode record = encode("application/json; charset=UTF-8", body);
+
+        assertThat(record.get("body").asText()).isEqualTo("{\"title\":\"Les Misérables\"}");
+        assertThat(record.has("bodyBase64")).isFalse();
+    }
+
+    @Test
+    void textInAnotherCharsetIsWrittenAsItsOriginalBytes() throws Exception {
+        byte[] body = "title=Les Misérables".getBytes(StandardCharsets.ISO_8859_1);
+        JsonNode record = encode("application/x-www-form-urlencoded; charset=\"ISO-8859-1\"", body);
+
+        assertThat(record.has("body")).isFalse();
+        assertThat(record.get("bodyBase64").binaryValue()).isEqualTo(body);
+    }
+
+    @Test
+    void bodyThatIsNotValidUtf8IsWrittenAsItsOriginalBytes() throws Exception {
+        // A Latin-1 body sent without a charset, which would otherwise be read as UTF-8
+        byte[] body = "Les Misérables".getBytes(StandardCharsets.ISO_8859_1);
+        JsonNode record = encode("text/plain", body);
+
+        assertThat(record.has("body")).isFalse();
+        assertThat(record.get("bodyBase64").binaryValue()).isEqualTo(body);
+    }
+
+    @Test
+    void binaryBodyIsWrittenAsItsOriginalBytes() throws Exception {
+        byte[] body = {(byte) 0x89, 'P', 'N', 'G', 0, 1, 2};
+        JsonNode record = encode("image/png", body);
+
+        assertThat(record.get("bodyBase64").binaryValue()).isEqualTo(body);
+    }
+
+    private JsonNode encode(String contentType, byte[] body) throws Exception {
+        TwinRequest request = new TwinRequest("POST", "/books", null, new String[]{"Content-Type", contentType},
+                ByteBuffer.wrap(body), Map.of());
+        byte[] payload = NdjsonBatchEncoder.encode(List.of(request), NdjsonBatchEncoder.estimateSize(request), false);
+        String[] lines = new String(payload, StandardCharsets.UTF_8).split("\n");
+        assertThat(lines).hasSize(1);
+        return mapper.readTree(lines[0]);
+    }
+}
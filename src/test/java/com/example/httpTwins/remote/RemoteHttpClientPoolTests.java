@@ -0,0 +1,168 @@
+package com.example.httpTwins.remote;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.net.http.HttpResponse;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RemoteHttpClientPoolTests {
+
+    private static final int WAVES = 10;
+    private static final int REQUESTS_PER_WAVE = 200;
+
+    private HttpServer stubServer;
+    private ExecutorService stubExecutor;
+    private final AtomicInteger received = new AtomicInteger();
+    private final List<String> methods = new CopyOnWriteArrayList<>();
+    private final List<Integer> clientPorts = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startStubServer() throws Exception {
+        AtomicInteger counter = new AtomicInteger();
+        stubExecutor = Executors.newFixedThreadPool(REQUESTS_PER_WAVE,
+                runnable -> new Thread(runnable, "stub-" + counter.incrementAndGet()));
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 4096);
+        stubServer.setExecutor(stubExecutor);
+        stubServer.createContext("/mirror", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                body.readAllBytes();
+                Thread.sleep(20);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            received.incrementAndGet();
+            methods.add(exchange.getRequestMethod());
+            clientPorts.add(exchange.getRemoteAddress().getPort());
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        stubServer.start();
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        stubServer.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Test
+    void mirrorsConcurrentRequestsOnBoundedThreads() throws Exception {
+        RemoteClientProperties properties = new RemoteClientProperties();
+        properties.setIoThreads(2);
+        properties.setMaxInFlightPerDestination(REQUESTS_PER_WAVE);
+        properties.setHttp2(false);
+
+        Set<Long> baseline = Thread.getAllStackTraces().keySet().stream().map(Thread::getId).collect(Collectors.toSet());
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/mirror";
+        TwinRequest request = new TwinRequest("POST", "/books", null,
+                new String[]{"Content-Type", "application/json"},
+                ByteBuffer.wrap("{\"title\":\"Dune\",\"author\":\"Frank Herbert\"}".getBytes(StandardCharsets.UTF_8)),
+                Map.of());
+
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(properties);
+        int peakClientThreads = 0;
+        try {
+            for (int wave = 0; wave < WAVES; wave++) {
+                List<CompletableFuture<HttpResponse<Void>>> responses = new ArrayList<>();
+                for (int i = 0; i < REQUESTS_PER_WAVE; i++) {
+                    responses.add(pool.send(request, url, HttpResponse.BodyHandlers.discarding()));
+                }
+                peakClientThreads = Math.max(peakClientThreads, countNewNonStubThreads(baseline));
+                CompletableFuture.allOf(responses.toArray(new CompletableFuture[0])).get(30, TimeUnit.SECONDS);
+                for (CompletableFuture<HttpResponse<Void>> response : responses) {
+                    assertThat(response.join().statusCode()).isEqualTo(200);
+                }
+            }
+        } finally {
+            pool.destroy();
+        }
+
+        assertThat(received.get()).isEqualTo(WAVES * REQUESTS_PER_WAVE);
+        // Two I/O threads, the reaper and the client's selector thread, with a little slack for JVM housekeeping
+        assertThat(peakClientThreads).isLessThanOrEqualTo(properties.getIoThreads() + 4);
+    }
+
+    @Test
+    void warmsUpConnectionsThatTheFirstTwinsReuse() throws Exception {
+        RemoteClientProperties properties = new RemoteClientProperties();
+        properties.setHttp2(false);
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/mirror";
+        TwinRequest request = new TwinRequest("POST", "/books", null, new String[0],
+                ByteBuffer.wrap("{\"title\":\"Dune\"}".getBytes(StandardCharsets.UTF_8)), Map.of());
+
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(properties);
+        try {
+            pool.warmUp(url, 2, "OPTIONS").get(10, TimeUnit.SECONDS);
+            assertThat(methods).containsExactly("OPTIONS", "OPTIONS");
+            // The stub answers slowly enough for the two warm-up requests to need a connection each
+            Set<Integer> warmedPorts = new HashSet<>(clientPorts);
+            assertThat(warmedPorts).hasSize(2);
+            assertThat(pool.getInFlight()).isZero();
+
+            assertThat(pool.send(request, url, HttpResponse.BodyHandlers.discarding()).get(10, TimeUnit.SECONDS).statusCode()).isEqualTo(200);
+            assertThat(warmedPorts).contains(clientPorts.get(2));
+        } finally {
+            pool.destroy();
+        }
+    }
+
+    @Test
+    void idleDestinationsGiveUpTheirConnectionsAfterTheKeepAlive() throws Exception {
+        RemoteClientProperties properties = new RemoteClientProperties();
+        properties.setHttp2(false);
+        properties.setKeepAlive(Duration.ofMillis(200));
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/mirror";
+        TwinRequest request = new TwinRequest("POST", "/books", null, new String[0],
+                ByteBuffer.wrap("{\"title\":\"Dune\"}".getBytes(StandardCharsets.UTF_8)), Map.of());
+
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(properties);
+        try {
+            // Within the keep-alive the connection is reused
+            pool.send(request, url, HttpResponse.BodyHandlers.discarding()).get(10, TimeUnit.SECONDS);
+            pool.send(request, url, HttpResponse.BodyHandlers.discarding()).get(10, TimeUnit.SECONDS);
+            assertThat(clientPorts.get(1)).isEqualTo(clientPorts.get(0));
+            assertThat(pool.getDestinationCount()).isEqualTo(1);
+
+            long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+            while (pool.getDestinationCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(pool.getDestinationCount()).isZero();
+
+            // The next twin gets a fresh client and connection
+            pool.send(request, url, HttpResponse.BodyHandlers.discarding()).get(10, TimeUnit.SECONDS);
+            assertThat(clientPorts.get(2)).isNotEqualTo(clientPorts.get(0));
+        } finally {
+            pool.destroy();
+        }
+    }
+
+    private static int countNewNonStubThreads(Set<Long> baseline) {
+        return (int) Thread.getAllStackTraces().keySet().stream()
+                .filter(thread -> !baseline.contains(thread.getId()))
+                .filter(thread -> !thread.getName().startsWith("stub-") && !thread.getName().startsWith("HTTP-Dispatcher"))
+                .count();
+    }
+}
@@ -0,0 +1,135 @@
+package com.example.httpTwins.replay;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ReplayEngineTests {
+
+    @TempDir
+    Path directory;
+
+    private HttpServer stubServer;
+    private ExecutorService stubExecutor;
+    private final List<String> received = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startStubServer() throws Exception {
+        stubExecutor = Executors.newFixedThreadPool(16);
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 1024);
+        stubServer.setExecutor(stubExecutor);
+        stubServer.createContext("/books", exchange -> {
+            try (InputStream body = exchange.getRequestBody()) {
+                received.add(exchange.getRequestMethod() + " " + exchange.getRequestURI() + " "
+                        + new String(body.readAllBytes(), StandardCharsets.UTF_8));
+            }
+            exchange.sendResponseHeaders(exchange.getRequestURI().getQuery() != null ? 503 : 201, -1);
+            exchange.close();
+        });
+        stubServer.start();
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        stubServer.stop(0);
+        stubExecutor.shutdownNow();
+    }
+
+    @Test
+    void readsTwinsBackWithTheirTimingWithOrWithoutTheIndex() throws Exception {
+        Path path = directory.resolve("twins.twr");
+        RecordingWriter writer = new RecordingWriter(path, 1_700_000_000_000L, 64);
+        writer.append(0, post(1));
+        writer.append(TimeUnit.MILLISECONDS.toNanos(5), new TwinRequest("GET", "/books", "page=2",
+                new String[]{"Accept", "application/json"}, null, null));
+        writer.append(TimeUnit.MILLISECONDS.toNanos(9), post(3));
+        writer.flush();
+
+        // Not closed yet, as after a crash: the records are found by scanning
+        assertThat(RecordingReader.open(path).size()).isEqualTo(3);
+        writer.close();
+
+        RecordingReader recording = RecordingReader.open(path);
+        assertThat(recording.size()).isEqualTo(3);
+        assertThat(recording.getStartEpochMillis()).isEqualTo(1_700_000_000_000L);
+        assertThat(recording.getOffsetNanos(1)).isEqualTo(TimeUnit.MILLISECONDS.toNanos(5));
+        assertThat(recording.indexOf(TimeUnit.MILLISECONDS.toNanos(6))).isEqualTo(2);
+        TwinRequest get = recording.get(1);
+        assertThat(get.getQueryString()).isEqualTo("page=2");
+        assertThat(get.getHeader("accept")).isEqualTo("application/json");
+        assertThat(get.getBodyLength()).isZero();
+        assertThat(recording.get(2).getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"title\":\"Book 3\"}");
+    }
+
+    @Test
+    void replaysAtMaximumRateAndCountsResponsesByStatus() throws Exception {
+        Path path = directory.resolve("burst.twr");
+        try (RecordingWriter writer = new RecordingWriter(path, System.currentTimeMillis(), 4096)) {
+            for (int i = 0; i < 200; i++) {
+                // Recorded over twenty seconds
+                writer.append(TimeUnit.MILLISECONDS.toNanos(100L * i), post(i));
+            }
+            writer.append(TimeUnit.SECONDS.toNanos(20), new TwinRequest("GET", "/books", "fail=true", new String[0], null, null));
+        }
+
+        ReplayReport report;
+        try (ReplayEngine engine = new ReplayEngine(target(), ReplayRate.MAXIMUM, 32, Duration.ofSeconds(5))) {
+            report = engine.replay(RecordingReader.open(path));
+        }
+
+        assertThat(report.getSentCount()).isEqualTo(201);
+        assertThat(report.getSucceededCount()).isEqualTo(200);
+        assertThat(report.getServerErrorCount()).isEqualTo(1);
+        assertThat(report.getFailedCount()).isZero();
+        assertThat(report.getLatency().getCount()).isEqualTo(201);
+        assertThat(report.getElapsedNanos() < TimeUnit.SECONDS.toNanos(10)).isTrue();
+        assertThat(received).hasSize(201);
+        assertThat(received).contains("POST /books {\"title\":\"Book 7\"}");
+    }
+
+    @Test
+    void keepsTheRecordedPaceScaledBySpeed() throws Exception {
+        Path path = directory.resolve("paced.twr");
+        try (RecordingWriter writer = new RecordingWriter(path, System.currentTimeMillis(), 4096)) {
+            for (int i = 0; i < 5; i++) {
+                writer.append(TimeUnit.MILLISECONDS.toNanos(100L * i), post(i));
+            }
+        }
+
+        ReplayReport report;
+        try (ReplayEngine engine = new ReplayEngine(target(), ReplayRate.parse("2x"), 4, Duration.ofSeconds(5))) {
+            report = engine.replay(RecordingReader.open(path));
+        }
+
+        // 400ms of traffic at twice the speed
+        assertThat(report.getElapsedNanos() >= TimeUnit.MILLISECONDS.toNanos(200)).isTrue();
+        assertThat(report.getSucceededCount()).isEqualTo(5);
+    }
+
+    private String target() {
+        return "http://127.0.0.1:" + stubServer.getAddress().getPort();
+    }
+
+    private static TwinRequest post(int i) {
+        return new TwinRequest("POST", "/books", null, new String[]{"Content-Type", "application/json"},
+                ByteBuffer.wrap(("{\"title\":\"Book " + i + "\"}").getBytes(StandardCharsets.UTF_8)), Map.of());
+    }
+}
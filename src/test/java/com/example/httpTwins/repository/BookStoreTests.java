@@ -0,0 +1,71 @@
+package com.example.httpTwins.repository;
+
+import com.example.httpTwins.model.Book;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.orm.jpa.DataJpaTest;
+import org.springframework.transaction.annotation.Propagation;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// The committer saves on its own thread and in its own transactions, so the test runs outside one
+@DataJpaTest
+@Transactional(propagation = Propagation.NOT_SUPPORTED)
+class BookStoreTests {
+
+    @Autowired
+    private BookRepository repository;
+
+    @Test
+    void booksOfAFailedGroupCommitAreInsertedOneByOne() throws Exception {
+        BookProperties properties = new BookProperties();
+        properties.getWrite().setMode(BookWriteMode.GROUP_COMMIT);
+        // Long enough for all the books below to land in the same batch
+        properties.getWrite().setMaxWait(Duration.ofMillis(500));
+        BookStore store = new BookStore(repository, properties, new ObjectMapper());
+        ExecutorService requests = Executors.newFixedThreadPool(4);
+        try {
+            List<CompletableFuture<Book>> good = new ArrayList<>();
+            for (int i = 0; i < 3; i++) {
+                good.add(save(requests, store, book("Dune " + i)));
+            }
+            // Too long for the title column, so the batched insert fails and rolls back after ids were assigned
+            CompletableFuture<Book> bad = save(requests, store, book("x".repeat(1000)));
+
+            for (CompletableFuture<Book> future : good) {
+                Book saved = future.get(10, TimeUnit.SECONDS);
+                assertThat(saved.getId()).isNotNull();
+                assertThat(repository.findById(saved.getId())).isPresent();
+            }
+            assertThat(bad.handle((ignored, failure) -> failure).get(10, TimeUnit.SECONDS)).isNotNull();
+            assertThat(repository.count()).isEqualTo(3);
+            // One transaction per retried book, none for the failed batch
+            assertThat(store.getGroupCommitCount()).isEqualTo(3);
+        } finally {
+            requests.shutdown();
+            store.destroy();
+            repository.deleteAll();
+        }
+    }
+
+    private static CompletableFuture<Book> save(ExecutorService requests, BookStore store, Book book) {
+        return CompletableFuture.supplyAsync(() -> store.save(book), requests);
+    }
+
+    private static Book book(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        book.setAuthor("Frank Herbert");
+        return book;
+    }
+}
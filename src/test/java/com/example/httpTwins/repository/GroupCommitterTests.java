@@ -0,0 +1,132 @@
+package com.example.httpTwins.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.UnaryOperator;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class GroupCommitterTests {
+
+    @Test
+    void concurrentSubmissionsShareBoundedCommits() throws Exception {
+        List<Integer> batchSizes = new CopyOnWriteArrayList<>();
+        CountDownLatch firstCommit = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicInteger invalidations = new AtomicInteger();
+        GroupCommitter<String> committer = new GroupCommitter<>("test-committer", batch -> {
+            batchSizes.add(batch.size());
+            firstCommit.countDown();
+            await(release);
+            return batch.stream().map(String::toUpperCase).toList();
+        }, invalidations::incrementAndGet, UnaryOperator.identity(), 10, 0, 100);
+        try {
+            List<CompletableFuture<String>> saved = new ArrayList<>();
+            saved.add(committer.submit("a0"));
+            assertThat(firstCommit.await(5, TimeUnit.SECONDS)).isTrue();
+            // Everything submitted while the first commit runs goes in the next ones, ten at most each
+            for (int i = 1; i < 26; i++) {
+                saved.add(committer.submit("a" + i));
+            }
+            release.countDown();
+            for (int i = 0; i < 26; i++) {
+                assertThat(saved.get(i).get(5, TimeUnit.SECONDS)).isEqualTo("A" + i);
+            }
+            assertThat(batchSizes).containsExactly(1, 10, 10, 5);
+            assertThat(committer.getBatchCount()).isEqualTo(4);
+            assertThat(committer.getCommittedCount()).isEqualTo(26);
+            assertThat(invalidations).hasValue(4);
+        } finally {
+            committer.close();
+        }
+    }
+
+    @Test
+    void failedBatchIsRetriedOneByOne() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        GroupCommitter<String> committer = new GroupCommitter<>("test-committer", batch -> {
+            await(release);
+            if (batch.contains("bad")) {
+                throw new IllegalStateException("constraint violated");
+            }
+            return batch;
+        }, () -> { }, UnaryOperator.identity(), 10, 0, 100);
+        try {
+            CompletableFuture<String> blocker = committer.submit("first");
+            CompletableFuture<String> good = committer.submit("good");
+            CompletableFuture<String> bad = committer.submit("bad");
+            release.countDown();
+            assertThat(blocker.get(5, TimeUnit.SECONDS)).isEqualTo("first");
+            assertThat(good.get(5, TimeUnit.SECONDS)).isEqualTo("good");
+            assertThat(bad.handle((ignored, failure) -> failure).get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(IllegalStateException.class);
+        } finally {
+            committer.close();
+        }
+    }
+
+    @Test
+    void refusesSubmissionsWhenTheQueueIsFull() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch committing = new CountDownLatch(1);
+        GroupCommitter<String> committer = new GroupCommitter<>("test-committer", batch -> {
+            committing.countDown();
+            await(release);
+            return batch;
+        }, () -> { }, UnaryOperator.identity(), 10, 0, 2);
+        try {
+            CompletableFuture<String> first = committer.submit("1");
+            assertThat(committing.await(5, TimeUnit.SECONDS)).isTrue();
+            assertThat(committer.submit("2")).isNotNull();
+            assertThat(committer.submit("3")).isNotNull();
+            assertThat(committer.submit("4")).isNull();
+            release.countDown();
+            assertThat(first.get(5, TimeUnit.SECONDS)).isEqualTo("1");
+        } finally {
+            committer.close();
+        }
+        assertThat(committer.submit("5")).isNull();
+        assertThat(committer.getCommittedCount()).isEqualTo(3);
+    }
+
+    @Test
+    void anErrorFailsEveryQueuedEntityAndStopsTheCommitter() throws Exception {
+        CountDownLatch release = new CountDownLatch(1);
+        CountDownLatch committing = new CountDownLatch(1);
+        GroupCommitter<String> committer = new GroupCommitter<>("test-committer", batch -> {
+            committing.countDown();
+            await(release);
+            throw new StackOverflowError();
+        }, () -> { }, UnaryOperator.identity(), 1, 0, 10);
+        try {
+            CompletableFuture<String> committed = committer.submit("1");
+            assertThat(committing.await(5, TimeUnit.SECONDS)).isTrue();
+            CompletableFuture<String> queued = committer.submit("2");
+            release.countDown();
+
+            assertThat(committed.handle((ignored, failure) -> failure).get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(StackOverflowError.class);
+            assertThat(queued.handle((ignored, failure) -> failure).get(5, TimeUnit.SECONDS))
+                    .isInstanceOf(StackOverflowError.class);
+            assertThat(committer.isRunning()).isFalse();
+            assertThat(committer.submit("3")).isNull();
+        } finally {
+            committer.close();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,63 @@
+package com.example.httpTwins.repository;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PageCacheTests {
+
+    private static final long TTL = Duration.ofMinutes(1).toNanos();
+
+    @Test
+    void servesPagesFromMemoryUntilInvalidated() {
+        PageCache<Integer, String> cache = new PageCache<>(4, TTL);
+        AtomicInteger loads = new AtomicInteger();
+
+        assertThat(cache.get(0, () -> load(loads, "a"))).containsExactly("a");
+        assertThat(cache.get(0, () -> load(loads, "b"))).containsExactly("a");
+        assertThat(loads).hasValue(1);
+
+        cache.invalidate();
+        assertThat(cache.get(0, () -> load(loads, "b"))).containsExactly("b");
+        assertThat(loads).hasValue(2);
+    }
+
+    @Test
+    void evictsTheLeastRecentlyReadPage() {
+        PageCache<Integer, String> cache = new PageCache<>(2, TTL);
+        AtomicInteger loads = new AtomicInteger();
+        cache.get(0, () -> load(loads, "0"));
+        cache.get(1, () -> load(loads, "1"));
+        cache.get(0, () -> load(loads, "0"));
+        cache.get(2, () -> load(loads, "2"));
+
+        assertThat(cache.size()).isEqualTo(2);
+        cache.get(0, () -> load(loads, "0"));
+        assertThat(loads).hasValue(3);
+        cache.get(1, () -> load(loads, "1"));
+        assertThat(loads).hasValue(4);
+    }
+
+    @Test
+    void expiredAndDisabledCachesLoadEveryTime() {
+        AtomicInteger loads = new AtomicInteger();
+        PageCache<Integer, String> expired = new PageCache<>(4, 0);
+        expired.get(0, () -> load(loads, "a"));
+        expired.get(0, () -> load(loads, "a"));
+        PageCache<Integer, String> disabled = new PageCache<>(0, TTL);
+        disabled.get(0, () -> load(loads, "a"));
+        disabled.get(0, () -> load(loads, "a"));
+
+        assertThat(loads).hasValue(4);
+        assertThat(disabled.size()).isZero();
+    }
+
+    private static List<String> load(AtomicInteger loads, String value) {
+        loads.incrementAndGet();
+        return List.of(value);
+    }
+}
@@ -0,0 +1,121 @@
+package com.example.httpTwins.routing;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.fasterxml.jackson.core.JsonFactory;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class RoutingTableTests {
+
+    private static final List<String> DESTINATIONS = List.of("RemoteERP", "ReportingAgent", "AuditSink", "https://ecom.buyers/items");
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void routesOnPathHeadersAndQuery() {
+        RoutingProperties.Rule reporting = new RoutingProperties.Rule();
+        reporting.setPath("/books/{id}/**");
+        reporting.getHeaders().put("X-Tenant", "acme|globex");
+        RoutingProperties.Rule buyers = new RoutingProperties.Rule();
+        buyers.setPath("/books/*");
+        buyers.getQuery().put("region", "eu-.*");
+        RoutingTable table = RoutingTable.compile(DESTINATIONS,
+                Map.of("ReportingAgent", reporting, "https://ecom.buyers/items", buyers), new JsonFactory());
+
+        // RemoteERP and AuditSink have no rule and get everything
+        assertThat(table.route(request("/books/7", "region=eu-west&region=us", "x-tenant", "acme", "{}"))).isEqualTo(0b1111L);
+        assertThat(table.route(request("/books/7/reviews", "region=eu%2Dwest", "X-Tenant", "initech", "{}"))).isEqualTo(0b0101L);
+        assertThat(table.route(request("/books", null, "X-Tenant", "acme", "{}"))).isEqualTo(0b0101L);
+        assertThat(table.route(request("/books/7", "region=us", "X-Other", "acme", "{}"))).isEqualTo(0b0101L);
+    }
+
+    @Test
+    void routesOnBodyFieldsInsideObjectsAndArrays() {
+        RoutingProperties.Rule erp = new RoutingProperties.Rule();
+        erp.getBody().put("author", "(?i).*herbert.*");
+        RoutingProperties.Rule audit = new RoutingProperties.Rule();
+        audit.getBody().put("items.sku", "A.*");
+        audit.getBody().put("customer.tier", "gold");
+        RoutingTable table = RoutingTable.compile(DESTINATIONS, Map.of("RemoteERP", erp, "AuditSink", audit), new JsonFactory());
+
+        String matching = "{\"title\":\"Dune\",\"tags\":[{\"author\":\"nobody\"}],\"author\":\"Frank Herbert\","
+                + "\"items\":[{\"price\":3,\"sku\":\"A1\"},{\"sku\":\"B2\"}],\"customer\":{\"tier\":\"gold\"}}";
+        assertThat(table.route(request("/books", null, "Accept", "*/*", matching))).isEqualTo(0b1111L);
+        assertThat(table.route(request("/books", null, "Accept", "*/*", "{\"author\":\"Ursula K. Le Guin\"}"))).isEqualTo(0b1010L);
+        assertThat(table.route(request("/books", null, "Accept", "*/*", "not json"))).isEqualTo(0b1010L);
+        assertThat(table.route(request("/books", null, "Accept", "*/*", ""))).isEqualTo(0b1010L);
+    }
+
+    @Test
+    void stopsReadingTheBodyOnceTheNeededFieldsAreFound() {
+        RoutingProperties.Rule erp = new RoutingProperties.Rule();
+        erp.getBody().put("author", "Frank Herbert");
+        RoutingTable table = RoutingTable.compile(DESTINATIONS, Map.of("RemoteERP", erp), new JsonFactory());
+
+        // Everything after the field is never parsed, so the broken tail does not matter
+        assertThat(table.route(request("/books", null, "Accept", "*/*", "{\"author\":\"Frank Herbert\",\"title\": ]]]")))
+                .isEqualTo(0b1111L);
+        assertThat(table.route(request("/books", null, "Accept", "*/*", "{\"title\": ]]], \"author\":\"Frank Herbert\"}")))
+                .isEqualTo(0b1110L);
+        assertThat(RoutingTable.compile(DESTINATIONS, Map.of("AuditSink", new RoutingProperties.Rule()), new JsonFactory())
+                .route(request("/anything", null, "Accept", "*/*", ""))).isEqualTo(0b1111L);
+        assertThat(RoutingTable.compile(DESTINATIONS, Map.of("Unknown", erp), new JsonFactory())).isNull();
+    }
+
+    @Test
+    void reloadsTheRulesFileAndKeepsTheLastValidRules() throws Exception {
+        Path file = directory.resolve("routing.properties");
+        Files.writeString(file, "destinations.RemoteERP.body.author=Frank Herbert\n");
+        RoutingProperties properties = new RoutingProperties();
+        properties.setFile(file.toString());
+        properties.setReloadInterval(Duration.ofMinutes(1));
+        properties.getDestinations().put("ReportingAgent", rule("/reports/**"));
+        List<Object> events = new CopyOnWriteArrayList<>();
+        RoutingRuleRegistry registry = new RoutingRuleRegistry(properties, events::add);
+        try {
+            TwinRequest herbert = request("/books", null, "Accept", "*/*", "{\"author\":\"Frank Herbert\"}");
+            assertThat(registry.table("BookController.createBook", DESTINATIONS).route(herbert)).isEqualTo(0b1101L);
+
+            Files.writeString(file, "destinations.RemoteERP.body.author=Isaac Asimov\n"
+                    + "destinations[https\\://ecom.buyers/items].path=/books\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10_000));
+            registry.reload();
+            assertThat(events).hasSize(1);
+            assertThat(registry.table("BookController.createBook", DESTINATIONS).route(herbert)).isEqualTo(0b1100L);
+
+            // An invalid pattern rejects the whole file
+            Files.writeString(file, "destinations.RemoteERP.body.author=(unclosed\n");
+            Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 20_000));
+            registry.reload();
+            assertThat(events).hasSize(1);
+            assertThat(registry.table("BookController.createBook", DESTINATIONS).route(herbert)).isEqualTo(0b1100L);
+        } finally {
+            registry.destroy();
+        }
+    }
+
+    private static RoutingProperties.Rule rule(String path) {
+        RoutingProperties.Rule rule = new RoutingProperties.Rule();
+        rule.setPath(path);
+        return rule;
+    }
+
+    private static TwinRequest request(String uri, String query, String header, String value, String body) {
+        return new TwinRequest("POST", uri, query,
+                new String[]{"Content-Type", "application/json", header, value},
+                ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)), Map.of());
+    }
+}
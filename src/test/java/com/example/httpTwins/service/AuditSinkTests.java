@@ -0,0 +1,128 @@
+package com.example.httpTwins.service;
+
+import com.example.httpTwins.audit.AuditProperties;
+import com.example.httpTwins.model.TwinRequest;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class AuditSinkTests {
+
+    private static final int PRODUCERS = 4;
+    private static final int TWINS_PER_PRODUCER = 250;
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void writesEveryTwinAsJsonLinesAcrossRotatedFiles() throws Exception {
+        AuditProperties properties = new AuditProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setMaxFileSize(DataSize.ofKilobytes(16));
+        properties.setMaxFiles(1000);
+        properties.setBufferCapacity(PRODUCERS * TWINS_PER_PRODUCER);
+        properties.setMaxBodySize(DataSize.ofBytes(64));
+
+        AuditSink sink = new AuditSink(properties);
+        List<Thread> producers = new ArrayList<>();
+        for (int p = 0; p < PRODUCERS; p++) {
+            int producer = p;
+            Thread thread = new Thread(() -> {
+                for (int i = 0; i < TWINS_PER_PRODUCER; i++) {
+                    sink.process(twin(producer * TWINS_PER_PRODUCER + i));
+                }
+            });
+            producers.add(thread);
+            thread.start();
+        }
+        for (Thread thread : producers) {
+            thread.join();
+        }
+        // A body longer than the limit, cut where it would split a multi-byte character
+        sink.process(new TwinRequest("POST", "/books", null, new String[]{"Content-Type", "text/plain"},
+                ByteBuffer.wrap(("a" + "\u00e9".repeat(40)).getBytes(StandardCharsets.UTF_8)), Map.of()));
+        sink.destroy();
+
+        ObjectMapper mapper = new ObjectMapper();
+        List<JsonNode> records = new ArrayList<>();
+        List<Path> files;
+        try (Stream<Path> listing = Files.list(directory)) {
+            files = listing.sorted().toList();
+        }
+        for (Path file : files) {
+            for (String line : Files.readAllLines(file, StandardCharsets.UTF_8)) {
+                records.add(mapper.readTree(line));
+            }
+        }
+
+        assertThat(files).hasSizeGreaterThan(1);
+        assertThat(sink.getDroppedCount()).isZero();
+        assertThat(sink.getWrittenCount()).isEqualTo(PRODUCERS * TWINS_PER_PRODUCER + 1);
+        assertThat(records).hasSize(PRODUCERS * TWINS_PER_PRODUCER + 1);
+
+        JsonNode first = records.get(0);
+        assertThat(first.get("method").asText()).isEqualTo("POST");
+        assertThat(first.get("uri").asText()).isEqualTo("/books");
+        assertThat(first.get("headers").get(1).get(1).asText()).isEqualTo("[REDACTED]");
+        assertThat(mapper.readTree(first.get("body").asText()).get("title").asText()).startsWith("Book \"");
+
+        JsonNode truncated = records.get(records.size() - 1);
+        assertThat(truncated.get("truncated").asBoolean()).isTrue();
+        assertThat(truncated.get("body").asText()).isEqualTo("a" + "\u00e9".repeat(31));
+    }
+
+    @Test
+    void idleWriterSleepsUntilATwinIsOffered() throws Exception {
+        AuditProperties properties = new AuditProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        AuditSink sink = new AuditSink(properties);
+        try {
+            Thread writer = Thread.getAllStackTraces().keySet().stream()
+                    .filter(thread -> thread.getName().equals("http-twins-audit-writer"))
+                    .findFirst().orElseThrow();
+            for (int i = 1; i <= 3; i++) {
+                // Parked without a timeout, not polling, until the twin arrives
+                awaitState(writer, Thread.State.WAITING);
+                sink.process(twin(i));
+                long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+                while (sink.getWrittenCount() < i && System.nanoTime() < deadline) {
+                    Thread.sleep(1);
+                }
+                assertThat(sink.getWrittenCount()).isEqualTo(i);
+            }
+        } finally {
+            sink.destroy();
+        }
+    }
+
+    private static void awaitState(Thread thread, Thread.State state) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (thread.getState() != state && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        assertThat(thread.getState()).isEqualTo(state);
+    }
+
+    private static TwinRequest twin(int i) {
+        return new TwinRequest("POST", "/books", null,
+                new String[]{"Content-Type", "application/json", "Authorization", "Bearer secret"},
+                ByteBuffer.wrap(("{\"title\":\"Book \\\"" + i + "\\\"\"}").getBytes(StandardCharsets.UTF_8)),
+                Map.of());
+    }
+}
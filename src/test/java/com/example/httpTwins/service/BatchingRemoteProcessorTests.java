@@ -0,0 +1,135 @@
+package com.example.httpTwins.service;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.BatchProperties;
+import com.example.httpTwins.remote.RemoteClientProperties;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.BufferedReader;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class BatchingRemoteProcessorTests {
+
+    private static final int TWINS = 1000;
+
+    private HttpServer stubServer;
+    private final AtomicInteger batches = new AtomicInteger();
+    private final List<JsonNode> records = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startStubServer() throws Exception {
+        ObjectMapper mapper = new ObjectMapper();
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        stubServer.createContext("/bulk", exchange -> {
+            boolean gzip = "gzip".equals(exchange.getRequestHeaders().getFirst("Content-Encoding"));
+            try (InputStream body = gzip ? new GZIPInputStream(exchange.getRequestBody()) : exchange.getRequestBody();
+                 BufferedReader reader = new BufferedReader(new InputStreamReader(body, StandardCharsets.UTF_8))) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    if (!line.isEmpty()) {
+                        records.add(mapper.readTree(line));
+                    }
+                }
+            }
+            batches.incrementAndGet();
+            exchange.sendResponseHeaders(200, -1);
+            exchange.close();
+        });
+        stubServer.start();
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        stubServer.stop(0);
+    }
+
+    @Test
+    void sendsTwinsAsGzippedNdjsonBatches() throws Exception {
+        RemoteClientProperties clientProperties = new RemoteClientProperties();
+        clientProperties.setHttp2(false);
+        BatchProperties batchProperties = new BatchProperties();
+        batchProperties.setMaxRecords(100);
+        batchProperties.setLinger(Duration.ofMillis(20));
+        batchProperties.setGzip(true);
+
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/bulk";
+        TwinRequest request = new TwinRequest("POST", "/books", null,
+                new String[]{"Content-Type", "application/json"},
+                ByteBuffer.wrap("{\"title\":\"Dune\",\"author\":\"Frank Herbert\"}".getBytes(StandardCharsets.UTF_8)),
+                Map.of());
+
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(clientProperties);
+        BatchingRemoteProcessor processor = new BatchingRemoteProcessor(pool, batchProperties);
+        try {
+            for (int i = 0; i < TWINS; i++) {
+                processor.processAsync(request, url).join();
+            }
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (records.size() < TWINS && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+        } finally {
+            processor.destroy();
+            pool.destroy();
+        }
+
+        assertThat(records).hasSize(TWINS);
+        assertThat(processor.getDroppedCount()).isZero();
+        // At least an order of magnitude fewer calls than twins
+        assertThat(batches.get()).isLessThanOrEqualTo(TWINS / 10);
+        JsonNode first = records.get(0);
+        assertThat(first.get("method").asText()).isEqualTo("POST");
+        assertThat(first.get("uri").asText()).isEqualTo("/books");
+        assertThat(first.get("headers").get(0).get(1).asText()).isEqualTo("application/json");
+        assertThat(first.get("body").asText()).contains("Frank Herbert");
+    }
+
+    @Test
+    void flushSendsBufferedTwinsWithoutWaitingForTheirLinger() throws Exception {
+        RemoteClientProperties clientProperties = new RemoteClientProperties();
+        clientProperties.setHttp2(false);
+        BatchProperties batchProperties = new BatchProperties();
+        batchProperties.setLinger(Duration.ofMinutes(1));
+
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/bulk";
+        TwinRequest request = new TwinRequest("DELETE", "/books/1", null, new String[0], ByteBuffer.allocate(0), Map.of());
+
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(clientProperties);
+        BatchingRemoteProcessor processor = new BatchingRemoteProcessor(pool, batchProperties);
+        try {
+            for (int i = 0; i < 3; i++) {
+                processor.processAsync(request, url).join();
+            }
+            assertThat(processor.isFlushed()).isFalse();
+
+            processor.flush();
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while ((!processor.isFlushed() || pool.getInFlight() > 0) && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(records).hasSize(3);
+            assertThat(batches.get()).isEqualTo(1);
+        } finally {
+            processor.destroy();
+            pool.destroy();
+        }
+    }
+}
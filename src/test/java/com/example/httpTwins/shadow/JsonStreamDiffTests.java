@@ -0,0 +1,60 @@
+package com.example.httpTwins.shadow;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Set;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class JsonStreamDiffTests {
+
+    private final JsonStreamDiff diff = new JsonStreamDiff(Set.of("id", "createdAt"));
+
+    @Test
+    void ignoresConfiguredFieldsAtAnyDepth() throws IOException {
+        assertThat(diff("""
+                {"id":1,"books":[{"id":10,"title":"Dune","createdAt":"2024-01-01"}]}""", """
+                {"id":2,"books":[{"id":77,"title":"Dune","createdAt":"2025-06-30"}]}""")).isNull();
+    }
+
+    @Test
+    void reportsPathOfFirstDifferenceInLargeList() throws IOException {
+        StringBuilder primary = new StringBuilder("[");
+        StringBuilder candidate = new StringBuilder("[");
+        for (int i = 0; i < 10_000; i++) {
+            primary.append(i == 0 ? "" : ",").append("{\"title\":\"Book ").append(i).append("\",\"pages\":").append(i).append('}');
+            candidate.append(i == 0 ? "" : ",").append("{\"title\":\"Book ").append(i).append("\",\"pages\":")
+                    .append(i == 9_000 ? i + 1 : i).append('}');
+        }
+        ShadowDifference difference = diff(primary.append(']').toString(), candidate.append(']').toString());
+
+        assertThat(difference).isEqualTo(new ShadowDifference("$[9000].pages", "9000", "9001"));
+    }
+
+    @Test
+    void comparesObjectsRegardlessOfFieldOrder() throws IOException {
+        assertThat(diff("""
+                {"title":"Dune","author":"Frank Herbert","tags":["sf"]}""", """
+                {"author":"Frank Herbert","tags":["sf"],"title":"Dune"}""")).isNull();
+        assertThat(diff("""
+                {"title":"Dune","author":"Frank Herbert"}""", """
+                {"author":"F. Herbert","title":"Dune"}""")).isEqualTo(new ShadowDifference("$.author", "\"Frank Herbert\"", "\"F. Herbert\""));
+    }
+
+    @Test
+    void reportsMissingFieldsAndElementsAndComparesNumbersByValue() throws IOException {
+        assertThat(diff("{\"pages\":1}", "{\"pages\":1.0}")).isNull();
+        assertThat(diff("{\"title\":\"Dune\"}", "{\"title\":\"Dune\",\"isbn\":\"x\"}"))
+                .isEqualTo(new ShadowDifference("$.isbn", JsonStreamDiff.MISSING, "\"x\""));
+        assertThat(diff("[1,2,3]", "[1,2]")).isEqualTo(new ShadowDifference("$[2]", "3", JsonStreamDiff.MISSING));
+        assertThat(diff("{\"pages\":\"1\"}", "{\"pages\":1}")).isEqualTo(new ShadowDifference("$.pages", "\"1\"", "1"));
+    }
+
+    private ShadowDifference diff(String primary, String candidate) throws IOException {
+        return diff.diff(new ByteArrayInputStream(primary.getBytes(StandardCharsets.UTF_8)),
+                new ByteArrayInputStream(candidate.getBytes(StandardCharsets.UTF_8)));
+    }
+}
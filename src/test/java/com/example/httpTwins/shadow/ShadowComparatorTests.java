@@ -0,0 +1,86 @@
+package com.example.httpTwins.shadow;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.model.TwinResponse;
+import com.example.httpTwins.remote.RemoteClientProperties;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class ShadowComparatorTests {
+
+    private static final int PAIRS = 20;
+
+    private HttpServer stubServer;
+
+    @BeforeEach
+    void startStubServer() throws Exception {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        stubServer.createContext("/books", exchange -> {
+            exchange.getRequestBody().readAllBytes();
+            // The candidate renamed one book and generates its own ids
+            String title = exchange.getRequestURI().getQuery().equals("n=3") ? "Dune Messiah" : "Dune";
+            byte[] body = ("{\"id\":" + System.nanoTime() + ",\"title\":\"" + title + "\"}").getBytes(StandardCharsets.UTF_8);
+            exchange.getResponseHeaders().add("Content-Type", "application/json");
+            exchange.sendResponseHeaders(200, body.length);
+            exchange.getResponseBody().write(body);
+            exchange.close();
+        });
+        stubServer.start();
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        stubServer.stop(0);
+    }
+
+    @Test
+    void pairsPrimaryAndCandidateResponsesAndAggregatesMismatches() throws Exception {
+        RemoteClientProperties clientProperties = new RemoteClientProperties();
+        clientProperties.setHttp2(false);
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(clientProperties);
+        ShadowComparator comparator = new ShadowComparator(new ShadowProperties(), pool);
+        ShadowStats stats = comparator.statsFor("BookController.getBook");
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/books";
+        CountDownLatch released = new CountDownLatch(PAIRS);
+        try {
+            for (int i = 0; i < PAIRS; i++) {
+                ShadowExchange exchange = comparator.start(new TwinRequest("GET", "/books", "n=" + i,
+                        new String[0], null, Map.of()), url + "?n=" + i, stats);
+                // Half of the primaries answer before the candidate is even called
+                if (i % 2 == 0) {
+                    exchange.onPrimary(primary(i), released::countDown);
+                    exchange.send();
+                } else {
+                    exchange.send();
+                    exchange.onPrimary(primary(i), released::countDown);
+                }
+            }
+            assertThat(released.await(10, TimeUnit.SECONDS)).isTrue();
+        } finally {
+            comparator.destroy();
+            pool.destroy();
+        }
+
+        assertThat(stats.getComparedCount()).isEqualTo(PAIRS);
+        assertThat(stats.getMismatchedCount()).isEqualTo(1);
+        assertThat(stats.getFailedCount()).isZero();
+        assertThat(stats.getRecentMismatches()).containsExactly(new ShadowDifference("$.title", "\"Dune\"", "\"Dune Messiah\""));
+    }
+
+    private static TwinResponse primary(int i) {
+        byte[] body = ("{\"id\":" + i + ",\"title\":\"Dune\"}").getBytes(StandardCharsets.UTF_8);
+        return new TwinResponse(200, new String[]{"Content-Type", "application/json"}, ByteBuffer.wrap(body), body.length, false);
+    }
+}
@@ -0,0 +1,213 @@
+package com.example.httpTwins.spill;
+
+import com.example.httpTwins.model.TwinRequest;
+import com.example.httpTwins.remote.RemoteClientProperties;
+import com.example.httpTwins.remote.RemoteHttpClientPool;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class TwinSpillQueueTests {
+
+    private static final int TWINS = 50;
+
+    @TempDir
+    Path directory;
+
+    private HttpServer stubServer;
+    private final AtomicInteger status = new AtomicInteger(503);
+    private final List<String> delivered = new CopyOnWriteArrayList<>();
+
+    @BeforeEach
+    void startStubServer() throws Exception {
+        stubServer = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 256);
+        stubServer.createContext("/mirror", exchange -> {
+            String body;
+            try (InputStream in = exchange.getRequestBody()) {
+                body = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+            }
+            int code = status.get();
+            if (code == 200) {
+                delivered.add(body);
+            }
+            exchange.sendResponseHeaders(code, -1);
+            exchange.close();
+        });
+        stubServer.start();
+    }
+
+    @AfterEach
+    void stopStubServer() {
+        stubServer.stop(0);
+    }
+
+    @Test
+    void replaysSpilledTwinsAfterRestartOnceDestinationRecovers() throws Exception {
+        RemoteClientProperties clientProperties = new RemoteClientProperties();
+        clientProperties.setHttp2(false);
+        SpillProperties properties = new SpillProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        // Small segments, so the twins roll over several of them
+        properties.setSegmentSize(DataSize.ofKilobytes(1));
+        properties.setMaxSize(DataSize.ofMegabytes(1));
+        // Drain passes are run by the test itself
+        properties.setDrainInterval(Duration.ofHours(1));
+        properties.setInitialBackoff(Duration.ofMillis(1));
+        properties.setMaxBackoff(Duration.ofMillis(1));
+
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/mirror";
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(clientProperties);
+        try {
+            TwinSpillQueue queue = new TwinSpillQueue(properties, pool);
+            for (int i = 0; i < TWINS; i++) {
+                assertThat(queue.spill(twin(i), url)).isTrue();
+            }
+            awaitWritten(queue, TWINS);
+            // The destination is down: nothing is acknowledged
+            queue.drain();
+            assertThat(queue.getPendingCount()).isEqualTo(TWINS);
+            queue.destroy();
+
+            status.set(200);
+            TwinSpillQueue recovered = new TwinSpillQueue(properties, pool);
+            try {
+                assertThat(recovered.getPendingCount()).isEqualTo(TWINS);
+                Thread.sleep(10);
+                recovered.drain();
+                assertThat(recovered.getPendingCount()).isZero();
+                assertThat(recovered.getReplayedCount()).isEqualTo(TWINS);
+            } finally {
+                recovered.destroy();
+            }
+        } finally {
+            pool.destroy();
+        }
+
+        assertThat(delivered).hasSize(TWINS);
+        assertThat(delivered).contains("{\"title\":\"Book 0\"}", "{\"title\":\"Book " + (TWINS - 1) + "\"}");
+    }
+
+    @Test
+    void countsTwinsDroppedWhileTheLogIsFullAndTakesThemAgainOnceDrained() throws Exception {
+        RemoteClientProperties clientProperties = new RemoteClientProperties();
+        clientProperties.setHttp2(false);
+        SpillProperties properties = new SpillProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        // Room for two segments only
+        properties.setSegmentSize(DataSize.ofKilobytes(1));
+        properties.setMaxSize(DataSize.ofKilobytes(2));
+        properties.setDrainInterval(Duration.ofMillis(20));
+        properties.setInitialBackoff(Duration.ofMillis(1));
+        properties.setMaxBackoff(Duration.ofMillis(1));
+
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/mirror";
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(clientProperties);
+        TwinSpillQueue queue = new TwinSpillQueue(properties, pool);
+        try {
+            // The writer takes the twins one at a time until the log turns one away
+            int spilled = 0;
+            while (written(queue, twin(spilled), url)) {
+                spilled++;
+            }
+            assertThat(spilled).isGreaterThan(0);
+            assertThat(written(queue, twin(spilled), url)).isFalse();
+            assertThat(queue.getDroppedCount()).isEqualTo(2);
+
+            // The drainer delivers the spilled twins and deletes the emptied segment
+            status.set(200);
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (queue.getPendingCount() > 0 && System.nanoTime() < deadline) {
+                Thread.sleep(20);
+            }
+            assertThat(queue.getReplayedCount()).isEqualTo(spilled);
+            // Compaction runs right after the pass that delivered them
+            Thread.sleep(200);
+            assertThat(written(queue, twin(spilled), url)).isTrue();
+            assertThat(queue.getDroppedCount()).isEqualTo(2);
+        } finally {
+            queue.destroy();
+            pool.destroy();
+        }
+    }
+
+    @Test
+    void spillingNeverWaitsForTheWriter() throws Exception {
+        SpillProperties properties = new SpillProperties();
+        properties.setEnabled(true);
+        properties.setDirectory(directory.toString());
+        properties.setWriteQueueCapacity(1);
+        properties.setDrainInterval(Duration.ofHours(1));
+
+        String url = "http://127.0.0.1:" + stubServer.getAddress().getPort() + "/mirror";
+        RemoteHttpClientPool pool = new RemoteHttpClientPool(new RemoteClientProperties());
+        TwinSpillQueue queue = new TwinSpillQueue(properties, pool);
+        try {
+            // A burst larger than the write queue: what the writer cannot keep up with is dropped, not waited for
+            int accepted = 0;
+            for (int i = 0; i < 1000; i++) {
+                if (queue.spill(twin(i), url)) {
+                    accepted++;
+                }
+            }
+            long deadline = System.nanoTime() + Duration.ofSeconds(10).toNanos();
+            while (queue.getSpilledCount() + queue.getDroppedCount() < 1000 && System.nanoTime() < deadline) {
+                Thread.sleep(10);
+            }
+            assertThat(queue.getSpilledCount()).isEqualTo(accepted);
+            assertThat(queue.getDroppedCount()).isEqualTo(1000 - accepted);
+            assertThat(queue.getPendingCount()).isEqualTo(accepted);
+        } finally {
+            queue.destroy();
+            pool.destroy();
+        }
+    }
+
+    /**
+     * Spills a twin and waits for the writer to write or drop it.
+     *
+     * @return whether it was written to the log.
+     */
+    private static boolean written(TwinSpillQueue queue, TwinRequest twin, String url) throws InterruptedException {
+        long spilled = queue.getSpilledCount();
+        long handled = spilled + queue.getDroppedCount();
+        queue.spill(twin, url);
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (queue.getSpilledCount() + queue.getDroppedCount() == handled && System.nanoTime() < deadline) {
+            Thread.sleep(1);
+        }
+        return queue.getSpilledCount() > spilled;
+    }
+
+    private static void awaitWritten(TwinSpillQueue queue, int count) throws InterruptedException {
+        long deadline = System.nanoTime() + Duration.ofSeconds(5).toNanos();
+        while (queue.getSpilledCount() < count && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(queue.getPendingCount()).isEqualTo(count);
+    }
+
+    private static TwinRequest twin(int i) {
+        return new TwinRequest("POST", "/books", null,
+                new String[]{"Content-Type", "application/json"},
+                ByteBuffer.wrap(("{\"title\":\"Book " + i + "\"}").getBytes(StandardCharsets.UTF_8)),
+                Map.of());
+    }
+}
@@ -0,0 +1,92 @@
+package com.example.httpTwins.transform;
+
+import com.example.httpTwins.model.TwinRequest;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+class PayloadTransformTests {
+
+    private static final String ORDER = "{\"id\":7,\"customer\":{\"name\":\"Ada\",\"email\":\"ada@example.com\"},"
+            + "\"items\":[{\"sku\":\"A1\",\"price\":12.5,\"notes\":{\"gift\":true}},{\"sku\":\"B2\",\"price\":3}],"
+            + "\"payment\":{\"card\":\"4111111111111111\",\"type\":\"visa\"}}";
+
+    @Test
+    void projectsAndMasksFieldsInsideArraysAndObjects() {
+        TransformProperties.Transform spec = new TransformProperties.Transform();
+        spec.setIncludeFields(List.of("customer", "items.sku", "items.price", "payment"));
+        spec.setExcludeFields(List.of("customer.name"));
+        spec.setMaskFields(List.of("customer.email", "payment.card"));
+        TransformProperties properties = new TransformProperties();
+        properties.getDestinations().put("RemoteERP", spec);
+
+        TwinRequest twin = new TransformRegistry(properties).forDestination("RemoteERP").apply(request(ORDER));
+
+        assertThat(twin.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo("{\"customer\":{\"email\":\"****\"},"
+                + "\"items\":[{\"sku\":\"A1\",\"price\":12.5},{\"sku\":\"B2\",\"price\":3}],"
+                + "\"payment\":{\"card\":\"****\",\"type\":\"visa\"}}");
+    }
+
+    @Test
+    void rewritesHeadersAndPath() {
+        TransformProperties.Transform spec = new TransformProperties.Transform();
+        spec.setRemoveHeaders(List.of("authorization"));
+        spec.setAddHeaders(Map.of("X-Twin", "true", "Accept", "application/xml"));
+        spec.setPathPattern("^/books");
+        spec.setPathReplacement("/v2/books");
+        TransformProperties properties = new TransformProperties();
+        properties.getDestinations().put("ReportingAgent", spec);
+
+        TwinRequest twin = new TransformRegistry(properties).forDestination("ReportingAgent").apply(request(ORDER));
+
+        assertThat(twin.getRequestURI()).isEqualTo("/v2/books/7");
+        assertThat(twin.getHeader("Authorization")).isNull();
+        assertThat(twin.getHeader("X-Twin")).isEqualTo("true");
+        assertThat(twin.getHeaders().get("Accept")).containsExactly("application/xml");
+        assertThat(twin.getBodyAsString(StandardCharsets.UTF_8)).isEqualTo(ORDER);
+    }
+
+    @Test
+    void leavesOutBodiesThatAreNotValidJson() {
+        TransformProperties.Transform spec = new TransformProperties.Transform();
+        spec.setMaskFields(List.of("payment.card"));
+        TransformProperties properties = new TransformProperties();
+        properties.getDestinations().put("RemoteERP", spec);
+        PayloadTransform transform = new TransformRegistry(properties).forDestination("RemoteERP");
+
+        TwinRequest twin = transform.apply(request("{\"payment\":{\"card\":\"4111111111111111\""));
+
+        assertThat(twin.getBodyLength()).isZero();
+        assertThat(transform.getFailedCount()).isEqualTo(1);
+    }
+
+    @Test
+    void sharesOneCompiledTransformBetweenDestinationsWithTheSameSettings() {
+        TransformProperties properties = new TransformProperties();
+        properties.getDestinations().put("RemoteERP", projection("title", "author"));
+        properties.getDestinations().put("https://ecom.buyers/items", projection("author", "title"));
+        properties.getDestinations().put("ReportingAgent", projection("title"));
+        TransformRegistry registry = new TransformRegistry(properties);
+
+        assertThat(registry.forDestination("RemoteERP")).isSameAs(registry.forDestination("https://ecom.buyers/items"));
+        assertThat(registry.forDestination("RemoteERP")).isNotSameAs(registry.forDestination("ReportingAgent"));
+        assertThat(registry.forDestination("AuditSink")).isNull();
+    }
+
+    private static TransformProperties.Transform projection(String... fields) {
+        TransformProperties.Transform spec = new TransformProperties.Transform();
+        spec.setIncludeFields(List.of(fields));
+        return spec;
+    }
+
+    private static TwinRequest request(String body) {
+        return new TwinRequest("PUT", "/books/7", null,
+                new String[]{"Content-Type", "application/json", "Authorization", "Bearer secret", "Accept", "application/json"},
+                ByteBuffer.wrap(body.getBytes(StandardCharsets.UTF_8)), Map.of());
+    }
+}